@@ -0,0 +1,58 @@
+package com.dbadmin.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 异步请求的线程池：交互查询（/execute）单独使用queryExecutor，不和流式结果、脚本、导出等长时间占用线程的响应
+ * 竞争；两个线程池的线程数和队列都有上限，排满时拒绝请求（返回503），而不是无限排队。
+ */
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+
+    @Value("${dbadmin.async.query-threads:16}")
+    private int queryThreads;
+
+    @Value("${dbadmin.async.query-queue-size:100}")
+    private int queryQueueSize;
+
+    @Value("${dbadmin.async.stream-threads:16}")
+    private int streamThreads;
+
+    @Value("${dbadmin.async.stream-queue-size:50}")
+    private int streamQueueSize;
+
+    @Bean
+    public ThreadPoolTaskExecutor queryExecutor() {
+        return executor("sql-query-", queryThreads, queryQueueSize);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor streamExecutor() {
+        return executor("sql-stream-", streamThreads, streamQueueSize);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        // StreamingResponseBody以及未指定线程池的Callable/WebAsyncTask都在streamExecutor中执行
+        configurer.setTaskExecutor(streamExecutor());
+    }
+
+    private static ThreadPoolTaskExecutor executor(String prefix, int threads, int queueSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(prefix);
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueSize);
+        executor.setAllowCoreThreadTimeOut(true);
+        // 队列满时抛出TaskRejectedException，由GlobalExceptionHandler返回503
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,76 @@
+package com.dbadmin.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 查询结果的内存预算在响应体序列化写出之后才释放：控制器把结果的memoryHold登记到请求上，
+ * 请求处理完成（异步请求为最终的异步派发完成）时统一关闭。
+ */
+public class ResultMemoryInterceptor implements HandlerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultMemoryInterceptor.class);
+
+    private static final String ATTRIBUTE = ResultMemoryInterceptor.class.getName() + ".holds";
+
+    /**
+     * 取得请求的登记表。异步请求须在请求线程中取得后传给异步任务，不能在任务中再访问请求对象
+     */
+    public static Holds holds(HttpServletRequest request) {
+        Holds holds = (Holds) request.getAttribute(ATTRIBUTE);
+        if (holds == null) {
+            holds = new Holds();
+            request.setAttribute(ATTRIBUTE, holds);
+        }
+        return holds;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Holds holds = (Holds) request.getAttribute(ATTRIBUTE);
+        if (holds != null) {
+            holds.releaseAll();
+        }
+    }
+
+    public static final class Holds {
+        private final List<AutoCloseable> holds = new ArrayList<>();
+        private boolean released;
+
+        /**
+         * 请求已经结束（如异步请求超时后任务才返回）时立即释放
+         */
+        public synchronized void add(AutoCloseable hold) {
+            if (hold == null) {
+                return;
+            }
+            if (released) {
+                close(hold);
+            } else {
+                holds.add(hold);
+            }
+        }
+
+        synchronized void releaseAll() {
+            released = true;
+            for (AutoCloseable hold : holds) {
+                close(hold);
+            }
+            holds.clear();
+        }
+
+        private static void close(AutoCloseable hold) {
+            try {
+                hold.close();
+            } catch (Exception e) {
+                log.warn("Failed to release result memory: {}", e.getMessage());
+            }
+        }
+    }
+}
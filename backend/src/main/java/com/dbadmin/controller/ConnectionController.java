@@ -72,10 +72,25 @@ public class ConnectionController {
         ));
     }
 
+    /**
+     * 会话执行通道状态：排队深度、等待时间以及阻塞队列的语句
+     */
+    @GetMapping("/{sessionId}/lane")
+    public ResponseEntity<?> getLane(@PathVariable String sessionId) {
+        try {
+            return ResponseEntity.ok(connectionManager.getLaneStats(sessionId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/pools")
+    public ResponseEntity<List<Map<String, Object>>> getPools() {
+        return ResponseEntity.ok(connectionManager.getPoolStats());
+    }
+
     @GetMapping("/sessions")
     public ResponseEntity<List<Map<String, Object>>> getSessions() {
-        // This would require exposing the active connections from ConnectionManagerService
-        // For now, return empty list as the sessions are managed in frontend
-        return ResponseEntity.ok(Collections.emptyList());
+        return ResponseEntity.ok(connectionManager.listSessions());
     }
 }
\ No newline at end of file
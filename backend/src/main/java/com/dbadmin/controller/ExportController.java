@@ -0,0 +1,120 @@
+package com.dbadmin.controller;
+
+import com.dbadmin.service.ExportService;
+import com.dbadmin.service.ParallelExportService;
+import com.dbadmin.service.export.ExportFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.*;
+
+@RestController
+@RequestMapping("/api/export")
+public class ExportController {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportController.class);
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private ParallelExportService parallelExportService;
+
+    /**
+     * 导出查询结果：format为csv/jsonl/sql/xlsx，target为response（默认，直接下载）或file（保存到服务器导出目录）
+     */
+    @PostMapping("/{sessionId}")
+    public ResponseEntity<?> export(@PathVariable String sessionId, @RequestBody Map<String, Object> request) {
+        String sql = (String) request.get("sql");
+        String table = (String) request.get("table");
+        String fileName = (String) request.get("fileName");
+        boolean gzip = Boolean.parseBoolean(String.valueOf(request.get("gzip")));
+        boolean toFile = "file".equals(request.get("target"));
+
+        if (sql == null || sql.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "sql is required"));
+        }
+
+        ExportFormat format;
+        try {
+            format = ExportFormat.fromString((String) request.get("format"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        if (toFile) {
+            try {
+                return ResponseEntity.ok(exportService.exportToFile(sessionId, sql, format, table, gzip, fileName));
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+        }
+
+        String downloadName = fileName != null && !fileName.isEmpty()
+                ? fileName : "export." + format.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body = out -> {
+            try {
+                exportService.export(sessionId, sql, format, table, gzip, out);
+            } catch (SQLException | RuntimeException e) {
+                // 必须抛出：还未开始输出时返回错误状态，已开始输出时由容器中断连接（分块传输没有结束块），
+                // 客户端不会把半个文件当作成功的下载
+                log.warn("导出失败: {}", e.getMessage());
+                throw new IOException("Export failed: " + e.getMessage(), e);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(downloadName, StandardCharsets.UTF_8).build().toString())
+                .body(body);
+    }
+
+    /**
+     * 按主键范围并行导出整张表到导出目录：output为ordered（默认，单个文件）或sharded（每个连接一个文件）
+     */
+    @PostMapping("/{sessionId}/table")
+    public ResponseEntity<?> exportTable(@PathVariable String sessionId, @RequestBody Map<String, Object> request) {
+        try {
+            String database = (String) request.get("database");
+            String table = (String) request.get("table");
+            ExportFormat format = ExportFormat.fromString((String) request.get("format"));
+            int parallelism = request.get("parallelism") != null
+                    ? Integer.parseInt(String.valueOf(request.get("parallelism"))) : 4;
+            boolean sharded = "sharded".equals(request.get("output"));
+            boolean gzip = Boolean.parseBoolean(String.valueOf(request.get("gzip")));
+            String fileName = (String) request.get("fileName");
+
+            return ResponseEntity.ok(parallelExportService.exportTable(sessionId, database, table, format,
+                    parallelism, sharded, gzip, fileName));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/files/{name}")
+    public ResponseEntity<?> download(@PathVariable String name) {
+        try {
+            Path file = exportService.resolveFile(name);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            ContentDisposition.attachment().filename(file.getFileName().toString(), StandardCharsets.UTF_8).build().toString())
+                    .body(new FileSystemResource(file));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
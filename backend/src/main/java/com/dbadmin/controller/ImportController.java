@@ -0,0 +1,88 @@
+package com.dbadmin.controller;
+
+import com.dbadmin.model.ImportOptions;
+import com.dbadmin.service.ImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.Part;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+@RestController
+@RequestMapping("/api/import")
+public class ImportController {
+
+    @Autowired
+    private ImportService importService;
+
+    /**
+     * 把请求体（原始文件流或multipart的file字段）导入到指定表，支持csv/ndjson，可gzip压缩
+     */
+    @PostMapping("/{sessionId}")
+    public ResponseEntity<?> importData(
+            @PathVariable String sessionId,
+            @RequestParam String table,
+            @RequestParam(required = false) String database,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String columns,
+            @RequestParam(defaultValue = "true") boolean header,
+            @RequestParam(defaultValue = ",") String delimiter,
+            @RequestParam(defaultValue = "1000") int batchSize,
+            @RequestParam(defaultValue = "10000") int commitInterval,
+            @RequestParam(defaultValue = "2") int writers,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) String importId,
+            HttpServletRequest request) {
+        ImportOptions options = new ImportOptions();
+        options.setImportId(importId);
+        options.setDatabase(database);
+        options.setTable(table);
+        options.setFormat(format);
+        if (columns != null && !columns.trim().isEmpty()) {
+            options.setColumns(Arrays.stream(columns.split(",")).map(String::trim).toList());
+        }
+        options.setHeader(header);
+        options.setDelimiter("\\t".equals(delimiter) ? '\t' : delimiter.charAt(0));
+        options.setBatchSize(batchSize);
+        options.setCommitInterval(commitInterval);
+        options.setWriters(writers);
+
+        try {
+            InputStream in;
+            String contentType = request.getContentType();
+            if (contentType != null && contentType.startsWith("multipart/")) {
+                Part part = request.getPart("file");
+                if (part == null) {
+                    return ResponseEntity.badRequest().body(Map.of("error", "Multipart field 'file' is required"));
+                }
+                in = part.getInputStream();
+            } else {
+                in = request.getInputStream();
+            }
+            if (gzip || "gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))) {
+                in = new GZIPInputStream(in, 64 * 1024);
+            }
+
+            Map<String, Object> result = importService.importData(sessionId, options, in);
+            if ("failed".equals(result.get("status"))) {
+                return ResponseEntity.badRequest().body(result);
+            }
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @GetMapping("/progress/{importId}")
+    public ResponseEntity<?> getProgress(@PathVariable String importId) {
+        Map<String, Object> progress = importService.getProgress(importId);
+        if (progress == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(progress);
+    }
+}
@@ -0,0 +1,91 @@
+package com.dbadmin.controller;
+
+import com.dbadmin.service.QueryJob;
+import com.dbadmin.service.QueryJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/jobs")
+public class JobController {
+
+    @Autowired
+    private QueryJobService jobService;
+
+    /**
+     * 提交后台查询任务，立即返回jobId
+     */
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestBody Map<String, String> request) {
+        try {
+            QueryJob job = jobService.submit(request.get("sessionId"), request.get("sql"), request.get("name"));
+            return ResponseEntity.ok(job.toMap());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<?> list(@RequestParam(required = false) String sessionId,
+                                  @RequestParam(required = false) String user) {
+        return ResponseEntity.ok(jobService.listJobs(sessionId, user));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> get(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(jobService.getJob(jobId).toMap());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 按页读取任务结果（列式）
+     */
+    @GetMapping("/{jobId}/rows")
+    public ResponseEntity<?> rows(@PathVariable String jobId,
+                                  @RequestParam(defaultValue = "0") long offset,
+                                  @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(jobService.readRows(jobId, offset, limit));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 以SSE推送任务进度，事件名progress，结束时为done
+     */
+    @GetMapping("/{jobId}/events")
+    public SseEmitter events(@PathVariable String jobId) {
+        try {
+            return jobService.subscribe(jobId);
+        } catch (Exception e) {
+            // 事件流中无法返回400，用一个error事件告知客户端
+            SseEmitter emitter = new SseEmitter();
+            try {
+                emitter.send(SseEmitter.event().name("error").data(Map.of("error", String.valueOf(e.getMessage()))));
+            } catch (IOException ignored) {
+                // Ignore
+            }
+            emitter.complete();
+            return emitter;
+        }
+    }
+
+    @PostMapping("/{jobId}/cancel")
+    public ResponseEntity<?> cancel(@PathVariable String jobId) {
+        return ResponseEntity.ok(Map.of("jobId", jobId, "cancelled", jobService.cancel(jobId)));
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<?> delete(@PathVariable String jobId) {
+        return ResponseEntity.ok(Map.of("jobId", jobId, "deleted", jobService.delete(jobId)));
+    }
+}
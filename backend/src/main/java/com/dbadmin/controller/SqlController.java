@@ -1,23 +1,97 @@
 package com.dbadmin.controller;
 
+import com.dbadmin.config.ResultMemoryInterceptor;
+import com.dbadmin.exception.ResultMemoryExceededException;
 import com.dbadmin.service.ConnectionManagerService;
+import com.dbadmin.service.KeysetPaginationService;
+import com.dbadmin.service.MetadataCacheService;
+import com.dbadmin.service.MetadataTreeService;
+import com.dbadmin.service.ScriptService;
+import com.dbadmin.service.NdjsonResultWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.dbadmin.model.CountMode;
+import com.dbadmin.model.MemoryPolicy;
+import com.dbadmin.model.QueryOptions;
 import com.dbadmin.model.QueryResult;
-
+import com.dbadmin.model.SqlParameter;
+import com.dbadmin.util.SqlLexer;
+import com.dbadmin.service.CountService;
+import com.dbadmin.service.CursorService;
+import com.dbadmin.service.QueryCacheService;
+import com.dbadmin.service.ResultMemoryGovernor;
+import com.dbadmin.service.ResultStoreService;
+import com.dbadmin.service.SchemaSnapshotService;
+import com.dbadmin.service.SchemaWatchService;
+
+import java.io.IOException;
+import java.sql.SQLException;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
 
 @RestController
 @RequestMapping("/api/sql")
 public class SqlController {
 
+    private static final Logger log = LoggerFactory.getLogger(SqlController.class);
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     @Autowired
     private ConnectionManagerService connectionManager;
 
+    @Autowired
+    @Qualifier("queryExecutor")
+    private AsyncTaskExecutor queryExecutor;
+
+    @Autowired
+    private KeysetPaginationService keysetPagination;
+
+    @Autowired
+    private CountService countService;
+
+    @Autowired
+    private CursorService cursorService;
+
+    @Autowired
+    private ScriptService scriptService;
+
+    @Autowired
+    private ResultStoreService resultStore;
+
+    @Autowired
+    private ResultMemoryGovernor memoryGovernor;
+
+    @Autowired
+    private QueryCacheService queryCache;
+
+    @Autowired
+    private MetadataCacheService metadataCache;
+
+    @Autowired
+    private SchemaSnapshotService schemaSnapshotService;
+
+    @Autowired
+    private SchemaWatchService schemaWatchService;
+
+    @Autowired
+    private MetadataTreeService metadataTreeService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping("/query")
-    public ResponseEntity<?> executeQuery(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> executeQuery(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
         String sessionId = request.get("sessionId");
         String sql = request.get("sql");
 
@@ -26,15 +100,38 @@ public class SqlController {
         }
 
         try {
-            List<Map<String, Object>> result = connectionManager.executeQuery(sessionId, sql);
-            return ResponseEntity.ok(Map.of("data", result));
+            QueryResult result = connectionManager.executeQuery(sessionId, sql);
+            ResultMemoryInterceptor.holds(httpRequest).add(result.getMemoryHold());
+            return ResponseEntity.ok(Map.of("data", result.getData()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 
+    /**
+     * 在交互查询线程池（queryExecutor）中执行，客户端断开或请求超时时取消仍在运行的查询。
+     * 客户端可以传入queryId，以便在响应返回前调用 /cancel/{queryId}
+     */
     @PostMapping("/execute")
-    public ResponseEntity<?> executeSql(@RequestBody Map<String, Object> request) {
+    public WebAsyncTask<ResponseEntity<?>> executeSql(@RequestBody Map<String, Object> request,
+                                                     HttpServletRequest httpRequest) {
+        Object requestQueryId = request.get("queryId");
+        String queryId = requestQueryId != null ? requestQueryId.toString() : UUID.randomUUID().toString();
+        ResultMemoryInterceptor.Holds holds = ResultMemoryInterceptor.holds(httpRequest);
+
+        WebAsyncTask<ResponseEntity<?>> task = new WebAsyncTask<>(null, queryExecutor,
+                () -> doExecuteSql(request, queryId, holds));
+        Callable<ResponseEntity<?>> cancel = () -> {
+            cancelQuietly(queryId);
+            return ResponseEntity.badRequest().body(Map.of("error", "Query cancelled", "queryId", queryId));
+        };
+        task.onError(cancel);
+        task.onTimeout(cancel);
+        return task;
+    }
+
+    private ResponseEntity<?> doExecuteSql(Map<String, Object> request, String queryId,
+                                           ResultMemoryInterceptor.Holds holds) {
         String sessionId = (String) request.get("sessionId");
         String sql = (String) request.get("sql");
 
@@ -60,42 +157,91 @@ public class SqlController {
             pageSize = 20; // 默认20条/页
         }
 
+        QueryOptions options = new QueryOptions();
+        // format=columnar 时返回列式结果，宽表下响应体积小得多
+        options.setColumnar("columnar".equals(request.get("format")));
+        // countMode: exact(默认，带缓存)/estimated/async/none
+        Object countMode = request.get("countMode");
+        options.setCountMode(CountMode.fromString(countMode != null ? countMode.toString() : null));
+        options.setQueryId(queryId);
+        // onMemoryLimit: wait/spill/truncate/fail，结果内存预算用完时的处理方式
+        Object onMemoryLimit = request.get("onMemoryLimit");
+        options.setMemoryPolicy(MemoryPolicy.fromString(onMemoryLimit != null ? onMemoryLimit.toString() : null, null));
+        // cache=true 时相同的查询（同一页）直接从会话的结果缓存返回
+        options.setCache(Boolean.parseBoolean(String.valueOf(request.get("cache"))));
+
         if (sessionId == null || sql == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "sessionId and sql are required"));
         }
 
         try {
-            // 清理SQL字符串
-            String cleanSql = sql.trim();
-            String lowerSql = cleanSql.toLowerCase();
+            // 一次词法分析得到语句类型和清理后的SQL（去掉末尾的分号和注释）
+            SqlLexer.Statement statement = SqlLexer.analyze(sql);
+            String cleanSql = statement.sql();
+            if (statement.multiStatement()) {
+                return ResponseEntity.badRequest().body(Map.of("error",
+                        "Multiple statements are not supported here; use /api/sql/script"));
+            }
 
             // 检查事务命令
-            if (lowerSql.startsWith("begin") || lowerSql.startsWith("start transaction")) {
+            if (statement.type() == SqlLexer.Type.BEGIN) {
                 connectionManager.beginTransaction(sessionId);
                 return ResponseEntity.ok(Map.of("message", "Transaction started"));
-            } else if (lowerSql.startsWith("commit")) {
+            } else if (statement.type() == SqlLexer.Type.COMMIT) {
                 connectionManager.commit(sessionId);
                 return ResponseEntity.ok(Map.of("message", "Transaction committed"));
-            } else if (lowerSql.startsWith("rollback")) {
+            } else if (statement.type() == SqlLexer.Type.ROLLBACK) {
                 connectionManager.rollback(sessionId);
                 return ResponseEntity.ok(Map.of("message", "Transaction rolled back"));
             }
 
             // 判断SQL类型
-            if (isSelectQuery(cleanSql)) {
+            if (statement.returnsResultSet() && page == null && Boolean.parseBoolean(String.valueOf(request.get("store")))) {
+                // store=true 的不分页查询：完整结果保存在服务端（超出部分落盘），之后通过 /results/{resultId} 翻页
+                return ResponseEntity.ok(resultStore.store(sessionId, cleanSql, queryId, pageSize != null ? pageSize : 100));
+            } else if (statement.returnsResultSet()) {
                 // 执行查询语句（返回结果集）
-                QueryResult result = connectionManager.executeQuery(sessionId, cleanSql, page, pageSize);
+                QueryResult result;
+                try {
+                    result = connectionManager.executeQuery(sessionId, cleanSql, page, pageSize, options);
+                } catch (ResultMemoryExceededException e) {
+                    if (e.getPolicy() != MemoryPolicy.SPILL) {
+                        throw e;
+                    }
+                    // 内存预算不足：重新以流式执行，完整结果落盘保存，通过 /results/{resultId} 翻页
+                    return ResponseEntity.ok(resultStore.store(sessionId, cleanSql, queryId,
+                            pageSize != null ? pageSize : 100));
+                }
+                // 预算在响应写出后才释放
+                holds.add(result.getMemoryHold());
 
                 // 构建响应
                 Map<String, Object> response = new HashMap<>();
-                response.put("data", result.getData());
+                if (result.isColumnar()) {
+                    response.put("format", "columnar");
+                    response.put("columnTypes", result.getColumnTypes());
+                    response.put("rows", result.getRows());
+                } else {
+                    response.put("data", result.getData());
+                }
                 response.put("columns", result.getColumns());
                 response.put("totalCount", result.getTotalCount());
+                response.put("countType", result.getCountType());
+                if (result.getCountId() != null) {
+                    response.put("countId", result.getCountId());
+                }
+                if (result.isCached()) {
+                    response.put("cached", true);
+                }
+                if (result.isTruncated()) {
+                    response.put("truncated", true);
+                    response.put("warning", "Result truncated: result memory budget exhausted");
+                }
 
                 return ResponseEntity.ok(response);
             } else {
                 // 执行更新语句（不返回结果集）
-                int affectedRows = connectionManager.executeUpdate(sessionId, cleanSql);
+                int affectedRows = connectionManager.executeUpdate(sessionId, cleanSql, queryId);
                 return ResponseEntity.ok(Map.of("affectedRows", affectedRows));
             }
         } catch (Exception e) {
@@ -104,31 +250,306 @@ public class SqlController {
     }
 
     /**
-     * 判断是否为SELECT查询
+     * 参数化执行：sql中使用?占位符，params按顺序给出参数值（或 {type, value}）。
+     * 语句在物理连接上预编译并缓存，重复执行时服务端不再解析SQL
+     */
+    @PostMapping("/execute/prepared")
+    public ResponseEntity<?> executePrepared(@RequestBody Map<String, Object> request, HttpServletRequest httpRequest) {
+        String sessionId = (String) request.get("sessionId");
+        String sql = (String) request.get("sql");
+        if (sessionId == null || sql == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "sessionId and sql are required"));
+        }
+
+        List<SqlParameter> params = new ArrayList<>();
+        Object rawParams = request.get("params");
+        if (rawParams instanceof List<?> list) {
+            for (Object param : list) {
+                params.add(SqlParameter.fromJson(param));
+            }
+        } else if (rawParams != null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "params must be an array"));
+        }
+
+        Object requestQueryId = request.get("queryId");
+        QueryOptions options = new QueryOptions();
+        options.setColumnar("columnar".equals(request.get("format")));
+        options.setQueryId(requestQueryId != null ? requestQueryId.toString() : null);
+        Object onMemoryLimit = request.get("onMemoryLimit");
+        options.setMemoryPolicy(MemoryPolicy.fromString(onMemoryLimit != null ? onMemoryLimit.toString() : null, null));
+
+        try {
+            SqlLexer.Statement statement = SqlLexer.analyze(sql);
+            String cleanSql = statement.sql();
+            if (statement.multiStatement()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Only a single statement can be prepared"));
+            }
+            if (!statement.returnsResultSet()) {
+                int affectedRows = connectionManager.updatePrepared(sessionId, cleanSql, params, options.getQueryId());
+                return ResponseEntity.ok(Map.of("affectedRows", affectedRows));
+            }
+
+            QueryResult result = connectionManager.queryPrepared(sessionId, cleanSql, params, options);
+            ResultMemoryInterceptor.holds(httpRequest).add(result.getMemoryHold());
+            Map<String, Object> response = new HashMap<>();
+            if (result.isColumnar()) {
+                response.put("format", "columnar");
+                response.put("columnTypes", result.getColumnTypes());
+                response.put("rows", result.getRows());
+            } else {
+                response.put("data", result.getData());
+            }
+            response.put("columns", result.getColumns());
+            response.put("totalCount", result.getTotalCount());
+            if (result.isTruncated()) {
+                response.put("truncated", true);
+                response.put("warning", "Result truncated: result memory budget exhausted");
+            }
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 从已保存的结果中读取任意位置的一页，不重新查询
+     */
+    @GetMapping("/results/{resultId}")
+    public ResponseEntity<?> getStoredRows(@PathVariable String resultId,
+                                           @RequestParam(defaultValue = "0") long offset,
+                                           @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(resultStore.readRows(resultId, offset, limit));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/results/{resultId}")
+    public ResponseEntity<?> releaseStoredResult(@PathVariable String resultId) {
+        return ResponseEntity.ok(Map.of("released", resultStore.release(resultId)));
+    }
+
+    /**
+     * 结果内存预算的使用情况：总预算、已预留字节、各查询的预留明细以及等待/截断/落盘/失败次数
+     */
+    @GetMapping("/memory")
+    public ResponseEntity<?> getMemoryStats() {
+        return ResponseEntity.ok(memoryGovernor.getStats());
+    }
+
+    /**
+     * 查询结果缓存的命中率、占用字节数和失效次数
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<?> getCacheStats() {
+        return ResponseEntity.ok(queryCache.getStats());
+    }
+
+    /**
+     * 元数据缓存的条目数、命中率（含合并的并发加载）和失效次数
+     */
+    @GetMapping("/metadata-cache")
+    public ResponseEntity<?> getMetadataCacheStats() {
+        return ResponseEntity.ok(metadataCache.getStats());
+    }
+
+    /**
+     * 丢弃会话所在服务器的元数据缓存，下次展开对象树时重新读取（用于其他客户端修改了结构的情况）
+     */
+    @DeleteMapping("/metadata-cache/{sessionId}")
+    public ResponseEntity<?> refreshMetadata(@PathVariable String sessionId) {
+        try {
+            metadataCache.invalidateAll(sessionId);
+            return ResponseEntity.ok(Map.of("message", "Metadata cache cleared"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 取消正在执行的查询（Statement.cancel，必要时KILL QUERY）
+     */
+    @PostMapping("/cancel/{queryId}")
+    public ResponseEntity<?> cancelQuery(@PathVariable String queryId) {
+        try {
+            boolean cancelled = connectionManager.cancelQuery(queryId);
+            return ResponseEntity.ok(Map.of("queryId", queryId, "cancelled", cancelled));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 正在执行的查询：SQL、已执行时间和已读取的行数
+     */
+    @GetMapping("/running")
+    public ResponseEntity<?> getRunningQueries(@RequestParam(required = false) String sessionId) {
+        return ResponseEntity.ok(connectionManager.getRunningQueries(sessionId));
+    }
+
+    private void cancelQuietly(String queryId) {
+        try {
+            if (connectionManager.cancelQuery(queryId)) {
+                log.debug("客户端断开，已取消查询 {}", queryId);
+            }
+        } catch (SQLException e) {
+            log.warn("取消查询失败 {}: {}", queryId, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取countMode=async时后台计算的精确总数
+     */
+    @GetMapping("/count/{countId}")
+    public ResponseEntity<?> getAsyncCount(@PathVariable String countId) {
+        Map<String, Object> status = countService.getAsyncCount(countId);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * 按主键游标浏览整表，cursor为上一页返回的nextCursor，首页不传；传入queryId时可通过 /cancel/{queryId} 中断
+     */
+    @PostMapping("/browse")
+    public ResponseEntity<?> browseTable(@RequestBody Map<String, Object> request) {
+        String sessionId = (String) request.get("sessionId");
+        String database = (String) request.get("database");
+        String table = (String) request.get("table");
+        String cursor = (String) request.get("cursor");
+        String queryId = (String) request.get("queryId");
+
+        int pageSize = 100;
+        try {
+            Object pageSizeObj = request.get("pageSize");
+            if (pageSizeObj != null) {
+                pageSize = Integer.parseInt(pageSizeObj.toString());
+            }
+        } catch (NumberFormatException e) {
+            pageSize = 100;
+        }
+
+        if (sessionId == null || table == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "sessionId and table are required"));
+        }
+
+        try {
+            QueryResult result = keysetPagination.browseTable(sessionId, database, table, pageSize, cursor, queryId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("data", result.getData());
+            response.put("columns", result.getColumns());
+            response.put("keyColumns", result.getKeyColumns());
+            response.put("pageSize", result.getPageSize());
+            response.put("nextCursor", result.getNextCursor());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 在服务端执行整段脚本，每条语句执行完即以NDJSON返回其结果；传入queryId时可通过 /cancel/{queryId} 中断
      */
-    private boolean isSelectQuery(String sql) {
-        // 移除单行注释（--）和多行注释（/* */）
-        String withoutComments = sql.replaceAll("--.*", "").replaceAll("/\\*.*?\\*/", "");
-        // 使用正则表达式匹配以SELECT开头的语句（排除WITH子句）
-        String normalized = withoutComments.toUpperCase().replaceAll("\\s+", " ").trim();
+    @PostMapping("/script")
+    public ResponseEntity<?> executeScript(@RequestBody Map<String, Object> request) {
+        String sessionId = (String) request.get("sessionId");
+        String script = (String) request.get("script");
+        String queryId = (String) request.get("queryId");
+        boolean continueOnError = Boolean.parseBoolean(String.valueOf(request.get("continueOnError")));
 
-        // 检查是否是返回结果集的语句
-        Pattern resultPattern = Pattern.compile("^(SELECT|SHOW|DESCRIBE|DESC|EXPLAIN|HELP|WITH)\\b");
-        if (resultPattern.matcher(normalized).find()) {
-            return true;
+        if (sessionId == null || script == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "sessionId and script are required"));
         }
 
-        // 检查存储过程调用（可能返回结果集）
-        if (normalized.startsWith("CALL ") || normalized.startsWith("EXEC ")) {
-            return true;
+        StreamingResponseBody body = out -> {
+            try {
+                scriptService.execute(sessionId, script, continueOnError, queryId, out);
+            } catch (SQLException e) {
+                new NdjsonResultWriter(out, objectMapper).writeError(e.getMessage());
+            } catch (IOException e) {
+                log.debug("脚本执行客户端已断开: {}", e.getMessage());
+            }
+        };
+
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * 打开服务端游标：查询只执行一次，之后通过fetch拉取后续行
+     */
+    @PostMapping("/cursor/open")
+    public ResponseEntity<?> openCursor(@RequestBody Map<String, String> request) {
+        String sessionId = request.get("sessionId");
+        String sql = request.get("sql");
+
+        if (sessionId == null || sql == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "sessionId and sql are required"));
+        }
+        if (!SqlLexer.analyze(sql).returnsResultSet()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Cursors can only be opened on queries returning a result set"));
         }
 
-        // 检查表信息语句
-        if (normalized.startsWith("TABLE ") || normalized.startsWith("COLUMNS ")) {
-            return true;
+        try {
+            return ResponseEntity.ok(cursorService.open(sessionId, sql));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
+    }
+
+    @PostMapping("/cursor/{cursorId}/fetch")
+    public ResponseEntity<?> fetchCursor(@PathVariable String cursorId, @RequestParam(defaultValue = "100") int n) {
+        try {
+            return ResponseEntity.ok(cursorService.fetch(cursorId, n));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 
-        return false;
+    @DeleteMapping("/cursor/{cursorId}")
+    public ResponseEntity<?> closeCursor(@PathVariable String cursorId) {
+        boolean closed = cursorService.close(cursorId);
+        return ResponseEntity.ok(Map.of("closed", closed));
+    }
+
+    @GetMapping("/cursors")
+    public ResponseEntity<?> listCursors() {
+        return ResponseEntity.ok(cursorService.listCursors());
+    }
+
+    /**
+     * 流式执行查询，以NDJSON逐行返回，不受结果集大小限制。
+     * rowFormat=object 时每行输出以列名为键的对象，默认输出数组
+     */
+    @PostMapping("/execute/stream")
+    public ResponseEntity<?> executeSqlStream(@RequestBody Map<String, Object> request) {
+        String sessionId = (String) request.get("sessionId");
+        String sql = (String) request.get("sql");
+        String queryId = (String) request.get("queryId");
+        boolean objectRows = "object".equals(request.get("rowFormat"));
+
+        if (sessionId == null || sql == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "sessionId and sql are required"));
+        }
+        if (!SqlLexer.analyze(sql).returnsResultSet()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Only queries returning a result set can be streamed"));
+        }
+
+        StreamingResponseBody body = out -> {
+            NdjsonResultWriter writer = new NdjsonResultWriter(out, objectMapper, objectRows);
+            try {
+                connectionManager.streamQuery(sessionId, sql, queryId, writer);
+            } catch (SQLException e) {
+                // 响应头已发出，只能在流中报告错误
+                writer.writeError(e.getMessage());
+            } catch (IOException e) {
+                log.debug("流式查询客户端已断开: {}", e.getMessage());
+            }
+        };
+
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
 
     @GetMapping("/tables/{sessionId}")
@@ -176,6 +597,24 @@ public class SqlController {
         }
     }
 
+    /**
+     * 对象树的一页：kinds为逗号分隔的tables/views/procedures/functions（默认全部），各类并行查询，
+     * 可按名称前缀过滤，offset/limit对每一类分别分页
+     */
+    @GetMapping("/tree/{sessionId}")
+    public ResponseEntity<?> getTree(@PathVariable String sessionId,
+                                     @RequestParam(required = false) String database,
+                                     @RequestParam(required = false) List<String> kinds,
+                                     @RequestParam(required = false) String prefix,
+                                     @RequestParam(defaultValue = "0") int offset,
+                                     @RequestParam(required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(metadataTreeService.tree(sessionId, database, kinds, prefix, offset, limit));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/views/{sessionId}")
     public ResponseEntity<?> getViews(@PathVariable String sessionId, @RequestParam(required = false) String database) {
         try {
@@ -206,6 +645,39 @@ public class SqlController {
         }
     }
 
+    /**
+     * 整个数据库的结构快照（表、列、索引、外键、存储过程/函数），供自动补全和AI上下文一次取得
+     */
+    @GetMapping("/schema-snapshot/{sessionId}")
+    public ResponseEntity<?> getSchemaSnapshot(@PathVariable String sessionId,
+                                               @RequestParam(required = false) String database) {
+        try {
+            return ResponseEntity.ok(schemaSnapshotService.snapshot(sessionId, database));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * 订阅库的结构变化（SSE）：后台定期比较各表的列和索引定义，变化时推送schema-change事件
+     */
+    @GetMapping("/schema-events/{sessionId}")
+    public SseEmitter schemaEvents(@PathVariable String sessionId, @RequestParam(required = false) String database) {
+        try {
+            return schemaWatchService.subscribe(sessionId, database);
+        } catch (Exception e) {
+            // 事件流中无法返回400，用一个error事件告知客户端
+            SseEmitter emitter = new SseEmitter();
+            try {
+                emitter.send(SseEmitter.event().name("error").data(Map.of("error", String.valueOf(e.getMessage()))));
+            } catch (IOException ignored) {
+                // Ignore
+            }
+            emitter.complete();
+            return emitter;
+        }
+    }
+
     @GetMapping("/table-schema/{sessionId}")
     public ResponseEntity<?> getTableSchema(@PathVariable String sessionId, @RequestParam String tableName) {
         try {
@@ -222,10 +694,8 @@ public class SqlController {
             @PathVariable String database,
             @PathVariable String table) {
         try {
-            // 先切换到指定数据库
-            connectionManager.switchDatabase(sessionId, database);
-            // 获取表结构
-            Map<String, Object> schema = connectionManager.getTableSchema(sessionId, table);
+            // 库名随查询显式传入，不切换会话的当前数据库
+            Map<String, Object> schema = connectionManager.getTableSchema(sessionId, database, table);
             return ResponseEntity.ok(schema);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -238,17 +708,8 @@ public class SqlController {
             @PathVariable String database,
             @PathVariable String table) {
         try {
-            // 先切换到指定数据库
-            connectionManager.switchDatabase(sessionId, database);
-
-            // 执行 SHOW CREATE TABLE
-            List<Map<String, Object>> result = connectionManager.executeQuery(
-                sessionId,
-                "SHOW CREATE TABLE `" + table + "`"
-            );
-
-            if (result != null && !result.isEmpty()) {
-                String createSql = (String) result.get(0).get("Create Table");
+            String createSql = connectionManager.getCreateTable(sessionId, database, table);
+            if (createSql != null) {
                 return ResponseEntity.ok(Map.of(
                     "tableName", table,
                     "createSql", createSql
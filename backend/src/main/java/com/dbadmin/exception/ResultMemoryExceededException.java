@@ -0,0 +1,24 @@
+package com.dbadmin.exception;
+
+import com.dbadmin.model.MemoryPolicy;
+
+import java.sql.SQLException;
+
+/**
+ * 查询结果超出全局内存预算；policy为SPILL时调用方应改为落盘保存结果
+ */
+public class ResultMemoryExceededException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final MemoryPolicy policy;
+
+    public ResultMemoryExceededException(String message, MemoryPolicy policy) {
+        super(message);
+        this.policy = policy;
+    }
+
+    public MemoryPolicy getPolicy() {
+        return policy;
+    }
+}
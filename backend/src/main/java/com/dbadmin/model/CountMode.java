@@ -0,0 +1,26 @@
+package com.dbadmin.model;
+
+/**
+ * 分页查询的总数策略
+ */
+public enum CountMode {
+    // 精确COUNT(*)，结果按SQL和数据库缓存
+    EXACT,
+    // 使用TABLE_ROWS或EXPLAIN的行数估算，不执行COUNT
+    ESTIMATED,
+    // 立即返回数据页，精确总数在后台计算后通过countId获取
+    ASYNC,
+    // 不计算总数
+    NONE;
+
+    public static CountMode fromString(String value) {
+        if (value == null || value.isEmpty()) {
+            return EXACT;
+        }
+        try {
+            return CountMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return EXACT;
+        }
+    }
+}
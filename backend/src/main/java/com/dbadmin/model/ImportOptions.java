@@ -0,0 +1,51 @@
+package com.dbadmin.model;
+
+import java.util.List;
+
+/**
+ * 批量导入参数
+ */
+public class ImportOptions {
+    private String importId;
+    private String database;
+    private String table;
+    private String format = "csv"; // csv, ndjson
+    private List<String> columns;
+    private boolean header = true;
+    private char delimiter = ',';
+    private int batchSize = 1000;
+    private int commitInterval = 10000;
+    private int writers = 2;
+
+    public ImportOptions() {}
+
+    public String getImportId() { return importId; }
+    public void setImportId(String importId) { this.importId = importId; }
+
+    public String getDatabase() { return database; }
+    public void setDatabase(String database) { this.database = database; }
+
+    public String getTable() { return table; }
+    public void setTable(String table) { this.table = table; }
+
+    public String getFormat() { return format; }
+    public void setFormat(String format) { this.format = format; }
+
+    public List<String> getColumns() { return columns; }
+    public void setColumns(List<String> columns) { this.columns = columns; }
+
+    public boolean isHeader() { return header; }
+    public void setHeader(boolean header) { this.header = header; }
+
+    public char getDelimiter() { return delimiter; }
+    public void setDelimiter(char delimiter) { this.delimiter = delimiter; }
+
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+    public int getCommitInterval() { return commitInterval; }
+    public void setCommitInterval(int commitInterval) { this.commitInterval = commitInterval; }
+
+    public int getWriters() { return writers; }
+    public void setWriters(int writers) { this.writers = writers; }
+}
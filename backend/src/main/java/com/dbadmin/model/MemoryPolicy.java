@@ -0,0 +1,26 @@
+package com.dbadmin.model;
+
+/**
+ * 结果内存预算用完时的处理方式
+ */
+public enum MemoryPolicy {
+    // 等待其他查询释放内存，超过等待时间后报错
+    WAIT,
+    // 改为落盘保存完整结果（ResultStoreService），通过resultId翻页
+    SPILL,
+    // 返回已读取的部分结果并标记truncated
+    TRUNCATE,
+    // 立即报错
+    FAIL;
+
+    public static MemoryPolicy fromString(String value, MemoryPolicy defaultPolicy) {
+        if (value == null || value.isEmpty()) {
+            return defaultPolicy;
+        }
+        try {
+            return MemoryPolicy.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultPolicy;
+        }
+    }
+}
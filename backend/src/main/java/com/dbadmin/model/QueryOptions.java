@@ -0,0 +1,57 @@
+package com.dbadmin.model;
+
+/**
+ * executeQuery的可选行为
+ */
+public class QueryOptions {
+    private boolean columnar;
+    private CountMode countMode = CountMode.EXACT;
+    // 客户端指定的查询ID，用于在请求返回前取消查询
+    private String queryId;
+    // 结果内存预算用完时的处理方式，null表示使用配置的默认策略
+    private MemoryPolicy memoryPolicy;
+    // 允许使用会话的查询结果缓存
+    private boolean cache;
+
+    public QueryOptions() {}
+
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    public void setColumnar(boolean columnar) {
+        this.columnar = columnar;
+    }
+
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    public void setCountMode(CountMode countMode) {
+        this.countMode = countMode;
+    }
+
+    public String getQueryId() {
+        return queryId;
+    }
+
+    public void setQueryId(String queryId) {
+        this.queryId = queryId;
+    }
+
+    public MemoryPolicy getMemoryPolicy() {
+        return memoryPolicy;
+    }
+
+    public void setMemoryPolicy(MemoryPolicy memoryPolicy) {
+        this.memoryPolicy = memoryPolicy;
+    }
+
+    public boolean isCache() {
+        return cache;
+    }
+
+    public void setCache(boolean cache) {
+        this.cache = cache;
+    }
+}
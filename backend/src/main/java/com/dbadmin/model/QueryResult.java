@@ -1,14 +1,31 @@
 package com.dbadmin.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.List;
 import java.util.Map;
 
 public class QueryResult {
     private List<Map<String, Object>> data;
     private List<String> columns;
+    // 列式结果：列类型与columns一一对应，rows中每行是按列顺序排列的值
+    private List<String> columnTypes;
+    private List<Object[]> rows;
     private Long totalCount;
+    // 总数的来源：exact/cached/estimated/pending/none，pending时通过countId获取
+    private String countType;
+    private String countId;
     private Integer currentPage;
     private Integer pageSize;
+    // keyset分页：排序键列和下一页游标，没有下一页时nextCursor为null
+    private List<String> keyColumns;
+    private String nextCursor;
+    // 结果内存预算用完后只返回了已读取的部分行
+    private boolean truncated;
+    // 结果来自查询缓存
+    private boolean cached;
+    // 结果占用的内存预算，响应写出后才释放
+    private AutoCloseable memoryHold;
 
     public QueryResult() {}
 
@@ -35,6 +52,26 @@ public class QueryResult {
         this.columns = columns;
     }
 
+    public List<String> getColumnTypes() {
+        return columnTypes;
+    }
+
+    public void setColumnTypes(List<String> columnTypes) {
+        this.columnTypes = columnTypes;
+    }
+
+    public List<Object[]> getRows() {
+        return rows;
+    }
+
+    public void setRows(List<Object[]> rows) {
+        this.rows = rows;
+    }
+
+    public boolean isColumnar() {
+        return rows != null;
+    }
+
     public Long getTotalCount() {
         return totalCount;
     }
@@ -43,6 +80,22 @@ public class QueryResult {
         this.totalCount = totalCount;
     }
 
+    public String getCountType() {
+        return countType;
+    }
+
+    public void setCountType(String countType) {
+        this.countType = countType;
+    }
+
+    public String getCountId() {
+        return countId;
+    }
+
+    public void setCountId(String countId) {
+        this.countId = countId;
+    }
+
     public Integer getCurrentPage() {
         return currentPage;
     }
@@ -58,4 +111,45 @@ public class QueryResult {
     public void setPageSize(Integer pageSize) {
         this.pageSize = pageSize;
     }
-}
\ No newline at end of file
+
+    public List<String> getKeyColumns() {
+        return keyColumns;
+    }
+
+    public void setKeyColumns(List<String> keyColumns) {
+        this.keyColumns = keyColumns;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    @JsonIgnore
+    public AutoCloseable getMemoryHold() {
+        return memoryHold;
+    }
+
+    public void setMemoryHold(AutoCloseable memoryHold) {
+        this.memoryHold = memoryHold;
+    }
+}
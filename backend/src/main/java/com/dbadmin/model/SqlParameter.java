@@ -0,0 +1,88 @@
+package com.dbadmin.model;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 预编译语句的一个参数。请求中可以直接给值（按JSON类型绑定），
+ * 也可以写成 {"type": "decimal", "value": "12.50"} 指定SQL类型
+ */
+public class SqlParameter {
+    private final String type;
+    private final Object value;
+
+    public SqlParameter(String type, Object value) {
+        this.type = type;
+        this.value = value;
+    }
+
+    public static SqlParameter fromJson(Object json) {
+        if (json instanceof Map<?, ?> map && map.containsKey("type")) {
+            Object type = map.get("type");
+            return new SqlParameter(type != null ? type.toString() : null, map.get("value"));
+        }
+        return new SqlParameter(null, json);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * 绑定到语句的第index个占位符
+     */
+    public void bind(PreparedStatement stmt, int index) throws SQLException {
+        if (value == null || "null".equalsIgnoreCase(type)) {
+            stmt.setNull(index, Types.NULL);
+            return;
+        }
+        if (type == null) {
+            bindUntyped(stmt, index);
+            return;
+        }
+
+        String text = value.toString();
+        try {
+            switch (type.toLowerCase(Locale.ROOT)) {
+                case "string", "varchar", "char", "text" -> stmt.setString(index, text);
+                case "int", "integer", "tinyint", "smallint", "mediumint" -> stmt.setInt(index, Integer.parseInt(text));
+                case "long", "bigint" -> stmt.setLong(index, Long.parseLong(text));
+                case "decimal", "numeric" -> stmt.setBigDecimal(index, new BigDecimal(text));
+                case "double", "float", "real" -> stmt.setDouble(index, Double.parseDouble(text));
+                case "boolean", "bool" -> stmt.setBoolean(index, Boolean.parseBoolean(text));
+                case "date" -> stmt.setDate(index, Date.valueOf(text));
+                case "time" -> stmt.setTime(index, Time.valueOf(text));
+                case "datetime", "timestamp" -> stmt.setTimestamp(index, Timestamp.valueOf(text.replace('T', ' ')));
+                // 二进制值以Base64传输
+                case "binary", "varbinary", "blob", "bytes" -> stmt.setBytes(index, Base64.getDecoder().decode(text));
+                default -> throw new SQLException("Unsupported parameter type: " + type);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new SQLException("Invalid " + type + " value for parameter " + index + ": " + text);
+        }
+    }
+
+    private void bindUntyped(PreparedStatement stmt, int index) throws SQLException {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+            stmt.setLong(index, ((Number) value).longValue());
+        } else if (value instanceof BigDecimal decimal) {
+            stmt.setBigDecimal(index, decimal);
+        } else if (value instanceof Number number) {
+            // JSON小数按十进制绑定，避免double的二进制误差进入比较条件
+            stmt.setBigDecimal(index, new BigDecimal(number.toString()));
+        } else if (value instanceof Boolean bool) {
+            stmt.setBoolean(index, bool);
+        } else if (value instanceof String string) {
+            stmt.setString(index, string);
+        } else {
+            throw new SQLException("Parameter " + index + " must be a scalar or {type, value}");
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.dbadmin.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 在会话租用的连接上执行的操作，连接在回调返回后自动归还
+ */
+@FunctionalInterface
+public interface ConnectionCallback<T> {
+    T doInConnection(Connection conn) throws SQLException;
+}
@@ -1,482 +1,1257 @@
 package com.dbadmin.service;
 
 import com.dbadmin.model.ConnectionInfo;
+import com.dbadmin.model.MemoryPolicy;
+import com.dbadmin.model.QueryOptions;
 import com.dbadmin.model.QueryResult;
+import com.dbadmin.model.SqlParameter;
+import com.dbadmin.util.SqlIdentifiers;
+import com.dbadmin.util.SqlLexer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class ConnectionManagerService {
-    private final Map<String, Connection> activeConnections = new ConcurrentHashMap<>();
-    private final Map<String, ConnectionInfo> connectionInfoMap = new ConcurrentHashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(ConnectionManagerService.class);
+
+    @Autowired
+    private SessionRegistry sessions;
+
+    // 正在执行的请求，按queryId索引，用于查看进度和取消
+    @Autowired
+    private QueryRegistry queries;
+
+    @Autowired
+    private ConnectionPoolManager poolManager;
+
+    @Autowired
+    private CountService countService;
+
+    @Autowired
+    private ResultMemoryGovernor memoryGovernor;
+
+    @Autowired
+    private QueryCacheService queryCache;
+
+    @Autowired
+    private MetadataCacheService metadataCache;
+
+    @Value("${dbadmin.session.lane-timeout-ms:30000}")
+    private long laneTimeoutMs;
+
+    @Value("${dbadmin.session.idle-timeout-ms:1800000}")
+    private long idleTimeoutMs;
+
+    // 写语句执行后为下一条语句保留连接的时间
+    @Value("${dbadmin.session.follow-up-hold-ms:5000}")
+    private long followUpHoldMs;
+
+    // 每轮回收最多处理的会话数，避免一次关闭大量连接
+    @Value("${dbadmin.session.reap-batch-size:50}")
+    private int reapBatchSize;
+
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "session-reaper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ConnectionManagerService() {
+        reaper.scheduleWithFixedDelay(this::reapSessions, 60, 60, TimeUnit.SECONDS);
+        reaper.scheduleWithFixedDelay(this::releaseFollowUps, 1, 1, TimeUnit.SECONDS);
+    }
 
     public String createConnection(ConnectionInfo info) throws SQLException {
         String sessionId = UUID.randomUUID().toString();
 
-        Connection conn = createPhysicalConnection(info);
-        activeConnections.put(sessionId, conn);
-        connectionInfoMap.put(sessionId, info);
+        DbSession session = new DbSession(sessionId, info, ConnectionPoolManager.keyOf(info));
+        // 预先借还一次，确认连接信息可用并让连接池预热
+        try (ConnectionPool.Lease lease = poolManager.getPool(session.getPoolKey(), info).acquire()) {
+            if (!lease.getConnection().isValid(5)) {
+                lease.invalidate();
+                throw new SQLException("Connection is not valid");
+            }
+        }
+        for (DbSession evicted : sessions.register(session)) {
+            log.info("会话数达到上限，淘汰最久未使用的会话 {}", evicted.getId());
+            releaseSession(evicted);
+        }
 
         return sessionId;
     }
 
     public boolean testConnection(ConnectionInfo info) throws SQLException {
-        try (Connection conn = createPhysicalConnection(info)) {
+        try (Connection conn = poolManager.createPhysicalConnection(info)) {
             return conn.isValid(5);
         } catch (SQLException e) {
             throw new SQLException("Connection test failed: " + e.getMessage(), e);
         }
     }
 
-    public List<Map<String, Object>> executeQuery(String sessionId, String sql) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
-        }
-
-        // 清理SQL：移除末尾的分号和空白字符
-        String cleanSql = sql.trim().replaceAll(";+$", "");
-
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(cleanSql)) {
-
-            return resultSetToList(rs);
+    /**
+     * 返回的结果只包含data，占用的内存预算由调用方在响应写出后通过getMemoryHold释放
+     */
+    public QueryResult executeQuery(String sessionId, String sql) throws SQLException {
+        DbSession session = getSession(sessionId);
+        SqlLexer.Statement statement = SqlLexer.analyze(sql);
+        try (SessionLane.Ticket ticket = enterLane(session, sql, statement.readOnly());
+             ConnectionPool.Lease lease = lease(session, statement)) {
+            Connection conn = lease.getConnection();
+
+            // 清理SQL：移除末尾的分号、注释和空白字符
+            String cleanSql = statement.sql();
+
+            // 这里返回的结果无法携带截断标记，预算用完时只等待或报错
+            MemoryPolicy policy = memoryGovernor.getDefaultPolicy() == MemoryPolicy.WAIT ? MemoryPolicy.WAIT : MemoryPolicy.FAIL;
+            try (Statement stmt = conn.createStatement()) {
+                RunningQuery query = startQuery(session, null, cleanSql, stmt);
+                ResultMemoryGovernor.Reservation reservation = memoryGovernor.open(sessionId, query.getQueryId(), policy);
+                boolean handedOff = false;
+                try (ResultSet rs = stmt.executeQuery(cleanSql)) {
+                    QueryResult result = new QueryResult(resultSetToList(rs, query.getRowsFetched(), reservation), null, null);
+                    result.setMemoryHold(reservation);
+                    handedOff = true;
+                    return result;
+                } catch (SQLException e) {
+                    throw cancelledOr(query, e);
+                } finally {
+                    endQuery(query);
+                    if (!handedOff) {
+                        reservation.close();
+                    }
+                }
+            }
         }
     }
 
     public QueryResult executeQuery(String sessionId, String sql, Integer page, Integer pageSize) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
+        return executeQuery(sessionId, sql, page, pageSize, new QueryOptions());
+    }
+
+    /**
+     * options控制返回格式（列式）和分页总数的计算策略
+     */
+    public QueryResult executeQuery(String sessionId, String sql, Integer page, Integer pageSize, QueryOptions options) throws SQLException {
+        DbSession session = getSession(sessionId);
+        // 事务中的读取可能看到未提交的修改，不使用缓存
+        boolean cacheable = options.isCache() && session.getPinnedLease() == null;
+        long cacheGeneration = 0;
+        if (cacheable) {
+            QueryResult cached = queryCache.get(session, sql, page, pageSize, options.isColumnar());
+            if (cached != null) {
+                return cached;
+            }
+            cacheGeneration = queryCache.generation(session);
         }
 
-        // 如果page或pageSize为null，不应用分页，获取所有数据
-        boolean applyPagination = (page != null && pageSize != null && pageSize > 0);
-        String finalSql = sql;
-        Long totalCount = null;
-
-        if (applyPagination) {
-            // 添加分页逻辑
-            // 清理SQL：移除末尾的分号和空白字符
-            String cleanSql = sql.trim().replaceAll(";+$", "");
-            String upperSql = cleanSql.toUpperCase().trim();
-            if (!upperSql.contains(" LIMIT ")) {
-                // 先查询总数
-                String countSql = "SELECT COUNT(*) FROM (" + cleanSql + ") AS total_count";
-                try (Statement stmt = conn.createStatement()) {
+        SqlLexer.Statement statement = SqlLexer.analyze(sql);
+        try (SessionLane.Ticket ticket = enterLane(session, sql, statement.readOnly());
+             ConnectionPool.Lease lease = lease(session, statement)) {
+            Connection conn = lease.getConnection();
+
+            // 如果page或pageSize为null，不应用分页，获取所有数据
+            boolean applyPagination = (page != null && pageSize != null && pageSize > 0);
+            // 清理SQL：移除末尾的分号、注释和空白字符（末尾的单行注释会吞掉追加的LIMIT）
+            String cleanSql = statement.sql();
+            String sqlToExecute = cleanSql;
+            CountService.CountResult count = null;
+
+            // 计数往往是最慢的一步，在它之前登记请求，取消同样能中断计数
+            RunningQuery query = queries.start(sessionId, options.getQueryId(), cleanSql);
+            try {
+                if (applyPagination) {
+                    // 添加分页逻辑；只看最外层的LIMIT，子查询和字符串中的LIMIT不影响分页
+                    if (!statement.hasLimit()) {
+                        // 先按策略获取总数（可能来自缓存、估算或后台计算）
+                        count = countService.count(session, conn, cleanSql, options.getCountMode(), query);
+
+                        // 添加LIMIT子句
+                        int offset = (page - 1) * pageSize;
+                        sqlToExecute = cleanSql + " LIMIT " + pageSize + " OFFSET " + offset;
+                    }
+                }
+
+                // 不分页的结果可能很大：非事务时改为流式读取，行数据不在驱动中整体缓冲，只占用预算内的内存；
+                // 事务中的连接不能因中途放弃结果集而被丢弃，仍使用普通语句
+                boolean streaming = !applyPagination && session.getPinnedLease() == null;
+                try (Statement stmt = streaming ? createStreamingStatement(conn) : conn.createStatement()) {
                     // 设置查询超时为30秒
                     stmt.setQueryTimeout(30);
-                    try (ResultSet rs = stmt.executeQuery(countSql)) {
-                        if (rs.next()) {
-                            totalCount = rs.getLong(1);
+                    query.attach(stmt);
+                    ResultSet rs = null;
+                    // 结果序列化完之前行数据仍在堆中，预算交给结果持有，由控制器在响应写出后释放
+                    ResultMemoryGovernor.Reservation reservation =
+                            memoryGovernor.open(sessionId, query.getQueryId(), options.getMemoryPolicy());
+                    boolean handedOff = false;
+                    try {
+                        rs = stmt.executeQuery(sqlToExecute);
+
+                        QueryResult result;
+                        int rowCount;
+                        if (options.isColumnar()) {
+                            result = resultSetToColumnar(rs, query.getRowsFetched(), reservation);
+                            rowCount = result.getRows().size();
+                        } else {
+                            List<Map<String, Object>> data = resultSetToList(rs, query.getRowsFetched(), reservation);
+                            List<String> columns = new ArrayList<>();
+
+                            if (!data.isEmpty()) {
+                                columns.addAll(data.get(0).keySet());
+                            }
+                            result = new QueryResult(data, columns, null);
+                            rowCount = data.size();
+                        }
+
+                        if (count != null) {
+                            result.setTotalCount(count.count());
+                            result.setCountType(count.countType());
+                            result.setCountId(count.countId());
+                        } else {
+                            // 如果没有分页或没有计算总数，使用实际返回的数据量
+                            result.setTotalCount((long) rowCount);
+                            result.setCountType(CountService.TYPE_EXACT);
+                        }
+                        if (applyPagination) {
+                            result.setCurrentPage(page);
+                            result.setPageSize(pageSize);
+                        }
+                        if (reservation.isTruncated()) {
+                            result.setTruncated(true);
+                            // 剩余的行不再需要，关闭流式结果集前先取消查询
+                            if (streaming) {
+                                abandonStreaming(stmt, lease);
+                            }
+                        }
+                        if (cacheable) {
+                            queryCache.put(session, sql, page, pageSize, options.isColumnar(), cacheGeneration, result);
+                        }
+
+                        result.setMemoryHold(reservation);
+                        handedOff = true;
+                        return result;
+                    } catch (SQLException e) {
+                        if (streaming && rs != null) {
+                            abandonStreaming(stmt, lease);
+                        }
+                        throw e;
+                    } finally {
+                        closeQuietly(rs);
+                        if (!handedOff) {
+                            reservation.close();
                         }
                     }
                 }
-
-                // 添加LIMIT子句
-                int offset = (page - 1) * pageSize;
-                finalSql = cleanSql + " LIMIT " + pageSize + " OFFSET " + offset;
-            } else {
-                // 已有LIMIT，查询实际数据量作为总数
-                totalCount = null;
+            } catch (SQLException e) {
+                throw cancelledOr(query, e);
+            } finally {
+                endQuery(query);
             }
         }
+    }
 
-        // 执行查询前再次清理SQL（以防非分页查询）
-        String sqlToExecute = finalSql;
-        if (!applyPagination) {
-            sqlToExecute = finalSql.trim().replaceAll(";+$", "");
+    /**
+     * 流式执行查询：服务端逐行推送，结果集不在内存中物化，连接在handler返回前一直被占用
+     */
+    public void streamQuery(String sessionId, String sql, ResultSetHandler handler) throws SQLException, IOException {
+        streamQuery(sessionId, sql, null, handler);
+    }
+
+    /**
+     * queryId由客户端指定时可以在查询运行中通过cancelQuery取消
+     */
+    public void streamQuery(String sessionId, String sql, String queryId, ResultSetHandler handler)
+            throws SQLException, IOException {
+        DbSession session = getSession(sessionId);
+        SqlLexer.Statement statement = SqlLexer.analyze(sql);
+        try (SessionLane.Ticket ticket = enterLane(session, sql, statement.readOnly());
+             ConnectionPool.Lease lease = lease(session, statement)) {
+            Connection conn = lease.getConnection();
+
+            // 清理SQL：移除末尾的分号、注释和空白字符
+            String cleanSql = statement.sql();
+
+            try (Statement stmt = createStreamingStatement(conn)) {
+                // 设置查询超时为30秒
+                stmt.setQueryTimeout(30);
+                RunningQuery query = startQuery(session, queryId, cleanSql, stmt);
+                handler.setRowCounter(query.getRowsFetched());
+                ResultSet rs = null;
+                try {
+                    rs = stmt.executeQuery(cleanSql);
+                    handler.handle(rs);
+                } catch (IOException e) {
+                    // 客户端已断开：关闭流式结果集会读完剩余的行，先取消查询并丢弃该连接
+                    abandonStreaming(stmt, lease);
+                    throw e;
+                } catch (SQLException e) {
+                    if (rs != null) {
+                        abandonStreaming(stmt, lease);
+                    }
+                    throw cancelledOr(query, e);
+                } finally {
+                    endQuery(query);
+                    closeQuietly(rs);
+                }
+            }
         }
+    }
 
-        try (Statement stmt = conn.createStatement()) {
+    /**
+     * 执行带?占位符的查询：语句在物理连接上预编译并缓存，重复执行时服务端不再解析
+     */
+    public QueryResult queryPrepared(String sessionId, String sql, List<SqlParameter> params, QueryOptions options)
+            throws SQLException {
+        DbSession session = getSession(sessionId);
+        SqlLexer.Statement statement = SqlLexer.analyze(sql);
+        String cleanSql = statement.sql();
+        try (SessionLane.Ticket ticket = enterLane(session, cleanSql, statement.readOnly());
+             ConnectionPool.Lease lease = lease(session, statement)) {
+            Connection conn = lease.getConnection();
+            PreparedStatement stmt = lease.prepare(cleanSql);
+            bindParameters(stmt, params);
             // 设置查询超时为30秒
             stmt.setQueryTimeout(30);
-            try (ResultSet rs = stmt.executeQuery(sqlToExecute)) {
-
-                List<Map<String, Object>> data = resultSetToList(rs);
-                List<String> columns = new ArrayList<>();
-
-                if (!data.isEmpty()) {
-                    columns.addAll(data.get(0).keySet());
+            RunningQuery query = startQuery(session, options.getQueryId(), cleanSql, stmt);
+            ResultMemoryGovernor.Reservation reservation =
+                    memoryGovernor.open(sessionId, query.getQueryId(), options.getMemoryPolicy());
+            boolean handedOff = false;
+            try (ResultSet rs = stmt.executeQuery()) {
+                QueryResult result;
+                if (options.isColumnar()) {
+                    result = resultSetToColumnar(rs, query.getRowsFetched(), reservation);
+                } else {
+                    List<Map<String, Object>> data = resultSetToList(rs, query.getRowsFetched(), reservation);
+                    List<String> columns = new ArrayList<>();
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        columns.add(metaData.getColumnLabel(i));
+                    }
+                    result = new QueryResult(data, columns, null);
                 }
-
-                // 如果没有分页或没有计算总数，使用实际返回的数据量
-                if (totalCount == null) {
-                    totalCount = (long) data.size();
+                result.setTotalCount((long) (result.isColumnar() ? result.getRows().size() : result.getData().size()));
+                result.setCountType(CountService.TYPE_EXACT);
+                result.setTruncated(reservation.isTruncated());
+                result.setMemoryHold(reservation);
+                handedOff = true;
+                return result;
+            } catch (SQLException e) {
+                throw cancelledOr(query, e);
+            } finally {
+                endQuery(query);
+                if (!handedOff) {
+                    reservation.close();
                 }
+            }
+        }
+    }
 
-                QueryResult result = new QueryResult(data, columns, totalCount);
-                if (applyPagination && page != null) result.setCurrentPage(page);
-                if (applyPagination && pageSize != null) result.setPageSize(pageSize);
-
-                return result;
+    /**
+     * 执行带?占位符的DML/DDL，返回影响行数
+     */
+    public int updatePrepared(String sessionId, String sql, List<SqlParameter> params, String queryId)
+            throws SQLException {
+        DbSession session = getSession(sessionId);
+        SqlLexer.Statement statement = SqlLexer.analyze(sql);
+        String cleanSql = statement.sql();
+        try (SessionLane.Ticket ticket = enterLane(session, cleanSql, false);
+             ConnectionPool.Lease lease = lease(session, statement)) {
+            Connection conn = lease.getConnection();
+            PreparedStatement stmt = lease.prepare(cleanSql);
+            bindParameters(stmt, params);
+            // 缓存的语句可能被查询设置过超时，与executeUpdate一致不限制
+            stmt.setQueryTimeout(0);
+            RunningQuery query = startQuery(session, queryId, cleanSql, stmt);
+            try {
+                return stmt.executeUpdate();
+            } catch (SQLException e) {
+                throw cancelledOr(query, e);
+            } finally {
+                endQuery(query);
+                queryCache.invalidate(sessionId, cleanSql);
+                metadataCache.invalidate(sessionId, cleanSql);
             }
         }
     }
 
-    public int executeUpdate(String sessionId, String sql) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
+    /**
+     * 参数个数与占位符不一致时由驱动报错（No value specified / Parameter index out of range）
+     */
+    private static void bindParameters(PreparedStatement stmt, List<SqlParameter> params) throws SQLException {
+        if (params == null) {
+            return;
+        }
+        for (int i = 0; i < params.size(); i++) {
+            params.get(i).bind(stmt, i + 1);
         }
+    }
 
-        // 清理SQL：移除末尾的分号和空白字符
-        String cleanSql = sql.trim().replaceAll(";+$", "");
+    public int executeUpdate(String sessionId, String sql) throws SQLException {
+        return executeUpdate(sessionId, sql, null);
+    }
 
-        try (Statement stmt = conn.createStatement()) {
-            return stmt.executeUpdate(cleanSql);
+    public int executeUpdate(String sessionId, String sql, String queryId) throws SQLException {
+        DbSession session = getSession(sessionId);
+        // 清理SQL：移除末尾的分号、注释和空白字符
+        SqlLexer.Statement statement = SqlLexer.analyze(sql);
+        String cleanSql = statement.sql();
+
+        // USE和事务控制语句改变会话状态，不能只作用在本次借到的连接上
+        switch (statement.type()) {
+            case USE -> {
+                switchDatabase(sessionId, cleanSql.substring(3).trim().replace("`", ""));
+                return 0;
+            }
+            case BEGIN -> {
+                beginTransaction(sessionId);
+                return 0;
+            }
+            case COMMIT, ROLLBACK -> {
+                // 与MySQL一致，没有事务时提交或回滚什么也不做
+                if (isInTransaction(sessionId)) {
+                    if (statement.type() == SqlLexer.Type.COMMIT) {
+                        commit(sessionId);
+                    } else {
+                        rollback(sessionId);
+                    }
+                }
+                return 0;
+            }
+            default -> {
+            }
+        }
+
+        try (SessionLane.Ticket ticket = enterLane(session, sql, false);
+             ConnectionPool.Lease lease = lease(session, statement)) {
+            Connection conn = lease.getConnection();
+
+            try (Statement stmt = conn.createStatement()) {
+                RunningQuery query = startQuery(session, queryId, cleanSql, stmt);
+                try {
+                    return stmt.executeUpdate(cleanSql);
+                } catch (SQLException e) {
+                    throw cancelledOr(query, e);
+                } finally {
+                    endQuery(query);
+                    // 失败的语句也可能已经修改了非事务表
+                    queryCache.invalidate(sessionId, cleanSql);
+                    metadataCache.invalidate(sessionId, cleanSql);
+                }
+            }
         }
     }
 
-    // 事务相关方法
+    // 事务相关方法：事务期间把一个连接固定在会话上，提交或回滚后归还连接池（有会话状态的固定连接除外）；
+    // 开始和结束事务都经过会话通道，等待进行中的语句完成
     public void beginTransaction(String sessionId) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
+        DbSession session = getSession(sessionId);
+        try (SessionLane.Ticket ticket = enterLane(session, "BEGIN", false)) {
+            ConnectionPool.Lease pinned = session.getPinnedLease();
+            if (pinned != null) {
+                // 已在事务中，或固定连接只是带有会话状态
+                if (pinned.getConnection().getAutoCommit()) {
+                    pinned.getConnection().setAutoCommit(false);
+                }
+                return;
+            }
+            ConnectionPool.Lease lease = lease(session);
+            try {
+                lease.getConnection().setAutoCommit(false);
+            } catch (SQLException e) {
+                lease.close();
+                throw e;
+            }
+            session.setPinnedLease(lease);
         }
-
-        conn.setAutoCommit(false);
     }
 
     public void commit(String sessionId) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
+        DbSession session = getSession(sessionId);
+        try (SessionLane.Ticket ticket = enterLane(session, "COMMIT", false)) {
+            ConnectionPool.Lease lease = session.getPinnedLease();
+            if (lease == null || lease.getConnection().getAutoCommit()) {
+                throw new SQLException("No active transaction");
+            }
+            try {
+                Connection conn = lease.getConnection();
+                conn.commit();
+                conn.setAutoCommit(true);
+            } finally {
+                if (!session.isStateful()) {
+                    session.setPinnedLease(null);
+                    lease.close();
+                }
+                queryCache.transactionEnded(sessionId, true);
+            }
         }
-
-        conn.commit();
-        conn.setAutoCommit(true);
     }
 
     public void rollback(String sessionId) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
+        DbSession session = getSession(sessionId);
+        try (SessionLane.Ticket ticket = enterLane(session, "ROLLBACK", false)) {
+            ConnectionPool.Lease lease = session.getPinnedLease();
+            if (lease == null || lease.getConnection().getAutoCommit()) {
+                throw new SQLException("No active transaction");
+            }
+            try {
+                Connection conn = lease.getConnection();
+                conn.rollback();
+                conn.setAutoCommit(true);
+            } finally {
+                if (!session.isStateful()) {
+                    session.setPinnedLease(null);
+                    lease.close();
+                }
+                queryCache.transactionEnded(sessionId, false);
+            }
         }
-
-        conn.rollback();
-        conn.setAutoCommit(true);
     }
 
     public boolean isInTransaction(String sessionId) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
-        }
-
-        return !conn.getAutoCommit();
+        ConnectionPool.Lease pinned = getSession(sessionId).getPinnedLease();
+        return pinned != null && !pinned.getConnection().getAutoCommit();
     }
 
     public List<String> getTables(String sessionId, String database) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
-        }
+        DbSession session = getSession(sessionId);
+        // 如果没有指定数据库，使用当前连接的数据库
+        String schema = database == null || database.trim().isEmpty() ? session.getDatabase() : database;
+        return metadataCache.get(session, MetadataCacheService.Kind.TABLES, schema, null, () -> {
+            try (ConnectionPool.Lease lease = poolManager.leaseForMetadata(session)) {
+                return Collections.unmodifiableList(queryStrings(lease, "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES "
+                        + "WHERE TABLE_SCHEMA = ? AND TABLE_TYPE = 'BASE TABLE' ORDER BY TABLE_NAME", schema));
+            } catch (SQLException e) {
+                throw new SQLException("Failed to get tables: " + e.getMessage());
+            }
+        });
+    }
 
+    public List<String> getViews(String sessionId, String database) throws SQLException {
+        DbSession session = getSession(sessionId);
         // 如果没有指定数据库，使用当前连接的数据库
-        if (database == null || database.trim().isEmpty()) {
-            ConnectionInfo info = connectionInfoMap.get(sessionId);
-            database = info != null ? info.getDatabase() : null;
-        }
+        String schema = database == null || database.trim().isEmpty() ? session.getDatabase() : database;
+        return metadataCache.get(session, MetadataCacheService.Kind.VIEWS, schema, null, () -> {
+            try (ConnectionPool.Lease lease = poolManager.leaseForMetadata(session)) {
+                return Collections.unmodifiableList(queryStrings(lease, "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES "
+                        + "WHERE TABLE_SCHEMA = ? AND TABLE_TYPE = 'VIEW' ORDER BY TABLE_NAME", schema));
+            } catch (SQLException e) {
+                throw new SQLException("Failed to get views: " + e.getMessage());
+            }
+        });
+    }
 
-        try {
-            DatabaseMetaData metaData = conn.getMetaData();
-            try (ResultSet rs = metaData.getTables(database, null, "%", new String[]{"TABLE"})) {
-                List<String> tables = new ArrayList<>();
-                while (rs.next()) {
-                    tables.add(rs.getString("TABLE_NAME"));
+    public List<String> getProcedures(String sessionId, String database) throws SQLException {
+        DbSession session = getSession(sessionId);
+        // 如果没有指定数据库，使用当前连接的数据库
+        String schema = database == null || database.trim().isEmpty() ? session.getDatabase() : database;
+        return metadataCache.get(session, MetadataCacheService.Kind.PROCEDURES, schema, null, () -> {
+            try (ConnectionPool.Lease lease = poolManager.leaseForMetadata(session)) {
+                return Collections.unmodifiableList(queryStrings(lease, "SELECT ROUTINE_NAME FROM INFORMATION_SCHEMA.ROUTINES "
+                        + "WHERE ROUTINE_SCHEMA = ? AND ROUTINE_TYPE = 'PROCEDURE' ORDER BY ROUTINE_NAME", schema));
+            } catch (SQLException e) {
+                throw new SQLException("Failed to get procedures: " + e.getMessage());
+            }
+        });
+    }
+
+    public List<String> getFunctions(String sessionId, String database) throws SQLException {
+        DbSession session = getSession(sessionId);
+        // 如果没有指定数据库，使用当前连接的数据库
+        String schema = database == null || database.trim().isEmpty() ? session.getDatabase() : database;
+        return metadataCache.get(session, MetadataCacheService.Kind.FUNCTIONS, schema, null, () -> {
+            try (ConnectionPool.Lease lease = poolManager.leaseForMetadata(session)) {
+                return Collections.unmodifiableList(queryStrings(lease, "SELECT ROUTINE_NAME FROM INFORMATION_SCHEMA.ROUTINES "
+                        + "WHERE ROUTINE_SCHEMA = ? AND ROUTINE_TYPE = 'FUNCTION' ORDER BY ROUTINE_NAME", schema));
+            } catch (SQLException e) {
+                throw new SQLException("Failed to get functions: " + e.getMessage());
+            }
+        });
+    }
+
+    public Map<String, Object> getTableSchema(String sessionId, String tableName) throws SQLException {
+        return getTableSchema(sessionId, null, tableName);
+    }
+
+    /**
+     * 读取database.tableName的结构，database为空时取会话当前数据库；不切换会话的数据库
+     */
+    public Map<String, Object> getTableSchema(String sessionId, String database, String tableName) throws SQLException {
+        DbSession session = getSession(sessionId);
+        String schema = database == null || database.trim().isEmpty() ? session.getDatabase() : database;
+        return metadataCache.get(session, MetadataCacheService.Kind.TABLE_SCHEMA, schema, tableName,
+                () -> loadTableSchema(session, schema, tableName));
+    }
+
+    private Map<String, Object> loadTableSchema(DbSession session, String database, String tableName)
+            throws SQLException {
+        try (ConnectionPool.Lease lease = poolManager.leaseForMetadata(session)) {
+            Map<String, Object> schema = new HashMap<>();
+            List<Map<String, Object>> columns = new ArrayList<>();
+            List<Map<String, Object>> indexes = new ArrayList<>();
+
+            // 获取表结构信息，表名作为参数绑定而不是拼接进SQL
+            try {
+                // 获取列信息
+                PreparedStatement columnsStmt = lease.prepare(
+                    "SELECT COLUMN_NAME, DATA_TYPE, IS_NULLABLE, COLUMN_DEFAULT, " +
+                    "COLUMN_KEY, EXTRA, COLUMN_COMMENT, CHARACTER_MAXIMUM_LENGTH " +
+                    "FROM INFORMATION_SCHEMA.COLUMNS " +
+                    "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? " +
+                    "ORDER BY ORDINAL_POSITION"
+                );
+                columnsStmt.setString(1, database);
+                columnsStmt.setString(2, tableName);
+
+                try (ResultSet rs = columnsStmt.executeQuery()) {
+                    while (rs.next()) {
+                        Map<String, Object> column = new HashMap<>();
+                        column.put("name", rs.getString("COLUMN_NAME"));
+                        column.put("type", rs.getString("DATA_TYPE"));
+                        column.put("nullable", "YES".equals(rs.getString("IS_NULLABLE")));
+                        column.put("default", rs.getString("COLUMN_DEFAULT"));
+                        column.put("key", rs.getString("COLUMN_KEY"));
+                        column.put("extra", rs.getString("EXTRA"));
+                        column.put("comment", rs.getString("COLUMN_COMMENT"));
+                        column.put("maxLength", rs.getObject("CHARACTER_MAXIMUM_LENGTH"));
+                        columns.add(column);
+                    }
+                }
+
+                // 获取索引信息
+                PreparedStatement indexesStmt = lease.prepare(
+                    "SELECT INDEX_NAME, COLUMN_NAME FROM INFORMATION_SCHEMA.STATISTICS " +
+                    "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? " +
+                    "ORDER BY INDEX_NAME, SEQ_IN_INDEX"
+                );
+                indexesStmt.setString(1, database);
+                indexesStmt.setString(2, tableName);
+
+                Map<String, List<String>> indexMap = new HashMap<>();
+                try (ResultSet rs = indexesStmt.executeQuery()) {
+                    while (rs.next()) {
+                        String indexName = rs.getString("INDEX_NAME");
+                        String columnName = rs.getString("COLUMN_NAME");
+
+                        indexMap.computeIfAbsent(indexName, k -> new ArrayList<>()).add(columnName);
+                    }
+                }
+
+                for (Map.Entry<String, List<String>> entry : indexMap.entrySet()) {
+                    Map<String, Object> index = new HashMap<>();
+                    index.put("name", entry.getKey());
+                    index.put("columns", entry.getValue());
+                    index.put("unique", !entry.getKey().equals("PRIMARY"));
+                    indexes.add(index);
                 }
-                return tables;
+
+                // 获取表注释
+                PreparedStatement commentStmt = lease.prepare(
+                    "SELECT TABLE_COMMENT " +
+                    "FROM INFORMATION_SCHEMA.TABLES " +
+                    "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?"
+                );
+                commentStmt.setString(1, database);
+                commentStmt.setString(2, tableName);
+
+                String tableComment = "";
+                try (ResultSet rs = commentStmt.executeQuery()) {
+                    if (rs.next()) {
+                        tableComment = rs.getString("TABLE_COMMENT");
+                    }
+                }
+
+                schema.put("tableName", tableName);
+                schema.put("comment", tableComment);
+                schema.put("columns", columns);
+                schema.put("indexes", indexes);
+                schema.put("columnCount", columns.size());
+
+                return Collections.unmodifiableMap(schema);
+            } catch (SQLException e) {
+                throw new SQLException("Failed to get table schema: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            throw new SQLException("Failed to get tables: " + e.getMessage());
         }
     }
 
-    public List<String> getViews(String sessionId, String database) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
+    public List<String> getDatabases(String sessionId) throws SQLException {
+        DbSession session = getSession(sessionId);
+        return metadataCache.get(session, MetadataCacheService.Kind.DATABASES, null, null, () -> {
+            try (ConnectionPool.Lease lease = poolManager.leaseForMetadata(session)) {
+                List<String> databases = new ArrayList<>();
+                try (ResultSet rs = lease.prepare(
+                        "SELECT SCHEMA_NAME FROM INFORMATION_SCHEMA.SCHEMATA ORDER BY SCHEMA_NAME").executeQuery()) {
+                    while (rs.next()) {
+                        String dbName = rs.getString(1);
+                        // 过滤系统数据库
+                        if (!"information_schema".equals(dbName) &&
+                            !"performance_schema".equals(dbName) &&
+                            !"mysql".equals(dbName) &&
+                            !"sys".equals(dbName)) {
+                            databases.add(dbName);
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw new SQLException("Failed to get databases: " + e.getMessage());
+                }
+                return Collections.unmodifiableList(databases);
+            }
+        });
+    }
+
+    /**
+     * database.tableName的建表语句（视图为建视图语句），在元数据连接上执行，不切换会话的数据库
+     */
+    public String getCreateTable(String sessionId, String database, String tableName) throws SQLException {
+        DbSession session = getSession(sessionId);
+        String schema = database == null || database.trim().isEmpty() ? session.getDatabase() : database;
+        String target = schema == null || schema.isEmpty()
+                ? SqlIdentifiers.quote(tableName)
+                : SqlIdentifiers.quote(schema) + "." + SqlIdentifiers.quote(tableName);
+        try (ConnectionPool.Lease lease = poolManager.leaseForMetadata(session);
+             Statement stmt = lease.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("SHOW CREATE TABLE " + target)) {
+            // 第二列是Create Table或Create View
+            return rs.next() ? rs.getString(2) : null;
         }
+    }
+
+    public void switchDatabase(String sessionId, String databaseName) throws SQLException {
+        DbSession session = getSession(sessionId);
+        try (SessionLane.Ticket ticket = enterLane(session, "USE " + databaseName, false);
+             ConnectionPool.Lease lease = lease(session)) {
+            Connection conn = lease.getConnection();
+
+            try {
+                // setCatalog发出USE并同步驱动的本地状态，之后的租用才能正确判断是否需要切换
+                conn.setCatalog(databaseName);
 
-        if (database == null || database.trim().isEmpty()) {
-            ConnectionInfo info = connectionInfoMap.get(sessionId);
-            database = info != null ? info.getDatabase() : null;
+                // 更新连接信息中的数据库名，后续借出的连接都会切换到该库
+                session.getInfo().setDatabase(databaseName);
+            } catch (SQLException e) {
+                throw new SQLException("Failed to switch database: " + e.getMessage());
+            }
         }
+    }
 
-        try {
-            DatabaseMetaData metaData = conn.getMetaData();
-            try (ResultSet rs = metaData.getTables(database, null, "%", new String[]{"VIEW"})) {
-                List<String> views = new ArrayList<>();
-                while (rs.next()) {
-                    views.add(rs.getString("TABLE_NAME"));
+    public String getCurrentDatabase(String sessionId) throws SQLException {
+        DbSession session = getSession(sessionId);
+        try (SessionLane.Ticket ticket = enterLane(session, "SELECT DATABASE()", true);
+             ConnectionPool.Lease lease = lease(session)) {
+            try (ResultSet rs = lease.prepare("SELECT DATABASE()").executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString(1);
                 }
-                return views;
+                return null;
+            } catch (SQLException e) {
+                throw new SQLException("Failed to get current database: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            throw new SQLException("Failed to get views: " + e.getMessage());
         }
     }
 
-    public List<String> getProcedures(String sessionId, String database) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
+    public void closeConnection(String sessionId) {
+        DbSession session = sessions.remove(sessionId);
+        if (session != null) {
+            releaseSession(session);
         }
+    }
 
-        if (database == null || database.trim().isEmpty()) {
-            ConnectionInfo info = connectionInfoMap.get(sessionId);
-            database = info != null ? info.getDatabase() : null;
+    /**
+     * 释放已从登记表移除的会话：取消其正在执行的查询，归还事务中固定的连接
+     */
+    private void releaseSession(DbSession session) {
+        cancelSessionQueries(session.getId());
+        queryCache.removeSession(session.getId());
+        ConnectionPool.Lease held = session.takeFollowUpLease();
+        if (held != null) {
+            held.close();
         }
+        ConnectionPool.Lease pinned = session.getPinnedLease();
+        if (pinned != null) {
+            // 归还时连接池会回滚未提交的事务并重置会话状态
+            session.setPinnedLease(null);
+            pinned.close();
+        }
+    }
 
+    /**
+     * 后台回收：关闭空闲超时的会话；事务中的会话校验其固定连接，已失效的直接关闭。
+     * 有查询在执行或通道被占用的会话跳过，每轮最多处理reapBatchSize个。
+     */
+    private void reapSessions() {
         try {
-            DatabaseMetaData metaData = conn.getMetaData();
-            try (ResultSet rs = metaData.getProcedures(database, null, "%")) {
-                List<String> procedures = new ArrayList<>();
-                while (rs.next()) {
-                    procedures.add(rs.getString("PROCEDURE_NAME"));
+            int closed = 0;
+            for (DbSession session : sessions.findIdle(idleTimeoutMs, reapBatchSize)) {
+                if (session.getLane().isBusy() || hasRunningQueries(session.getId())) {
+                    continue;
+                }
+                if (sessions.remove(session.getId()) != null) {
+                    releaseSession(session);
+                    closed++;
                 }
-                return procedures;
             }
-        } catch (SQLException e) {
-            throw new SQLException("Failed to get procedures: " + e.getMessage());
+
+            int validated = 0;
+            for (DbSession session : sessions.all()) {
+                if (validated >= reapBatchSize) {
+                    break;
+                }
+                ConnectionPool.Lease pinned = session.getPinnedLease();
+                if (pinned == null) {
+                    continue;
+                }
+                // 只校验当前没有语句在用的固定连接
+                try (SessionLane.Ticket ticket = session.getLane().tryEnter("(validate)")) {
+                    if (ticket == null || session.getPinnedLease() != pinned) {
+                        continue;
+                    }
+                    validated++;
+                    if (!pinned.getConnection().isValid(2)) {
+                        pinned.invalidate();
+                        if (sessions.remove(session.getId()) != null) {
+                            releaseSession(session);
+                            closed++;
+                        }
+                    }
+                } catch (SQLException e) {
+                    log.debug("校验会话连接失败 {}: {}", session.getId(), e.getMessage());
+                }
+            }
+
+            if (closed > 0) {
+                log.info("回收了 {} 个空闲或失效的会话，剩余 {} 个", closed, sessions.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("会话回收失败", e);
         }
     }
 
-    public List<String> getFunctions(String sessionId, String database) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
+    /**
+     * 归还超过保留时间、下一条语句还没有来取的连接
+     */
+    private void releaseFollowUps() {
+        long now = System.currentTimeMillis();
+        for (DbSession session : sessions.all()) {
+            if (!session.hasFollowUpLease()) {
+                continue;
+            }
+            ConnectionPool.Lease held = session.takeExpiredFollowUpLease(now);
+            if (held != null) {
+                held.close();
+            }
         }
+    }
 
-        if (database == null || database.trim().isEmpty()) {
-            ConnectionInfo info = connectionInfoMap.get(sessionId);
-            database = info != null ? info.getDatabase() : null;
+    private boolean hasRunningQueries(String sessionId) {
+        for (RunningQuery query : queries.all()) {
+            if (query.getSessionId().equals(sessionId)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        List<String> functions = new ArrayList<>();
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SHOW FUNCTION STATUS WHERE Db = '" + database + "'")) {
-            while (rs.next()) {
-                functions.add(rs.getString("Name"));
-            }
+    /**
+     * 当前所有会话的概要：连接信息、创建和最近访问时间、事务状态、排队深度和正在执行的查询数
+     */
+    public List<Map<String, Object>> listSessions() {
+        Map<String, Integer> running = new HashMap<>();
+        for (RunningQuery query : queries.all()) {
+            running.merge(query.getSessionId(), 1, Integer::sum);
+        }
+
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (DbSession session : sessions.all()) {
+            ConnectionInfo info = session.getInfo();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("sessionId", session.getId());
+            item.put("name", info.getName());
+            item.put("host", info.getHost());
+            item.put("port", info.getPort());
+            item.put("username", info.getUsername());
+            item.put("database", info.getDatabase());
+            item.put("createdAt", session.getCreatedAt());
+            item.put("lastAccess", session.getLastAccess());
+            item.put("idleMs", now - session.getLastAccess());
+            item.put("inTransaction", session.getPinnedLease() != null);
+            item.put("queueDepth", session.getLane().getQueueDepth());
+            item.put("runningQueries", running.getOrDefault(session.getId(), 0));
+            result.add(item);
+        }
+        result.sort(Comparator.comparing(m -> -(Long) m.get("lastAccess")));
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reaper.shutdownNow();
+    }
+
+    public ConnectionInfo getConnectionInfo(String sessionId) {
+        DbSession session = sessions.peek(sessionId);
+        return session != null ? session.getInfo() : null;
+    }
+
+    public boolean isValidConnection(String sessionId) {
+        if (!sessions.contains(sessionId)) return false;
+        try (ConnectionPool.Lease lease = lease(sessionId)) {
+            Connection conn = lease.getConnection();
+            return !conn.isClosed() && conn.isValid(2);
         } catch (SQLException e) {
-            throw new SQLException("Failed to get functions: " + e.getMessage());
+            return false;
         }
-        return functions;
     }
 
-    public Map<String, Object> getTableSchema(String sessionId, String tableName) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
+    /**
+     * 在会话的连接上执行回调：事务中使用固定连接，否则临时从连接池借出
+     */
+    public <T> T execute(String sessionId, ConnectionCallback<T> callback) throws SQLException {
+        return execute(sessionId, false, callback);
+    }
+
+    /**
+     * readOnly为true时回调只读取数据，非事务状态下不进入会话通道排队
+     */
+    public <T> T execute(String sessionId, boolean readOnly, ConnectionCallback<T> callback) throws SQLException {
+        DbSession session = getSession(sessionId);
+        try (SessionLane.Ticket ticket = enterLane(session, readOnly ? "(read)" : "(script)", readOnly);
+             ConnectionPool.Lease lease = lease(session)) {
+            return callback.doInConnection(lease.getConnection());
         }
+    }
 
-        Map<String, Object> schema = new HashMap<>();
-        List<Map<String, Object>> columns = new ArrayList<>();
-        List<Map<String, Object>> indexes = new ArrayList<>();
-
-        // 获取表结构信息
-        try (Statement stmt = conn.createStatement()) {
-            // 获取列信息
-            String columnsSql = String.format(
-                "SELECT COLUMN_NAME, DATA_TYPE, IS_NULLABLE, COLUMN_DEFAULT, " +
-                "COLUMN_KEY, EXTRA, COLUMN_COMMENT, CHARACTER_MAXIMUM_LENGTH " +
-                "FROM INFORMATION_SCHEMA.COLUMNS " +
-                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '%s' " +
-                "ORDER BY ORDINAL_POSITION",
-                tableName
-            );
-
-            try (ResultSet rs = stmt.executeQuery(columnsSql)) {
-                while (rs.next()) {
-                    Map<String, Object> column = new HashMap<>();
-                    column.put("name", rs.getString("COLUMN_NAME"));
-                    column.put("type", rs.getString("DATA_TYPE"));
-                    column.put("nullable", "YES".equals(rs.getString("IS_NULLABLE")));
-                    column.put("default", rs.getString("COLUMN_DEFAULT"));
-                    column.put("key", rs.getString("COLUMN_KEY"));
-                    column.put("extra", rs.getString("EXTRA"));
-                    column.put("comment", rs.getString("COLUMN_COMMENT"));
-                    column.put("maxLength", rs.getObject("CHARACTER_MAXIMUM_LENGTH"));
-                    columns.add(column);
-                }
+    /**
+     * 在会话的固定连接上执行回调（需要时先固定），用于包含会话状态语句或事务控制语句的脚本
+     */
+    public <T> T executePinned(String sessionId, ConnectionCallback<T> callback) throws SQLException {
+        DbSession session = getSession(sessionId);
+        try (SessionLane.Ticket ticket = enterLane(session, "(script)", false)) {
+            pinSession(session);
+            try (ConnectionPool.Lease lease = lease(session)) {
+                return callback.doInConnection(lease.getConnection());
             }
+        }
+    }
 
-            // 获取索引信息
-            String indexesSql = String.format(
-                "SHOW INDEX FROM `%s`",
-                tableName
-            );
+    /**
+     * 在独立的元数据连接上执行只读回调：不进入会话通道，不切换数据库（查询须显式指定库名），
+     * 也不刷新会话的最后活动时间，可与会话上的其他请求并行
+     */
+    public <T> T executeMetadata(DbSession session, ConnectionCallback<T> callback) throws SQLException {
+        try (ConnectionPool.Lease lease = poolManager.leaseForMetadata(session)) {
+            return callback.doInConnection(lease.getConnection());
+        }
+    }
 
-            Map<String, List<String>> indexMap = new HashMap<>();
-            try (ResultSet rs = stmt.executeQuery(indexesSql)) {
-                while (rs.next()) {
-                    String indexName = rs.getString("Key_name");
-                    String columnName = rs.getString("Column_name");
+    /**
+     * 为会话借出一个独占的池化连接，由调用方负责close归还（如服务端游标）
+     */
+    public ConnectionPool.Lease leaseDedicated(String sessionId) throws SQLException {
+        return poolManager.leaseFor(getSession(sessionId));
+    }
 
-                    indexMap.computeIfAbsent(indexName, k -> new ArrayList<>()).add(columnName);
-                }
-            }
+    /**
+     * 会话所属连接池中可供游标、并行导出等长期占用连接的操作使用的连接数
+     */
+    public int backgroundCapacity(String sessionId) throws SQLException {
+        return poolManager.backgroundCapacity(getSession(sessionId));
+    }
 
-            for (Map.Entry<String, List<String>> entry : indexMap.entrySet()) {
-                Map<String, Object> index = new HashMap<>();
-                index.put("name", entry.getKey());
-                index.put("columns", entry.getValue());
-                index.put("unique", !entry.getKey().equals("PRIMARY"));
-                indexes.add(index);
-            }
+    public ConnectionPool.PoolKey getPoolKey(String sessionId) throws SQLException {
+        return getSession(sessionId).getPoolKey();
+    }
 
-            // 获取表注释
-            String tableCommentSql = String.format(
-                "SELECT TABLE_COMMENT " +
-                "FROM INFORMATION_SCHEMA.TABLES " +
-                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '%s'",
-                tableName
-            );
+    /**
+     * 不等待地借出独立连接，连接池只剩给交互请求保留的连接时返回null
+     */
+    public ConnectionPool.Lease tryLeaseDedicated(String sessionId) throws SQLException {
+        return poolManager.tryLeaseFor(getSession(sessionId));
+    }
 
-            String tableComment = "";
-            try (ResultSet rs = stmt.executeQuery(tableCommentSql)) {
-                if (rs.next()) {
-                    tableComment = rs.getString("TABLE_COMMENT");
-                }
-            }
+    public boolean hasSession(String sessionId) {
+        return sessions.contains(sessionId);
+    }
 
-            schema.put("tableName", tableName);
-            schema.put("comment", tableComment);
-            schema.put("columns", columns);
-            schema.put("indexes", indexes);
-            schema.put("columnCount", columns.size());
+    public String getSessionDatabase(String sessionId) throws SQLException {
+        return getSession(sessionId).getDatabase();
+    }
 
-            return schema;
-        } catch (SQLException e) {
-            throw new SQLException("Failed to get table schema: " + e.getMessage());
-        }
+    public List<Map<String, Object>> getPoolStats() {
+        return poolManager.getStats();
     }
 
-    public List<String> getDatabases(String sessionId) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
+    /**
+     * 取消正在执行的查询：优先Statement.cancel，失败时在另一个连接上KILL QUERY。
+     * 查询不存在（已结束）时返回false。
+     */
+    public boolean cancelQuery(String queryId) throws SQLException {
+        RunningQuery query = queries.get(queryId);
+        if (query == null) {
+            return false;
         }
-
-        List<String> databases = new ArrayList<>();
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SHOW DATABASES")) {
-            while (rs.next()) {
-                String dbName = rs.getString(1);
-                // 过滤系统数据库
-                if (!"information_schema".equals(dbName) &&
-                    !"performance_schema".equals(dbName) &&
-                    !"mysql".equals(dbName) &&
-                    !"sys".equals(dbName)) {
-                    databases.add(dbName);
+        List<Long> connectionIds = query.getConnectionIds();
+        try {
+            query.cancel();
+        } catch (SQLException e) {
+            if (connectionIds.isEmpty() || connectionIds.contains(-1L)) {
+                throw e;
+            }
+            try (ConnectionPool.Lease lease = poolManager.leaseFor(getSession(query.getSessionId()));
+                 Statement stmt = lease.getConnection().createStatement()) {
+                for (long connectionId : connectionIds) {
+                    stmt.execute("KILL QUERY " + connectionId);
                 }
             }
-        } catch (SQLException e) {
-            throw new SQLException("Failed to get databases: " + e.getMessage());
         }
-        return databases;
+        return true;
     }
 
-    public void switchDatabase(String sessionId, String databaseName) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
+    public int cancelSessionQueries(String sessionId) {
+        int cancelled = 0;
+        for (RunningQuery query : queries.all()) {
+            if (query.getSessionId().equals(sessionId)) {
+                try {
+                    query.cancel();
+                    cancelled++;
+                } catch (SQLException e) {
+                    // Ignore
+                }
+            }
         }
+        return cancelled;
+    }
 
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute("USE `" + databaseName + "`");
-
-            // 更新连接信息中的数据库名
-            ConnectionInfo info = connectionInfoMap.get(sessionId);
-            if (info != null) {
-                info.setDatabase(databaseName);
+    /**
+     * 正在执行的查询，sessionId为null时返回所有会话的
+     */
+    public List<Map<String, Object>> getRunningQueries(String sessionId) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (RunningQuery query : queries.all()) {
+            if (sessionId == null || query.getSessionId().equals(sessionId)) {
+                result.add(query.toMap());
             }
-        } catch (SQLException e) {
-            throw new SQLException("Failed to switch database: " + e.getMessage());
         }
+        result.sort(Comparator.comparing(m -> (Long) m.get("startTime")));
+        return result;
     }
 
-    public String getCurrentDatabase(String sessionId) throws SQLException {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null || conn.isClosed()) {
-            throw new SQLException("Connection not found or closed");
-        }
+    /**
+     * 会话通道的排队深度、等待时间和正在执行的语句
+     */
+    public Map<String, Object> getLaneStats(String sessionId) throws SQLException {
+        DbSession session = getSession(sessionId);
+        Map<String, Object> stats = session.getLane().getStats();
+        stats.put("inTransaction", session.getPinnedLease() != null);
+        return stats;
+    }
 
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT DATABASE()")) {
-            if (rs.next()) {
-                return rs.getString(1);
-            }
-            return null;
+    /**
+     * MySQL驱动在fetchSize为Integer.MIN_VALUE时逐行流式读取结果
+     */
+    private Statement createStreamingStatement(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        return stmt;
+    }
+
+    private RunningQuery startQuery(DbSession session, String queryId, String sql, Statement stmt) throws SQLException {
+        RunningQuery query = queries.start(session.getId(), queryId, sql);
+        try {
+            query.attach(stmt);
         } catch (SQLException e) {
-            throw new SQLException("Failed to get current database: " + e.getMessage());
+            queries.end(query);
+            throw e;
         }
+        return query;
     }
 
-    public void closeConnection(String sessionId) {
-        Connection conn = activeConnections.remove(sessionId);
-        connectionInfoMap.remove(sessionId);
-        if (conn != null) {
+    private void endQuery(RunningQuery query) {
+        queries.end(query);
+    }
+
+    private SQLException cancelledOr(RunningQuery query, SQLException e) {
+        return QueryRegistry.cancelledOr(query, e);
+    }
+
+    private static void closeQuietly(ResultSet rs) {
+        if (rs != null) {
             try {
-                conn.close();
+                rs.close();
             } catch (SQLException e) {
                 // Ignore
             }
         }
     }
 
-    public ConnectionInfo getConnectionInfo(String sessionId) {
-        return connectionInfoMap.get(sessionId);
-    }
-
-    public boolean isValidConnection(String sessionId) {
-        Connection conn = activeConnections.get(sessionId);
-        if (conn == null) return false;
+    private void abandonStreaming(Statement stmt, ConnectionPool.Lease lease) {
         try {
-            return !conn.isClosed() && conn.isValid(2);
+            stmt.cancel();
         } catch (SQLException e) {
-            return false;
+            // Ignore
+        }
+        lease.invalidate();
+    }
+
+    /**
+     * 非事务状态下的只读语句走快速通道（返回null，直接借用独立的池化连接）；
+     * 写语句、会改变会话状态的语句、事务中以及保留着上一条语句连接时的所有语句进入会话通道串行执行
+     */
+    private SessionLane.Ticket enterLane(DbSession session, String sql, boolean readOnly) throws SQLException {
+        if (readOnly && session.getPinnedLease() == null && !session.hasFollowUpLease()) {
+            session.getLane().recordFastPath();
+            return null;
         }
+        return session.getLane().enter(sql, laneTimeoutMs);
     }
 
-    private Connection createPhysicalConnection(ConnectionInfo info) throws SQLException {
-        String database = info.getDatabase();
-        if (database == null || database.trim().isEmpty()) {
-            // 不指定数据库，连接到服务器
-            database = "";
+    private DbSession getSession(String sessionId) throws SQLException {
+        DbSession session = sessions.get(sessionId);
+        if (session == null) {
+            throw new SQLException("Connection not found or closed");
         }
+        return session;
+    }
+
+    /**
+     * 为会话租用连接：事务中返回固定连接的共享视图，否则从连接池借出并切换到会话当前数据库
+     */
+    private ConnectionPool.Lease lease(String sessionId) throws SQLException {
+        return lease(getSession(sessionId));
+    }
+
+    /**
+     * 在缓存的预编译语句上执行只返回一列的元数据查询
+     */
+    private static List<String> queryStrings(ConnectionPool.Lease lease, String sql, String... params)
+            throws SQLException {
+        PreparedStatement stmt = lease.prepare(sql);
+        for (int i = 0; i < params.length; i++) {
+            stmt.setString(i + 1, params[i]);
+        }
+        List<String> values = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 会改变会话状态的语句（SET、用户变量赋值、LOCK TABLES、临时表等）要求后续语句在同一连接上执行：
+     * 第一次遇到时把连接固定到会话上，直到会话关闭，行为与每个会话独占一个连接时一致。
+     * 这类语句不是只读语句，调用时已进入会话通道。
+     * 写语句留下的插入ID、影响行数和警告只能在同一连接上读取：执行后连接保留followUpHoldMs毫秒，
+     * 下一条语句取走它执行（返回的租约归还连接），行为与每个会话独占一个连接时一致
+     */
+    private ConnectionPool.Lease lease(DbSession session, SqlLexer.Statement statement) throws SQLException {
+        if (statement.sessionState()) {
+            pinSession(session);
+        }
+        if (!statement.resultState() || session.getPinnedLease() != null) {
+            return lease(session);
+        }
+        ConnectionPool.Lease held = session.takeFollowUpLease();
+        ConnectionPool.Lease lease = held != null ? held : poolManager.leaseFor(session);
+        session.setFollowUpLease(lease, System.currentTimeMillis() + followUpHoldMs);
+        return lease.shared();
+    }
 
-        String url = String.format("jdbc:mysql://%s:%d/%s?useSSL=%s&allowPublicKeyRetrieval=true&useUnicode=true&characterEncoding=utf8&serverTimezone=UTC",
-                info.getHost(), info.getPort(), database,
-                "REQUIRED".equalsIgnoreCase(info.getSslMode()) ? "true" : "false");
+    private void pinSession(DbSession session) throws SQLException {
+        ConnectionPool.Lease pinned = session.getPinnedLease();
+        if (pinned == null) {
+            // 上一条写语句的连接直接固定，SET @id = LAST_INSERT_ID()等语句仍能读到它的结果
+            pinned = session.takeFollowUpLease();
+            if (pinned == null) {
+                pinned = poolManager.leaseFor(session);
+            }
+            session.setPinnedLease(pinned);
+        }
+        // 会话关闭归还连接时由连接池重置会话状态
+        pinned.markDirty();
+        session.setStateful(true);
+    }
 
-        Properties props = new Properties();
-        props.setProperty("user", info.getUsername());
-        props.setProperty("password", info.getPassword());
+    private ConnectionPool.Lease lease(DbSession session) throws SQLException {
+        ConnectionPool.Lease pinned = session.getPinnedLease();
+        if (pinned != null) {
+            return pinned.shared();
+        }
+        ConnectionPool.Lease held = session.takeFollowUpLease();
+        if (held != null) {
+            return held;
+        }
 
-        return DriverManager.getConnection(url, props);
+        return poolManager.leaseFor(session);
     }
 
-    private List<Map<String, Object>> resultSetToList(ResultSet rs) throws SQLException {
+    /**
+     * 每读一行先按估算大小向全局内存预算预留，预算不足且策略为截断时停止读取
+     */
+    static List<Map<String, Object>> resultSetToList(ResultSet rs, AtomicLong rowCounter,
+                                                     ResultMemoryGovernor.Reservation reservation) throws SQLException {
         ResultSetMetaData metaData = rs.getMetaData();
         int columnCount = metaData.getColumnCount();
         List<Map<String, Object>> list = new ArrayList<>();
 
+        Object[] values = new Object[columnCount];
         while (rs.next()) {
+            for (int i = 1; i <= columnCount; i++) {
+                values[i - 1] = rs.getObject(i);
+            }
+            if (!reservation.admit(ResultMemoryGovernor.estimateRow(values, true))) {
+                break;
+            }
             Map<String, Object> row = new LinkedHashMap<>();
             for (int i = 1; i <= columnCount; i++) {
-                String columnName = metaData.getColumnLabel(i);
-                Object value = rs.getObject(i);
-                row.put(columnName, value);
+                row.put(metaData.getColumnLabel(i), values[i - 1]);
             }
             list.add(row);
+            rowCounter.lazySet(list.size());
         }
 
         return list;
     }
-}
\ No newline at end of file
+
+    static QueryResult resultSetToColumnar(ResultSet rs, AtomicLong rowCounter,
+                                           ResultMemoryGovernor.Reservation reservation) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<String> columns = new ArrayList<>(columnCount);
+        List<String> columnTypes = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            columns.add(metaData.getColumnLabel(i));
+            columnTypes.add(metaData.getColumnTypeName(i));
+        }
+
+        List<Object[]> rows = new ArrayList<>();
+        while (rs.next()) {
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = rs.getObject(i + 1);
+            }
+            if (!reservation.admit(ResultMemoryGovernor.estimateRow(row, false))) {
+                break;
+            }
+            rows.add(row);
+            rowCounter.lazySet(rows.size());
+        }
+
+        QueryResult result = new QueryResult();
+        result.setColumns(columns);
+        result.setColumnTypes(columnTypes);
+        result.setRows(rows);
+        return result;
+    }
+}
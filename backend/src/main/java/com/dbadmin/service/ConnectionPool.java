@@ -0,0 +1,446 @@
+package com.dbadmin.service;
+
+import com.mysql.cj.jdbc.JdbcConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个连接配置对应的物理连接池。
+ * 通过公平信号量限制物理连接总数，空闲连接按LIFO复用，保证热连接优先被借出。
+ * 每个物理连接带一个LRU的预编译语句缓存，连接归还后语句仍保留在服务端，下次借出时直接复用。
+ * 执行过可能改变会话状态的语句（或仍处于事务中）的连接归还时用COM_CHANGE_USER重置服务端会话，
+ * 并切回连接池的默认库，避免事务、表锁、会话变量和当前库泄漏给下一个借用者。
+ */
+public class ConnectionPool {
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * 连接池标识：同一服务器、用户、默认数据库和SSL模式的会话共享同一个池。
+     * 密码参与比较，避免错误密码的会话借到别人已认证的连接，但不会出现在统计信息中。
+     */
+    public record PoolKey(String host, Integer port, String username, String database, String sslMode, String password) {
+        @Override
+        public String toString() {
+            return username + "@" + host + ":" + port + "/" + (database == null ? "" : database)
+                    + (sslMode == null ? "" : "?ssl=" + sslMode);
+        }
+    }
+
+    private static final class IdleConnection {
+        final Connection connection;
+        final long idleSince;
+
+        IdleConnection(Connection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+
+    private final PoolKey key;
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final int minIdle;
+    private final long acquireTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long validationIntervalMs;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final Deque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder closedCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    // 按物理连接保存的预编译语句，连接关闭时一并关闭
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final LongAdder statementEvictions = new LongAdder();
+
+    // 需要在归还时重置会话状态的物理连接
+    private final Set<Connection> dirty = ConcurrentHashMap.newKeySet();
+    private final LongAdder resetCount = new LongAdder();
+
+    private volatile boolean closed;
+
+    public ConnectionPool(PoolKey key, ConnectionFactory factory, int maxSize, int minIdle,
+                          long acquireTimeoutMs, long idleTimeoutMs, long validationIntervalMs, int statementCacheSize) {
+        this.key = key;
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.minIdle = minIdle;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.validationIntervalMs = validationIntervalMs;
+        this.statementCacheSize = Math.max(1, statementCacheSize);
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    public PoolKey getKey() {
+        return key;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 借出一个连接，池满时最多等待acquireTimeoutMs毫秒
+     */
+    public Lease acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed: " + key);
+        }
+
+        long start = System.nanoTime();
+        boolean acquired = permits.tryAcquire();
+        if (!acquired) {
+            pendingRequests.incrementAndGet();
+            try {
+                acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a pooled connection");
+            } finally {
+                pendingRequests.decrementAndGet();
+            }
+        }
+        recordWait(System.nanoTime() - start);
+
+        if (!acquired) {
+            timeoutCount.increment();
+            throw new SQLTimeoutException("Timed out after " + acquireTimeoutMs
+                    + "ms waiting for a connection from pool " + key);
+        }
+        return open();
+    }
+
+    /**
+     * 不等待地借出一个连接：借出后剩余的许可少于reserve时返回null，给交互请求留出连接。
+     * 用于批量占用多个连接的后台操作，拿不到时减少并行度而不是排队（持有连接再等待会与其他同类操作互相卡死）
+     */
+    public Lease tryAcquire(int reserve) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed: " + key);
+        }
+        // availablePermits只是近似值，并发时可能多占用一两个保留的连接
+        if (permits.availablePermits() <= reserve || !permits.tryAcquire()) {
+            return null;
+        }
+        return open();
+    }
+
+    /**
+     * 已取得许可后取出空闲连接或新建连接，失败时归还许可
+     */
+    private Lease open() throws SQLException {
+        try {
+            Connection conn = takeIdle();
+            if (conn == null) {
+                conn = factory.create();
+                totalConnections.incrementAndGet();
+                createdCount.increment();
+            }
+            activeConnections.incrementAndGet();
+            acquireCount.increment();
+            return new Lease(conn, true);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection takeIdle() {
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            Connection conn = candidate.connection;
+            // 长时间空闲的连接可能已被服务端断开，借出前校验
+            if (System.currentTimeMillis() - candidate.idleSince < validationIntervalMs) {
+                return conn;
+            }
+            try {
+                if (!conn.isClosed() && conn.isValid(2)) {
+                    return conn;
+                }
+            } catch (SQLException e) {
+                // 视为失效连接
+            }
+            closePhysical(conn);
+        }
+        return null;
+    }
+
+    private void release(Connection conn, boolean broken) {
+        activeConnections.decrementAndGet();
+        try {
+            if (broken || closed || conn.isClosed()) {
+                closePhysical(conn);
+                return;
+            }
+            // getAutoCommit只是驱动本地的标记，同时检查服务端在OK包中报告的事务状态
+            boolean reset = dirty.remove(conn);
+            if (reset || !conn.getAutoCommit()
+                    || conn.unwrap(JdbcConnection.class).getSession().getServerSession().inTransactionOnServer()) {
+                resetSession(conn);
+            }
+            if (conn.isReadOnly()) {
+                conn.setReadOnly(false);
+            }
+            idle.offerFirst(new IdleConnection(conn, System.currentTimeMillis()));
+        } catch (SQLException e) {
+            closePhysical(conn);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 重置服务端会话：回滚事务，释放表锁和GET_LOCK，删除临时表，会话变量和用户变量恢复默认。
+     * 服务端预编译语句同时被释放，先关闭该连接的语句缓存。
+     * 没有默认库的连接池无法取消已选的库，由借出方（ConnectionPoolManager.leaseFor）处理
+     */
+    private void resetSession(Connection conn) throws SQLException {
+        resetCount.increment();
+        StatementCache statements = statementCaches.remove(conn);
+        if (statements != null) {
+            statements.closeAll();
+        }
+        // 驱动在useLocalSessionState下只记录本地状态，先按本地标记回滚并恢复自动提交，再重置服务端
+        if (!conn.getAutoCommit()) {
+            conn.rollback();
+            conn.setAutoCommit(true);
+        }
+        conn.unwrap(JdbcConnection.class).resetServerState();
+
+        String home = key.database();
+        if (home != null && !home.trim().isEmpty() && !home.equals(conn.getCatalog())) {
+            conn.setCatalog(home);
+        }
+    }
+
+    private void closePhysical(Connection conn) {
+        totalConnections.decrementAndGet();
+        closedCount.increment();
+        dirty.remove(conn);
+        StatementCache statements = statementCaches.remove(conn);
+        if (statements != null) {
+            statements.closeAll();
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.add(nanos);
+        long max;
+        while (nanos > (max = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 关闭空闲超时的连接，至少保留minIdle个
+     */
+    public void evictIdle() {
+        long deadline = System.currentTimeMillis() - idleTimeoutMs;
+        // 最旧的空闲连接在队尾
+        while (idle.size() > minIdle) {
+            IdleConnection oldest = idle.peekLast();
+            if (oldest == null || oldest.idleSince > deadline) {
+                break;
+            }
+            if (idle.removeLastOccurrence(oldest)) {
+                closePhysical(oldest.connection);
+            }
+        }
+    }
+
+    public void close() {
+        closed = true;
+        IdleConnection candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            closePhysical(candidate.connection);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long acquires = acquireCount.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pool", key.toString());
+        stats.put("maxSize", maxSize);
+        stats.put("total", totalConnections.get());
+        stats.put("active", activeConnections.get());
+        stats.put("idle", idle.size());
+        stats.put("pending", pendingRequests.get());
+        stats.put("acquireCount", acquires);
+        stats.put("timeoutCount", timeoutCount.sum());
+        stats.put("createdCount", createdCount.sum());
+        stats.put("closedCount", closedCount.sum());
+        stats.put("resetCount", resetCount.sum());
+        stats.put("avgWaitMs", acquires == 0 ? 0.0 : totalWaitNanos.sum() / 1_000_000.0 / acquires);
+        stats.put("maxWaitMs", maxWaitNanos.get() / 1_000_000.0);
+
+        long hits = statementHits.sum();
+        long lookups = hits + statementMisses.sum();
+        int cached = 0;
+        for (StatementCache statements : statementCaches.values()) {
+            cached += statements.size();
+        }
+        Map<String, Object> statements = new LinkedHashMap<>();
+        statements.put("maxPerConnection", statementCacheSize);
+        statements.put("cached", cached);
+        statements.put("hits", hits);
+        statements.put("misses", statementMisses.sum());
+        statements.put("evictions", statementEvictions.sum());
+        statements.put("hitRate", lookups == 0 ? 0.0 : (double) hits / lookups);
+        stats.put("statementCache", statements);
+        return stats;
+    }
+
+    /**
+     * 单个物理连接的预编译语句缓存，按访问顺序淘汰，被淘汰的语句在服务端释放（COM_STMT_CLOSE）。
+     * 键中包含当前库名，切换数据库后不会复用按旧库解析的语句。
+     * 持有物理连接和语句，只是借用LinkedHashMap的淘汰顺序，不会被序列化。
+     */
+    @SuppressWarnings("serial")
+    private final class StatementCache extends LinkedHashMap<String, PreparedStatement> {
+        private final Connection connection;
+
+        StatementCache(Connection connection) {
+            super(16, 0.75f, true);
+            this.connection = connection;
+        }
+
+        synchronized PreparedStatement get(String sql) throws SQLException {
+            String key = connection.getCatalog() + "\u0000" + sql;
+            PreparedStatement stmt = super.get(key);
+            // 调用方误关闭过的语句不能再用
+            if (stmt != null && !stmt.isClosed()) {
+                statementHits.increment();
+                stmt.clearParameters();
+                return stmt;
+            }
+            statementMisses.increment();
+            try {
+                stmt = connection.unwrap(JdbcConnection.class).serverPrepareStatement(sql);
+            } catch (SQLException e) {
+                // 服务端不支持预编译的语句（部分SHOW/管理命令）退回客户端预编译
+                stmt = connection.prepareStatement(sql);
+            }
+            put(key, stmt);
+            return stmt;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= statementCacheSize) {
+                return false;
+            }
+            statementEvictions.increment();
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+
+        synchronized void closeAll() {
+            for (PreparedStatement stmt : values()) {
+                closeQuietly(stmt);
+            }
+            clear();
+        }
+
+        private void closeQuietly(PreparedStatement stmt) {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * 借出的连接。close()归还连接池；共享视图(shared)的close()不做任何事，用于事务固定连接。
+     */
+    public final class Lease implements AutoCloseable {
+        private final Connection connection;
+        private final boolean owner;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean broken;
+
+        private Lease(Connection connection, boolean owner) {
+            this.connection = connection;
+            this.owner = owner;
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        public ConnectionPool getPool() {
+            return ConnectionPool.this;
+        }
+
+        /**
+         * 取得当前物理连接上缓存的服务端预编译语句（不存在时创建），参数已清空。
+         * 语句归缓存所有，调用方只关闭结果集，不能关闭语句本身
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            return statementCaches.computeIfAbsent(connection, StatementCache::new).get(sql);
+        }
+
+        /**
+         * 返回一个不会归还连接的视图，供固定连接的使用方在try-with-resources中使用
+         */
+        public Lease shared() {
+            return new Lease(connection, false);
+        }
+
+        /**
+         * 标记连接执行过会改变会话状态的语句，归还时重置服务端会话；对共享视图同样作用于物理连接
+         */
+        public void markDirty() {
+            dirty.add(connection);
+        }
+
+        /**
+         * 标记连接已损坏，归还时直接关闭而不是放回池中
+         */
+        public void invalidate() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (owner && released.compareAndSet(false, true)) {
+                release(connection, broken);
+            }
+        }
+    }
+}
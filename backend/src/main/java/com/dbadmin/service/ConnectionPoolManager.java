@@ -0,0 +1,182 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.ConnectionInfo;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按连接配置维护物理连接池，会话按请求租用连接而不是各自独占一个连接
+ */
+@Service
+public class ConnectionPoolManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPoolManager.class);
+
+    private final Map<ConnectionPool.PoolKey, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    @Value("${dbadmin.pool.max-size:10}")
+    private int maxSize;
+
+    @Value("${dbadmin.pool.min-idle:1}")
+    private int minIdle;
+
+    @Value("${dbadmin.pool.acquire-timeout-ms:10000}")
+    private long acquireTimeoutMs;
+
+    @Value("${dbadmin.pool.idle-timeout-ms:600000}")
+    private long idleTimeoutMs;
+
+    @Value("${dbadmin.pool.validation-interval-ms:30000}")
+    private long validationIntervalMs;
+
+    // 并行导出、服务端游标等一次占用多个连接的操作至少给交互请求留下的连接数
+    @Value("${dbadmin.pool.interactive-reserve:2}")
+    private int interactiveReserve;
+
+    // 每个物理连接缓存的预编译语句数，注意服务端max_prepared_stmt_count的总量限制
+    @Value("${dbadmin.pool.statement-cache-size:64}")
+    private int statementCacheSize;
+
+    private final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "pool-evictor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ConnectionPoolManager() {
+        evictor.scheduleWithFixedDelay(this::evictIdle, 30, 30, TimeUnit.SECONDS);
+    }
+
+    public static ConnectionPool.PoolKey keyOf(ConnectionInfo info) {
+        return new ConnectionPool.PoolKey(info.getHost(), info.getPort(), info.getUsername(),
+                info.getDatabase(), info.getSslMode(), info.getPassword());
+    }
+
+    /**
+     * 获取（必要时创建）连接配置对应的连接池。info仅在首次创建时用于建立物理连接。
+     */
+    public ConnectionPool getPool(ConnectionPool.PoolKey key, ConnectionInfo info) {
+        return pools.computeIfAbsent(key, k -> {
+            // 复制一份，避免会话切换数据库时修改到连接池的默认库
+            ConnectionInfo snapshot = new ConnectionInfo(info.getName(), k.host(), k.port(), k.database(),
+                    k.username(), k.password(), k.sslMode());
+            log.debug("创建连接池: {}", k);
+            return new ConnectionPool(k, () -> createPhysicalConnection(snapshot), maxSize, minIdle,
+                    acquireTimeoutMs, idleTimeoutMs, validationIntervalMs, statementCacheSize);
+        });
+    }
+
+    /**
+     * 为会话从连接池借出一个新连接（不使用事务固定的连接），并切换到会话当前数据库。
+     * 会话没有当前库时，丢弃被其他会话选过库的连接（MySQL无法取消当前库），直到拿到未选库的连接
+     */
+    public ConnectionPool.Lease leaseFor(DbSession session) throws SQLException {
+        return leaseFor(session, true);
+    }
+
+    /**
+     * 与leaseFor相同但不等待：连接池剩余的连接不超过interactive-reserve时返回null
+     */
+    public ConnectionPool.Lease tryLeaseFor(DbSession session) throws SQLException {
+        return leaseFor(session, false);
+    }
+
+    /**
+     * 连接池允许后台操作占用的连接数（最大连接数减去给交互请求保留的部分，至少为1）
+     */
+    public int backgroundCapacity(DbSession session) {
+        return Math.max(1, getPool(session.getPoolKey(), session.getInfo()).getMaxSize() - interactiveReserve);
+    }
+
+    private ConnectionPool.Lease leaseFor(DbSession session, boolean wait) throws SQLException {
+        ConnectionPool pool = getPool(session.getPoolKey(), session.getInfo());
+        String database = session.getDatabase();
+        while (true) {
+            ConnectionPool.Lease lease = wait ? pool.acquire() : pool.tryAcquire(interactiveReserve);
+            if (lease == null) {
+                return null;
+            }
+            try {
+                Connection conn = lease.getConnection();
+                if (database != null && !database.trim().isEmpty()) {
+                    conn.setCatalog(database);
+                    return lease;
+                }
+                String current = conn.getCatalog();
+                if (current == null || current.isEmpty()) {
+                    return lease;
+                }
+                lease.invalidate();
+                lease.close();
+            } catch (SQLException e) {
+                lease.invalidate();
+                lease.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 借出一个用于元数据查询的池化连接：不切换数据库，查询必须显式指定库名
+     */
+    public ConnectionPool.Lease leaseForMetadata(DbSession session) throws SQLException {
+        return getPool(session.getPoolKey(), session.getInfo()).acquire();
+    }
+
+    public Connection createPhysicalConnection(ConnectionInfo info) throws SQLException {
+        String database = info.getDatabase();
+        if (database == null || database.trim().isEmpty()) {
+            // 不指定数据库，连接到服务器
+            database = "";
+        }
+
+        // useLocalSessionState让重复的setAutoCommit/setCatalog不再往返服务器，连接复用时很关键
+        // rewriteBatchedStatements让JDBC批次合并为多值INSERT或多语句发送；continueBatchOnError=false让批次在第一条失败的语句处停止
+        String url = String.format("jdbc:mysql://%s:%d/%s?useSSL=%s&allowPublicKeyRetrieval=true&useUnicode=true&characterEncoding=utf8&serverTimezone=UTC&useLocalSessionState=true&rewriteBatchedStatements=true&continueBatchOnError=false",
+                info.getHost(), info.getPort(), database,
+                "REQUIRED".equalsIgnoreCase(info.getSslMode()) ? "true" : "false");
+
+        Properties props = new Properties();
+        props.setProperty("user", info.getUsername());
+        props.setProperty("password", info.getPassword());
+
+        return DriverManager.getConnection(url, props);
+    }
+
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (ConnectionPool pool : pools.values()) {
+            stats.add(pool.getStats());
+        }
+        return stats;
+    }
+
+    private void evictIdle() {
+        for (ConnectionPool pool : pools.values()) {
+            try {
+                pool.evictIdle();
+            } catch (RuntimeException e) {
+                log.warn("清理空闲连接失败: {}", pool.getKey(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictor.shutdownNow();
+        pools.values().forEach(ConnectionPool::close);
+        pools.clear();
+    }
+}
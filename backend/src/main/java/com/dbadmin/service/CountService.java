@@ -0,0 +1,327 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.CountMode;
+import com.dbadmin.util.SqlLexer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分页查询的总数计算：精确计数带TTL缓存、基于统计信息的估算、以及后台异步精确计数。
+ * 缓存按连接配置共享，同一连接配置执行DML/DDL时由QueryCacheService通知失效涉及相同表的计数；
+ * 会话在事务中时计数能看到未提交的修改，既不读取也不写入缓存。
+ * 计数语句登记在所属请求下（异步计数以countId登记），可以通过取消接口中断
+ */
+@Service
+public class CountService {
+
+    private static final Logger log = LoggerFactory.getLogger(CountService.class);
+
+    public static final String TYPE_EXACT = "exact";
+    public static final String TYPE_CACHED = "cached";
+    public static final String TYPE_ESTIMATED = "estimated";
+    public static final String TYPE_PENDING = "pending";
+    public static final String TYPE_NONE = "none";
+
+    public record CountResult(Long count, String countType, String countId) {}
+
+    /**
+     * tables为查询引用的表（小写），为空表示无法识别，任何修改都使其失效
+     */
+    private record CachedCount(ConnectionPool.PoolKey poolKey, Set<String> tables, long count, long expiresAt) {}
+
+    private static final class AsyncCount {
+        final CompletableFuture<Long> future = new CompletableFuture<>();
+        final long createdAt = System.currentTimeMillis();
+    }
+
+    @Autowired
+    private ConnectionPoolManager poolManager;
+
+    @Autowired
+    private QueryRegistry queries;
+
+    @Value("${dbadmin.count.cache-ttl-ms:60000}")
+    private long cacheTtlMs;
+
+    @Value("${dbadmin.count.cache-max-entries:10000}")
+    private int cacheMaxEntries;
+
+    @Value("${dbadmin.count.async-threads:4}")
+    private int asyncThreads;
+
+    @Value("${dbadmin.count.async-timeout-seconds:300}")
+    private int asyncTimeoutSeconds;
+
+    private Map<String, CachedCount> cache;
+    // 每个连接配置的失效次数：计数期间发生过失效的结果不写入缓存
+    private final Map<ConnectionPool.PoolKey, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final Map<String, AsyncCount> asyncCounts = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        int maxEntries = cacheMaxEntries;
+        cache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCount> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        executor = new ThreadPoolExecutor(asyncThreads, asyncThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(100), r -> {
+                    Thread t = new Thread(r, "async-count");
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public CountResult count(DbSession session, Connection conn, String cleanSql, CountMode mode) throws SQLException {
+        return count(session, conn, cleanSql, mode, null);
+    }
+
+    /**
+     * 按策略计算cleanSql的总数，同步模式在调用方的连接上执行，计数语句登记在query下（可为null）
+     */
+    public CountResult count(DbSession session, Connection conn, String cleanSql, CountMode mode, RunningQuery query)
+            throws SQLException {
+        if (mode == CountMode.NONE) {
+            return new CountResult(null, TYPE_NONE, null);
+        }
+
+        // 事务中的计数包含未提交的行，缓存中的计数又看不到本事务的修改
+        boolean cacheable = session.getPinnedLease() == null;
+        String key = cacheKey(session, cleanSql);
+        CachedCount cached = cacheable ? cache.get(key) : null;
+        if (cached != null) {
+            if (cached.expiresAt() > System.currentTimeMillis()) {
+                return new CountResult(cached.count(), TYPE_CACHED, null);
+            }
+            cache.remove(key);
+        }
+
+        switch (mode) {
+            case ESTIMATED:
+                Long estimate = estimate(conn, cleanSql, query);
+                if (estimate != null) {
+                    return new CountResult(estimate, TYPE_ESTIMATED, null);
+                }
+                // 无法估算时退回精确计数
+                break;
+            case ASYNC:
+                String countId = submitAsync(session, cacheable ? key : null, cleanSql);
+                if (countId != null) {
+                    return new CountResult(null, TYPE_PENDING, countId);
+                }
+                // 后台队列已满时同步计算
+                break;
+            default:
+                break;
+        }
+
+        long generation = generation(session.getPoolKey());
+        long count = exactCount(conn, cleanSql, 30, query);
+        if (cacheable) {
+            store(session.getPoolKey(), key, cleanSql, generation, count);
+        }
+        return new CountResult(count, TYPE_EXACT, null);
+    }
+
+    /**
+     * 查询异步计数状态：status为pending/done/failed，done时带totalCount
+     */
+    public Map<String, Object> getAsyncCount(String countId) {
+        AsyncCount task = asyncCounts.get(countId);
+        if (task == null) {
+            return null;
+        }
+        Map<String, Object> status = new HashMap<>();
+        status.put("countId", countId);
+        if (!task.future.isDone()) {
+            status.put("status", "pending");
+            status.put("elapsedMs", System.currentTimeMillis() - task.createdAt);
+        } else {
+            try {
+                status.put("status", "done");
+                status.put("totalCount", task.future.join());
+                status.put("countType", TYPE_EXACT);
+            } catch (CompletionException | CancellationException e) {
+                status.put("status", "failed");
+                status.put("error", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+        }
+        return status;
+    }
+
+    private String submitAsync(DbSession session, String key, String cleanSql) {
+        purgeAsyncCounts();
+
+        String countId = UUID.randomUUID().toString();
+        AsyncCount task = new AsyncCount();
+        // 排队期间就登记，/cancel/{countId}和会话关闭都能取消
+        RunningQuery query;
+        try {
+            query = queries.start(session.getId(), countId, cleanSql);
+        } catch (SQLException e) {
+            return null;
+        }
+        try {
+            executor.execute(() -> {
+                // 在独立的池化连接上计数，不占用会话正在使用的连接
+                try (ConnectionPool.Lease lease = poolManager.leaseFor(session)) {
+                    long generation = generation(session.getPoolKey());
+                    long count = exactCount(lease.getConnection(), cleanSql, asyncTimeoutSeconds, query);
+                    if (key != null) {
+                        store(session.getPoolKey(), key, cleanSql, generation, count);
+                    }
+                    task.future.complete(count);
+                } catch (SQLException e) {
+                    log.debug("异步计数失败: {}", e.getMessage());
+                    task.future.completeExceptionally(QueryRegistry.cancelledOr(query, e));
+                } catch (Exception e) {
+                    log.debug("异步计数失败: {}", e.getMessage());
+                    task.future.completeExceptionally(e);
+                } finally {
+                    queries.end(query);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queries.end(query);
+            return null;
+        }
+        asyncCounts.put(countId, task);
+        return countId;
+    }
+
+    /**
+     * 连接配置poolKey下的表被修改：失效引用这些表的计数，tables为空时失效全部
+     */
+    public void invalidate(ConnectionPool.PoolKey poolKey, Set<String> tables) {
+        synchronized (cache) {
+            generations.computeIfAbsent(poolKey, k -> new AtomicLong()).incrementAndGet();
+            cache.values().removeIf(entry -> entry.poolKey().equals(poolKey)
+                    && (tables.isEmpty() || entry.tables().isEmpty() || !Collections.disjoint(entry.tables(), tables)));
+        }
+    }
+
+    private long generation(ConnectionPool.PoolKey poolKey) {
+        return generations.computeIfAbsent(poolKey, k -> new AtomicLong()).get();
+    }
+
+    private void store(ConnectionPool.PoolKey poolKey, String key, String cleanSql, long generation, long count) {
+        Set<String> tables = SqlLexer.analyze(cleanSql).referencedTables();
+        synchronized (cache) {
+            // 计数期间同一连接配置有过修改，结果可能已经过时
+            if (generation == generation(poolKey)) {
+                cache.put(key, new CachedCount(poolKey, tables, count, System.currentTimeMillis() + cacheTtlMs));
+            }
+        }
+    }
+
+    private void purgeAsyncCounts() {
+        long deadline = System.currentTimeMillis() - Math.max(cacheTtlMs, asyncTimeoutSeconds * 1000L);
+        asyncCounts.values().removeIf(task -> task.future.isDone() && task.createdAt < deadline);
+    }
+
+    private long exactCount(Connection conn, String cleanSql, int timeoutSeconds, RunningQuery query)
+            throws SQLException {
+        String countSql = "SELECT COUNT(*) FROM (" + cleanSql + ") AS total_count";
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setQueryTimeout(timeoutSeconds);
+            attach(query, stmt);
+            try (ResultSet rs = stmt.executeQuery(countSql)) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            } finally {
+                detach(query, stmt);
+            }
+        }
+    }
+
+    private static void attach(RunningQuery query, Statement stmt) throws SQLException {
+        if (query != null) {
+            query.attach(stmt);
+        }
+    }
+
+    private static void detach(RunningQuery query, Statement stmt) {
+        if (query != null) {
+            query.detach(stmt);
+        }
+    }
+
+    /**
+     * 单表全表扫描使用INFORMATION_SCHEMA.TABLES.TABLE_ROWS，其余使用EXPLAIN的行数估算
+     */
+    private Long estimate(Connection conn, String cleanSql, RunningQuery query) {
+        try {
+            // 不带WHERE/JOIN/GROUP BY、选择列表没有聚合的单表查询，可以直接使用TABLE_ROWS
+            SqlLexer.TableRef scan = SqlLexer.plainTableScan(cleanSql);
+            if (scan != null) {
+                String schema = scan.schema();
+                String table = scan.table();
+                String sql = "SELECT TABLE_ROWS FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = "
+                        + (schema != null ? "?" : "DATABASE()") + " AND TABLE_NAME = ?";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    attach(query, stmt);
+                    int index = 1;
+                    if (schema != null) {
+                        stmt.setString(index++, schema);
+                    }
+                    stmt.setString(index, table);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next() && rs.getObject(1) != null) {
+                            return rs.getLong(1);
+                        }
+                    } finally {
+                        detach(query, stmt);
+                    }
+                }
+            }
+
+            try (Statement stmt = conn.createStatement()) {
+                attach(query, stmt);
+                try (ResultSet rs = stmt.executeQuery("EXPLAIN " + cleanSql)) {
+                    // 最外层SELECT各表的 rows * filtered% 相乘即优化器估计的结果行数
+                    double estimate = 1;
+                    boolean found = false;
+                    while (rs.next()) {
+                        if (rs.getInt("id") != 1) {
+                            continue;
+                        }
+                        long rows = rs.getLong("rows");
+                        if (rs.wasNull()) {
+                            continue;
+                        }
+                        double filtered = rs.getDouble("filtered");
+                        estimate *= rows * (rs.wasNull() ? 100.0 : filtered) / 100.0;
+                        found = true;
+                    }
+                    return found ? Math.round(estimate) : null;
+                } finally {
+                    detach(query, stmt);
+                }
+            }
+        } catch (SQLException e) {
+            log.debug("估算行数失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static String cacheKey(DbSession session, String cleanSql) {
+        return session.getPoolKey() + "|" + session.getDatabase() + "|" + QueryCacheService.normalize(cleanSql);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,269 @@
+package com.dbadmin.service;
+
+import com.dbadmin.util.SqlLexer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端游标：查询只执行一次，结果集保持在独占连接上以流式方式打开，客户端按需拉取后续行。
+ * 每个游标长期占用一个池化连接，因此每个连接池的游标数另有上限，并且不会占用给交互查询保留的连接
+ */
+@Service
+public class CursorService {
+
+    private static final Logger log = LoggerFactory.getLogger(CursorService.class);
+
+    @Autowired
+    private ConnectionManagerService connectionManager;
+
+    @Value("${dbadmin.cursor.max-open:20}")
+    private int maxOpenCursors;
+
+    @Value("${dbadmin.cursor.max-per-pool:4}")
+    private int maxCursorsPerPool;
+
+    @Value("${dbadmin.cursor.idle-timeout-ms:300000}")
+    private long idleTimeoutMs;
+
+    @Value("${dbadmin.cursor.max-fetch-size:10000}")
+    private int maxFetchSize;
+
+    private final Map<String, ServerCursor> cursors = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "cursor-reaper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public CursorService() {
+        reaper.scheduleWithFixedDelay(this::closeIdleCursors, 30, 30, TimeUnit.SECONDS);
+    }
+
+    private static final class ServerCursor {
+        final String id;
+        final String sessionId;
+        final ConnectionPool.PoolKey poolKey;
+        final String sql;
+        final ConnectionPool.Lease lease;
+        final Statement statement;
+        final ResultSet resultSet;
+        final List<String> columns;
+        final long openedAt = System.currentTimeMillis();
+        volatile long lastAccess = openedAt;
+        long rowsFetched;
+        boolean exhausted;
+        boolean closed;
+
+        ServerCursor(String id, String sessionId, ConnectionPool.PoolKey poolKey, String sql,
+                     ConnectionPool.Lease lease, Statement statement, ResultSet resultSet, List<String> columns) {
+            this.id = id;
+            this.sessionId = sessionId;
+            this.poolKey = poolKey;
+            this.sql = sql;
+            this.lease = lease;
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.columns = columns;
+        }
+    }
+
+    /**
+     * 打开游标，返回游标id和列信息
+     */
+    public Map<String, Object> open(String sessionId, String sql) throws SQLException {
+        // 每个连接池的上限不超过连接池中可供后台操作占用的连接数
+        ConnectionPool.PoolKey poolKey = connectionManager.getPoolKey(sessionId);
+        int perPool = Math.min(maxCursorsPerPool, connectionManager.backgroundCapacity(sessionId));
+
+        // 达到上限时先回收空闲游标
+        if (cursors.size() >= maxOpenCursors || openCursors(poolKey) >= perPool) {
+            closeIdleCursors();
+            if (cursors.size() >= maxOpenCursors) {
+                throw new SQLException("Too many open cursors (max " + maxOpenCursors + ")");
+            }
+            if (openCursors(poolKey) >= perPool) {
+                throw new SQLException("Too many open cursors on this connection (max " + perPool + "), close unused cursors");
+            }
+        }
+
+        // 清理SQL：移除末尾的分号、注释和空白字符
+        SqlLexer.Statement statement = SqlLexer.analyze(sql);
+        String cleanSql = statement.sql();
+
+        // 不等待连接池：游标不能占用给交互查询保留的连接
+        ConnectionPool.Lease lease = connectionManager.tryLeaseDedicated(sessionId);
+        if (lease == null) {
+            throw new SQLException("Connection pool is busy, no connection available for a cursor");
+        }
+        Statement stmt = null;
+        try {
+            if (statement.sessionState()) {
+                // 游标关闭后连接归还前需要重置会话状态
+                lease.markDirty();
+            }
+            stmt = lease.getConnection().createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            // 设置查询超时为30秒
+            stmt.setQueryTimeout(30);
+            ResultSet rs = stmt.executeQuery(cleanSql);
+
+            ResultSetMetaData metaData = rs.getMetaData();
+            List<String> columns = new ArrayList<>(metaData.getColumnCount());
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columns.add(metaData.getColumnLabel(i));
+            }
+
+            String cursorId = UUID.randomUUID().toString();
+            cursors.put(cursorId, new ServerCursor(cursorId, sessionId, poolKey, cleanSql, lease, stmt, rs, columns));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("cursorId", cursorId);
+            response.put("columns", columns);
+            return response;
+        } catch (SQLException | RuntimeException e) {
+            if (stmt != null) {
+                try {
+                    stmt.close();
+                } catch (SQLException ignored) {
+                    // Ignore
+                }
+            }
+            lease.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 从游标读取后续最多n行，读完后自动关闭游标
+     */
+    public Map<String, Object> fetch(String cursorId, int n) throws SQLException {
+        ServerCursor cursor = cursors.get(cursorId);
+        if (cursor == null) {
+            throw new SQLException("Cursor not found or expired: " + cursorId);
+        }
+        int limit = Math.max(1, Math.min(n, maxFetchSize));
+
+        List<Map<String, Object>> data = new ArrayList<>(Math.min(limit, 1024));
+        synchronized (cursor) {
+            if (cursor.closed) {
+                throw new SQLException("Cursor not found or expired: " + cursorId);
+            }
+            cursor.lastAccess = System.currentTimeMillis();
+            try {
+                int columnCount = cursor.columns.size();
+                while (data.size() < limit && cursor.resultSet.next()) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int i = 1; i <= columnCount; i++) {
+                        row.put(cursor.columns.get(i - 1), cursor.resultSet.getObject(i));
+                    }
+                    data.add(row);
+                }
+                cursor.rowsFetched += data.size();
+                if (data.size() < limit) {
+                    cursor.exhausted = true;
+                }
+            } catch (SQLException e) {
+                close(cursorId);
+                throw e;
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("cursorId", cursorId);
+        response.put("columns", cursor.columns);
+        response.put("data", data);
+        response.put("rowsFetched", cursor.rowsFetched);
+        response.put("done", cursor.exhausted);
+        if (cursor.exhausted) {
+            close(cursorId);
+        }
+        return response;
+    }
+
+    public boolean close(String cursorId) {
+        ServerCursor cursor = cursors.remove(cursorId);
+        if (cursor == null) {
+            return false;
+        }
+        synchronized (cursor) {
+            closeQuietly(cursor);
+        }
+        return true;
+    }
+
+    public List<Map<String, Object>> listCursors() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (ServerCursor cursor : cursors.values()) {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("cursorId", cursor.id);
+            info.put("sessionId", cursor.sessionId);
+            info.put("sql", cursor.sql);
+            info.put("rowsFetched", cursor.rowsFetched);
+            info.put("openMs", now - cursor.openedAt);
+            info.put("idleMs", now - cursor.lastAccess);
+            list.add(info);
+        }
+        return list;
+    }
+
+    private void closeQuietly(ServerCursor cursor) {
+        if (cursor.closed) {
+            return;
+        }
+        cursor.closed = true;
+        if (!cursor.exhausted) {
+            // 未读完的流式结果集关闭时会读完剩余行，先取消查询并丢弃该连接
+            try {
+                cursor.statement.cancel();
+            } catch (SQLException e) {
+                // Ignore
+            }
+            cursor.lease.invalidate();
+        }
+        try {
+            cursor.statement.close();
+        } catch (SQLException e) {
+            // Ignore
+        }
+        cursor.lease.close();
+    }
+
+    private int openCursors(ConnectionPool.PoolKey poolKey) {
+        int count = 0;
+        for (ServerCursor cursor : cursors.values()) {
+            if (cursor.poolKey.equals(poolKey)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void closeIdleCursors() {
+        long deadline = System.currentTimeMillis() - idleTimeoutMs;
+        for (ServerCursor cursor : cursors.values()) {
+            if (cursor.lastAccess < deadline || !connectionManager.hasSession(cursor.sessionId)) {
+                log.debug("关闭空闲游标: {}", cursor.id);
+                close(cursor.id);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reaper.shutdownNow();
+        new ArrayList<>(cursors.keySet()).forEach(this::close);
+    }
+}
@@ -0,0 +1,113 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.ConnectionInfo;
+
+/**
+ * 一个前端会话的状态：连接配置、所属连接池以及事务期间固定的连接
+ */
+public class DbSession {
+    private final String id;
+    private final ConnectionInfo info;
+    private final ConnectionPool.PoolKey poolKey;
+    private final long createdAt = System.currentTimeMillis();
+    private final SessionLane lane = new SessionLane();
+    private volatile long lastAccess = createdAt;
+
+    // 事务期间固定在会话上的连接，非事务时为null
+    private volatile ConnectionPool.Lease pinnedLease;
+
+    // 写语句执行后暂时保留的连接，下一条语句在其上执行才能读到LAST_INSERT_ID()、ROW_COUNT()和警告
+    private volatile ConnectionPool.Lease followUpLease;
+    private long followUpUntil;
+
+    // 固定连接上有会话状态（SET、用户变量、表锁等），事务结束后也不归还，直到会话关闭
+    private volatile boolean stateful;
+
+    public DbSession(String id, ConnectionInfo info, ConnectionPool.PoolKey poolKey) {
+        this.id = id;
+        this.info = info;
+        this.poolKey = poolKey;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ConnectionInfo getInfo() {
+        return info;
+    }
+
+    public ConnectionPool.PoolKey getPoolKey() {
+        return poolKey;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * 记录一次访问，空闲回收和LRU淘汰都以此为准
+     */
+    public void touch() {
+        lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * 会话当前数据库，switchDatabase后随之变化
+     */
+    public String getDatabase() {
+        return info.getDatabase();
+    }
+
+    public SessionLane getLane() {
+        return lane;
+    }
+
+    public ConnectionPool.Lease getPinnedLease() {
+        return pinnedLease;
+    }
+
+    public void setPinnedLease(ConnectionPool.Lease pinnedLease) {
+        this.pinnedLease = pinnedLease;
+    }
+
+    public boolean hasFollowUpLease() {
+        return followUpLease != null;
+    }
+
+    /**
+     * 保留连接到until（毫秒时间戳），由下一条语句或超时回收取走
+     */
+    public synchronized void setFollowUpLease(ConnectionPool.Lease followUpLease, long until) {
+        this.followUpLease = followUpLease;
+        this.followUpUntil = until;
+    }
+
+    /**
+     * 取走保留的连接（没有时返回null），由调用方使用后归还
+     */
+    public synchronized ConnectionPool.Lease takeFollowUpLease() {
+        ConnectionPool.Lease lease = followUpLease;
+        followUpLease = null;
+        return lease;
+    }
+
+    /**
+     * 保留时间已过时取走连接，否则返回null
+     */
+    public synchronized ConnectionPool.Lease takeExpiredFollowUpLease(long now) {
+        return followUpLease != null && followUpUntil <= now ? takeFollowUpLease() : null;
+    }
+
+    public boolean isStateful() {
+        return stateful;
+    }
+
+    public void setStateful(boolean stateful) {
+        this.stateful = stateful;
+    }
+}
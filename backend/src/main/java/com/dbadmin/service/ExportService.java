@@ -0,0 +1,114 @@
+package com.dbadmin.service;
+
+import com.dbadmin.service.export.ExportFormat;
+import com.dbadmin.service.export.ExportWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 以流式查询导出结果，按格式直接写到HTTP响应或服务器上的导出目录
+ */
+@Service
+public class ExportService {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Autowired
+    private ConnectionManagerService connectionManager;
+
+    @Value("${dbadmin.export.dir:${java.io.tmpdir}/dbadmin-exports}")
+    private String exportDir;
+
+    /**
+     * 导出到输出流，返回导出的行数
+     */
+    public long export(String sessionId, String sql, ExportFormat format, String tableName, boolean gzip,
+                       OutputStream out) throws SQLException, IOException {
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, 64 * 1024) : null;
+        ExportWriter writer = format.createWriter(gzipOut != null ? gzipOut : out, tableName);
+        connectionManager.streamQuery(sessionId, sql, writer);
+        if (gzipOut != null) {
+            gzipOut.finish();
+        }
+        return writer.getRowCount();
+    }
+
+    /**
+     * 导出到导出目录下的文件，先写临时文件完成后再改名，避免下载到半成品
+     */
+    public Map<String, Object> exportToFile(String sessionId, String sql, ExportFormat format, String tableName,
+                                            boolean gzip, String fileName) throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        Path dir = exportDirectory();
+        String name = fileNameFor(fileName, "export", format, gzip);
+        Path target = dir.resolve(name);
+        Path temp = Files.createTempFile(dir, ".export-", ".tmp");
+
+        long rows;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+            rows = export(sessionId, sql, format, tableName, gzip, out);
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("file", name);
+        result.put("rows", rows);
+        result.put("bytes", Files.size(target));
+        result.put("elapsedMs", System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * 导出目录，不存在时创建
+     */
+    public Path exportDirectory() throws IOException {
+        Path dir = Paths.get(exportDir).toAbsolutePath().normalize();
+        Files.createDirectories(dir);
+        return dir;
+    }
+
+    /**
+     * 导出文件名：使用调用方指定的名字（去掉路径部分），否则按前缀和时间生成
+     */
+    public String fileNameFor(String fileName, String prefix, ExportFormat format, boolean gzip) {
+        if (fileName != null && !fileName.trim().isEmpty()) {
+            return sanitize(fileName);
+        }
+        return sanitize(prefix + "-" + LocalDateTime.now().format(FILE_TIME) + "." + format.getExtension() + (gzip ? ".gz" : ""));
+    }
+
+    /**
+     * 解析导出目录中的文件，拒绝目录穿越
+     */
+    public Path resolveFile(String name) throws IOException {
+        Path dir = Paths.get(exportDir).toAbsolutePath().normalize();
+        Path file = dir.resolve(sanitize(name)).normalize();
+        if (!file.startsWith(dir) || !Files.isRegularFile(file)) {
+            throw new IOException("Export file not found: " + name);
+        }
+        return file;
+    }
+
+    private static String sanitize(String fileName) {
+        String name = Paths.get(fileName.trim()).getFileName().toString();
+        return name.replaceAll("[^\\w.\\-\\u4e00-\\u9fa5]", "_");
+    }
+}
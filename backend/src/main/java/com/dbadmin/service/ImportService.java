@@ -0,0 +1,434 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.ImportOptions;
+import com.dbadmin.util.CsvReader;
+import com.dbadmin.util.SqlIdentifiers;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 把CSV/NDJSON流式导入到表中：读取线程解析并分批，多个写入线程各自持有一个池化连接
+ * （第一个连接等待连接池，其余不等待，连接池只剩交互保留连接时减少写入线程），
+ * 用批量预编译INSERT（rewriteBatchedStatements改写为多值INSERT）写入，按commitInterval提交。
+ * 读写之间是有界队列，内存占用与文件大小无关。
+ * 导入以importId登记为一个请求，通过取消接口可以中断所有写入线程，未提交的批次回滚。
+ */
+@Service
+public class ImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportService.class);
+
+    // 通知写入线程结束的标记批次
+    private static final List<String[]> END_OF_INPUT = Collections.emptyList();
+
+    @Autowired
+    private ConnectionManagerService connectionManager;
+
+    @Autowired
+    private QueryRegistry queries;
+
+    @Autowired
+    private QueryCacheService queryCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${dbadmin.import.max-writers:4}")
+    private int maxWriters;
+
+    @Value("${dbadmin.import.max-batch-size:10000}")
+    private int maxBatchSize;
+
+    private final Map<String, ImportProgress> imports = new ConcurrentHashMap<>();
+
+    private interface RowSource extends Closeable {
+        List<String> columns();
+
+        String[] next() throws IOException;
+    }
+
+    /**
+     * 导入进度，可在导入过程中轮询
+     */
+    public static class ImportProgress {
+        private final String importId;
+        private final String table;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private volatile int writers;
+        private volatile String status = "running";
+        private volatile String error;
+        private volatile long endTime;
+
+        ImportProgress(String importId, String table) {
+            this.importId = importId;
+            this.table = table;
+        }
+
+        public Map<String, Object> toMap() {
+            long elapsed = (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("importId", importId);
+            map.put("table", table);
+            map.put("status", status);
+            map.put("rowsRead", rowsRead.get());
+            map.put("rowsWritten", rowsWritten.get());
+            map.put("writers", writers);
+            map.put("elapsedMs", elapsed);
+            map.put("rowsPerSecond", elapsed == 0 ? 0 : rowsWritten.get() * 1000 / elapsed);
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+
+    public Map<String, Object> getProgress(String importId) {
+        ImportProgress progress = imports.get(importId);
+        return progress != null ? progress.toMap() : null;
+    }
+
+    public Map<String, Object> importData(String sessionId, ImportOptions options, InputStream in)
+            throws SQLException, IOException {
+        if (options.getTable() == null || options.getTable().trim().isEmpty()) {
+            throw new SQLException("Table name is required");
+        }
+        String database = options.getDatabase() != null && !options.getDatabase().isEmpty()
+                ? options.getDatabase() : connectionManager.getSessionDatabase(sessionId);
+        int writers = Math.max(1, Math.min(options.getWriters(), maxWriters));
+        int batchSize = Math.max(1, Math.min(options.getBatchSize(), maxBatchSize));
+        int commitInterval = Math.max(batchSize, options.getCommitInterval());
+
+        purgeFinished();
+        String importId = options.getImportId() != null ? options.getImportId() : UUID.randomUUID().toString();
+        RunningQuery query = queries.start(sessionId, importId, "(import) " + options.getTable());
+        ImportProgress progress = new ImportProgress(importId, options.getTable());
+        imports.put(importId, progress);
+
+        ExecutorService pool = null;
+        // 尚未交给写入线程的连接
+        List<ConnectionPool.Lease> leases = new ArrayList<>(writers);
+        try (RowSource source = openSource(options, in)) {
+            List<String> columns = source.columns();
+            if (columns.isEmpty()) {
+                throw new SQLException("No columns: provide a header row or the columns parameter");
+            }
+            String insertSql = buildInsertSql(database, options.getTable(), columns);
+
+            // 只有第一个写入连接等待连接池；其余拿不到就减少写入线程，避免多个导入各持有一部分连接互相等待
+            leases.add(connectionManager.leaseDedicated(sessionId));
+            while (leases.size() < writers) {
+                ConnectionPool.Lease lease = connectionManager.tryLeaseDedicated(sessionId);
+                if (lease == null) {
+                    break;
+                }
+                leases.add(lease);
+            }
+            writers = leases.size();
+            progress.writers = writers;
+
+            pool = Executors.newFixedThreadPool(writers, r -> {
+                Thread t = new Thread(r, "import-writer-" + importId);
+                t.setDaemon(true);
+                return t;
+            });
+            BlockingQueue<List<String[]>> queue = new ArrayBlockingQueue<>(writers * 2);
+            AtomicReference<Exception> failure = new AtomicReference<>();
+            List<Future<?>> futures = new ArrayList<>(writers);
+            while (!leases.isEmpty()) {
+                ConnectionPool.Lease lease = leases.remove(leases.size() - 1);
+                // 每个任务都有自己的线程立即开始执行（即使随后shutdownNow），由写入线程负责归还连接
+                futures.add(pool.submit(() -> writeLoop(lease, insertSql, columns.size(), commitInterval,
+                        queue, progress, failure, query)));
+            }
+
+            List<String[]> batch = new ArrayList<>(batchSize);
+            String[] row;
+            while (failure.get() == null && !query.isCancelled() && (row = source.next()) != null) {
+                if (row.length != columns.size()) {
+                    failure.compareAndSet(null, new SQLException("Row " + (progress.rowsRead.get() + 1)
+                            + " has " + row.length + " fields, expected " + columns.size()));
+                    break;
+                }
+                batch.add(row);
+                progress.rowsRead.incrementAndGet();
+                if (batch.size() == batchSize) {
+                    enqueue(queue, batch, failure);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                enqueue(queue, batch, failure);
+            }
+            for (int i = 0; i < writers; i++) {
+                enqueue(queue, END_OF_INPUT, null);
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failure.compareAndSet(null, new SQLException(String.valueOf(e.getCause())));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure.compareAndSet(null, e);
+                }
+            }
+
+            progress.endTime = System.currentTimeMillis();
+            Exception error = failure.get();
+            if (error == null && query.isCancelled()) {
+                error = new SQLException("Query cancelled");
+            }
+            if (error != null) {
+                progress.status = "failed";
+                progress.error = error instanceof SQLException e ? QueryRegistry.cancelledOr(query, e).getMessage()
+                        : error.getMessage();
+            } else {
+                progress.status = "completed";
+            }
+            return progress.toMap();
+        } catch (SQLException | IOException | RuntimeException e) {
+            progress.endTime = System.currentTimeMillis();
+            progress.status = "failed";
+            progress.error = e.getMessage();
+            throw e;
+        } finally {
+            for (ConnectionPool.Lease lease : leases) {
+                lease.close();
+            }
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            queries.end(query);
+            queryCache.invalidateTables(sessionId, Set.of(options.getTable()));
+        }
+    }
+
+    private void writeLoop(ConnectionPool.Lease writerLease, String insertSql, int columnCount, int commitInterval,
+                           BlockingQueue<List<String[]>> queue, ImportProgress progress,
+                           AtomicReference<Exception> failure, RunningQuery query) {
+        try (ConnectionPool.Lease lease = writerLease) {
+            Connection conn = lease.getConnection();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+                query.attach(stmt);
+                long uncommitted = 0;
+                while (true) {
+                    List<String[]> batch = queue.take();
+                    if (batch == END_OF_INPUT) {
+                        break;
+                    }
+                    if (failure.get() != null) {
+                        // 其他线程已失败，只需要把队列取空让读取线程退出
+                        continue;
+                    }
+                    if (query.isCancelled()) {
+                        throw new SQLException("Query cancelled");
+                    }
+                    for (String[] row : batch) {
+                        for (int i = 0; i < columnCount; i++) {
+                            stmt.setString(i + 1, row[i]);
+                        }
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    uncommitted += batch.size();
+                    if (uncommitted >= commitInterval) {
+                        conn.commit();
+                        // 只统计已提交的行，失败回滚后的进度与表中实际数据一致
+                        progress.rowsWritten.addAndGet(uncommitted);
+                        uncommitted = 0;
+                    }
+                }
+                if (failure.get() == null && !query.isCancelled()) {
+                    conn.commit();
+                    progress.rowsWritten.addAndGet(uncommitted);
+                } else {
+                    conn.rollback();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            // 读取端异常结束时由shutdownNow中断，未提交的数据在连接归还时回滚
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.debug("导入写入失败: {}", e.getMessage());
+            failure.compareAndSet(null, e);
+            // 继续取走剩余批次直到结束标记，避免读取线程阻塞在队列上
+            drainUntilEnd(queue);
+        }
+    }
+
+    private void drainUntilEnd(BlockingQueue<List<String[]>> queue) {
+        try {
+            while (queue.take() != END_OF_INPUT) {
+                // 丢弃
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(BlockingQueue<List<String[]>> queue, List<String[]> batch, AtomicReference<Exception> failure)
+            throws IOException {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (failure != null) {
+                failure.compareAndSet(null, e);
+            }
+            throw new InterruptedIOException("Import interrupted");
+        }
+    }
+
+    private String buildInsertSql(String database, String table, List<String> columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(SqlIdentifiers.qualify(database, table)).append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(SqlIdentifiers.quote(columns.get(i)));
+        }
+        sql.append(") VALUES (")
+                .append(String.join(", ", Collections.nCopies(columns.size(), "?")))
+                .append(')');
+        return sql.toString();
+    }
+
+    private RowSource openSource(ImportOptions options, InputStream in) throws IOException {
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        if ("ndjson".equalsIgnoreCase(options.getFormat())) {
+            return ndjsonSource(options, reader);
+        }
+        if (!"csv".equalsIgnoreCase(options.getFormat())) {
+            throw new IllegalArgumentException("Unsupported import format: " + options.getFormat());
+        }
+        return csvSource(options, reader);
+    }
+
+    private RowSource csvSource(ImportOptions options, Reader reader) throws IOException {
+        CsvReader csv = new CsvReader(reader, options.getDelimiter());
+        List<String> columns = options.getColumns();
+        if (options.isHeader()) {
+            String[] header = csv.readRecord();
+            if (columns == null || columns.isEmpty()) {
+                columns = header != null ? Arrays.asList(header) : Collections.emptyList();
+            }
+        }
+        List<String> resolved = columns != null ? columns : Collections.emptyList();
+        return new RowSource() {
+            @Override
+            public List<String> columns() {
+                return resolved;
+            }
+
+            @Override
+            public String[] next() throws IOException {
+                String[] record;
+                // 空行直接跳过
+                while ((record = csv.readRecord()) != null && record.length == 1 && record[0].isEmpty()
+                        && !csv.isQuoted(0)) {
+                    // 继续读取下一条
+                }
+                if (record != null) {
+                    // 不带引号的 \N（MySQL约定）和空字段表示NULL；带引号的 "\N" 和 "" 是字符串本身
+                    for (int i = 0; i < record.length; i++) {
+                        if (!csv.isQuoted(i) && (record[i].isEmpty() || "\\N".equals(record[i]))) {
+                            record[i] = null;
+                        }
+                    }
+                }
+                return record;
+            }
+
+            @Override
+            public void close() throws IOException {
+                csv.close();
+            }
+        };
+    }
+
+    private RowSource ndjsonSource(ImportOptions options, Reader reader) throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(reader);
+        JsonNode first = readObject(parser);
+        List<String> columns = options.getColumns();
+        if ((columns == null || columns.isEmpty()) && first != null) {
+            columns = new ArrayList<>();
+            first.fieldNames().forEachRemaining(columns::add);
+        }
+        List<String> resolved = columns != null ? columns : Collections.emptyList();
+
+        return new RowSource() {
+            private JsonNode pending = first;
+
+            @Override
+            public List<String> columns() {
+                return resolved;
+            }
+
+            @Override
+            public String[] next() throws IOException {
+                JsonNode node = pending != null ? pending : readObject(parser);
+                pending = null;
+                if (node == null) {
+                    return null;
+                }
+                String[] row = new String[resolved.size()];
+                for (int i = 0; i < row.length; i++) {
+                    JsonNode value = node.get(resolved.get(i));
+                    if (value == null || value.isNull()) {
+                        row[i] = null;
+                    } else if (value.isValueNode()) {
+                        row[i] = value.asText();
+                    } else {
+                        // 嵌套对象/数组按JSON文本写入
+                        row[i] = value.toString();
+                    }
+                }
+                return row;
+            }
+
+            @Override
+            public void close() throws IOException {
+                parser.close();
+            }
+        };
+    }
+
+    private JsonNode readObject(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object per line at " + parser.getCurrentLocation());
+        }
+        return objectMapper.readTree(parser);
+    }
+
+    private void purgeFinished() {
+        long deadline = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(30);
+        imports.values().removeIf(p -> p.endTime > 0 && p.endTime < deadline);
+    }
+}
@@ -0,0 +1,188 @@
+package com.dbadmin.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * 把结果集的当前行直接写到JsonGenerator。列类型只在构造时从元数据解析一次，
+ * 每列预先选好取值方式（getLong/getDouble/getString/getBytes），数值不装箱，列名预先编码；
+ * 日期时间等其他类型仍通过getObject交给ObjectWriter，输出格式与之前一致。
+ */
+public final class JsonRowWriter {
+
+    private static final int LONG = 0;
+    private static final int FLOAT = 1;
+    private static final int DOUBLE = 2;
+    // DECIMAL和无符号BIGINT：直接写出数据库给出的数字文本，不创建BigDecimal
+    private static final int NUMBER_TEXT = 3;
+    private static final int BOOLEAN = 4;
+    private static final int STRING = 5;
+    private static final int BYTES = 6;
+    private static final int OBJECT = 7;
+
+    private final int[] accessors;
+    private final SerializedString[] names;
+    private final ObjectWriter fallback;
+
+    public JsonRowWriter(ResultSetMetaData metaData, ObjectWriter fallback) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        this.accessors = new int[columnCount];
+        this.names = new SerializedString[columnCount];
+        this.fallback = fallback;
+        for (int i = 1; i <= columnCount; i++) {
+            accessors[i - 1] = accessorFor(metaData, i);
+            names[i - 1] = new SerializedString(metaData.getColumnLabel(i));
+        }
+    }
+
+    public int getColumnCount() {
+        return accessors.length;
+    }
+
+    /**
+     * 列名数组 ["a","b",...]
+     */
+    public void writeColumns(JsonGenerator gen) throws IOException {
+        gen.writeStartArray();
+        for (SerializedString name : names) {
+            gen.writeString(name);
+        }
+        gen.writeEndArray();
+    }
+
+    /**
+     * 当前行写成数组 [v1, v2, ...]
+     */
+    public void writeArray(ResultSet rs, JsonGenerator gen) throws SQLException, IOException {
+        gen.writeStartArray();
+        for (int i = 0; i < accessors.length; i++) {
+            writeValue(rs, i, gen);
+        }
+        gen.writeEndArray();
+    }
+
+    /**
+     * 当前行写成以列名为键的对象
+     */
+    public void writeObject(ResultSet rs, JsonGenerator gen) throws SQLException, IOException {
+        gen.writeStartObject();
+        for (int i = 0; i < accessors.length; i++) {
+            gen.writeFieldName(names[i]);
+            writeValue(rs, i, gen);
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeValue(ResultSet rs, int index, JsonGenerator gen) throws SQLException, IOException {
+        int column = index + 1;
+        switch (accessors[index]) {
+            case LONG -> {
+                long value = rs.getLong(column);
+                if (rs.wasNull()) {
+                    gen.writeNull();
+                } else {
+                    gen.writeNumber(value);
+                }
+            }
+            case FLOAT -> {
+                float value = rs.getFloat(column);
+                if (rs.wasNull()) {
+                    gen.writeNull();
+                } else {
+                    gen.writeNumber(value);
+                }
+            }
+            case DOUBLE -> {
+                double value = rs.getDouble(column);
+                if (rs.wasNull()) {
+                    gen.writeNull();
+                } else {
+                    gen.writeNumber(value);
+                }
+            }
+            case BOOLEAN -> {
+                boolean value = rs.getBoolean(column);
+                if (rs.wasNull()) {
+                    gen.writeNull();
+                } else {
+                    gen.writeBoolean(value);
+                }
+            }
+            case NUMBER_TEXT -> {
+                String value = rs.getString(column);
+                if (value == null) {
+                    gen.writeNull();
+                } else {
+                    gen.writeNumber(value);
+                }
+            }
+            case STRING -> {
+                String value = rs.getString(column);
+                if (value == null) {
+                    gen.writeNull();
+                } else {
+                    gen.writeString(value);
+                }
+            }
+            case BYTES -> {
+                byte[] value = rs.getBytes(column);
+                if (value == null) {
+                    gen.writeNull();
+                } else {
+                    gen.writeBinary(value);
+                }
+            }
+            default -> fallback.writeValue(gen, rs.getObject(column));
+        }
+    }
+
+    /**
+     * 按JDBC类型选择取值方式，与驱动getObject返回的Java类型保持一致
+     */
+    private static int accessorFor(ResultSetMetaData metaData, int column) throws SQLException {
+        switch (metaData.getColumnType(column)) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return LONG;
+            case Types.BIGINT:
+                // 无符号BIGINT可能超出long的范围
+                return metaData.isSigned(column) ? LONG : NUMBER_TEXT;
+            case Types.REAL:
+                return FLOAT;
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return DOUBLE;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return NUMBER_TEXT;
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            case Types.BIT:
+                // BIT(1)和TINYINT(1)按布尔值返回，更宽的BIT是字节数组
+                return metaData.getPrecision(column) <= 1 ? BOOLEAN : OBJECT;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+                return STRING;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+            case Types.BLOB:
+                return BYTES;
+            default:
+                return OBJECT;
+        }
+    }
+}
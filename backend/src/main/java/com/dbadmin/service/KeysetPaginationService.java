@@ -0,0 +1,272 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.QueryResult;
+import com.dbadmin.util.SqlIdentifiers;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * 基于主键/唯一索引的游标分页（keyset / seek）。
+ * 下一页用 WHERE (key) > (last) ORDER BY key LIMIT n 读取，不再使用OFFSET，深页和第一页耗时相同。
+ */
+@Service
+public class KeysetPaginationService {
+
+    @Autowired
+    private ConnectionManagerService connectionManager;
+
+    @Autowired
+    private QueryRegistry queries;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 游标内容：所属表、排序键列以及上一页最后一行的键值
+     */
+    record Cursor(String database, String table, List<String> keys, List<KeyValue> values) {}
+
+    /**
+     * 带类型的键值，按原类型绑定回参数：二进制用Base64，DECIMAL和大整数用字符串保存，避免经JSON转成double丢失精度
+     */
+    record KeyValue(String type, String value) {}
+
+    public QueryResult browseTable(String sessionId, String database, String table, int pageSize, String cursor) throws SQLException {
+        return browseTable(sessionId, database, table, pageSize, cursor, null);
+    }
+
+    /**
+     * 页查询以queryId登记（为空时生成），可以通过取消接口中断
+     */
+    public QueryResult browseTable(String sessionId, String database, String table, int pageSize, String cursor,
+                                   String queryId) throws SQLException {
+        if (table == null || table.trim().isEmpty()) {
+            throw new SQLException("Table name is required");
+        }
+        if (pageSize <= 0) {
+            throw new SQLException("pageSize must be positive");
+        }
+        String db = (database == null || database.trim().isEmpty())
+                ? connectionManager.getSessionDatabase(sessionId) : database;
+        if (db == null || db.trim().isEmpty()) {
+            throw new SQLException("No database selected");
+        }
+
+        Cursor previous = cursor != null && !cursor.isEmpty() ? decode(cursor) : null;
+        if (previous != null && (!previous.database().equals(db) || !previous.table().equals(table))) {
+            throw new SQLException("Cursor does not belong to table " + db + "." + table);
+        }
+
+        RunningQuery query = queries.start(sessionId, queryId, "(browse) " + db + "." + table);
+        try {
+            return browse(sessionId, db, table, pageSize, previous, query);
+        } catch (SQLException e) {
+            throw QueryRegistry.cancelledOr(query, e);
+        } finally {
+            queries.end(query);
+        }
+    }
+
+    private QueryResult browse(String sessionId, String db, String table, int pageSize, Cursor previous,
+                               RunningQuery query) throws SQLException {
+        return connectionManager.execute(sessionId, true, conn -> {
+            List<String> keyColumns = previous != null ? previous.keys() : findKeyColumns(conn, db, table);
+            if (keyColumns.isEmpty()) {
+                throw new SQLException("Table " + table + " has no primary key or non-null unique index, keyset pagination is unavailable");
+            }
+
+            String sql = buildPageSql(db, table, keyColumns, previous != null);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                // 设置查询超时为30秒
+                stmt.setQueryTimeout(30);
+                int index = 1;
+                if (previous != null) {
+                    for (KeyValue value : previous.values()) {
+                        bind(stmt, index++, value);
+                    }
+                }
+                // 多取一行用于判断是否还有下一页
+                stmt.setInt(index, pageSize + 1);
+                query.attach(stmt);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    int columnCount = metaData.getColumnCount();
+                    List<String> columns = new ArrayList<>(columnCount);
+                    for (int i = 1; i <= columnCount; i++) {
+                        columns.add(metaData.getColumnLabel(i));
+                    }
+
+                    List<Map<String, Object>> data = new ArrayList<>();
+                    boolean hasMore = false;
+                    while (rs.next()) {
+                        if (data.size() == pageSize) {
+                            hasMore = true;
+                            break;
+                        }
+                        Map<String, Object> row = new LinkedHashMap<>();
+                        for (int i = 1; i <= columnCount; i++) {
+                            row.put(columns.get(i - 1), rs.getObject(i));
+                        }
+                        data.add(row);
+                    }
+
+                    QueryResult result = new QueryResult(data, columns, null);
+                    result.setPageSize(pageSize);
+                    result.setKeyColumns(keyColumns);
+                    if (hasMore) {
+                        Map<String, Object> last = data.get(data.size() - 1);
+                        List<KeyValue> lastValues = new ArrayList<>(keyColumns.size());
+                        for (String key : keyColumns) {
+                            lastValues.add(toCursorValue(last.get(key)));
+                        }
+                        result.setNextCursor(encode(new Cursor(db, table, keyColumns, lastValues)));
+                    }
+                    return result;
+                }
+            }
+        });
+    }
+
+    /**
+     * 优先使用主键，没有主键时退而使用所有列均为NOT NULL的唯一索引
+     */
+    private List<String> findKeyColumns(Connection conn, String database, String table) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+
+        Map<Short, String> primaryKey = new TreeMap<>();
+        try (ResultSet rs = metaData.getPrimaryKeys(database, null, table)) {
+            while (rs.next()) {
+                primaryKey.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+            }
+        }
+        if (!primaryKey.isEmpty()) {
+            return new ArrayList<>(primaryKey.values());
+        }
+
+        Set<String> nullableColumns = new HashSet<>();
+        try (ResultSet rs = metaData.getColumns(database, null, table, "%")) {
+            while (rs.next()) {
+                if (rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls) {
+                    nullableColumns.add(rs.getString("COLUMN_NAME"));
+                }
+            }
+        }
+
+        Map<String, Map<Short, String>> uniqueIndexes = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getIndexInfo(database, null, table, true, true)) {
+            while (rs.next()) {
+                String indexName = rs.getString("INDEX_NAME");
+                String columnName = rs.getString("COLUMN_NAME");
+                if (indexName == null || columnName == null) {
+                    continue;
+                }
+                uniqueIndexes.computeIfAbsent(indexName, k -> new TreeMap<>())
+                        .put(rs.getShort("ORDINAL_POSITION"), columnName);
+            }
+        }
+        for (Map<Short, String> index : uniqueIndexes.values()) {
+            if (index.values().stream().noneMatch(nullableColumns::contains)) {
+                return new ArrayList<>(index.values());
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private String buildPageSql(String database, String table, List<String> keyColumns, boolean afterCursor) {
+        String keyList = String.join(", ", keyColumns.stream().map(SqlIdentifiers::quote).toList());
+        StringBuilder sql = new StringBuilder("SELECT * FROM ")
+                .append(SqlIdentifiers.qualify(database, table));
+        if (afterCursor) {
+            // 行构造器比较，MySQL可以直接在索引上做范围扫描
+            sql.append(" WHERE (").append(keyList).append(") > (")
+                    .append(String.join(", ", Collections.nCopies(keyColumns.size(), "?")))
+                    .append(')');
+        }
+        sql.append(" ORDER BY ").append(keyList).append(" LIMIT ?");
+        return sql.toString();
+    }
+
+    static KeyValue toCursorValue(Object value) {
+        if (value == null) {
+            return new KeyValue("null", null);
+        }
+        if (value instanceof byte[] bytes) {
+            return new KeyValue("bytes", Base64.getEncoder().encodeToString(bytes));
+        }
+        if (value instanceof BigDecimal decimal) {
+            return new KeyValue("decimal", decimal.toPlainString());
+        }
+        if (value instanceof BigInteger || value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            return new KeyValue("integer", value.toString());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return new KeyValue("double", value.toString());
+        }
+        if (value instanceof Boolean) {
+            return new KeyValue("boolean", value.toString());
+        }
+        // 字符串、日期时间等以字符串形式比较，MySQL会按列类型隐式转换
+        return new KeyValue("string", value.toString());
+    }
+
+    static void bind(PreparedStatement stmt, int index, KeyValue value) throws SQLException {
+        try {
+            switch (value.type()) {
+                case "null" -> stmt.setNull(index, Types.NULL);
+                case "bytes" -> stmt.setBytes(index, Base64.getDecoder().decode(value.value()));
+                case "decimal" -> stmt.setBigDecimal(index, new BigDecimal(value.value()));
+                case "integer" -> {
+                    BigInteger integer = new BigInteger(value.value());
+                    if (integer.bitLength() < 64) {
+                        stmt.setLong(index, integer.longValue());
+                    } else {
+                        // BIGINT UNSIGNED超出long范围
+                        stmt.setBigDecimal(index, new BigDecimal(integer));
+                    }
+                }
+                case "double" -> stmt.setDouble(index, Double.parseDouble(value.value()));
+                case "boolean" -> stmt.setBoolean(index, Boolean.parseBoolean(value.value()));
+                case "string" -> stmt.setString(index, value.value());
+                default -> throw new SQLException("Invalid cursor");
+            }
+        } catch (IllegalArgumentException | NullPointerException e) {
+            // 被篡改或截断的游标
+            throw new SQLException("Invalid cursor");
+        }
+    }
+
+    String encode(Cursor cursor) throws SQLException {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(cursor);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (IOException e) {
+            throw new SQLException("Failed to encode cursor: " + e.getMessage());
+        }
+    }
+
+    Cursor decode(String cursor) throws SQLException {
+        Cursor decoded;
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(cursor.getBytes(StandardCharsets.US_ASCII));
+            decoded = objectMapper.readValue(json, Cursor.class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new SQLException("Invalid cursor");
+        }
+        // 缺少字段或键值个数与键列不一致的游标无法生成正确的WHERE条件
+        if (decoded == null || decoded.database() == null || decoded.table() == null || decoded.keys() == null
+                || decoded.keys().isEmpty() || decoded.values() == null
+                || decoded.keys().size() != decoded.values().size() || decoded.values().contains(null)) {
+            throw new SQLException("Invalid cursor");
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,297 @@
+package com.dbadmin.service;
+
+import com.dbadmin.util.SqlLexer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 数据库对象元数据（库、表、视图、存储过程/函数列表、表结构和整库快照）的缓存，
+ * 同一服务器、同一用户的所有会话共享。每类对象有各自的TTL；同一对象同时被多个请求加载时只查询一次，
+ * 其余请求等待同一结果。经由本服务执行的DDL会立即使相关条目失效，其他客户端的修改只能依赖TTL。
+ */
+@Service
+public class MetadataCacheService {
+
+    public enum Kind {
+        DATABASES, TABLES, VIEWS, PROCEDURES, FUNCTIONS, TABLE_SCHEMA,
+        // 整库结构快照，任何DDL都使其失效
+        SNAPSHOT
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    private static final class Entry {
+        final String server;
+        final Kind kind;
+        final String database;
+        final String table;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final long createdAt = System.currentTimeMillis();
+        // 加载完成前不过期
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        Entry(String server, Kind kind, String database, String table) {
+            this.server = server;
+            this.kind = kind;
+            this.database = database;
+            this.table = table;
+        }
+    }
+
+    @Autowired
+    private SessionRegistry sessions;
+
+    @Value("${dbadmin.metadata-cache.databases-ttl-ms:300000}")
+    private long databasesTtlMs;
+
+    @Value("${dbadmin.metadata-cache.objects-ttl-ms:300000}")
+    private long objectsTtlMs;
+
+    @Value("${dbadmin.metadata-cache.table-schema-ttl-ms:600000}")
+    private long tableSchemaTtlMs;
+
+    @Value("${dbadmin.metadata-cache.max-entries:20000}")
+    private int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 返回缓存的元数据；未命中或已过期时由当前线程调用loader加载，同时到达的请求等待这次加载的结果。
+     * 返回值在会话之间共享，调用方不能修改
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(DbSession session, Kind kind, String database, String table, Loader<T> loader)
+            throws SQLException {
+        String server = serverKey(session);
+        String key = key(server, kind, database, table);
+
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            Entry created = new Entry(server, kind, database, table);
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                return load(key, created, loader);
+            }
+        }
+
+        if (entry.future.isDone()) {
+            hits.increment();
+        } else {
+            coalesced.increment();
+        }
+        try {
+            return (T) entry.future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw new SQLException(sqlException.getMessage(), sqlException.getSQLState(),
+                        sqlException.getErrorCode(), sqlException);
+            }
+            throw new SQLException("Failed to load metadata: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for metadata");
+        }
+    }
+
+    private <T> T load(String key, Entry entry, Loader<T> loader) throws SQLException {
+        misses.increment();
+        try {
+            T value = loader.load();
+            entry.expiresAt = System.currentTimeMillis() + ttl(entry.kind);
+            entry.future.complete(value);
+            evictOverflow();
+            return value;
+        } catch (SQLException | RuntimeException e) {
+            // 失败不缓存，等待中的请求收到同一个错误
+            entries.remove(key, entry);
+            entry.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 返回已加载完成且未过期的缓存值，没有时返回null，不触发加载，也不计入命中统计
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T peek(DbSession session, Kind kind, String database, String table) {
+        Entry entry = entries.get(key(serverKey(session), kind, database, table));
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis() || !entry.future.isDone()
+                || entry.future.isCompletedExceptionally()) {
+            return null;
+        }
+        return (T) entry.future.getNow(null);
+    }
+
+    /**
+     * 用已经算好的值替换缓存条目（增量刷新后写回），重新计算TTL
+     */
+    public void put(DbSession session, Kind kind, String database, String table, Object value) {
+        String server = serverKey(session);
+        Entry entry = new Entry(server, kind, database, table);
+        entry.future.complete(value);
+        entry.expiresAt = System.currentTimeMillis() + ttl(kind);
+        entries.put(key(server, kind, database, table), entry);
+        evictOverflow();
+    }
+
+    /**
+     * 结构轮询发现database中的变化后调用：表有增删时使表/视图列表失效，
+     * changed中各表的结构失效，routinesChanged时使存储过程/函数列表失效。整库快照由调用方增量更新
+     */
+    public void invalidate(DbSession session, String database, boolean tableListChanged, Set<String> changed,
+                           boolean routinesChanged) {
+        String server = serverKey(session);
+        // 表结构条目的表名来自请求，大小写不一定与INFORMATION_SCHEMA一致
+        Set<String> tables = new HashSet<>();
+        for (String table : changed) {
+            tables.add(table.toLowerCase(Locale.ROOT));
+        }
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (!entry.server.equals(server) || !Objects.equals(entry.database, database)) {
+                continue;
+            }
+            boolean stale = switch (entry.kind) {
+                case TABLES, VIEWS -> tableListChanged;
+                case PROCEDURES, FUNCTIONS -> routinesChanged;
+                case TABLE_SCHEMA -> tables.contains(entry.table.toLowerCase(Locale.ROOT));
+                default -> false;
+            };
+            if (stale) {
+                it.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * 会话执行了DDL：使该服务器上的对象列表以及被修改的表的结构失效。
+     * 加载中的条目同样移除，加载完成后的结果只交给已在等待的请求
+     */
+    public void invalidate(String sessionId, String sql) {
+        SqlLexer.Statement statement = SqlLexer.analyze(sql);
+        if (statement.type() != SqlLexer.Type.DDL) {
+            return;
+        }
+        DbSession session = sessions.peek(sessionId);
+        if (session != null) {
+            invalidate(serverKey(session), statement.modifiedTables());
+        }
+    }
+
+    /**
+     * 使会话所在服务器的全部元数据失效（前端手动刷新时调用）
+     */
+    public void invalidateAll(String sessionId) throws SQLException {
+        DbSession session = sessions.peek(sessionId);
+        if (session == null) {
+            throw new SQLException("Connection not found or closed");
+        }
+        invalidate(serverKey(session), Set.of());
+    }
+
+    /**
+     * tables为空表示无法确定修改了哪些表，所有表结构一并失效
+     */
+    private void invalidate(String server, Set<String> tables) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (!entry.server.equals(server)) {
+                continue;
+            }
+            if (entry.kind != Kind.TABLE_SCHEMA || tables.isEmpty()
+                    || tables.contains(entry.table.toLowerCase(Locale.ROOT))) {
+                it.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum() + coalesced.sum();
+        long total = hitCount + misses.sum();
+        Map<String, Integer> byKind = new LinkedHashMap<>();
+        for (Kind kind : Kind.values()) {
+            byKind.put(kind.name().toLowerCase(), 0);
+        }
+        for (Entry entry : entries.values()) {
+            byKind.merge(entry.kind.name().toLowerCase(), 1, Integer::sum);
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("entriesByKind", byKind);
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.sum());
+        stats.put("coalescedLoads", coalesced.sum());
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", total == 0 ? 0 : (double) hitCount / total);
+        stats.put("invalidations", invalidations.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private long ttl(Kind kind) {
+        return switch (kind) {
+            case DATABASES -> databasesTtlMs;
+            case TABLE_SCHEMA -> tableSchemaTtlMs;
+            default -> objectsTtlMs;
+        };
+    }
+
+    /**
+     * 超过条目上限时先清理过期条目，仍然超出则淘汰最早加载的条目
+     */
+    private void evictOverflow() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        while (entries.size() > maxEntries) {
+            Optional<Map.Entry<String, Entry>> oldest = entries.entrySet().stream()
+                    .filter(e -> e.getValue().future.isDone())
+                    .min(Comparator.comparingLong(e -> e.getValue().createdAt));
+            if (oldest.isEmpty() || !entries.remove(oldest.get().getKey(), oldest.get().getValue())) {
+                break;
+            }
+            evictions.increment();
+        }
+    }
+
+    private static String key(String server, Kind kind, String database, String table) {
+        return server + "|" + kind + "|" + (database == null ? "" : database) + "|" + (table == null ? "" : table);
+    }
+
+    /**
+     * 同一服务器的同一用户看到的元数据相同，与会话的初始数据库和密码无关
+     */
+    static String serverKey(DbSession session) {
+        ConnectionPool.PoolKey key = session.getPoolKey();
+        return key.username() + "@" + key.host() + ":" + key.port();
+    }
+}
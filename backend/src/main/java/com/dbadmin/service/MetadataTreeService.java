@@ -0,0 +1,203 @@
+package com.dbadmin.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 对象树：一次请求返回一个库的表、视图、存储过程和函数，四类对象在各自的元数据连接上并行查询。
+ * 每类只取一页（按名称排序，可按前缀过滤），表附带INFORMATION_SCHEMA.TABLES中的估算行数和数据/索引大小；
+ * 展开上万张表的库时只读取第一页，滚动时按类别取后续页。
+ */
+@Service
+public class MetadataTreeService {
+
+    public static final List<String> KINDS = List.of("tables", "views", "procedures", "functions");
+
+    // LIKE使用!作为转义符，不受NO_BACKSLASH_ESCAPES影响
+    private static final String TABLES_SQL =
+            "SELECT TABLE_NAME, ENGINE, TABLE_ROWS, DATA_LENGTH, INDEX_LENGTH, TABLE_COMMENT "
+                    + "FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_TYPE = 'BASE TABLE' "
+                    + "AND TABLE_NAME LIKE ? ESCAPE '!' ORDER BY TABLE_NAME LIMIT ? OFFSET ?";
+
+    private static final String VIEWS_SQL =
+            "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_TYPE = 'VIEW' "
+                    + "AND TABLE_NAME LIKE ? ESCAPE '!' ORDER BY TABLE_NAME LIMIT ? OFFSET ?";
+
+    private static final String ROUTINES_SQL =
+            "SELECT ROUTINE_NAME FROM INFORMATION_SCHEMA.ROUTINES WHERE ROUTINE_SCHEMA = ? AND ROUTINE_TYPE = ? "
+                    + "AND ROUTINE_NAME LIKE ? ESCAPE '!' ORDER BY ROUTINE_NAME LIMIT ? OFFSET ?";
+
+    @Autowired
+    private SessionRegistry sessions;
+
+    @Autowired
+    private ConnectionPoolManager poolManager;
+
+    @Value("${dbadmin.metadata-tree.threads:8}")
+    private int threads;
+
+    @Value("${dbadmin.metadata-tree.default-page-size:200}")
+    private int defaultPageSize;
+
+    @Value("${dbadmin.metadata-tree.max-page-size:2000}")
+    private int maxPageSize;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        // 线程用满时由请求线程自己执行，不排队等待
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "metadata-tree");
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 返回database（为空时取会话当前数据库）中kinds各类对象名称以prefix开头的第offset起limit个，
+     * 每类附带hasMore和nextOffset
+     */
+    public Map<String, Object> tree(String sessionId, String database, Collection<String> kinds, String prefix,
+                                    int offset, Integer limit) throws SQLException {
+        long start = System.currentTimeMillis();
+        DbSession session = sessions.get(sessionId);
+        if (session == null) {
+            throw new SQLException("Connection not found or closed");
+        }
+        String schema = database == null || database.trim().isEmpty() ? session.getDatabase() : database;
+        if (schema == null || schema.isEmpty()) {
+            throw new SQLException("No database selected");
+        }
+        List<String> requested = kinds == null || kinds.isEmpty() ? KINDS : new ArrayList<>(kinds);
+        for (String kind : requested) {
+            if (!KINDS.contains(kind)) {
+                throw new SQLException("Unknown object kind: " + kind + " (expected one of " + KINDS + ")");
+            }
+        }
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        int from = Math.max(0, offset);
+        String pattern = likePrefix(prefix);
+
+        // 第一类在请求线程中查询，其余提交到线程池并行执行
+        List<Future<Map<String, Object>>> futures = new ArrayList<>(requested.size());
+        for (int i = 1; i < requested.size(); i++) {
+            String kind = requested.get(i);
+            futures.add(executor.submit(() -> page(session, kind, schema, pattern, from, pageSize)));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("database", schema);
+        result.put("prefix", prefix);
+        result.put("offset", from);
+        result.put("limit", pageSize);
+        result.put(requested.get(0), page(session, requested.get(0), schema, pattern, from, pageSize));
+        for (int i = 1; i < requested.size(); i++) {
+            result.put(requested.get(i), await(futures.get(i - 1)));
+        }
+        result.put("elapsedMs", System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * 多取一行判断是否还有下一页
+     */
+    private Map<String, Object> page(DbSession session, String kind, String schema, String pattern, int offset,
+                                     int limit) throws SQLException {
+        List<Object> items = new ArrayList<>();
+        try (ConnectionPool.Lease lease = poolManager.leaseForMetadata(session)) {
+            PreparedStatement stmt;
+            int index = 1;
+            switch (kind) {
+                case "tables" -> stmt = lease.prepare(TABLES_SQL);
+                case "views" -> stmt = lease.prepare(VIEWS_SQL);
+                default -> {
+                    stmt = lease.prepare(ROUTINES_SQL);
+                    stmt.setString(2, "procedures".equals(kind) ? "PROCEDURE" : "FUNCTION");
+                    index = 2;
+                }
+            }
+            stmt.setString(1, schema);
+            stmt.setString(index + 1, pattern);
+            stmt.setInt(index + 2, limit + 1);
+            stmt.setInt(index + 3, offset);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next() && items.size() <= limit) {
+                    items.add("tables".equals(kind) ? tableNode(rs) : rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Failed to get " + kind + ": " + e.getMessage(), e);
+        }
+
+        boolean hasMore = items.size() > limit;
+        if (hasMore) {
+            items.remove(limit);
+        }
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("items", items);
+        page.put("hasMore", hasMore);
+        page.put("nextOffset", hasMore ? offset + limit : null);
+        return page;
+    }
+
+    private static Map<String, Object> tableNode(ResultSet rs) throws SQLException {
+        Map<String, Object> table = new LinkedHashMap<>();
+        table.put("name", rs.getString(1));
+        table.put("engine", rs.getString(2));
+        table.put("estimatedRows", nullableLong(rs, 3));
+        table.put("dataBytes", nullableLong(rs, 4));
+        table.put("indexBytes", nullableLong(rs, 5));
+        table.put("comment", rs.getString(6));
+        return table;
+    }
+
+    private static Long nullableLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static String likePrefix(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return "%";
+        }
+        StringBuilder sb = new StringBuilder(prefix.length() + 2);
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (c == '%' || c == '_' || c == '!') {
+                sb.append('!');
+            }
+            sb.append(c);
+        }
+        return sb.append('%').toString();
+    }
+
+    private static Map<String, Object> await(Future<Map<String, Object>> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new SQLException("Failed to load metadata tree: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading metadata tree");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
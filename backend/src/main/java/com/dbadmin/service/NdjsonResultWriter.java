@@ -0,0 +1,105 @@
+package com.dbadmin.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把结果集按NDJSON逐行写出：
+ * 第一行 {"columns":[...]}，之后每行一个JSON数组（objectRows时为以列名为键的对象），
+ * 最后一行 {"rowCount":n,"elapsedMs":t}
+ */
+public class NdjsonResultWriter implements ResultSetHandler {
+
+    // 第一行立即刷出，之后按批刷出，兼顾首行延迟和吞吐
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private final OutputStream out;
+    private final ObjectMapper objectMapper;
+    // 单元格值的序列化不能每次都flush
+    private final ObjectWriter valueWriter;
+    private final boolean objectRows;
+    private final long startTime = System.currentTimeMillis();
+    private AtomicLong rowCounter = new AtomicLong();
+
+    public NdjsonResultWriter(OutputStream out, ObjectMapper objectMapper) {
+        this(out, objectMapper, false);
+    }
+
+    public NdjsonResultWriter(OutputStream out, ObjectMapper objectMapper, boolean objectRows) {
+        this.out = out;
+        this.objectMapper = objectMapper;
+        this.valueWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.objectRows = objectRows;
+    }
+
+    @Override
+    public void setRowCounter(AtomicLong rowCounter) {
+        this.rowCounter = rowCounter;
+    }
+
+    @Override
+    public void handle(ResultSet rs) throws SQLException, IOException {
+        // 列类型只解析一次，之后每个单元格按类型直接写出
+        JsonRowWriter rowWriter = new JsonRowWriter(rs.getMetaData(), valueWriter);
+
+        JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+        // 每行之间用换行分隔，不使用默认的空格
+        gen.setRootValueSeparator(null);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        gen.writeStartObject();
+        gen.writeFieldName("columns");
+        rowWriter.writeColumns(gen);
+        gen.writeEndObject();
+        newLine(gen);
+        gen.flush();
+
+        long rowCount = 0;
+        while (rs.next()) {
+            if (objectRows) {
+                rowWriter.writeObject(rs, gen);
+            } else {
+                rowWriter.writeArray(rs, gen);
+            }
+            newLine(gen);
+
+            rowCount++;
+            rowCounter.lazySet(rowCount);
+            if (rowCount == 1 || rowCount % FLUSH_EVERY_ROWS == 0) {
+                gen.flush();
+            }
+        }
+
+        gen.writeStartObject();
+        gen.writeNumberField("rowCount", rowCount);
+        gen.writeNumberField("elapsedMs", System.currentTimeMillis() - startTime);
+        gen.writeEndObject();
+        newLine(gen);
+        gen.close();
+    }
+
+    /**
+     * 在已开始输出后发生错误时，用一行 {"error":"..."} 告知客户端
+     */
+    public void writeError(String message) throws IOException {
+        JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.writeStartObject();
+        gen.writeStringField("error", message);
+        gen.writeEndObject();
+        newLine(gen);
+        gen.close();
+    }
+
+    private void newLine(JsonGenerator gen) throws IOException {
+        gen.writeRaw('\n');
+    }
+}
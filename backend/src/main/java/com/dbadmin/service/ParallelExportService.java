@@ -0,0 +1,462 @@
+package com.dbadmin.service;
+
+import com.dbadmin.service.export.ExportFormat;
+import com.dbadmin.service.export.ExportWriter;
+import com.dbadmin.util.SqlIdentifiers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 按主键范围并行导出整张表：N个池化连接在同一个一致性快照中各自读取一部分主键区间。
+ * ordered模式把各区间按主键顺序拼接为一个文件，sharded模式每个连接写出自己的分片文件。
+ */
+@Service
+public class ParallelExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelExportService.class);
+
+    private static final Set<String> INTEGER_TYPES = Set.of("tinyint", "smallint", "mediumint", "int", "integer", "bigint");
+
+    @Autowired
+    private ConnectionManagerService connectionManager;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Value("${dbadmin.export.max-parallelism:8}")
+    private int maxParallelism;
+
+    @Value("${dbadmin.export.chunks-per-worker:4}")
+    private int chunksPerWorker;
+
+    /**
+     * 主键区间，from/to为null表示该侧不设边界
+     */
+    private record Chunk(int index, BigInteger from, BigInteger to) {}
+
+    public Map<String, Object> exportTable(String sessionId, String database, String table, ExportFormat format,
+                                           int parallelism, boolean sharded, boolean gzip, String fileName)
+            throws SQLException, IOException {
+        if (table == null || table.isEmpty()) {
+            throw new SQLException("Table name is required");
+        }
+        if (!sharded && !format.createWriter(OutputStream.nullOutputStream(), table).supportsFragments()) {
+            throw new SQLException("Format " + format + " cannot be exported in ordered parallel mode, use sharded output");
+        }
+        if (database == null || database.isEmpty()) {
+            database = connectionManager.getSessionDatabase(sessionId);
+        }
+        long start = System.currentTimeMillis();
+        String qualifiedTable = SqlIdentifiers.qualify(database, table);
+
+        List<ConnectionPool.Lease> workerLeases = new ArrayList<>();
+        boolean consistent;
+        String keyColumn;
+        try {
+            // 单独的协调连接负责查主键和加读锁，不占用会话自己的连接（可能处于事务中）。
+            // 只有协调连接等待连接池；工作连接不等待，拿不到就减少并行度，避免多个导出各持有一部分连接互相等待
+            ConnectionPool.Lease coordinator = connectionManager.leaseDedicated(sessionId);
+            boolean coordinatorIsWorker = false;
+            try {
+                keyColumn = findIntegerKey(coordinator.getConnection(), database, table);
+                int workers = keyColumn == null ? 1 : Math.max(1, Math.min(parallelism, maxParallelism));
+                for (int i = 0; i < workers; i++) {
+                    ConnectionPool.Lease lease = connectionManager.tryLeaseDedicated(sessionId);
+                    if (lease == null) {
+                        break;
+                    }
+                    workerLeases.add(lease);
+                }
+                if (workerLeases.isEmpty()) {
+                    // 连接池已满：协调连接自己作为唯一的工作连接，单个快照本身就是一致的
+                    coordinatorIsWorker = true;
+                    workerLeases.add(coordinator);
+                    startSnapshot(coordinator);
+                    consistent = true;
+                } else {
+                    consistent = startSnapshots(coordinator.getConnection(), qualifiedTable, workerLeases);
+                }
+            } finally {
+                if (!coordinatorIsWorker) {
+                    coordinator.close();
+                }
+            }
+
+            List<Chunk> chunks = planChunks(workerLeases.get(0).getConnection(), qualifiedTable, keyColumn,
+                    workerLeases.size());
+            Path dir = exportService.exportDirectory();
+            String name = exportService.fileNameFor(fileName, table, format, gzip);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            List<String> files;
+            AtomicLong rows = new AtomicLong();
+            if (sharded) {
+                files = exportSharded(workerLeases, qualifiedTable, keyColumn, table, chunks, format, gzip, dir, name, rows);
+            } else {
+                files = List.of(exportOrdered(workerLeases, qualifiedTable, keyColumn, table, chunks, format, gzip,
+                        dir, name, rows));
+            }
+
+            long bytes = 0;
+            for (String file : files) {
+                bytes += Files.size(dir.resolve(file));
+            }
+            result.put("files", files);
+            result.put("rows", rows.get());
+            result.put("bytes", bytes);
+            result.put("parallelism", workerLeases.size());
+            result.put("chunks", chunks.size());
+            result.put("keyColumn", keyColumn);
+            result.put("snapshot", consistent ? "consistent" : "best-effort");
+            result.put("elapsedMs", System.currentTimeMillis() - start);
+            return result;
+        } finally {
+            for (ConnectionPool.Lease lease : workerLeases) {
+                endSnapshot(lease);
+                lease.close();
+            }
+        }
+    }
+
+    /**
+     * 单列整数主键才能按范围切分，否则返回null（退化为单连接导出）
+     */
+    private String findIntegerKey(Connection conn, String database, String table) throws SQLException {
+        String sql = "SELECT COLUMN_NAME, DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? AND COLUMN_KEY = 'PRI'";
+        List<String[]> keys = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, database);
+            ps.setString(2, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(new String[]{rs.getString(1), rs.getString(2)});
+                }
+            }
+        }
+        if (keys.size() != 1 || !INTEGER_TYPES.contains(keys.get(0)[1].toLowerCase())) {
+            return null;
+        }
+        return keys.get(0)[0];
+    }
+
+    /**
+     * 在所有工作连接上开启一致性快照。协调连接持有表读锁期间开启快照，保证各连接看到同一时刻的数据；
+     * 没有LOCK TABLES权限时逐个开启，返回false表示快照之间可能相差极短的时间。
+     */
+    private boolean startSnapshots(Connection coordinator, String qualifiedTable, List<ConnectionPool.Lease> leases)
+            throws SQLException {
+        boolean locked = false;
+        try (Statement stmt = coordinator.createStatement()) {
+            try {
+                stmt.execute("LOCK TABLES " + qualifiedTable + " READ");
+                locked = true;
+            } catch (SQLException e) {
+                log.debug("无法锁表，使用非同步快照: {}", e.getMessage());
+            }
+            try {
+                for (ConnectionPool.Lease lease : leases) {
+                    startSnapshot(lease);
+                }
+            } finally {
+                if (locked) {
+                    stmt.execute("UNLOCK TABLES");
+                }
+            }
+        }
+        return locked;
+    }
+
+    private void startSnapshot(ConnectionPool.Lease lease) throws SQLException {
+        try (Statement workerStmt = lease.getConnection().createStatement()) {
+            workerStmt.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+            workerStmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+        }
+    }
+
+    private void endSnapshot(ConnectionPool.Lease lease) {
+        try (Statement stmt = lease.getConnection().createStatement()) {
+            stmt.execute("COMMIT");
+        } catch (SQLException e) {
+            lease.invalidate();
+        }
+    }
+
+    /**
+     * 在快照内读取主键最小/最大值并切分为等宽区间，区间数多于连接数以平衡数据分布不均
+     */
+    private List<Chunk> planChunks(Connection conn, String qualifiedTable, String keyColumn, int workers)
+            throws SQLException {
+        if (keyColumn == null) {
+            return List.of(new Chunk(0, null, null));
+        }
+        String key = SqlIdentifiers.quote(keyColumn);
+        BigInteger min;
+        BigInteger max;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(" + key + "), MAX(" + key + ") FROM " + qualifiedTable)) {
+            rs.next();
+            BigDecimal minValue = rs.getBigDecimal(1);
+            BigDecimal maxValue = rs.getBigDecimal(2);
+            if (minValue == null || maxValue == null) {
+                return List.of(new Chunk(0, null, null));
+            }
+            min = minValue.toBigInteger();
+            max = maxValue.toBigInteger();
+        }
+
+        BigInteger span = max.subtract(min).add(BigInteger.ONE);
+        int count = span.min(BigInteger.valueOf((long) workers * Math.max(1, chunksPerWorker))).intValue();
+        BigInteger step = span.add(BigInteger.valueOf(count - 1)).divide(BigInteger.valueOf(count));
+
+        List<Chunk> chunks = new ArrayList<>(count);
+        BigInteger from = min;
+        for (int i = 0; i < count && from.compareTo(max) <= 0; i++) {
+            BigInteger to = from.add(step);
+            // 第一段和最后一段不设外侧边界
+            chunks.add(new Chunk(chunks.size(), i == 0 ? null : from, to.compareTo(max) > 0 ? null : to));
+            from = to;
+        }
+        return chunks;
+    }
+
+    /**
+     * 各连接把区间写成不含文件头的片段，最后按区间顺序拼接到文件头之后。
+     * gzip时每个片段单独压缩（多成员gzip流），压缩也并行完成。
+     */
+    private String exportOrdered(List<ConnectionPool.Lease> leases, String qualifiedTable, String keyColumn,
+                                 String table, List<Chunk> chunks, ExportFormat format, boolean gzip,
+                                 Path dir, String name, AtomicLong rows) throws SQLException, IOException {
+        Path partsDir = Files.createTempDirectory(dir, ".parallel-");
+        try {
+            Path header = partsDir.resolve("header");
+            try (OutputStream out = openPart(header, gzip);
+                 Statement stmt = leases.get(0).getConnection().createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT * FROM " + qualifiedTable + " LIMIT 0")) {
+                ExportWriter writer = format.createWriter(out, table);
+                writer.begin(rs.getMetaData());
+                writer.end();
+            }
+
+            runWorkers(leases.size(), chunks, (worker, chunk) -> {
+                try (OutputStream out = openPart(partsDir.resolve("part-" + chunk.index()), gzip)) {
+                    ExportWriter writer = format.createWriter(out, table);
+                    streamChunk(leases.get(worker), qualifiedTable, keyColumn, chunk, rs -> {
+                        writer.beginFragment(rs.getMetaData());
+                        writer.writeRows(rs);
+                        writer.endFragment();
+                    });
+                    rows.addAndGet(writer.getRowCount());
+                }
+            });
+
+            Path temp = Files.createTempFile(dir, ".export-", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                Files.copy(header, out);
+                for (Chunk chunk : chunks) {
+                    Files.copy(partsDir.resolve("part-" + chunk.index()), out);
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            Files.move(temp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+            return name;
+        } finally {
+            try (var files = Files.list(partsDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(partsDir);
+        }
+    }
+
+    /**
+     * 每个连接写出一个完整的分片文件，包含它处理的所有区间
+     */
+    private List<String> exportSharded(List<ConnectionPool.Lease> leases, String qualifiedTable, String keyColumn,
+                                       String table, List<Chunk> chunks, ExportFormat format, boolean gzip,
+                                       Path dir, String name, AtomicLong rows) throws SQLException, IOException {
+        String suffix = "." + format.getExtension() + (gzip ? ".gz" : "");
+        String stem = name.endsWith(suffix) ? name.substring(0, name.length() - suffix.length()) : name;
+
+        // 每个工作线程只访问自己下标的元素，线程结束后由当前线程收尾
+        int workers = leases.size();
+        ExportWriter[] writers = new ExportWriter[workers];
+        OutputStream[] outputs = new OutputStream[workers];
+        Path[] temps = new Path[workers];
+        try {
+            runWorkers(workers, chunks, (worker, chunk) -> {
+                if (outputs[worker] == null) {
+                    temps[worker] = Files.createTempFile(dir, ".export-", ".tmp");
+                    outputs[worker] = openPart(temps[worker], gzip);
+                }
+                streamChunk(leases.get(worker), qualifiedTable, keyColumn, chunk, rs -> {
+                    if (writers[worker] == null) {
+                        writers[worker] = format.createWriter(outputs[worker], table);
+                        writers[worker].begin(rs.getMetaData());
+                    }
+                    rows.addAndGet(writers[worker].writeRows(rs));
+                });
+            });
+
+            List<String> files = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                if (writers[i] == null) {
+                    continue;
+                }
+                writers[i].end();
+                outputs[i].close();
+                outputs[i] = null;
+                String shardName = String.format("%s-part%03d%s", stem, files.size() + 1, suffix);
+                Files.move(temps[i], dir.resolve(shardName), StandardCopyOption.REPLACE_EXISTING);
+                temps[i] = null;
+                files.add(shardName);
+            }
+            return files;
+        } finally {
+            for (int i = 0; i < workers; i++) {
+                if (outputs[i] != null) {
+                    try {
+                        outputs[i].close();
+                    } catch (IOException e) {
+                        // Ignore
+                    }
+                }
+                if (temps[i] != null) {
+                    Files.deleteIfExists(temps[i]);
+                }
+            }
+        }
+    }
+
+    private interface ChunkTask {
+        void run(int worker, Chunk chunk) throws SQLException, IOException;
+    }
+
+    /**
+     * 每个连接一个线程，从共享的区间列表中依次领取下一个区间，任一线程失败后其余线程不再领取新区间
+     */
+    private void runWorkers(int workers, List<Chunk> chunks, ChunkTask task) throws SQLException, IOException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "parallel-export");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                int worker = i;
+                futures.add(pool.submit(() -> {
+                    int index;
+                    while (failure.get() == null && (index = next.getAndIncrement()) < chunks.size()) {
+                        try {
+                            task.run(worker, chunks.get(index));
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failure.compareAndSet(null, new SQLException(String.valueOf(e.getCause())));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure.compareAndSet(null, e);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Exception error = failure.get();
+        if (error instanceof SQLException) {
+            throw (SQLException) error;
+        }
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error != null) {
+            throw new SQLException("Parallel export failed: " + error.getMessage(), error);
+        }
+    }
+
+    private void streamChunk(ConnectionPool.Lease lease, String qualifiedTable, String keyColumn, Chunk chunk,
+                             ResultSetHandler handler) throws SQLException, IOException {
+        StringBuilder sql = new StringBuilder("SELECT * FROM ").append(qualifiedTable);
+        List<BigInteger> params = new ArrayList<>(2);
+        if (keyColumn != null) {
+            String key = SqlIdentifiers.quote(keyColumn);
+            List<String> conditions = new ArrayList<>(2);
+            if (chunk.from() != null) {
+                conditions.add(key + " >= ?");
+                params.add(chunk.from());
+            }
+            if (chunk.to() != null) {
+                conditions.add(key + " < ?");
+                params.add(chunk.to());
+            }
+            if (!conditions.isEmpty()) {
+                sql.append(" WHERE ").append(String.join(" AND ", conditions));
+            }
+            sql.append(" ORDER BY ").append(key);
+        }
+
+        try (PreparedStatement ps = lease.getConnection().prepareStatement(sql.toString(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setBigDecimal(i + 1, new BigDecimal(params.get(i)));
+            }
+            ResultSet rs = ps.executeQuery();
+            try {
+                handler.handle(rs);
+            } catch (SQLException | IOException | RuntimeException e) {
+                // 关闭未读完的流式结果集会读完剩余的行：先取消查询再关闭，并丢弃该连接
+                try {
+                    ps.cancel();
+                } catch (SQLException ignored) {
+                    // Ignore
+                }
+                lease.invalidate();
+                throw e;
+            } finally {
+                try {
+                    rs.close();
+                } catch (SQLException ignored) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private static OutputStream openPart(Path file, boolean gzip) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+        return gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+    }
+}
@@ -0,0 +1,311 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.QueryResult;
+import com.dbadmin.util.SqlLexer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按会话缓存SELECT结果（需要请求中指定cache=true）。键为规范化的SQL、当前数据库、页码和每页条数；
+ * 总字节数有上限（按LRU淘汰），每条有TTL。同一连接配置执行DML/DDL时，涉及相同表的缓存立即失效；
+ * 事务中的修改在提交时再失效一次，分页总数的缓存（CountService）同时失效。视图、触发器和外部客户端造成的变化只能依赖TTL。
+ */
+@Service
+public class QueryCacheService {
+
+    private static final class Entry {
+        final String sessionId;
+        final ConnectionPool.PoolKey poolKey;
+        final Set<String> tables;
+        final QueryResult result;
+        final long bytes;
+        final long expiresAt;
+
+        Entry(String sessionId, ConnectionPool.PoolKey poolKey, Set<String> tables, QueryResult result,
+              long bytes, long expiresAt) {
+            this.sessionId = sessionId;
+            this.poolKey = poolKey;
+            this.tables = tables;
+            this.result = result;
+            this.bytes = bytes;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    @Autowired
+    private SessionRegistry sessions;
+
+    @Autowired
+    private CountService countService;
+
+    @Value("${dbadmin.query-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    // 单条结果超过该大小不缓存，避免一个大结果挤掉其余缓存
+    @Value("${dbadmin.query-cache.max-entry-bytes:4194304}")
+    private long maxEntryBytes;
+
+    @Value("${dbadmin.query-cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    // 按访问顺序排列，由this保护
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    // 事务中修改过的表，提交时失效；空集合表示无法识别，提交时失效整个连接配置
+    private final Map<String, Set<String>> pendingTables = new ConcurrentHashMap<>();
+
+    // 每个连接配置的失效次数：查询执行期间发生过失效的结果不写入缓存，避免存入修改前的数据
+    private final Map<ConnectionPool.PoolKey, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * 查找缓存的结果，返回的副本带cached标记；未命中或已过期返回null
+     */
+    public QueryResult get(DbSession session, String sql, Integer page, Integer pageSize, boolean columnar) {
+        if (!SqlLexer.analyze(sql).deterministic()) {
+            return null;
+        }
+        String key = key(session, sql, page, pageSize, columnar);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+                remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cachedCopy(entry.result);
+    }
+
+    /**
+     * 执行查询前取得当前的失效代数，保存结果时传回put
+     */
+    public long generation(DbSession session) {
+        return generations.computeIfAbsent(session.getPoolKey(), key -> new AtomicLong()).get();
+    }
+
+    /**
+     * 保存查询结果。被截断的结果、总数仍在后台计算的结果以及超过单条上限的结果不缓存
+     */
+    public void put(DbSession session, String sql, Integer page, Integer pageSize, boolean columnar,
+                    long generation, QueryResult result) {
+        // 结果不确定或有副作用的查询（NOW()、RAND()、用户变量、加锁读取等）不缓存
+        SqlLexer.Statement statement = SqlLexer.analyze(sql);
+        if (result.isTruncated() || CountService.TYPE_PENDING.equals(result.getCountType())
+                || !statement.deterministic()) {
+            return;
+        }
+        long bytes = estimateBytes(result);
+        if (bytes > maxEntryBytes) {
+            return;
+        }
+
+        String key = key(session, sql, page, pageSize, columnar);
+        Entry entry = new Entry(session.getId(), session.getPoolKey(), statement.referencedTables(), result,
+                bytes, System.currentTimeMillis() + ttlMs);
+        synchronized (this) {
+            // 执行期间同一连接配置有过修改，结果可能已经过时
+            if (generation != generation(session)) {
+                return;
+            }
+            remove(key);
+            entries.put(key, entry);
+            totalBytes += bytes;
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                totalBytes -= it.next().getValue().bytes;
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 会话执行了可能修改数据的语句：使同一连接配置下涉及相同表的缓存失效。
+     * 会话在事务中时记下这些表，提交后其他会话才能看到修改，届时再失效一次
+     */
+    public void invalidate(String sessionId, String sql) {
+        // 只改变会话状态的语句（SET、USE、事务控制等）不修改数据
+        SqlLexer.Statement statement = SqlLexer.analyze(sql);
+        if (statement.isSessionStatement() || statement.readOnly()) {
+            return;
+        }
+        invalidateTables(sessionId, statement.modifiedTables());
+    }
+
+    /**
+     * tables为空表示无法确定修改了哪些表，失效该连接配置下的全部缓存
+     */
+    public void invalidateTables(String sessionId, Set<String> tables) {
+        DbSession session = sessions.peek(sessionId);
+        if (session == null) {
+            return;
+        }
+        Set<String> names = new HashSet<>();
+        for (String table : tables) {
+            names.add(table.toLowerCase(Locale.ROOT));
+        }
+        evict(session.getPoolKey(), names);
+        if (session.getPinnedLease() != null) {
+            Set<String> pending = pendingTables.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet());
+            if (names.isEmpty()) {
+                // 用特殊标记表示需要全部失效
+                pending.add("");
+            } else {
+                pending.addAll(names);
+            }
+        }
+    }
+
+    /**
+     * 事务结束：提交时失效事务中修改过的表，回滚时只需清除记录
+     */
+    public void transactionEnded(String sessionId, boolean committed) {
+        Set<String> pending = pendingTables.remove(sessionId);
+        DbSession session = sessions.peek(sessionId);
+        if (committed && pending != null && session != null) {
+            evict(session.getPoolKey(), pending.contains("") ? Set.of() : pending);
+        }
+    }
+
+    /**
+     * 会话关闭时清除其缓存
+     */
+    public void removeSession(String sessionId) {
+        pendingTables.remove(sessionId);
+        synchronized (this) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.sessionId.equals(sessionId)) {
+                    totalBytes -= entry.bytes;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", totalBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.get());
+        stats.put("hitRate", total == 0 ? 0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private void evict(ConnectionPool.PoolKey poolKey, Set<String> tables) {
+        countService.invalidate(poolKey, tables);
+        synchronized (this) {
+            generations.computeIfAbsent(poolKey, key -> new AtomicLong()).incrementAndGet();
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.poolKey.equals(poolKey)
+                        && (tables.isEmpty() || !Collections.disjoint(entry.tables, tables))) {
+                    totalBytes -= entry.bytes;
+                    it.remove();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.bytes;
+        }
+    }
+
+    private static String key(DbSession session, String sql, Integer page, Integer pageSize, boolean columnar) {
+        return session.getId() + "|" + session.getDatabase() + "|" + page + "|" + pageSize + "|"
+                + (columnar ? "c" : "r") + "|" + normalize(sql);
+    }
+
+    /**
+     * 合并字符串以外的连续空白，去掉末尾的分号
+     */
+    static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                sb.append(c);
+                if (c == '\\' && quote != '`' && i + 1 < sql.length()) {
+                    sb.append(sql.charAt(++i));
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) {
+                    sb.append(' ');
+                    space = false;
+                }
+                if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                }
+                sb.append(c);
+            }
+        }
+        int end = sb.length();
+        while (end > 0 && sb.charAt(end - 1) == ';') {
+            end--;
+        }
+        sb.setLength(end);
+        return sb.toString();
+    }
+
+    private static long estimateBytes(QueryResult result) {
+        long bytes = 256;
+        if (result.getRows() != null) {
+            for (Object[] row : result.getRows()) {
+                bytes += ResultMemoryGovernor.estimateRow(row, false);
+            }
+        }
+        if (result.getData() != null) {
+            for (Map<String, Object> row : result.getData()) {
+                bytes += ResultMemoryGovernor.estimateRow(row.values().toArray(), true);
+            }
+        }
+        return bytes;
+    }
+
+    private static QueryResult cachedCopy(QueryResult source) {
+        QueryResult copy = new QueryResult(source.getData(), source.getColumns(), source.getTotalCount());
+        copy.setColumnTypes(source.getColumnTypes());
+        copy.setRows(source.getRows());
+        copy.setCountType(source.getCountType());
+        copy.setCurrentPage(source.getCurrentPage());
+        copy.setPageSize(source.getPageSize());
+        copy.setKeyColumns(source.getKeyColumns());
+        copy.setNextCursor(source.getNextCursor());
+        copy.setCached(true);
+        return copy;
+    }
+}
@@ -0,0 +1,202 @@
+package com.dbadmin.service;
+
+import java.nio.file.Path;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 后台查询任务的状态，结果落盘在任务目录中，浏览器刷新或关闭后仍可查询
+ */
+public class QueryJob {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final String jobId;
+    private final String sessionId;
+    private final String user;
+    private final String name;
+    private final String sql;
+    private final String database;
+    private final Path dir;
+    private final long submittedAt;
+    private final AtomicLong rowsFetched = new AtomicLong();
+
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.QUEUED);
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile String error;
+    private volatile long bytes;
+    private volatile List<String> columns;
+    private volatile List<String> columnTypes;
+
+    // 运行期状态，不持久化
+    private volatile Statement statement;
+    private volatile Future<?> future;
+
+    public QueryJob(String jobId, String sessionId, String user, String name, String sql, String database,
+                    Path dir, long submittedAt) {
+        this.jobId = jobId;
+        this.sessionId = sessionId;
+        this.user = user;
+        this.name = name;
+        this.sql = sql;
+        this.database = database;
+        this.dir = dir;
+        this.submittedAt = submittedAt;
+    }
+
+    /**
+     * 从持久化的元数据恢复已结束的任务
+     */
+    @SuppressWarnings("unchecked")
+    public static QueryJob fromMap(Map<String, Object> map, Path dir) {
+        QueryJob job = new QueryJob((String) map.get("jobId"), (String) map.get("sessionId"), (String) map.get("user"),
+                (String) map.get("name"), (String) map.get("sql"), (String) map.get("database"), dir,
+                ((Number) map.get("submittedAt")).longValue());
+        job.status.set(Status.valueOf((String) map.get("status")));
+        job.startedAt = ((Number) map.getOrDefault("startedAt", 0)).longValue();
+        job.finishedAt = ((Number) map.getOrDefault("finishedAt", 0)).longValue();
+        job.error = (String) map.get("error");
+        job.bytes = ((Number) map.getOrDefault("bytes", 0)).longValue();
+        job.rowsFetched.set(((Number) map.getOrDefault("rowCount", 0)).longValue());
+        job.columns = (List<String>) map.get("columns");
+        job.columnTypes = (List<String>) map.get("columnTypes");
+        return job;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", jobId);
+        map.put("sessionId", sessionId);
+        map.put("user", user);
+        map.put("name", name);
+        map.put("sql", sql);
+        map.put("database", database);
+        map.put("status", status.get().name());
+        map.put("submittedAt", submittedAt);
+        map.put("startedAt", startedAt);
+        map.put("finishedAt", finishedAt);
+        long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+        map.put("elapsedMs", startedAt > 0 ? end - startedAt : 0);
+        map.put("rowCount", rowsFetched.get());
+        map.put("bytes", bytes);
+        map.put("columns", columns);
+        map.put("columnTypes", columnTypes);
+        map.put("error", error);
+        return map;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public AtomicLong getRowsFetched() {
+        return rowsFetched;
+    }
+
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public Status getStatus() {
+        return status.get();
+    }
+
+    public void setStatus(Status status) {
+        this.status.set(status);
+    }
+
+    /**
+     * 状态为from时切换到to，用于执行线程与取消请求之间的竞争
+     */
+    public boolean transition(Status from, Status to) {
+        return status.compareAndSet(from, to);
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    public List<String> getColumnTypes() {
+        return columnTypes;
+    }
+
+    public void setColumnTypes(List<String> columnTypes) {
+        this.columnTypes = columnTypes;
+    }
+
+    public Statement getStatement() {
+        return statement;
+    }
+
+    public void setStatement(Statement statement) {
+        this.statement = statement;
+    }
+
+    public Future<?> getFuture() {
+        return future;
+    }
+
+    public void setFuture(Future<?> future) {
+        this.future = future;
+    }
+}
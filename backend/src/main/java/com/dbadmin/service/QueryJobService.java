@@ -0,0 +1,507 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.ConnectionInfo;
+import com.dbadmin.service.spool.ResultSpoolReader;
+import com.dbadmin.service.spool.ResultSpoolWriter;
+import com.dbadmin.util.SqlLexer;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 后台查询任务：查询在有界线程池中执行，不受请求生命周期和30秒语句超时限制，
+ * 结果以紧凑二进制格式落盘，之后可以按页读取；状态可轮询，也可以通过SSE推送。
+ */
+@Service
+public class QueryJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryJobService.class);
+
+    private static final String META_FILE = "meta.json";
+    private static final String DATA_FILE = "data.bin";
+    private static final String INDEX_FILE = "index.bin";
+
+    @Autowired
+    private ConnectionManagerService connectionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${dbadmin.job.dir:${java.io.tmpdir}/dbadmin-jobs}")
+    private String jobDir;
+
+    @Value("${dbadmin.job.threads:4}")
+    private int threads;
+
+    @Value("${dbadmin.job.queue-size:50}")
+    private int queueSize;
+
+    @Value("${dbadmin.job.max-per-user:2}")
+    private int maxPerUser;
+
+    @Value("${dbadmin.job.query-timeout-seconds:0}")
+    private int queryTimeoutSeconds;
+
+    @Value("${dbadmin.job.retention-ms:86400000}")
+    private long retentionMs;
+
+    @Value("${dbadmin.job.max-jobs:200}")
+    private int maxJobs;
+
+    @Value("${dbadmin.job.max-page-size:10000}")
+    private int maxPageSize;
+
+    @Value("${dbadmin.job.retry-delay-ms:500}")
+    private long retryDelayMs;
+
+    private final Map<String, QueryJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, List<SseEmitter>> emitters = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "query-job-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "query-job");
+                    t.setDaemon(true);
+                    return t;
+                });
+        loadPersistedJobs();
+        scheduler.scheduleWithFixedDelay(this::pushProgress, 1, 1, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::purgeExpired, 60, 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 提交任务，返回任务ID。同一用户（数据库用户@主机）同时排队和执行的任务数受max-per-user限制。
+     */
+    public QueryJob submit(String sessionId, String sql, String name) throws SQLException, IOException {
+        if (sql == null || sql.trim().isEmpty()) {
+            throw new SQLException("sql is required");
+        }
+        ConnectionInfo info = connectionManager.getConnectionInfo(sessionId);
+        if (info == null) {
+            throw new SQLException("Connection not found or closed");
+        }
+        String user = info.getUsername() + "@" + info.getHost();
+        String jobId = UUID.randomUUID().toString();
+        Path dir = Paths.get(jobDir).toAbsolutePath().resolve(jobId);
+
+        QueryJob job;
+        synchronized (this) {
+            long active = jobs.values().stream()
+                    .filter(j -> user.equals(j.getUser()) && !j.getStatus().isFinished())
+                    .count();
+            if (active >= maxPerUser) {
+                throw new SQLException("Too many concurrent jobs for " + user + " (max " + maxPerUser + ")");
+            }
+            Files.createDirectories(dir);
+            job = new QueryJob(jobId, sessionId, user, name, SqlLexer.strip(sql),
+                    connectionManager.getSessionDatabase(sessionId), dir, System.currentTimeMillis());
+            jobs.put(jobId, job);
+        }
+
+        saveMeta(job);
+        try {
+            job.setFuture(executor.submit(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(jobId);
+            deleteDir(dir);
+            throw new SQLException("Job queue is full, try again later");
+        }
+        return job;
+    }
+
+    private void run(QueryJob job) {
+        if (job.getStatus() != QueryJob.Status.QUEUED) {
+            // 开始执行前已被取消
+            finish(job);
+            return;
+        }
+        // 不等待连接：只剩给交互请求保留的连接时任务继续排队，不占着任务线程
+        ConnectionPool.Lease leased;
+        try {
+            leased = connectionManager.tryLeaseDedicated(job.getSessionId());
+        } catch (SQLException e) {
+            if (job.transition(QueryJob.Status.QUEUED, QueryJob.Status.FAILED)) {
+                job.setError(e.getMessage());
+            }
+            finish(job);
+            return;
+        }
+        if (leased == null) {
+            requeue(job);
+            return;
+        }
+        if (!job.transition(QueryJob.Status.QUEUED, QueryJob.Status.RUNNING)) {
+            leased.close();
+            finish(job);
+            return;
+        }
+        job.setStartedAt(System.currentTimeMillis());
+
+        ResultSpoolWriter writer = null;
+        try (ConnectionPool.Lease lease = leased;
+             Statement stmt = lease.getConnection().createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // 流式读取，结果直接写入落盘文件
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            stmt.setQueryTimeout(queryTimeoutSeconds);
+            job.setStatement(stmt);
+            if (SqlLexer.analyze(job.getSql()).sessionState()) {
+                // 归还前需要重置会话状态
+                lease.markDirty();
+            }
+            if (job.getStatus() == QueryJob.Status.CANCELLED) {
+                return;
+            }
+
+            ResultSet rs = null;
+            try {
+                rs = stmt.executeQuery(job.getSql());
+                ResultSetMetaData metaData = rs.getMetaData();
+                List<String> columns = new ArrayList<>();
+                List<String> columnTypes = new ArrayList<>();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    columns.add(metaData.getColumnLabel(i));
+                    columnTypes.add(metaData.getColumnTypeName(i));
+                }
+                job.setColumns(columns);
+                job.setColumnTypes(columnTypes);
+
+                writer = new ResultSpoolWriter(job.getDir().resolve(DATA_FILE), job.getDir().resolve(INDEX_FILE),
+                        columns, columnTypes);
+                long rows = 0;
+                while (rs.next()) {
+                    writer.writeRow(rs);
+                    job.getRowsFetched().lazySet(++rows);
+                }
+            } catch (SQLException | IOException e) {
+                // 取消或失败时不读完剩余的流式结果：先取消查询再关闭结果集，连接直接丢弃
+                if (rs != null) {
+                    stmt.cancel();
+                }
+                lease.invalidate();
+                throw e;
+            } finally {
+                if (rs != null) {
+                    try {
+                        rs.close();
+                    } catch (SQLException e) {
+                        // Ignore
+                    }
+                }
+            }
+            writer.close();
+            writer = null;
+            job.transition(QueryJob.Status.RUNNING, QueryJob.Status.COMPLETED);
+        } catch (Exception e) {
+            if (job.transition(QueryJob.Status.RUNNING, QueryJob.Status.FAILED)) {
+                job.setError(e.getMessage());
+            }
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+            job.setStatement(null);
+            finish(job);
+            if (!jobs.containsKey(job.getJobId())) {
+                // 执行中被删除
+                deleteDir(job.getDir());
+            }
+        }
+    }
+
+    /**
+     * 隔retry-delay-ms重新提交仍在排队的任务；任务队列已满时继续等待，服务关闭时任务失败
+     */
+    private void requeue(QueryJob job) {
+        try {
+            job.setFuture(scheduler.schedule(() -> {
+                try {
+                    job.setFuture(executor.submit(() -> run(job)));
+                } catch (RejectedExecutionException e) {
+                    requeue(job);
+                }
+            }, retryDelayMs, TimeUnit.MILLISECONDS));
+        } catch (RejectedExecutionException e) {
+            if (job.transition(QueryJob.Status.QUEUED, QueryJob.Status.FAILED)) {
+                job.setError("Server is shutting down");
+            }
+            finish(job);
+        }
+    }
+
+    private void finish(QueryJob job) {
+        job.setFinishedAt(System.currentTimeMillis());
+        Path data = job.getDir().resolve(DATA_FILE);
+        try {
+            job.setBytes(Files.exists(data) ? Files.size(data) + Files.size(job.getDir().resolve(INDEX_FILE)) : 0);
+        } catch (IOException e) {
+            // Ignore
+        }
+        saveMeta(job);
+        log.debug("任务 {} 结束: {} {} 行", job.getJobId(), job.getStatus(), job.getRowsFetched().get());
+    }
+
+    /**
+     * 取消任务：排队中的直接取消，执行中的取消语句（已读取的行保留）
+     */
+    public boolean cancel(String jobId) {
+        QueryJob job = jobs.get(jobId);
+        if (job == null) {
+            return false;
+        }
+        if (job.transition(QueryJob.Status.QUEUED, QueryJob.Status.CANCELLED)) {
+            job.setError("Cancelled");
+            Future<?> future = job.getFuture();
+            // 任务已被线程取走时由执行线程收尾
+            if (future != null && future.cancel(false)) {
+                finish(job);
+            }
+            return true;
+        }
+        if (!job.transition(QueryJob.Status.RUNNING, QueryJob.Status.CANCELLED)) {
+            return false;
+        }
+        job.setError("Cancelled");
+        // 语句尚未创建时，执行线程会在开始查询前发现已取消
+        Statement stmt = job.getStatement();
+        if (stmt != null) {
+            try {
+                stmt.cancel();
+            } catch (SQLException e) {
+                log.warn("取消任务 {} 失败: {}", jobId, e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 删除任务及其结果文件，未结束的任务先取消
+     */
+    public boolean delete(String jobId) {
+        QueryJob job = jobs.get(jobId);
+        if (job == null) {
+            return false;
+        }
+        cancel(jobId);
+        jobs.remove(jobId);
+        // 仍在执行的任务由执行线程结束后删除目录
+        if (job.getStatus() != QueryJob.Status.RUNNING && job.getStatement() == null) {
+            deleteDir(job.getDir());
+        }
+        return true;
+    }
+
+    public QueryJob getJob(String jobId) throws SQLException {
+        QueryJob job = jobId != null ? jobs.get(jobId) : null;
+        if (job == null) {
+            throw new SQLException("Job not found: " + jobId);
+        }
+        return job;
+    }
+
+    /**
+     * 任务列表，可按会话或用户过滤，最新的在前
+     */
+    public List<Map<String, Object>> listJobs(String sessionId, String user) {
+        List<QueryJob> matched = new ArrayList<>();
+        for (QueryJob job : jobs.values()) {
+            if ((sessionId == null || sessionId.equals(job.getSessionId())) && (user == null || user.equals(job.getUser()))) {
+                matched.add(job);
+            }
+        }
+        matched.sort(Comparator.comparingLong(QueryJob::getSubmittedAt).reversed());
+        List<Map<String, Object>> result = new ArrayList<>(matched.size());
+        for (QueryJob job : matched) {
+            result.add(job.toMap());
+        }
+        return result;
+    }
+
+    /**
+     * 按页读取已结束任务的结果
+     */
+    public Map<String, Object> readRows(String jobId, long offset, int limit) throws SQLException, IOException {
+        QueryJob job = getJob(jobId);
+        if (!job.getStatus().isFinished()) {
+            throw new SQLException("Job is still " + job.getStatus().name().toLowerCase());
+        }
+        Path data = job.getDir().resolve(DATA_FILE);
+        if (!Files.exists(data)) {
+            throw new SQLException("Job has no result" + (job.getError() != null ? ": " + job.getError() : ""));
+        }
+
+        try (ResultSpoolReader reader = new ResultSpoolReader(data, job.getDir().resolve(INDEX_FILE))) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("jobId", jobId);
+            result.put("columns", reader.getColumns());
+            result.put("columnTypes", reader.getColumnTypes());
+            result.put("rows", reader.readRows(offset, Math.max(1, Math.min(limit, maxPageSize))));
+            result.put("offset", offset);
+            result.put("totalRows", reader.getRowCount());
+            return result;
+        }
+    }
+
+    /**
+     * 订阅任务进度，每秒推送一次状态，任务结束后推送最终状态并关闭
+     */
+    public SseEmitter subscribe(String jobId) throws SQLException, IOException {
+        QueryJob job = getJob(jobId);
+        SseEmitter emitter = new SseEmitter();
+        emitter.send(SseEmitter.event().name("progress").data(job.toMap()));
+        if (job.getStatus().isFinished()) {
+            emitter.complete();
+            return emitter;
+        }
+        List<SseEmitter> list = emitters.computeIfAbsent(jobId, k -> new CopyOnWriteArrayList<>());
+        list.add(emitter);
+        Runnable remove = () -> list.remove(emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+        return emitter;
+    }
+
+    private void pushProgress() {
+        for (Map.Entry<String, List<SseEmitter>> entry : emitters.entrySet()) {
+            QueryJob job = jobs.get(entry.getKey());
+            boolean finished = job == null || job.getStatus().isFinished();
+            for (SseEmitter emitter : entry.getValue()) {
+                try {
+                    if (job != null) {
+                        emitter.send(SseEmitter.event().name(finished ? "done" : "progress").data(job.toMap()));
+                    }
+                    if (finished) {
+                        emitter.complete();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    entry.getValue().remove(emitter);
+                }
+            }
+            if (finished) {
+                emitters.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * 清理超过保留时间的任务；已结束的任务数超过max-jobs时从最旧的开始删除
+     */
+    private void purgeExpired() {
+        try {
+            long deadline = System.currentTimeMillis() - retentionMs;
+            List<QueryJob> finished = new ArrayList<>();
+            for (QueryJob job : jobs.values()) {
+                if (job.getStatus().isFinished() && job.getStatement() == null) {
+                    finished.add(job);
+                }
+            }
+            finished.sort(Comparator.comparingLong(QueryJob::getFinishedAt));
+            int excess = finished.size() - maxJobs;
+            for (QueryJob job : finished) {
+                if (excess-- > 0 || job.getFinishedAt() < deadline) {
+                    jobs.remove(job.getJobId());
+                    deleteDir(job.getDir());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("清理查询任务失败", e);
+        }
+    }
+
+    /**
+     * 启动时加载上次运行留下的任务；当时未结束的任务标记为失败
+     */
+    private void loadPersistedJobs() {
+        Path root = Paths.get(jobDir).toAbsolutePath();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (var dirs = Files.list(root)) {
+            for (Path dir : (Iterable<Path>) dirs::iterator) {
+                Path meta = dir.resolve(META_FILE);
+                if (!Files.isRegularFile(meta)) {
+                    continue;
+                }
+                try {
+                    Map<String, Object> map = objectMapper.readValue(meta.toFile(), new TypeReference<Map<String, Object>>() {});
+                    QueryJob job = QueryJob.fromMap(map, dir);
+                    if (!job.getStatus().isFinished()) {
+                        job.setStatus(QueryJob.Status.FAILED);
+                        job.setError("Interrupted by server restart");
+                        job.setFinishedAt(System.currentTimeMillis());
+                        saveMeta(job);
+                    }
+                    jobs.put(job.getJobId(), job);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("无法加载查询任务 {}: {}", dir, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("无法读取任务目录 {}: {}", root, e.getMessage());
+        }
+    }
+
+    private void saveMeta(QueryJob job) {
+        try {
+            Path temp = job.getDir().resolve(META_FILE + ".tmp");
+            objectMapper.writeValue(temp.toFile(), job.toMap());
+            Files.move(temp, job.getDir().resolve(META_FILE), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("无法保存任务状态 {}: {}", job.getJobId(), e.getMessage());
+        }
+    }
+
+    private static void deleteDir(Path dir) {
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (QueryJob job : jobs.values()) {
+            Statement stmt = job.getStatement();
+            if (stmt != null) {
+                try {
+                    stmt.cancel();
+                } catch (SQLException e) {
+                    // Ignore
+                }
+            }
+        }
+        executor.shutdownNow();
+    }
+}
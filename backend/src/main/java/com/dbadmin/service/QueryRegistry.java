@@ -0,0 +1,48 @@
+package com.dbadmin.service;
+
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 正在执行的请求登记表：按queryId登记交互查询、分页计数、异步计数、脚本、游标分页和导入，
+ * 取消接口和会话关闭通过这里找到并取消请求下正在执行的语句
+ */
+@Component
+public class QueryRegistry {
+
+    private final Map<String, RunningQuery> queries = new ConcurrentHashMap<>();
+
+    /**
+     * 登记一个请求，queryId为空时生成；id已被占用时失败。请求结束时必须调用end
+     */
+    public RunningQuery start(String sessionId, String queryId, String sql) throws SQLException {
+        String id = queryId != null && !queryId.isEmpty() ? queryId : UUID.randomUUID().toString();
+        RunningQuery query = new RunningQuery(id, sessionId, sql);
+        if (queries.putIfAbsent(id, query) != null) {
+            throw new SQLException("Query id already in use: " + id);
+        }
+        return query;
+    }
+
+    public void end(RunningQuery query) {
+        queries.remove(query.getQueryId(), query);
+    }
+
+    public RunningQuery get(String queryId) {
+        return queryId != null ? queries.get(queryId) : null;
+    }
+
+    public Collection<RunningQuery> all() {
+        return queries.values();
+    }
+
+    /**
+     * 被取消的请求统一报告为取消，而不是驱动的中断信息
+     */
+    public static SQLException cancelledOr(RunningQuery query, SQLException e) {
+        return query.isCancelled() ? new SQLException("Query cancelled", e) : e;
+    }
+}
@@ -0,0 +1,285 @@
+package com.dbadmin.service;
+
+import com.dbadmin.exception.ResultMemoryExceededException;
+import com.dbadmin.model.MemoryPolicy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 全局结果内存预算：所有会话把结果集读入堆内之前，按估算的行大小向预算预留字节，
+ * 结果序列化写出响应后释放。预算用完时按策略等待、落盘、截断或直接报错，避免几个大查询同时把JVM撑爆。
+ */
+@Component
+public class ResultMemoryGovernor {
+
+    // 每次向全局预算预留的最小字节数，减少锁竞争
+    private static final long CHUNK_BYTES = 1024 * 1024;
+
+    // 估算用的对象开销：对象头、引用和集合条目
+    private static final int ROW_OVERHEAD = 48;
+    private static final int MAP_ENTRY_OVERHEAD = 40;
+    private static final int VALUE_OVERHEAD = 24;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Set<Reservation> active = ConcurrentHashMap.newKeySet();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong waitTimeoutCount = new AtomicLong();
+    private final AtomicLong truncatedCount = new AtomicLong();
+    private final AtomicLong spillCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final long budget;
+    private final long waitTimeoutMs;
+    private final MemoryPolicy defaultPolicy;
+
+    // 以下两项由lock保护
+    private long reserved;
+    private long peakReserved;
+
+    public ResultMemoryGovernor(@Value("${dbadmin.memory.budget-bytes:0}") long budgetBytes,
+                                @Value("${dbadmin.memory.wait-timeout-ms:10000}") long waitTimeoutMs,
+                                @Value("${dbadmin.memory.policy:wait}") String policy) {
+        // 未配置时取最大堆的四分之一
+        this.budget = budgetBytes > 0 ? budgetBytes : Runtime.getRuntime().maxMemory() / 4;
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.defaultPolicy = MemoryPolicy.fromString(policy, MemoryPolicy.WAIT);
+    }
+
+    public MemoryPolicy getDefaultPolicy() {
+        return defaultPolicy;
+    }
+
+    /**
+     * 为一次查询开始记账，policy为null时使用配置的默认策略
+     */
+    public Reservation open(String sessionId, String queryId, MemoryPolicy policy) {
+        Reservation reservation = new Reservation(sessionId, queryId, policy != null ? policy : defaultPolicy);
+        active.add(reservation);
+        return reservation;
+    }
+
+    /**
+     * 估算一个列值在堆中占用的字节数
+     */
+    public static long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String s) {
+            return VALUE_OVERHEAD + 16 + (long) s.length() * 2;
+        }
+        if (value instanceof byte[] bytes) {
+            return 16 + bytes.length;
+        }
+        if (value instanceof BigDecimal decimal) {
+            return VALUE_OVERHEAD + 32 + decimal.precision() / 2;
+        }
+        return VALUE_OVERHEAD;
+    }
+
+    /**
+     * 估算一行（值数组）的大小，asMap为true时按LinkedHashMap的条目开销计算
+     */
+    public static long estimateRow(Object[] values, boolean asMap) {
+        long size = ROW_OVERHEAD + (long) values.length * (asMap ? MAP_ENTRY_OVERHEAD : 8);
+        for (Object value : values) {
+            size += estimate(value);
+        }
+        return size;
+    }
+
+    private boolean acquire(Reservation reservation, long bytes, boolean wait) throws SQLException {
+        lock.lock();
+        try {
+            if (reserved + bytes <= budget) {
+                grant(reservation, bytes);
+                return true;
+            }
+            // 单个查询本身就超过预算，等待也无济于事
+            if (!wait || reservation.granted + bytes > budget) {
+                return false;
+            }
+
+            // 已读入的行仍在堆中，等待期间不能归还它们的预算。持有预算的其他查询都在等待时没有人会释放，
+            // 再等待只会互相等到超时，直接按策略处理（归还预算后由其他查询继续）
+            if (reservation.granted > 0 && othersAllWaiting(reservation)) {
+                return false;
+            }
+
+            waitCount.incrementAndGet();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+            while (reserved + bytes > budget) {
+                if (remaining <= 0) {
+                    waitTimeoutCount.incrementAndGet();
+                    return false;
+                }
+                reservation.waiting = true;
+                try {
+                    remaining = released.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for result memory");
+                } finally {
+                    reservation.waiting = false;
+                }
+            }
+            grant(reservation, bytes);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 除reservation外持有预算的查询是否都在等待，调用时须持有lock
+     */
+    private boolean othersAllWaiting(Reservation reservation) {
+        for (Reservation other : active) {
+            if (other != reservation && other.granted > 0 && !other.waiting) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grant(Reservation reservation, long bytes) {
+        reserved += bytes;
+        reservation.granted += bytes;
+        peakReserved = Math.max(peakReserved, reserved);
+    }
+
+    private void release(Reservation reservation) {
+        active.remove(reservation);
+        lock.lock();
+        try {
+            reserved -= reservation.granted;
+            reservation.granted = 0;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        List<Map<String, Object>> reservations = new ArrayList<>();
+        for (Reservation reservation : active) {
+            reservations.add(reservation.toMap());
+        }
+        reservations.sort(Comparator.comparingLong((Map<String, Object> m) -> (Long) m.get("reservedBytes")).reversed());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("budgetBytes", budget);
+            stats.put("reservedBytes", reserved);
+            stats.put("availableBytes", Math.max(0, budget - reserved));
+            stats.put("peakReservedBytes", peakReserved);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("defaultPolicy", defaultPolicy.name().toLowerCase());
+        stats.put("waitCount", waitCount.get());
+        stats.put("waitTimeoutCount", waitTimeoutCount.get());
+        stats.put("truncatedCount", truncatedCount.get());
+        stats.put("spillCount", spillCount.get());
+        stats.put("failedCount", failedCount.get());
+        stats.put("reservations", reservations);
+        return stats;
+    }
+
+    /**
+     * 一次查询的内存记账。读取每一行前调用admit，close时把预留的字节全部归还（重复调用无副作用）
+     */
+    public final class Reservation implements AutoCloseable {
+        private final String sessionId;
+        private final String queryId;
+        private final MemoryPolicy policy;
+        private final long startTime = System.currentTimeMillis();
+        // granted由lock保护，used只在查询线程中访问
+        private volatile long granted;
+        private long used;
+        private volatile long rows;
+        private volatile boolean waiting;
+        private volatile boolean truncated;
+
+        private Reservation(String sessionId, String queryId, MemoryPolicy policy) {
+            this.sessionId = sessionId;
+            this.queryId = queryId;
+            this.policy = policy;
+        }
+
+        /**
+         * 为一行预留bytes字节。预算不足时：TRUNCATE返回false（调用方停止读取），
+         * WAIT等待其他查询释放（已持有预算时，其他持有预算的查询都在等待则不再等待），
+         * 无法等待、等待超时、FAIL和SPILL抛出ResultMemoryExceededException
+         */
+        public boolean admit(long bytes) throws SQLException {
+            if (truncated) {
+                return false;
+            }
+            if (used + bytes > granted) {
+                long request = Math.max(CHUNK_BYTES, used + bytes - granted);
+                if (!acquire(this, request, policy == MemoryPolicy.WAIT)) {
+                    reject();
+                    return false;
+                }
+            }
+            used += bytes;
+            rows++;
+            return true;
+        }
+
+        private void reject() throws SQLException {
+            String message = "Result memory budget exhausted (" + budget + " bytes) after " + rows
+                    + " rows; use pagination, a LIMIT or a background job";
+            switch (policy) {
+                case TRUNCATE:
+                    truncatedCount.incrementAndGet();
+                    truncated = true;
+                    return;
+                case SPILL:
+                    spillCount.incrementAndGet();
+                    throw new ResultMemoryExceededException(message, policy);
+                default:
+                    failedCount.incrementAndGet();
+                    throw new ResultMemoryExceededException(message, policy);
+            }
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        public long getUsedBytes() {
+            return used;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("sessionId", sessionId);
+            map.put("queryId", queryId);
+            map.put("policy", policy.name().toLowerCase());
+            map.put("reservedBytes", granted);
+            map.put("rows", rows);
+            map.put("waiting", waiting);
+            map.put("truncated", truncated);
+            map.put("elapsedMs", System.currentTimeMillis() - startTime);
+            return map;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
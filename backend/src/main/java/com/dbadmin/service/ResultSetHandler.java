@@ -0,0 +1,20 @@
+package com.dbadmin.service;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式结果集的消费方，在连接仍被占用时逐行读取ResultSet
+ */
+@FunctionalInterface
+public interface ResultSetHandler {
+    void handle(ResultSet rs) throws SQLException, IOException;
+
+    /**
+     * 接收已读取行数的计数器，实现方每读取一行递增，用于在运行中的查询列表里显示进度
+     */
+    default void setRowCounter(AtomicLong rowCounter) {
+    }
+}
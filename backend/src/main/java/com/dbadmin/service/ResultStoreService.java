@@ -0,0 +1,296 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.MemoryPolicy;
+import com.dbadmin.service.spool.ResultSpoolReader;
+import com.dbadmin.service.spool.ResultSpoolWriter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 不分页查询的结果存储：前head-rows行留在堆内，其余行写入临时文件（紧凑二进制格式加行偏移索引），
+ * 通过内存映射读取。前端表格可以直接跳到任意一页，不需要重新查询，也不需要把整个结果放在堆里。
+ */
+@Service
+public class ResultStoreService {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultStoreService.class);
+
+    @Autowired
+    private ConnectionManagerService connectionManager;
+
+    @Autowired
+    private ResultMemoryGovernor memoryGovernor;
+
+    @Value("${dbadmin.result-store.dir:${java.io.tmpdir}/dbadmin-results}")
+    private String storeDir;
+
+    @Value("${dbadmin.result-store.head-rows:1000}")
+    private int headRows;
+
+    // 单个结果落盘的上限，超过后停止读取并标记truncated
+    @Value("${dbadmin.result-store.max-spill-bytes:4294967296}")
+    private long maxSpillBytes;
+
+    @Value("${dbadmin.result-store.max-results:50}")
+    private int maxResults;
+
+    @Value("${dbadmin.result-store.idle-timeout-ms:900000}")
+    private long idleTimeoutMs;
+
+    @Value("${dbadmin.result-store.max-page-size:10000}")
+    private int maxPageSize;
+
+    private final Map<String, StoredResult> results = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "result-store-reaper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ResultStoreService() {
+        reaper.scheduleWithFixedDelay(this::purgeIdle, 60, 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 执行查询并保存完整结果，返回结果ID和第一页
+     */
+    public Map<String, Object> store(String sessionId, String sql, String queryId, int pageSize)
+            throws SQLException, IOException {
+        String resultId = UUID.randomUUID().toString();
+        Path dir = Paths.get(storeDir).toAbsolutePath();
+        Files.createDirectories(dir);
+        // 堆内的头部行在结果释放前一直占用内存预算，预算不足时其余行直接落盘
+        StoredResult result = new StoredResult(resultId, sessionId,
+                dir.resolve(resultId + ".data"), dir.resolve(resultId + ".index"),
+                memoryGovernor.open(sessionId, queryId, MemoryPolicy.TRUNCATE));
+
+        try {
+            connectionManager.streamQuery(sessionId, sql, queryId, new ResultSetHandler() {
+                private AtomicLong rowCounter;
+
+                @Override
+                public void setRowCounter(AtomicLong rowCounter) {
+                    this.rowCounter = rowCounter;
+                }
+
+                @Override
+                public void handle(ResultSet rs) throws SQLException, IOException {
+                    spool(rs, result, rowCounter);
+                }
+            });
+        } catch (SpillLimitReached e) {
+            // 已经读到的行保留，连接上剩余的结果已随查询取消丢弃
+            result.truncated = true;
+        } catch (SQLException | IOException | RuntimeException e) {
+            result.close();
+            throw e;
+        }
+
+        if (result.writer != null) {
+            result.writer.close();
+            result.spill = new ResultSpoolReader(result.dataFile, result.indexFile);
+            result.writer = null;
+        }
+        results.put(resultId, result);
+        evictOverflow();
+
+        Map<String, Object> response = page(result, 0, pageSize);
+        response.put("spilled", result.spill != null);
+        response.put("truncated", result.truncated);
+        return response;
+    }
+
+    /**
+     * 从已保存的结果中读取[offset, offset + limit)范围内的行
+     */
+    public Map<String, Object> readRows(String resultId, long offset, int limit) throws SQLException, IOException {
+        StoredResult result = results.get(resultId);
+        if (result == null) {
+            throw new SQLException("Result not found or expired: " + resultId);
+        }
+        return page(result, offset, limit);
+    }
+
+    /**
+     * 释放结果并删除临时文件
+     */
+    public boolean release(String resultId) {
+        StoredResult result = results.remove(resultId);
+        if (result == null) {
+            return false;
+        }
+        result.close();
+        return true;
+    }
+
+    private void spool(ResultSet rs, StoredResult result, AtomicLong rowCounter)
+            throws SQLException, IOException {
+        ResultSetMetaData md = rs.getMetaData();
+        int columnCount = md.getColumnCount();
+        for (int i = 1; i <= columnCount; i++) {
+            result.columns.add(md.getColumnLabel(i));
+            result.columnTypes.add(md.getColumnTypeName(i));
+        }
+
+        long rows = 0;
+        while (rs.next()) {
+            // 开始落盘后头部不再追加，保持行的顺序
+            Object[] row = null;
+            if (result.writer == null && result.head.size() < headRows) {
+                row = new Object[columnCount];
+                for (int i = 1; i <= columnCount; i++) {
+                    row[i - 1] = ResultSpoolWriter.readValue(rs, i);
+                }
+                if (!result.reservation.admit(ResultMemoryGovernor.estimateRow(row, false))) {
+                    row = null;
+                }
+            }
+            if (row != null) {
+                result.head.add(row);
+            } else {
+                if (result.writer == null) {
+                    result.writer = new ResultSpoolWriter(result.dataFile, result.indexFile,
+                            result.columns, result.columnTypes);
+                }
+                result.writer.writeRow(rs);
+                if (result.writer.getDataBytes() > maxSpillBytes) {
+                    result.totalRows = ++rows;
+                    throw new SpillLimitReached();
+                }
+            }
+            result.totalRows = ++rows;
+            if (rowCounter != null) {
+                rowCounter.lazySet(rows);
+            }
+        }
+    }
+
+    private Map<String, Object> page(StoredResult result, long offset, int limit) throws IOException {
+        result.lastAccess = System.currentTimeMillis();
+        int count = (int) Math.max(0, Math.min(Math.max(1, Math.min(limit, maxPageSize)), result.totalRows - offset));
+        List<Object[]> rows = new ArrayList<>(count);
+        if (offset >= 0) {
+            int headSize = result.head.size();
+            for (long i = offset; i < headSize && rows.size() < count; i++) {
+                rows.add(result.head.get((int) i));
+            }
+            if (rows.size() < count && result.spill != null) {
+                rows.addAll(result.spill.readRows(Math.max(0, offset - headSize), count - rows.size()));
+            }
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("resultId", result.id);
+        response.put("format", "columnar");
+        response.put("columns", result.columns);
+        response.put("columnTypes", result.columnTypes);
+        response.put("rows", rows);
+        response.put("offset", offset);
+        response.put("totalCount", result.totalRows);
+        return response;
+    }
+
+    /**
+     * 超过max-results时按最后访问时间淘汰最旧的结果
+     */
+    private void evictOverflow() {
+        while (results.size() > maxResults) {
+            results.values().stream()
+                    .min(Comparator.comparingLong(r -> r.lastAccess))
+                    .ifPresent(oldest -> release(oldest.id));
+        }
+    }
+
+    private void purgeIdle() {
+        try {
+            long now = System.currentTimeMillis();
+            for (StoredResult result : new ArrayList<>(results.values())) {
+                if (now - result.lastAccess > idleTimeoutMs || !connectionManager.hasSession(result.sessionId)) {
+                    log.debug("释放空闲结果 {}", result.id);
+                    release(result.id);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("清理查询结果失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reaper.shutdownNow();
+        for (String resultId : new ArrayList<>(results.keySet())) {
+            release(resultId);
+        }
+    }
+
+    /**
+     * 落盘上限触发时中止读取，streamQuery据此取消查询而不是读完剩余的行
+     */
+    private static class SpillLimitReached extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        SpillLimitReached() {
+            super("Result spill limit reached");
+        }
+    }
+
+    private static class StoredResult {
+        final String id;
+        final String sessionId;
+        final Path dataFile;
+        final Path indexFile;
+        final List<String> columns = new ArrayList<>();
+        final List<String> columnTypes = new ArrayList<>();
+        final List<Object[]> head = new ArrayList<>();
+        final ResultMemoryGovernor.Reservation reservation;
+        ResultSpoolWriter writer;
+        ResultSpoolReader spill;
+        long totalRows;
+        boolean truncated;
+        volatile long lastAccess = System.currentTimeMillis();
+
+        StoredResult(String id, String sessionId, Path dataFile, Path indexFile,
+                     ResultMemoryGovernor.Reservation reservation) {
+            this.id = id;
+            this.reservation = reservation;
+            this.sessionId = sessionId;
+            this.dataFile = dataFile;
+            this.indexFile = indexFile;
+        }
+
+        void close() {
+            reservation.close();
+            try {
+                if (writer != null) {
+                    writer.close();
+                }
+                if (spill != null) {
+                    spill.close();
+                }
+                // 已映射的段在回收前仍然有效，Linux上删除文件不影响正在进行的读取
+                Files.deleteIfExists(dataFile);
+                Files.deleteIfExists(indexFile);
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.dbadmin.service;
+
+import com.mysql.cj.jdbc.JdbcConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 正在执行的一个请求：记录所属会话、SQL、开始时间和已读取的行数。
+ * 请求执行期间的每条语句（分页的COUNT、脚本中的每条语句、导入的各写入线程）在执行前attach、结束后detach，
+ * 取消时同时取消当前挂着的所有语句，取消之后再attach的语句直接失败
+ */
+public class RunningQuery {
+    private final String queryId;
+    private final String sessionId;
+    private final String sql;
+    // 正在执行的语句及其MySQL服务端线程ID，Statement.cancel失败时用于KILL QUERY
+    private final Map<Statement, Long> statements = new ConcurrentHashMap<>();
+    private volatile long connectionId = -1;
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicLong rowsFetched = new AtomicLong();
+    private volatile boolean cancelled;
+
+    public RunningQuery(String queryId, String sessionId, String sql) {
+        this.queryId = queryId;
+        this.sessionId = sessionId;
+        this.sql = sql;
+    }
+
+    public String getQueryId() {
+        return queryId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public long getConnectionId() {
+        return connectionId;
+    }
+
+    /**
+     * 当前挂着语句的连接的服务端线程ID（未知的为-1）
+     */
+    public List<Long> getConnectionIds() {
+        return new ArrayList<>(statements.values());
+    }
+
+    public AtomicLong getRowsFetched() {
+        return rowsFetched;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 登记即将执行的语句；请求已被取消时不再执行
+     */
+    public void attach(Statement statement) throws SQLException {
+        attach(statement, connectionIdOf(statement.getConnection()));
+    }
+
+    private void attach(Statement statement, long connectionId) throws SQLException {
+        statements.put(statement, connectionId);
+        this.connectionId = connectionId;
+        // 与cancel并发时，cancel要么看到这条语句，要么这里看到cancelled
+        if (cancelled) {
+            statements.remove(statement);
+            throw new SQLException("Query cancelled");
+        }
+    }
+
+    public void detach(Statement statement) {
+        statements.remove(statement);
+    }
+
+    /**
+     * 取消执行：MySQL驱动通过另一个连接发送KILL QUERY，正在阻塞的执行线程随即收到异常。
+     * 所有语句都尝试取消，之后抛出遇到的第一个错误
+     */
+    public void cancel() throws SQLException {
+        cancelled = true;
+        SQLException failure = null;
+        for (Statement statement : statements.keySet()) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    static long connectionIdOf(Connection conn) {
+        try {
+            return conn.unwrap(JdbcConnection.class).getId();
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("queryId", queryId);
+        map.put("sessionId", sessionId);
+        map.put("sql", sql.length() > 500 ? sql.substring(0, 500) + "..." : sql);
+        map.put("startTime", startTime);
+        map.put("elapsedMs", System.currentTimeMillis() - startTime);
+        map.put("rowsFetched", rowsFetched.get());
+        map.put("connectionId", connectionId);
+        map.put("statements", statements.size());
+        map.put("cancelled", cancelled);
+        return map;
+    }
+}
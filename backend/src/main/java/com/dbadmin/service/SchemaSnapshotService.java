@@ -0,0 +1,284 @@
+package com.dbadmin.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * 整个数据库的结构快照：表、列、索引、外键和存储过程/函数。
+ * 每类信息用一条按TABLE_SCHEMA过滤的INFORMATION_SCHEMA查询整体读出，在内存中按表组装，
+ * 描述一个库只需五次往返，而不是每张表三次。结果经元数据缓存共享，执行DDL后失效。
+ */
+@Service
+public class SchemaSnapshotService {
+
+    // 以下查询只有WHERE条件的开头，按需追加表名过滤后再接ORDER BY
+    private static final String TABLES_SQL =
+            "SELECT TABLE_NAME, TABLE_TYPE, ENGINE, TABLE_ROWS, TABLE_COMMENT FROM INFORMATION_SCHEMA.TABLES "
+                    + "WHERE TABLE_SCHEMA = ?";
+
+    private static final String COLUMNS_SQL =
+            "SELECT TABLE_NAME, COLUMN_NAME, DATA_TYPE, COLUMN_TYPE, IS_NULLABLE, COLUMN_DEFAULT, COLUMN_KEY, EXTRA, "
+                    + "COLUMN_COMMENT, CHARACTER_MAXIMUM_LENGTH FROM INFORMATION_SCHEMA.COLUMNS "
+                    + "WHERE TABLE_SCHEMA = ?";
+
+    private static final String INDEXES_SQL =
+            "SELECT TABLE_NAME, INDEX_NAME, NON_UNIQUE, COLUMN_NAME, INDEX_TYPE FROM INFORMATION_SCHEMA.STATISTICS "
+                    + "WHERE TABLE_SCHEMA = ?";
+
+    private static final String FOREIGN_KEYS_SQL =
+            "SELECT k.TABLE_NAME, k.CONSTRAINT_NAME, k.COLUMN_NAME, k.REFERENCED_TABLE_SCHEMA, k.REFERENCED_TABLE_NAME, "
+                    + "k.REFERENCED_COLUMN_NAME, r.UPDATE_RULE, r.DELETE_RULE "
+                    + "FROM INFORMATION_SCHEMA.KEY_COLUMN_USAGE k "
+                    + "LEFT JOIN INFORMATION_SCHEMA.REFERENTIAL_CONSTRAINTS r "
+                    + "ON r.CONSTRAINT_SCHEMA = k.CONSTRAINT_SCHEMA AND r.TABLE_NAME = k.TABLE_NAME "
+                    + "AND r.CONSTRAINT_NAME = k.CONSTRAINT_NAME "
+                    + "WHERE k.TABLE_SCHEMA = ? AND k.REFERENCED_TABLE_NAME IS NOT NULL";
+
+    private static final String ROUTINES_SQL =
+            "SELECT ROUTINE_NAME, ROUTINE_TYPE, DTD_IDENTIFIER, ROUTINE_COMMENT FROM INFORMATION_SCHEMA.ROUTINES "
+                    + "WHERE ROUTINE_SCHEMA = ?";
+
+    // 增量刷新时每条查询最多列出的表名数
+    private static final int REFRESH_BATCH_SIZE = 500;
+
+    @Autowired
+    private ConnectionManagerService connectionManager;
+
+    @Autowired
+    private SessionRegistry sessions;
+
+    @Autowired
+    private MetadataCacheService metadataCache;
+
+    /**
+     * 返回database（为空时取会话当前数据库）的结构快照
+     */
+    public Map<String, Object> snapshot(String sessionId, String database) throws SQLException {
+        DbSession session = sessions.get(sessionId);
+        if (session == null) {
+            throw new SQLException("Connection not found or closed");
+        }
+        String schema = database == null || database.trim().isEmpty() ? session.getDatabase() : database;
+        return metadataCache.get(session, MetadataCacheService.Kind.SNAPSHOT, schema, null,
+                () -> connectionManager.executeMetadata(session, conn -> load(conn, schema)));
+    }
+
+    /**
+     * 增量刷新：缓存中已有该库的快照时，只重新读取changed中的表、去掉dropped中的表，
+     * 存储过程/函数在routinesChanged时重新读取；没有缓存的快照时什么也不做，下次请求时完整加载
+     */
+    public void refresh(DbSession session, Connection conn, String schema, Set<String> changed, Set<String> dropped,
+                        boolean routinesChanged) throws SQLException {
+        Map<String, Object> cached = metadataCache.peek(session, MetadataCacheService.Kind.SNAPSHOT, schema, null);
+        if (cached == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Map<String, Map<String, Object>> tables = new TreeMap<>();
+        for (Map<String, Object> table : list(cached, "tables")) {
+            String name = (String) table.get("name");
+            if (!changed.contains(name) && !dropped.contains(name)) {
+                tables.put(name, table);
+            }
+        }
+        for (List<String> batch : batches(changed)) {
+            tables.putAll(loadTables(conn, schema, batch));
+        }
+        List<Map<String, Object>> routines = routinesChanged ? loadRoutines(conn, schema) : list(cached, "routines");
+        metadataCache.put(session, MetadataCacheService.Kind.SNAPSHOT, schema, null,
+                assemble(schema, tables.values(), routines, start));
+    }
+
+    private Map<String, Object> load(Connection conn, String schema) throws SQLException {
+        long start = System.currentTimeMillis();
+        return assemble(schema, loadTables(conn, schema, null).values(), loadRoutines(conn, schema), start);
+    }
+
+    private static Map<String, Object> assemble(String schema, Collection<Map<String, Object>> tables,
+                                                List<Map<String, Object>> routines, long start) {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("database", schema);
+        snapshot.put("tables", new ArrayList<>(tables));
+        snapshot.put("routines", routines);
+        snapshot.put("tableCount", tables.size());
+        snapshot.put("loadedAt", System.currentTimeMillis());
+        snapshot.put("loadMs", System.currentTimeMillis() - start);
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * 读取表、列、索引和外键，only为null时读取整个库，否则只读取其中列出的表
+     */
+    private Map<String, Map<String, Object>> loadTables(Connection conn, String schema, List<String> only)
+            throws SQLException {
+        // 表名 -> 表，保持TABLES查询的顺序
+        Map<String, Map<String, Object>> tables = new LinkedHashMap<>();
+        try (PreparedStatement stmt = prepare(conn, TABLES_SQL, "TABLE_NAME", "TABLE_NAME", schema, only);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Map<String, Object> table = new LinkedHashMap<>();
+                table.put("name", rs.getString(1));
+                table.put("type", "VIEW".equals(rs.getString(2)) ? "view" : "table");
+                table.put("engine", rs.getString(3));
+                long rows = rs.getLong(4);
+                table.put("estimatedRows", rs.wasNull() ? null : rows);
+                table.put("comment", rs.getString(5));
+                table.put("columns", new ArrayList<Map<String, Object>>());
+                table.put("indexes", new ArrayList<Map<String, Object>>());
+                table.put("foreignKeys", new ArrayList<Map<String, Object>>());
+                tables.put(rs.getString(1), table);
+            }
+        }
+
+        try (PreparedStatement stmt = prepare(conn, COLUMNS_SQL, "TABLE_NAME", "TABLE_NAME, ORDINAL_POSITION",
+                schema, only);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Map<String, Object> table = tables.get(rs.getString(1));
+                if (table == null) {
+                    continue;
+                }
+                Map<String, Object> column = new LinkedHashMap<>();
+                column.put("name", rs.getString(2));
+                column.put("type", rs.getString(3));
+                column.put("columnType", rs.getString(4));
+                column.put("nullable", "YES".equals(rs.getString(5)));
+                column.put("default", rs.getString(6));
+                column.put("key", rs.getString(7));
+                column.put("extra", rs.getString(8));
+                column.put("comment", rs.getString(9));
+                long maxLength = rs.getLong(10);
+                column.put("maxLength", rs.wasNull() ? null : maxLength);
+                list(table, "columns").add(column);
+            }
+        }
+
+        try (PreparedStatement stmt = prepare(conn, INDEXES_SQL, "TABLE_NAME", "TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX",
+                schema, only);
+             ResultSet rs = stmt.executeQuery()) {
+            Map<String, Object> current = null;
+            String currentKey = null;
+            while (rs.next()) {
+                Map<String, Object> table = tables.get(rs.getString(1));
+                if (table == null) {
+                    continue;
+                }
+                // 按表名、索引名排序，同一索引的列连续出现
+                String key = rs.getString(1) + "\u0000" + rs.getString(2);
+                if (!key.equals(currentKey)) {
+                    current = new LinkedHashMap<>();
+                    current.put("name", rs.getString(2));
+                    current.put("unique", rs.getInt(3) == 0);
+                    current.put("primary", "PRIMARY".equals(rs.getString(2)));
+                    current.put("type", rs.getString(5));
+                    current.put("columns", new ArrayList<String>());
+                    list(table, "indexes").add(current);
+                    currentKey = key;
+                }
+                strings(current, "columns").add(rs.getString(4));
+            }
+        }
+
+        try (PreparedStatement stmt = prepare(conn, FOREIGN_KEYS_SQL, "k.TABLE_NAME",
+                "k.TABLE_NAME, k.CONSTRAINT_NAME, k.ORDINAL_POSITION", schema, only);
+             ResultSet rs = stmt.executeQuery()) {
+            Map<String, Object> current = null;
+            String currentKey = null;
+            while (rs.next()) {
+                Map<String, Object> table = tables.get(rs.getString(1));
+                if (table == null) {
+                    continue;
+                }
+                String key = rs.getString(1) + "\u0000" + rs.getString(2);
+                if (!key.equals(currentKey)) {
+                    current = new LinkedHashMap<>();
+                    current.put("name", rs.getString(2));
+                    current.put("columns", new ArrayList<String>());
+                    current.put("referencedDatabase", rs.getString(4));
+                    current.put("referencedTable", rs.getString(5));
+                    current.put("referencedColumns", new ArrayList<String>());
+                    current.put("onUpdate", rs.getString(7));
+                    current.put("onDelete", rs.getString(8));
+                    list(table, "foreignKeys").add(current);
+                    currentKey = key;
+                }
+                strings(current, "columns").add(rs.getString(3));
+                strings(current, "referencedColumns").add(rs.getString(6));
+            }
+        }
+
+        return tables;
+    }
+
+    private List<Map<String, Object>> loadRoutines(Connection conn, String schema) throws SQLException {
+        List<Map<String, Object>> routines = new ArrayList<>();
+        try (PreparedStatement stmt = prepare(conn, ROUTINES_SQL, null, "ROUTINE_TYPE, ROUTINE_NAME", schema, null);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Map<String, Object> routine = new LinkedHashMap<>();
+                routine.put("name", rs.getString(1));
+                routine.put("type", rs.getString(2).toLowerCase(Locale.ROOT));
+                routine.put("returns", rs.getString(3));
+                routine.put("comment", rs.getString(4));
+                routines.add(routine);
+            }
+        }
+        return routines;
+    }
+
+    /**
+     * 在查询后追加 AND tableColumn IN (?, ...) 和 ORDER BY，参数依次为库名和表名
+     */
+    private static PreparedStatement prepare(Connection conn, String sql, String tableColumn, String orderBy,
+                                             String schema, List<String> only) throws SQLException {
+        StringBuilder sb = new StringBuilder(sql);
+        if (only != null) {
+            sb.append(" AND ").append(tableColumn).append(" IN (");
+            for (int i = 0; i < only.size(); i++) {
+                sb.append(i == 0 ? "?" : ", ?");
+            }
+            sb.append(')');
+        }
+        sb.append(" ORDER BY ").append(orderBy);
+        PreparedStatement stmt = conn.prepareStatement(sb.toString());
+        stmt.setString(1, schema);
+        if (only != null) {
+            for (int i = 0; i < only.size(); i++) {
+                stmt.setString(i + 2, only.get(i));
+            }
+        }
+        return stmt;
+    }
+
+    private static List<List<String>> batches(Set<String> names) {
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        for (String name : names) {
+            batch.add(name);
+            if (batch.size() == REFRESH_BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> list(Map<String, Object> map, String key) {
+        return (List<Map<String, Object>>) map.get(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> strings(Map<String, Object> map, String key) {
+        return (List<String>) map.get(key);
+    }
+}
@@ -0,0 +1,284 @@
+package com.dbadmin.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 增量结构刷新：对有客户端订阅的库，定期读取每张表的类型、引擎和注释，以及按表汇总的
+ * INFORMATION_SCHEMA.COLUMNS/STATISTICS校验和，加上存储过程/函数的数量和最后修改时间，
+ * 与上次结果比较得出新增、删除和修改的表。只让这些表的元数据缓存失效、只重新读取这些表的快照内容，
+ * 并通过SSE把变化推送给订阅的客户端。
+ * CREATE_TIME、UPDATE_TIME等统计列受information_schema_stats_expiry缓存影响，INSTANT ADD COLUMN
+ * 也不改变CREATE_TIME，因此不用于判断结构变化；列和索引定义直接来自数据字典，不经过该缓存。
+ */
+@Service
+public class SchemaWatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaWatchService.class);
+
+    private static final String TABLES_SQL =
+            "SELECT TABLE_NAME, TABLE_TYPE, ENGINE, TABLE_COMMENT FROM INFORMATION_SCHEMA.TABLES "
+                    + "WHERE TABLE_SCHEMA = ?";
+
+    // 每张表的列定义校验和，与列的顺序无关
+    private static final String COLUMNS_SQL =
+            "SELECT TABLE_NAME, COUNT(*), SUM(CRC32(CONCAT_WS('|', COLUMN_NAME, ORDINAL_POSITION, COLUMN_TYPE, "
+                    + "IS_NULLABLE, COLUMN_DEFAULT, EXTRA, COLLATION_NAME, COLUMN_COMMENT))) "
+                    + "FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = ? GROUP BY TABLE_NAME";
+
+    // 每张表的索引定义校验和（不含受统计缓存影响的CARDINALITY）
+    private static final String INDEXES_SQL =
+            "SELECT TABLE_NAME, COUNT(*), SUM(CRC32(CONCAT_WS('|', INDEX_NAME, SEQ_IN_INDEX, COLUMN_NAME, "
+                    + "NON_UNIQUE, SUB_PART, INDEX_TYPE))) "
+                    + "FROM INFORMATION_SCHEMA.STATISTICS WHERE TABLE_SCHEMA = ? GROUP BY TABLE_NAME";
+
+    private static final String ROUTINES_SQL =
+            "SELECT COUNT(*), MAX(LAST_ALTERED) FROM INFORMATION_SCHEMA.ROUTINES WHERE ROUTINE_SCHEMA = ?";
+
+    @Autowired
+    private ConnectionManagerService connectionManager;
+
+    @Autowired
+    private SessionRegistry sessions;
+
+    @Autowired
+    private MetadataCacheService metadataCache;
+
+    @Autowired
+    private SchemaSnapshotService snapshotService;
+
+    @Value("${dbadmin.schema-watch.interval-ms:30000}")
+    private long intervalMs;
+
+    @Value("${dbadmin.schema-watch.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    private record Subscriber(String sessionId, SseEmitter emitter) {
+    }
+
+    /**
+     * 同一服务器同一用户的同一个库只轮询一次，结果推送给所有订阅者
+     */
+    private static final class Watch {
+        final String database;
+        final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        // 表名 -> 结构指纹，首次轮询前为null；只在轮询线程中读写
+        Map<String, String> tables;
+        String routines;
+
+        Watch(String database) {
+            this.database = database;
+        }
+    }
+
+    private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "schema-watch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void init() {
+        poller.scheduleWithFixedDelay(this::pollAll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 订阅database（为空时取会话当前数据库）的结构变化，变化以schema-change事件推送
+     */
+    public SseEmitter subscribe(String sessionId, String database) throws SQLException, IOException {
+        DbSession session = sessions.get(sessionId);
+        if (session == null) {
+            throw new SQLException("Connection not found or closed");
+        }
+        String schema = database == null || database.trim().isEmpty() ? session.getDatabase() : database;
+        if (schema == null || schema.isEmpty()) {
+            throw new SQLException("No database selected");
+        }
+
+        String key = MetadataCacheService.serverKey(session) + "|" + schema;
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(sessionId, emitter);
+        watches.compute(key, (k, watch) -> {
+            Watch target = watch != null ? watch : new Watch(schema);
+            target.subscribers.add(subscriber);
+            return target;
+        });
+        Runnable remove = () -> unsubscribe(key, subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        Map<String, Object> ready = new LinkedHashMap<>();
+        ready.put("database", schema);
+        ready.put("intervalMs", intervalMs);
+        emitter.send(SseEmitter.event().name("subscribed").data(ready));
+        return emitter;
+    }
+
+    private void unsubscribe(String key, Subscriber subscriber) {
+        watches.computeIfPresent(key, (k, watch) -> {
+            watch.subscribers.remove(subscriber);
+            return watch.subscribers.isEmpty() ? null : watch;
+        });
+    }
+
+    private void pollAll() {
+        for (Map.Entry<String, Watch> entry : watches.entrySet()) {
+            Watch watch = entry.getValue();
+            DbSession session = liveSession(entry.getKey(), watch);
+            if (session == null) {
+                continue;
+            }
+            try {
+                poll(session, watch);
+            } catch (SQLException | RuntimeException e) {
+                log.debug("Schema poll failed for {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 任取一个仍然存在的订阅会话用于轮询；会话已关闭的订阅者直接结束
+     */
+    private DbSession liveSession(String key, Watch watch) {
+        for (Subscriber subscriber : watch.subscribers) {
+            DbSession session = sessions.peek(subscriber.sessionId());
+            if (session != null) {
+                return session;
+            }
+            subscriber.emitter().complete();
+            unsubscribe(key, subscriber);
+        }
+        return null;
+    }
+
+    private void poll(DbSession session, Watch watch) throws SQLException {
+        connectionManager.executeMetadata(session, conn -> {
+            Map<String, String> tables = readTables(conn, watch.database);
+            String routines = readRoutines(conn, watch.database);
+            if (watch.tables == null) {
+                // 第一次轮询只建立基线
+                watch.tables = tables;
+                watch.routines = routines;
+                return null;
+            }
+
+            Set<String> added = new TreeSet<>();
+            Set<String> altered = new TreeSet<>();
+            Set<String> dropped = new TreeSet<>(watch.tables.keySet());
+            dropped.removeAll(tables.keySet());
+            boolean typeChanged = false;
+            for (Map.Entry<String, String> table : tables.entrySet()) {
+                String previous = watch.tables.get(table.getKey());
+                if (previous == null) {
+                    added.add(table.getKey());
+                } else if (!previous.equals(table.getValue())) {
+                    altered.add(table.getKey());
+                    typeChanged |= !tableType(previous).equals(tableType(table.getValue()));
+                }
+            }
+            boolean routinesChanged = !Objects.equals(routines, watch.routines);
+            if (added.isEmpty() && altered.isEmpty() && dropped.isEmpty() && !routinesChanged) {
+                return null;
+            }
+
+            Set<String> changed = new TreeSet<>(added);
+            changed.addAll(altered);
+            Set<String> stale = new HashSet<>(changed);
+            stale.addAll(dropped);
+            metadataCache.invalidate(session, watch.database, typeChanged || !added.isEmpty() || !dropped.isEmpty(),
+                    stale, routinesChanged);
+            snapshotService.refresh(session, conn, watch.database, changed, dropped, routinesChanged);
+            watch.tables = tables;
+            watch.routines = routines;
+
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("database", watch.database);
+            event.put("added", added);
+            event.put("dropped", dropped);
+            event.put("altered", altered);
+            event.put("routinesChanged", routinesChanged);
+            event.put("detectedAt", System.currentTimeMillis());
+            publish(watch, event);
+            return null;
+        });
+    }
+
+    private void publish(Watch watch, Map<String, Object> event) {
+        for (Subscriber subscriber : watch.subscribers) {
+            try {
+                subscriber.emitter().send(SseEmitter.event().name("schema-change").data(event));
+            } catch (IOException | IllegalStateException e) {
+                watch.subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    /**
+     * 表名 -> "类型|引擎|注释|列数:列校验和|索引列数:索引校验和"
+     */
+    private static Map<String, String> readTables(Connection conn, String schema) throws SQLException {
+        Map<String, String> tables = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(TABLES_SQL)) {
+            stmt.setString(1, schema);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    tables.put(rs.getString(1), rs.getString(2) + "|" + rs.getString(3) + "|" + rs.getString(4));
+                }
+            }
+        }
+        Map<String, String> columns = readChecksums(conn, COLUMNS_SQL, schema);
+        Map<String, String> indexes = readChecksums(conn, INDEXES_SQL, schema);
+        tables.replaceAll((table, fingerprint) -> fingerprint + "|" + columns.get(table) + "|" + indexes.get(table));
+        return tables;
+    }
+
+    private static Map<String, String> readChecksums(Connection conn, String sql, String schema) throws SQLException {
+        Map<String, String> checksums = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, schema);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    checksums.put(rs.getString(1), rs.getLong(2) + ":" + rs.getString(3));
+                }
+            }
+        }
+        return checksums;
+    }
+
+    private static String readRoutines(Connection conn, String schema) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(ROUTINES_SQL)) {
+            stmt.setString(1, schema);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) + "|" + rs.getString(2) : "";
+            }
+        }
+    }
+
+    private static String tableType(String fingerprint) {
+        return fingerprint.substring(0, fingerprint.indexOf('|'));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        for (Watch watch : watches.values()) {
+            for (Subscriber subscriber : watch.subscribers) {
+                subscriber.emitter().complete();
+            }
+        }
+        watches.clear();
+    }
+}
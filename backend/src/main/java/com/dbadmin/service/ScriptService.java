@@ -0,0 +1,361 @@
+package com.dbadmin.service;
+
+import com.dbadmin.util.SqlLexer;
+import com.dbadmin.util.SqlScriptSplitter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * 在会话连接上执行整段SQL脚本，每条语句的结果以NDJSON逐行返回。
+ * 连续的DML合并为一个JDBC批次执行（配合rewriteBatchedStatements减少往返）。
+ * 含事务控制或会话状态语句的脚本在会话固定的连接上执行，BEGIN/COMMIT/ROLLBACK走会话的事务接口；
+ * 脚本因错误停止时回滚它自己开启的事务。
+ * 整个脚本以queryId登记，取消时中断正在执行的语句并停止执行后续语句。
+ */
+@Service
+public class ScriptService {
+
+    private static final Set<String> BATCHABLE = Set.of("INSERT", "UPDATE", "DELETE", "REPLACE");
+
+    @Autowired
+    private ConnectionManagerService connectionManager;
+
+    @Autowired
+    private QueryRegistry queries;
+
+    @Autowired
+    private QueryCacheService queryCache;
+
+    @Autowired
+    private MetadataCacheService metadataCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${dbadmin.script.batch-size:500}")
+    private int batchSize;
+
+    @Value("${dbadmin.script.max-rows-per-result:1000}")
+    private int maxRowsPerResult;
+
+    public void execute(String sessionId, String script, boolean continueOnError, OutputStream out)
+            throws SQLException, IOException {
+        execute(sessionId, script, continueOnError, null, out);
+    }
+
+    /**
+     * 执行脚本。continueOnError为false时遇到第一个错误即停止；queryId为空时生成
+     */
+    public void execute(String sessionId, String script, boolean continueOnError, String queryId, OutputStream out)
+            throws SQLException, IOException {
+        List<SqlScriptSplitter.Statement> statements = SqlScriptSplitter.split(script);
+        RunningQuery query = queries.start(sessionId, queryId, script);
+        ScriptRun run = new ScriptRun(out, statements.size(), query);
+        ConnectionCallback<Void> callback = conn -> {
+            try {
+                run.execute(sessionId, conn, statements, continueOnError);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        };
+        // SET、LOCK TABLES、BEGIN等语句的效果要留在后续语句（以及脚本之后的会话请求）使用的连接上
+        boolean sessionState = statements.stream().anyMatch(statement -> SqlLexer.analyze(statement.sql()).sessionState());
+        try {
+            if (sessionState) {
+                connectionManager.executePinned(sessionId, callback);
+            } else {
+                connectionManager.execute(sessionId, callback);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (SQLException e) {
+            throw QueryRegistry.cancelledOr(query, e);
+        } finally {
+            queries.end(query);
+            // 脚本中途失败时前面的语句可能已经生效
+            for (SqlScriptSplitter.Statement statement : statements) {
+                if (!SqlLexer.analyze(statement.sql()).readOnly()) {
+                    queryCache.invalidate(sessionId, statement.sql());
+                    metadataCache.invalidate(sessionId, statement.sql());
+                }
+            }
+        }
+    }
+
+    /**
+     * 一次脚本执行的状态，负责批处理和结果输出
+     */
+    private final class ScriptRun {
+        private final JsonGenerator gen;
+        private final ObjectWriter valueWriter;
+        private final int total;
+        private final RunningQuery query;
+        private final long startTime = System.currentTimeMillis();
+        private final List<Integer> batchIndexes = new ArrayList<>();
+        private int succeeded;
+        private int failed;
+        private boolean stopped;
+        // 脚本自己开启且尚未结束的事务
+        private boolean startedTransaction;
+        private boolean rolledBack;
+
+        ScriptRun(OutputStream out, int total, RunningQuery query) throws IOException {
+            this.gen = objectMapper.getFactory().createGenerator(out);
+            this.gen.setRootValueSeparator(null);
+            this.gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.valueWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            this.total = total;
+            this.query = query;
+        }
+
+        void execute(String sessionId, Connection conn, List<SqlScriptSplitter.Statement> statements,
+                     boolean continueOnError) throws SQLException, IOException {
+            try {
+                executeStatements(sessionId, conn, statements, continueOnError);
+            } finally {
+                // 出错停止或执行中断（如客户端断开）时不把半个事务留在会话上
+                if (startedTransaction && connectionManager.isInTransaction(sessionId)) {
+                    connectionManager.rollback(sessionId);
+                    rolledBack = true;
+                }
+            }
+
+            gen.writeStartObject();
+            gen.writeStringField("type", "summary");
+            gen.writeNumberField("statements", total);
+            gen.writeNumberField("succeeded", succeeded);
+            gen.writeNumberField("failed", failed);
+            gen.writeBooleanField("rolledBack", rolledBack);
+            gen.writeBooleanField("cancelled", query.isCancelled());
+            gen.writeBooleanField("inTransaction", connectionManager.isInTransaction(sessionId));
+            gen.writeNumberField("elapsedMs", System.currentTimeMillis() - startTime);
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+            gen.close();
+        }
+
+        private void executeStatements(String sessionId, Connection conn, List<SqlScriptSplitter.Statement> statements,
+                                       boolean continueOnError) throws SQLException, IOException {
+            try (Statement batch = conn.createStatement()) {
+                query.attach(batch);
+                for (int index = 0; index < statements.size() && !stopped && !query.isCancelled(); index++) {
+                    SqlScriptSplitter.Statement statement = statements.get(index);
+
+                    if (statement.keyword() != null && BATCHABLE.contains(statement.keyword())) {
+                        batch.addBatch(statement.sql());
+                        batchIndexes.add(index);
+                        if (batchIndexes.size() >= batchSize) {
+                            flushBatch(conn, batch, statements, continueOnError);
+                        }
+                        continue;
+                    }
+
+                    flushBatch(conn, batch, statements, continueOnError);
+                    if (stopped) {
+                        break;
+                    }
+
+                    if ("USE".equals(statement.keyword())) {
+                        // USE需要同时改变会话的当前数据库，而不只是本次借用的连接
+                        long start = System.currentTimeMillis();
+                        try {
+                            String database = statement.sql().substring(3).trim().replace("`", "");
+                            conn.setCatalog(database);
+                            connectionManager.switchDatabase(sessionId, database);
+                            writeUpdate(index, statement, 0, System.currentTimeMillis() - start);
+                        } catch (SQLException e) {
+                            writeError(index, statement, e, continueOnError);
+                        }
+                        gen.flush();
+                        continue;
+                    }
+
+                    SqlLexer.Type type = SqlLexer.analyze(statement.sql()).type();
+                    if (type == SqlLexer.Type.BEGIN || type == SqlLexer.Type.COMMIT || type == SqlLexer.Type.ROLLBACK) {
+                        executeTransactionControl(sessionId, index, statement, type, continueOnError);
+                        gen.flush();
+                        continue;
+                    }
+
+                    executeSingle(conn, index, statement, continueOnError);
+                    gen.flush();
+                }
+                if (!stopped && !query.isCancelled()) {
+                    flushBatch(conn, batch, statements, continueOnError);
+                }
+            }
+        }
+
+        /**
+         * 事务控制语句交给会话的事务接口，使事务状态对脚本之后的请求可见；没有事务时COMMIT/ROLLBACK什么也不做
+         */
+        private void executeTransactionControl(String sessionId, int index, SqlScriptSplitter.Statement statement,
+                                               SqlLexer.Type type, boolean continueOnError) throws IOException {
+            long start = System.currentTimeMillis();
+            try {
+                if (type == SqlLexer.Type.BEGIN) {
+                    if (!connectionManager.isInTransaction(sessionId)) {
+                        connectionManager.beginTransaction(sessionId);
+                        startedTransaction = true;
+                    }
+                } else if (connectionManager.isInTransaction(sessionId)) {
+                    startedTransaction = false;
+                    if (type == SqlLexer.Type.COMMIT) {
+                        connectionManager.commit(sessionId);
+                    } else {
+                        connectionManager.rollback(sessionId);
+                    }
+                }
+                writeUpdate(index, statement, 0, System.currentTimeMillis() - start);
+            } catch (SQLException e) {
+                writeError(index, statement, e, continueOnError);
+            }
+        }
+
+        private void executeSingle(Connection conn, int index, SqlScriptSplitter.Statement statement,
+                                   boolean continueOnError) throws IOException {
+            long start = System.currentTimeMillis();
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setMaxRows(maxRowsPerResult + 1);
+                query.attach(stmt);
+                try {
+                    boolean hasResultSet = stmt.execute(statement.sql());
+                    if (hasResultSet) {
+                        try (ResultSet rs = stmt.getResultSet()) {
+                            writeResultSet(index, statement, rs, System.currentTimeMillis() - start);
+                        }
+                    } else {
+                        writeUpdate(index, statement, stmt.getUpdateCount(), System.currentTimeMillis() - start);
+                    }
+                } finally {
+                    query.detach(stmt);
+                }
+            } catch (SQLException e) {
+                writeError(index, statement, e, continueOnError);
+            }
+        }
+
+        private void flushBatch(Connection conn, Statement batch, List<SqlScriptSplitter.Statement> statements,
+                                boolean continueOnError) throws SQLException, IOException {
+            if (batchIndexes.isEmpty()) {
+                return;
+            }
+            List<Integer> indexes = new ArrayList<>(batchIndexes);
+            batchIndexes.clear();
+
+            // 批次改写为多语句发送时，驱动在出错后无法报告前面哪些语句已经执行（整段标为EXECUTE_FAILED），
+            // 因此批次放在事务（已在事务中时用保存点）里执行：失败时整体撤销，再逐条执行定位出错的语句。
+            // 非事务引擎（如MyISAM）的表无法撤销，逐条重试时前面的语句会重复执行
+            long start = System.currentTimeMillis();
+            boolean autoCommit = conn.getAutoCommit();
+            Savepoint savepoint = autoCommit ? null : conn.setSavepoint();
+            int[] counts = null;
+            try {
+                if (autoCommit) {
+                    conn.setAutoCommit(false);
+                }
+                counts = batch.executeBatch();
+                if (autoCommit) {
+                    conn.commit();
+                } else {
+                    conn.releaseSavepoint(savepoint);
+                }
+            } catch (SQLException e) {
+                if (autoCommit) {
+                    conn.rollback();
+                } else {
+                    conn.rollback(savepoint);
+                }
+            } finally {
+                batch.clearBatch();
+                if (autoCommit) {
+                    conn.setAutoCommit(true);
+                }
+            }
+            long elapsed = System.currentTimeMillis() - start;
+
+            for (int i = 0; i < indexes.size() && !stopped; i++) {
+                int index = indexes.get(i);
+                SqlScriptSplitter.Statement statement = statements.get(index);
+                if (counts != null) {
+                    // 整个批次的耗时记在第一条语句上
+                    writeUpdate(index, statement, counts[i], i == 0 ? elapsed : 0);
+                } else {
+                    executeSingle(conn, index, statement, continueOnError);
+                }
+            }
+            gen.flush();
+        }
+
+        private void writeUpdate(int index, SqlScriptSplitter.Statement statement, int affectedRows, long elapsedMs)
+                throws IOException {
+            succeeded++;
+            writeHeader(index, statement, "update");
+            gen.writeNumberField("affectedRows", affectedRows);
+            gen.writeNumberField("elapsedMs", elapsedMs);
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+        }
+
+        private void writeResultSet(int index, SqlScriptSplitter.Statement statement, ResultSet rs, long elapsedMs)
+                throws SQLException, IOException {
+            succeeded++;
+            JsonRowWriter rowWriter = new JsonRowWriter(rs.getMetaData(), valueWriter);
+
+            writeHeader(index, statement, "resultSet");
+            gen.writeFieldName("columns");
+            rowWriter.writeColumns(gen);
+
+            gen.writeArrayFieldStart("rows");
+            int rows = 0;
+            boolean truncated = false;
+            while (rs.next()) {
+                if (rows == maxRowsPerResult) {
+                    truncated = true;
+                    break;
+                }
+                rowWriter.writeArray(rs, gen);
+                rows++;
+            }
+            gen.writeEndArray();
+            gen.writeBooleanField("truncated", truncated);
+            gen.writeNumberField("elapsedMs", elapsedMs);
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+        }
+
+        private void writeError(int index, SqlScriptSplitter.Statement statement, SQLException e,
+                                boolean continueOnError) throws IOException {
+            failed++;
+            writeHeader(index, statement, "error");
+            gen.writeStringField("error", QueryRegistry.cancelledOr(query, e).getMessage());
+            gen.writeEndObject();
+            gen.writeRaw('\n');
+            // 被取消的脚本即使continueOnError也不再执行后续语句
+            if (!continueOnError || query.isCancelled()) {
+                stopped = true;
+            }
+        }
+
+        private void writeHeader(int index, SqlScriptSplitter.Statement statement, String type) throws IOException {
+            String sql = statement.sql();
+            gen.writeStartObject();
+            gen.writeStringField("type", type);
+            gen.writeNumberField("index", index);
+            gen.writeNumberField("line", statement.line());
+            gen.writeStringField("sql", sql.length() > 200 ? sql.substring(0, 200) + "..." : sql);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.dbadmin.service;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 会话的串行执行通道：写语句、USE以及事务内的语句按到达顺序逐个执行，避免多个标签页在同一连接上交错。
+ * 记录排队深度、等待时间和正在执行的语句，被慢查询阻塞时可以看到原因，等待超时后直接报错而不是一直挂起。
+ */
+public class SessionLane {
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong laneCount = new AtomicLong();
+    private final AtomicLong fastPathCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private volatile String currentSql;
+    private volatile long currentSince;
+
+    /**
+     * 进入通道，最多等待timeoutMs。同一线程重复进入（如executeUpdate中的USE转到switchDatabase）不再排队。
+     */
+    public Ticket enter(String sql, long timeoutMs) throws SQLException {
+        if (lock.isHeldByCurrentThread()) {
+            lock.lock();
+            return new Ticket(currentSql, currentSince);
+        }
+
+        long start = System.nanoTime();
+        boolean acquired;
+        waiting.incrementAndGet();
+        try {
+            acquired = lock.tryLock(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for session");
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (!acquired) {
+            timeoutCount.incrementAndGet();
+            String blocking = currentSql;
+            throw new SQLException("Session busy: waited " + TimeUnit.NANOSECONDS.toMillis(waited) + " ms"
+                    + (blocking != null ? " behind a statement running for "
+                    + (System.currentTimeMillis() - currentSince) + " ms: " + abbreviate(blocking) : ""));
+        }
+
+        laneCount.incrementAndGet();
+        currentSql = sql;
+        currentSince = System.currentTimeMillis();
+        return new Ticket(null, 0);
+    }
+
+    /**
+     * 记录一次走快速通道（只读语句借用独立连接）的执行
+     */
+    public void recordFastPath() {
+        fastPathCount.incrementAndGet();
+    }
+
+    /**
+     * 通道是否有语句正在执行或排队
+     */
+    public boolean isBusy() {
+        return lock.isLocked() || waiting.get() > 0;
+    }
+
+    /**
+     * 不等待地尝试进入通道，通道被占用时返回null（供后台维护任务使用，不计入统计）
+     */
+    public Ticket tryEnter(String sql) {
+        if (!lock.tryLock()) {
+            return null;
+        }
+        String outerSql = currentSql;
+        long outerSince = currentSince;
+        currentSql = sql;
+        currentSince = System.currentTimeMillis();
+        return new Ticket(outerSql, outerSince);
+    }
+
+    public int getQueueDepth() {
+        return waiting.get();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        String sql = currentSql;
+        long entered = laneCount.get() + timeoutCount.get();
+        stats.put("queueDepth", waiting.get());
+        stats.put("busy", lock.isLocked());
+        stats.put("currentSql", sql != null ? abbreviate(sql) : null);
+        stats.put("currentRunningMs", sql != null ? System.currentTimeMillis() - currentSince : 0);
+        stats.put("laneCount", laneCount.get());
+        stats.put("fastPathCount", fastPathCount.get());
+        stats.put("timeoutCount", timeoutCount.get());
+        stats.put("avgWaitMs", entered == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / entered));
+        stats.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        return stats;
+    }
+
+    private static String abbreviate(String sql) {
+        return sql.length() > 200 ? sql.substring(0, 200) + "..." : sql;
+    }
+
+    /**
+     * 通道占用凭证，close时离开通道；重入的凭证恢复外层语句的信息
+     */
+    public final class Ticket implements AutoCloseable {
+        private final String outerSql;
+        private final long outerSince;
+
+        private Ticket(String outerSql, long outerSince) {
+            this.outerSql = outerSql;
+            this.outerSince = outerSince;
+        }
+
+        @Override
+        public void close() {
+            currentSql = outerSql;
+            currentSince = outerSince;
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.dbadmin.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 会话登记表：记录最近访问时间，限制每个连接配置的会话数，超出时按LRU淘汰空闲会话
+ */
+@Component
+public class SessionRegistry {
+
+    private final Map<String, DbSession> sessions = new ConcurrentHashMap<>();
+
+    @Value("${dbadmin.session.max-per-profile:20}")
+    private int maxPerProfile;
+
+    /**
+     * 取会话并刷新访问时间
+     */
+    public DbSession get(String sessionId) {
+        DbSession session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session != null) {
+            session.touch();
+        }
+        return session;
+    }
+
+    /**
+     * 取会话但不刷新访问时间（列表、状态检查等不算作使用）
+     */
+    public DbSession peek(String sessionId) {
+        return sessionId != null ? sessions.get(sessionId) : null;
+    }
+
+    public boolean contains(String sessionId) {
+        return sessionId != null && sessions.containsKey(sessionId);
+    }
+
+    /**
+     * 登记新会话。同一连接配置的会话数达到上限时淘汰最久未访问且空闲（不在事务中、通道未占用）的会话，
+     * 被淘汰的会话从登记表移除后返回，由调用方释放其资源；没有可淘汰的会话时拒绝登记。
+     */
+    public synchronized List<DbSession> register(DbSession session) throws SQLException {
+        List<DbSession> sameProfile = new ArrayList<>();
+        for (DbSession existing : sessions.values()) {
+            if (existing.getPoolKey().equals(session.getPoolKey())) {
+                sameProfile.add(existing);
+            }
+        }
+
+        List<DbSession> evicted = new ArrayList<>();
+        if (sameProfile.size() >= maxPerProfile) {
+            sameProfile.sort(Comparator.comparingLong(DbSession::getLastAccess));
+            for (DbSession candidate : sameProfile) {
+                if (sameProfile.size() - evicted.size() < maxPerProfile) {
+                    break;
+                }
+                if (candidate.getPinnedLease() == null && !candidate.getLane().isBusy()
+                        && sessions.remove(candidate.getId(), candidate)) {
+                    evicted.add(candidate);
+                }
+            }
+            if (sameProfile.size() - evicted.size() >= maxPerProfile) {
+                // 淘汰不足时放回，保持原状
+                evicted.forEach(s -> sessions.put(s.getId(), s));
+                throw new SQLException("Too many sessions for " + session.getPoolKey() + " (max " + maxPerProfile + ")");
+            }
+        }
+
+        sessions.put(session.getId(), session);
+        return evicted;
+    }
+
+    public DbSession remove(String sessionId) {
+        return sessionId != null ? sessions.remove(sessionId) : null;
+    }
+
+    /**
+     * 空闲超过idleTimeoutMs的会话，按最近访问时间从旧到新，最多limit个
+     */
+    public List<DbSession> findIdle(long idleTimeoutMs, int limit) {
+        long deadline = System.currentTimeMillis() - idleTimeoutMs;
+        List<DbSession> idle = new ArrayList<>();
+        for (DbSession session : sessions.values()) {
+            if (session.getLastAccess() < deadline) {
+                idle.add(session);
+            }
+        }
+        idle.sort(Comparator.comparingLong(DbSession::getLastAccess));
+        return idle.size() > limit ? idle.subList(0, limit) : idle;
+    }
+
+    public Collection<DbSession> all() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,79 @@
+package com.dbadmin.service.export;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * RFC 4180 CSV，首行为列名，NULL写为空字段，空字符串写为""以便与NULL区分。带UTF-8 BOM以便Excel正确识别中文。
+ */
+public class CsvExportWriter extends ExportWriter {
+
+    private final Writer writer;
+
+    public CsvExportWriter(OutputStream out) {
+        super(out);
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        writer.write('\uFEFF');
+        for (int i = 0; i < columnNames.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(columnNames[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    @Override
+    protected void writeRow(ResultSet rs) throws SQLException, IOException {
+        for (int i = 1; i <= columnNames.length; i++) {
+            if (i > 1) {
+                writer.write(',');
+            }
+            String value = textValue(rs, i);
+            if (value != null) {
+                writeField(value);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeField(String value) throws IOException {
+        // 空字符串加引号，未加引号的空字段表示NULL
+        boolean needsQuote = value.isEmpty();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                needsQuote = true;
+                break;
+            }
+        }
+        if (!needsQuote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    @Override
+    protected void writeFooter() {
+    }
+
+    @Override
+    protected void flush() throws IOException {
+        writer.flush();
+    }
+}
@@ -0,0 +1,60 @@
+package com.dbadmin.service.export;
+
+import java.io.OutputStream;
+
+/**
+ * 支持的导出格式
+ */
+public enum ExportFormat {
+    CSV("text/csv", "csv"),
+    JSONL("application/x-ndjson", "jsonl"),
+    SQL("application/sql", "sql"),
+    XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static ExportFormat fromString(String value) {
+        if (value == null || value.isEmpty()) {
+            return CSV;
+        }
+        String normalized = value.trim().toUpperCase();
+        if ("JSON".equals(normalized) || "NDJSON".equals(normalized)) {
+            return JSONL;
+        }
+        try {
+            return ExportFormat.valueOf(normalized);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported export format: " + value);
+        }
+    }
+
+    /**
+     * 创建对应格式的写出器，tableName仅SQL格式使用
+     */
+    public ExportWriter createWriter(OutputStream out, String tableName) {
+        switch (this) {
+            case JSONL:
+                return new JsonLinesExportWriter(out);
+            case SQL:
+                return new SqlInsertExportWriter(out, tableName);
+            case XLSX:
+                return new XlsxExportWriter(out);
+            default:
+                return new CsvExportWriter(out);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.dbadmin.service.export;
+
+import com.dbadmin.service.ResultSetHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式导出写出器：begin写文件头，writeRows逐行写出一个结果集（可多次调用以拼接多个分段），end写文件尾。
+ * 不缓存行数据，内存占用与结果大小无关。
+ * 支持片段的格式还可以用beginFragment/endFragment只写出行数据，多个片段按顺序拼接在文件头之后即为完整文件。
+ */
+public abstract class ExportWriter implements ResultSetHandler {
+
+    protected final OutputStream out;
+    protected String[] columnNames;
+    protected int[] columnTypes;
+    private long rowCount;
+    private AtomicLong rowCounter = new AtomicLong();
+
+    protected ExportWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void setRowCounter(AtomicLong rowCounter) {
+        this.rowCounter = rowCounter;
+    }
+
+    @Override
+    public void handle(ResultSet rs) throws SQLException, IOException {
+        begin(rs.getMetaData());
+        writeRows(rs);
+        end();
+    }
+
+    public void begin(ResultSetMetaData metaData) throws SQLException, IOException {
+        prepare(metaData);
+        writeHeader();
+    }
+
+    /**
+     * 开始一个只含行数据的片段，不写文件头
+     */
+    public void beginFragment(ResultSetMetaData metaData) throws SQLException, IOException {
+        if (!supportsFragments()) {
+            throw new IOException("Format does not support fragments");
+        }
+        prepare(metaData);
+    }
+
+    public void endFragment() throws IOException {
+        finishRows();
+        flush();
+    }
+
+    /**
+     * 是否可以把行数据拆成片段分别写出再拼接：要求文件尾为空，且行之间没有跨片段的状态
+     */
+    public boolean supportsFragments() {
+        return true;
+    }
+
+    private void prepare(ResultSetMetaData metaData) throws SQLException, IOException {
+        int columnCount = metaData.getColumnCount();
+        columnNames = new String[columnCount];
+        columnTypes = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = metaData.getColumnLabel(i + 1);
+            columnTypes[i] = metaData.getColumnType(i + 1);
+        }
+        init();
+    }
+
+    public long writeRows(ResultSet rs) throws SQLException, IOException {
+        long written = 0;
+        while (rs.next()) {
+            writeRow(rs);
+            written++;
+            rowCounter.lazySet(rowCount + written);
+        }
+        rowCount += written;
+        return written;
+    }
+
+    public void end() throws IOException {
+        finishRows();
+        writeFooter();
+        flush();
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 列信息就绪后的初始化，不产生输出
+     */
+    protected void init() throws IOException {
+    }
+
+    protected abstract void writeHeader() throws IOException;
+
+    protected abstract void writeRow(ResultSet rs) throws SQLException, IOException;
+
+    /**
+     * 结束未完成的行输出（如未结束的多值INSERT）
+     */
+    protected void finishRows() throws IOException {
+    }
+
+    protected abstract void writeFooter() throws IOException;
+
+    protected abstract void flush() throws IOException;
+
+    /**
+     * 单元格的文本形式：二进制列用Base64，BIT列按数字输出，NULL返回null
+     */
+    protected String textValue(ResultSet rs, int column) throws SQLException {
+        int type = columnTypes[column - 1];
+        if (isBinary(type)) {
+            byte[] bytes = rs.getBytes(column);
+            return bytes == null ? null : Base64.getEncoder().encodeToString(bytes);
+        }
+        if (type == Types.BIT || type == Types.BOOLEAN) {
+            long value = rs.getLong(column);
+            return rs.wasNull() ? null : String.valueOf(value);
+        }
+        return rs.getString(column);
+    }
+
+    protected static boolean isBinary(int type) {
+        return type == Types.BINARY || type == Types.VARBINARY || type == Types.LONGVARBINARY || type == Types.BLOB;
+    }
+
+    protected static boolean isNumeric(int type) {
+        switch (type) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
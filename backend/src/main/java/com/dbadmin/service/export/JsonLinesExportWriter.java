@@ -0,0 +1,83 @@
+package com.dbadmin.service.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * JSON Lines：每行一个以列名为键的对象，数值保持数字类型，日期时间输出为字符串
+ */
+public class JsonLinesExportWriter extends ExportWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private JsonGenerator gen;
+    private SerializedString[] names;
+
+    public JsonLinesExportWriter(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    protected void init() throws IOException {
+        gen = JSON_FACTORY.createGenerator(out);
+        gen.setRootValueSeparator(null);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        names = new SerializedString[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            names[i] = new SerializedString(columnNames[i]);
+        }
+    }
+
+    @Override
+    protected void writeHeader() {
+    }
+
+    @Override
+    protected void writeRow(ResultSet rs) throws SQLException, IOException {
+        gen.writeStartObject();
+        for (int i = 1; i <= names.length; i++) {
+            gen.writeFieldName(names[i - 1]);
+            int type = columnTypes[i - 1];
+            if (isBinary(type)) {
+                byte[] bytes = rs.getBytes(i);
+                if (bytes == null) {
+                    gen.writeNull();
+                } else {
+                    gen.writeBinary(bytes);
+                }
+                continue;
+            }
+            String value = textValue(rs, i);
+            if (value == null) {
+                gen.writeNull();
+            } else if (type == Types.BIT || type == Types.BOOLEAN) {
+                gen.writeNumber(Long.parseLong(value));
+            } else if (isNumeric(type)) {
+                // 直接写出数据库给出的数字文本，避免精度损失
+                gen.writeNumber(value);
+            } else {
+                gen.writeString(value);
+            }
+        }
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+    }
+
+    @Override
+    protected void writeFooter() {
+    }
+
+    @Override
+    protected void flush() throws IOException {
+        if (gen != null) {
+            gen.flush();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.dbadmin.service.export;
+
+import com.dbadmin.util.SqlIdentifiers;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * SQL INSERT脚本，每ROWS_PER_STATEMENT行合并为一条多值INSERT
+ */
+public class SqlInsertExportWriter extends ExportWriter {
+
+    private static final int ROWS_PER_STATEMENT = 100;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final Writer writer;
+    private final String tableName;
+    private String insertPrefix;
+    private int rowsInStatement;
+
+    public SqlInsertExportWriter(OutputStream out, String tableName) {
+        super(out);
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        this.tableName = tableName == null || tableName.isEmpty() ? "export_table" : tableName;
+    }
+
+    @Override
+    protected void init() {
+        StringBuilder prefix = new StringBuilder("INSERT INTO ").append(SqlIdentifiers.quote(tableName)).append(" (");
+        for (int i = 0; i < columnNames.length; i++) {
+            if (i > 0) {
+                prefix.append(", ");
+            }
+            prefix.append(SqlIdentifiers.quote(columnNames[i]));
+        }
+        insertPrefix = prefix.append(") VALUES\n").toString();
+    }
+
+    @Override
+    protected void writeHeader() {
+    }
+
+    @Override
+    protected void writeRow(ResultSet rs) throws SQLException, IOException {
+        if (rowsInStatement == 0) {
+            writer.write(insertPrefix);
+        } else {
+            writer.write(",\n");
+        }
+        writer.write('(');
+        for (int i = 1; i <= columnNames.length; i++) {
+            if (i > 1) {
+                writer.write(", ");
+            }
+            writeLiteral(rs, i);
+        }
+        writer.write(')');
+
+        if (++rowsInStatement == ROWS_PER_STATEMENT) {
+            writer.write(";\n");
+            rowsInStatement = 0;
+        }
+    }
+
+    private void writeLiteral(ResultSet rs, int column) throws SQLException, IOException {
+        int type = columnTypes[column - 1];
+        if (isBinary(type)) {
+            byte[] bytes = rs.getBytes(column);
+            if (bytes == null) {
+                writer.write("NULL");
+                return;
+            }
+            writer.write("X'");
+            for (byte b : bytes) {
+                writer.write(HEX[(b >> 4) & 0xF]);
+                writer.write(HEX[b & 0xF]);
+            }
+            writer.write('\'');
+            return;
+        }
+
+        String value = textValue(rs, column);
+        if (value == null) {
+            writer.write("NULL");
+        } else if (isNumeric(type)) {
+            writer.write(value);
+        } else {
+            writer.write('\'');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\'': writer.write("\\'"); break;
+                    case '\\': writer.write("\\\\"); break;
+                    case '\n': writer.write("\\n"); break;
+                    case '\r': writer.write("\\r"); break;
+                    case '\0': writer.write("\\0"); break;
+                    case '\u001A': writer.write("\\Z"); break;
+                    default: writer.write(c);
+                }
+            }
+            writer.write('\'');
+        }
+    }
+
+    @Override
+    protected void finishRows() throws IOException {
+        if (rowsInStatement > 0) {
+            writer.write(";\n");
+            rowsInStatement = 0;
+        }
+    }
+
+    @Override
+    protected void writeFooter() {
+    }
+
+    @Override
+    protected void flush() throws IOException {
+        writer.flush();
+    }
+}
@@ -0,0 +1,181 @@
+package com.dbadmin.service.export;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 流式XLSX写出：工作表XML逐行写入zip条目，字符串使用内联字符串（不需要在内存中维护共享字符串表）。
+ * 超过单个工作表的行数上限时自动续写到下一个工作表；workbook等描述文件在最后写出。
+ */
+public class XlsxExportWriter extends ExportWriter {
+
+    // Excel单个工作表最多1048576行，含表头
+    private static final int MAX_ROWS_PER_SHEET = 1_048_576;
+
+    private final ZipOutputStream zip;
+    private final Writer writer;
+    private int sheetCount;
+    private int rowsInSheet;
+
+    public XlsxExportWriter(OutputStream out) {
+        super(out);
+        this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        this.writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    @Override
+    public boolean supportsFragments() {
+        return false;
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        startSheet();
+    }
+
+    @Override
+    protected void writeRow(ResultSet rs) throws SQLException, IOException {
+        if (rowsInSheet >= MAX_ROWS_PER_SHEET) {
+            endSheet();
+            startSheet();
+        }
+        writer.write("<row>");
+        for (int i = 1; i <= columnNames.length; i++) {
+            String value = textValue(rs, i);
+            if (value == null) {
+                writer.write("<c/>");
+            } else if (isNumeric(columnTypes[i - 1]) && value.length() <= 15) {
+                // 超过15位有效数字的数值Excel会丢精度，按文本写出
+                writer.write("<c><v>");
+                writer.write(value);
+                writer.write("</v></c>");
+            } else {
+                writeInlineString(value);
+            }
+        }
+        writer.write("</row>\n");
+        rowsInSheet++;
+    }
+
+    private void startSheet() throws IOException {
+        sheetCount++;
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetCount + ".xml"));
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        writer.write("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>\n");
+        writer.write("<row>");
+        for (String name : columnNames) {
+            writeInlineString(name);
+        }
+        writer.write("</row>\n");
+        rowsInSheet = 1;
+    }
+
+    private void endSheet() throws IOException {
+        writer.write("</sheetData></worksheet>");
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    private void writeInlineString(String value) throws IOException {
+        writer.write("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+        writeEscaped(value);
+        writer.write("</t></is></c>");
+    }
+
+    private void writeEscaped(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<': writer.write("&lt;"); break;
+                case '>': writer.write("&gt;"); break;
+                case '&': writer.write("&amp;"); break;
+                case '"': writer.write("&quot;"); break;
+                default:
+                    // XML 1.0不允许的控制字符直接丢弃
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        writer.write(c);
+                    }
+            }
+        }
+    }
+
+    @Override
+    protected void writeFooter() throws IOException {
+        endSheet();
+
+        writeEntry("[Content_Types].xml", contentTypes());
+        writeEntry("_rels/.rels",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                + "</Relationships>");
+        writeEntry("xl/workbook.xml", workbook());
+        writeEntry("xl/_rels/workbook.xml.rels", workbookRels());
+        writeEntry("xl/styles.xml",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+                + "<fonts count=\"1\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>"
+                + "<fills count=\"1\"><fill><patternFill patternType=\"none\"/></fill></fills>"
+                + "<borders count=\"1\"><border/></borders>"
+                + "<cellStyleXfs count=\"1\"><xf/></cellStyleXfs>"
+                + "<cellXfs count=\"1\"><xf/></cellXfs>"
+                + "</styleSheet>");
+        zip.finish();
+    }
+
+    private String contentTypes() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                + "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        for (int i = 1; i <= sheetCount; i++) {
+            xml.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                    .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        return xml.append("</Types>").toString();
+    }
+
+    private String workbook() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" "
+                + "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>");
+        for (int i = 1; i <= sheetCount; i++) {
+            xml.append("<sheet name=\"Sheet").append(i).append("\" sheetId=\"").append(i)
+                    .append("\" r:id=\"rId").append(i).append("\"/>");
+        }
+        return xml.append("</sheets></workbook>").toString();
+    }
+
+    private String workbookRels() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int i = 1; i <= sheetCount; i++) {
+            xml.append("<Relationship Id=\"rId").append(i)
+                    .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet")
+                    .append(i).append(".xml\"/>");
+        }
+        int stylesId = sheetCount + 1;
+        xml.append("<Relationship Id=\"rId").append(stylesId)
+                .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>");
+        return xml.append("</Relationships>").toString();
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        writer.write(content);
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    @Override
+    protected void flush() throws IOException {
+        writer.flush();
+        out.flush();
+    }
+}
@@ -0,0 +1,192 @@
+package com.dbadmin.service.spool;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 读取ResultSpoolWriter写出的落盘结果：按行号查索引得到偏移，只解码所需页的数据。
+ * 数据和索引文件按段内存映射（首次访问时映射），跳到任意一页的代价与页号无关，也不占用堆内存；
+ * 只读的绝对位置访问，多个线程可以同时读取。
+ */
+public class ResultSpoolReader implements Closeable {
+
+    // 单个映射段的大小，MappedByteBuffer最大只能映射2GB
+    private static final long SEGMENT_SIZE = 256L * 1024 * 1024;
+
+    private final FileChannel data;
+    private final FileChannel index;
+    private final MappedByteBuffer[] dataSegments;
+    private final MappedByteBuffer[] indexSegments;
+    private final List<String> columns;
+    private final List<String> columnTypes;
+    private final long rowCount;
+    private final long dataSize;
+
+    public ResultSpoolReader(Path dataFile, Path indexFile) throws IOException {
+        this.data = FileChannel.open(dataFile, StandardOpenOption.READ);
+        this.index = FileChannel.open(indexFile, StandardOpenOption.READ);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(data.position(0))));
+            if (in.readInt() != ResultSpoolWriter.MAGIC) {
+                throw new IOException("Not a result spool file: " + dataFile);
+            }
+            int columnCount = in.readInt();
+            List<String> names = new ArrayList<>(columnCount);
+            List<String> types = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                names.add(in.readUTF());
+                types.add(in.readUTF());
+            }
+            this.columns = Collections.unmodifiableList(names);
+            this.columnTypes = Collections.unmodifiableList(types);
+            this.rowCount = index.size() / Long.BYTES;
+            this.dataSize = data.size();
+            this.dataSegments = new MappedByteBuffer[(int) ((dataSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            this.indexSegments = new MappedByteBuffer[(int) ((index.size() + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public List<String> getColumnTypes() {
+        return columnTypes;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 读取从offset开始的最多limit行
+     */
+    public List<Object[]> readRows(long offset, int limit) throws IOException {
+        if (offset < 0 || offset >= rowCount || limit <= 0) {
+            return new ArrayList<>();
+        }
+        int count = (int) Math.min(limit, rowCount - offset);
+
+        // 下一行的偏移即为最后一行的结束位置
+        long start = rowOffset(offset);
+        long end = offset + count < rowCount ? rowOffset(offset + count) : dataSize;
+
+        ByteBuffer buffer;
+        int segment = (int) (start / SEGMENT_SIZE);
+        if (segment == (int) ((end - 1) / SEGMENT_SIZE)) {
+            buffer = dataSegment(segment).duplicate();
+            buffer.limit((int) (end - segment * SEGMENT_SIZE));
+            buffer.position((int) (start - segment * SEGMENT_SIZE));
+        } else {
+            // 跨越映射段边界的页较少见，直接读到堆内
+            buffer = ByteBuffer.allocate((int) (end - start));
+            readFully(data, buffer, start);
+            buffer.flip();
+        }
+
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int r = 0; r < count; r++) {
+            rows.add(decodeRow(buffer, columns.size()));
+        }
+        return rows;
+    }
+
+    private long rowOffset(long row) throws IOException {
+        long position = row * Long.BYTES;
+        int segment = (int) (position / SEGMENT_SIZE);
+        // SEGMENT_SIZE是8的倍数，单个偏移不会跨段
+        return indexSegment(segment).getLong((int) (position - segment * SEGMENT_SIZE));
+    }
+
+    private synchronized MappedByteBuffer dataSegment(int segment) throws IOException {
+        if (dataSegments[segment] == null) {
+            dataSegments[segment] = map(data, segment, dataSize);
+        }
+        return dataSegments[segment];
+    }
+
+    private synchronized MappedByteBuffer indexSegment(int segment) throws IOException {
+        if (indexSegments[segment] == null) {
+            indexSegments[segment] = map(index, segment, rowCount * Long.BYTES);
+        }
+        return indexSegments[segment];
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, int segment, long size) throws IOException {
+        long position = segment * SEGMENT_SIZE;
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+    }
+
+    /**
+     * 从buffer的当前位置解码一行
+     */
+    static Object[] decodeRow(ByteBuffer buffer, int columnCount) throws IOException {
+        Object[] row = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            byte tag = buffer.get();
+            switch (tag) {
+                case ResultSpoolWriter.NULL:
+                    break;
+                case ResultSpoolWriter.LONG:
+                    row[i] = buffer.getLong();
+                    break;
+                case ResultSpoolWriter.DOUBLE:
+                    row[i] = buffer.getDouble();
+                    break;
+                case ResultSpoolWriter.STRING:
+                    row[i] = new String(readBytes(buffer), StandardCharsets.UTF_8);
+                    break;
+                case ResultSpoolWriter.BYTES:
+                    row[i] = readBytes(buffer);
+                    break;
+                case ResultSpoolWriter.BOOLEAN:
+                    row[i] = buffer.get() != 0;
+                    break;
+                case ResultSpoolWriter.DECIMAL:
+                    row[i] = new BigDecimal(new String(readBytes(buffer), StandardCharsets.US_ASCII));
+                    break;
+                default:
+                    throw new IOException("Corrupt result spool: unknown value tag " + tag);
+            }
+        }
+        return row;
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of result spool");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // 映射在缓冲区被回收时才释放，关闭通道后已映射的段仍然有效
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+}
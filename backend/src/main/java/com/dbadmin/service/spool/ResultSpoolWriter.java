@@ -0,0 +1,161 @@
+package com.dbadmin.service.spool;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 把结果行写入紧凑的二进制落盘文件：数据文件顺序存放行，索引文件按行号存放每行在数据文件中的偏移（8字节），
+ * 读取任意一页只需按行号计算索引位置，不需要从头扫描。
+ *
+ * 数据文件格式：MAGIC、列数、每列的名称和类型名，之后每行按列依次为一个类型标记字节加值（大端序）。
+ */
+public class ResultSpoolWriter implements Closeable {
+
+    static final int MAGIC = 0x52535031; // "RSP1"
+
+    static final byte NULL = 0;
+    static final byte LONG = 1;
+    static final byte DOUBLE = 2;
+    static final byte STRING = 3;
+    static final byte BYTES = 4;
+    static final byte BOOLEAN = 5;
+    static final byte DECIMAL = 6;
+
+    private final CountingOutputStream dataCounter;
+    private final DataOutputStream data;
+    private final DataOutputStream index;
+    private final int columnCount;
+    private long rowCount;
+
+    public ResultSpoolWriter(Path dataFile, Path indexFile, List<String> columns, List<String> columnTypes)
+            throws IOException {
+        this.dataCounter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(dataFile), 64 * 1024));
+        this.data = new DataOutputStream(dataCounter);
+        this.index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile), 16 * 1024));
+        this.columnCount = columns.size();
+
+        data.writeInt(MAGIC);
+        data.writeInt(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            data.writeUTF(columns.get(i));
+            data.writeUTF(columnTypes.get(i) != null ? columnTypes.get(i) : "");
+        }
+    }
+
+    /**
+     * 写出结果集的当前行
+     */
+    public void writeRow(ResultSet rs) throws SQLException, IOException {
+        index.writeLong(dataCounter.count);
+        for (int i = 1; i <= columnCount; i++) {
+            writeValue(readValue(rs, i));
+        }
+        rowCount++;
+    }
+
+    /**
+     * 以落盘格式能表示的类型读取一个值：日期时间等类型按MySQL的文本形式返回，
+     * 保证内存中的行与从文件读回的行一致
+     */
+    public static Object readValue(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        return value == null || isNative(value) ? value : rs.getString(column);
+    }
+
+    /**
+     * 写出一行已取出的值
+     */
+    public void writeRow(Object[] values) throws IOException {
+        index.writeLong(dataCounter.count);
+        for (Object value : values) {
+            writeValue(value);
+        }
+        rowCount++;
+    }
+
+    private static boolean isNative(Object value) {
+        return value instanceof Number || value instanceof Boolean || value instanceof byte[] || value instanceof String;
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            data.writeByte(NULL);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            data.writeByte(LONG);
+            data.writeLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            data.writeByte(DOUBLE);
+            data.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            data.writeByte(DECIMAL);
+            writeString(value.toString());
+        } else if (value instanceof Boolean) {
+            data.writeByte(BOOLEAN);
+            data.writeBoolean((Boolean) value);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            data.writeByte(BYTES);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        } else {
+            data.writeByte(STRING);
+            writeString(value.toString());
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 已写出的数据字节数（含未刷出的缓冲）
+     */
+    public long getDataBytes() {
+        return dataCounter.count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * 记录写出的字节数，DataOutputStream.size()在超过2GB后会溢出
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
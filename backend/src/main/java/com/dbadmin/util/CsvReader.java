@@ -0,0 +1,123 @@
+package com.dbadmin.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 流式CSV读取（RFC 4180）：支持引号字段、"" 转义和字段内换行，内存占用只与单条记录大小有关。
+ * 文件开头的UTF-8 BOM会被跳过；每条记录中哪些字段带引号可通过isQuoted查询，调用方据此区分空串与NULL
+ */
+public class CsvReader implements Closeable {
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char[] buffer = new char[64 * 1024];
+    private int position;
+    private int limit;
+    private long recordNumber;
+    private boolean started;
+    // 最近一条记录中带引号的字段
+    private final BitSet quotedFields = new BitSet();
+
+    public CsvReader(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * 读取下一条记录，文件结束时返回null
+     */
+    public String[] readRecord() throws IOException {
+        if (!ensure()) {
+            return null;
+        }
+        if (!started) {
+            started = true;
+            // Excel等工具导出的UTF-8文件带BOM，不跳过会成为第一个列名的一部分
+            if (buffer[position] == '\uFEFF') {
+                position++;
+                if (!ensure()) {
+                    return null;
+                }
+            }
+        }
+
+        quotedFields.clear();
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+
+        while (ensure()) {
+            char c = buffer[position++];
+            if (quoted) {
+                if (c == '"') {
+                    if (ensure() && buffer[position] == '"') {
+                        field.append('"');
+                        position++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+                continue;
+            }
+
+            if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+                quotedFields.set(fields.size());
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\n') {
+                break;
+            } else if (c == '\r') {
+                if (ensure() && buffer[position] == '\n') {
+                    position++;
+                }
+                break;
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        recordNumber++;
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * 最近一次readRecord返回的记录中，第index个字段是否用引号包围
+     */
+    public boolean isQuoted(int index) {
+        return quotedFields.get(index);
+    }
+
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    private boolean ensure() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
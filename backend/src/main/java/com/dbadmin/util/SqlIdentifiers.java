@@ -0,0 +1,20 @@
+package com.dbadmin.util;
+
+/**
+ * 标识符（库名、表名、列名）的反引号转义
+ */
+public final class SqlIdentifiers {
+
+    private SqlIdentifiers() {}
+
+    public static String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    public static String qualify(String database, String table) {
+        if (database == null || database.isEmpty()) {
+            return quote(table);
+        }
+        return quote(database) + "." + quote(table);
+    }
+}
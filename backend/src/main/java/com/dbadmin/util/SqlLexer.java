@@ -0,0 +1,702 @@
+package com.dbadmin.util;
+
+import java.util.*;
+
+/**
+ * SQL语句的词法分析与分类：一次扫描完成分词（正确跳过字符串、-- # 和块注释，识别/*! *\/可执行注释），
+ * 再在词法单元上判断语句类型、是否返回结果集、是否只读、语句边界和涉及的表。
+ * 执行、分页、结果缓存和会话通道路由共用这里的结果，不再各自用正则或toUpperCase判断。
+ * 关键字直接在原字符串上不区分大小写比较，除第一个关键字和表名外不生成中间字符串。
+ */
+public final class SqlLexer {
+
+    public enum Type {
+        SELECT, SHOW, EXPLAIN, INSERT, UPDATE, DELETE, REPLACE, LOAD, CALL, DDL,
+        USE, SET, BEGIN, COMMIT, ROLLBACK,
+        // SAVEPOINT、RELEASE、ROLLBACK TO、XA、LOCK/UNLOCK TABLES
+        TRANSACTION,
+        // KILL、GRANT、REVOKE、PREPARE等不修改表数据的管理语句
+        ADMIN,
+        OTHER, EMPTY
+    }
+
+    /**
+     * 分析结果。sql为去掉首尾空白、末尾分号和末尾注释后的文本；
+     * referencedTables为FROM/JOIN之后的表（SELECT类语句），modifiedTables为写语句可能修改的表，
+     * 识别不出时为空集合，调用方应视为可能影响所有表。表名统一小写，不带库名。
+     * sessionState表示语句可能在连接上留下状态（会话变量、用户变量、表锁、临时表、事务等），
+     * 其后的语句需要在同一连接上执行，连接归还前也需要重置；
+     * resultState表示语句在连接上留下只对下一条语句有意义的结果（LAST_INSERT_ID()、ROW_COUNT()、
+     * SQL_CALC_FOUND_ROWS之后的FOUND_ROWS()、SHOW WARNINGS），下一条语句需要在同一连接上执行
+     */
+    public record Statement(String sql, Type type, boolean returnsResultSet, boolean readOnly,
+                            boolean deterministic, boolean hasLimit, boolean multiStatement,
+                            Set<String> referencedTables, Set<String> modifiedTables, boolean sessionState,
+                            boolean resultState) {
+
+        /**
+         * 只改变会话或事务状态、不修改表数据的语句
+         */
+        public boolean isSessionStatement() {
+            return isSession(type);
+        }
+    }
+
+    /**
+     * 表引用，schema为null表示未指定库名；名称保留原始大小写，不带引号
+     */
+    public record TableRef(String schema, String table) {}
+
+    /**
+     * 脚本中一条语句在原文中的范围[start, end)，content为第一个有效内容（词法单元或可执行注释）的位置
+     */
+    record Segment(int start, int end, int content) {}
+
+    private static final class Memo {
+        String source;
+        Statement statement;
+    }
+
+    private static final byte WORD = 1;
+    private static final byte QUOTED = 2;
+    private static final byte STRING = 3;
+    private static final byte VARIABLE = 4;
+    private static final byte SYMBOL = 5;
+
+    // 结果不确定或有副作用的函数，引用它们的查询不能缓存
+    private static final Keywords NON_DETERMINISTIC = new Keywords(
+            "NOW", "SYSDATE", "CURDATE", "CURTIME", "CURRENT_DATE", "CURRENT_TIME", "CURRENT_TIMESTAMP", "LOCALTIME",
+            "LOCALTIMESTAMP", "UTC_DATE", "UTC_TIME", "UTC_TIMESTAMP", "UNIX_TIMESTAMP", "RAND", "UUID", "UUID_SHORT",
+            "CONNECTION_ID", "LAST_INSERT_ID", "FOUND_ROWS", "ROW_COUNT", "SLEEP", "GET_LOCK", "RELEASE_LOCK",
+            "NEXTVAL", "SQL_NO_CACHE");
+
+    // 其后紧跟表名的关键字
+    private static final Keywords READ_TRIGGERS = new Keywords("FROM", "JOIN");
+    private static final Keywords WRITE_TRIGGERS = new Keywords(
+            "FROM", "JOIN", "INTO", "UPDATE", "TABLE", "TRUNCATE", "REPLACE", "INSERT", "VIEW", "TO");
+
+    // 关键字与表名之间可能出现的修饰词
+    private static final Keywords MODIFIERS = new Keywords(
+            "LOW_PRIORITY", "DELAYED", "HIGH_PRIORITY", "IGNORE", "QUICK", "INTO", "TABLE",
+            "IF", "NOT", "EXISTS", "TEMPORARY", "ONLY", "LATERAL");
+
+    // 表名之后出现这些词说明没有别名
+    private static final Keywords RESERVED = new Keywords(
+            "WHERE", "SET", "ON", "USING", "LEFT", "RIGHT", "INNER", "OUTER", "CROSS", "NATURAL", "STRAIGHT_JOIN",
+            "JOIN", "GROUP", "ORDER", "HAVING", "LIMIT", "UNION", "EXCEPT", "INTERSECT", "VALUES", "VALUE", "SELECT",
+            "PARTITION", "FOR", "LOCK", "WINDOW", "AS", "USE", "FORCE", "IGNORE", "INTO", "TO", "RENAME", "ADD",
+            "DROP", "MODIFY", "CHANGE", "ALTER", "ENGINE", "WITH", "DEFAULT", "CHARACTER", "COLLATE", "LIKE",
+            "FROM", "KEY", "INDEX", "COLUMN", "AFTER", "FIRST", "ALGORITHM", "ROW_FORMAT", "COMMENT");
+
+    // WITH之后决定语句类型的主关键字
+    private static final Keywords WITH_VERBS = new Keywords("SELECT", "UPDATE", "DELETE", "TABLE", "VALUES");
+
+    // 同一个SQL通常在控制器、执行和缓存中连续分析多次，记住本线程最近一次的结果
+    private static final int MEMO_MAX_LENGTH = 65536;
+    private static final ThreadLocal<Memo> LAST = ThreadLocal.withInitial(Memo::new);
+
+    private final String sql;
+    private int[] starts;
+    private int[] ends;
+    private byte[] kinds;
+    private int count;
+    private boolean inExecutableComment;
+
+    private SqlLexer(String sql) {
+        this.sql = sql;
+        // 平均每个词法单元约四五个字符，按长度预估容量，常见语句不需要扩容
+        int capacity = Math.min(256, Math.max(16, sql.length() / 4));
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.kinds = new byte[capacity];
+    }
+
+    public static Statement analyze(String sql) {
+        Memo memo = LAST.get();
+        // 分析结果与文本一一对应，按引用比较即可；去掉分号后的文本再次分析得到相同的结果
+        if (memo.statement != null && (sql == memo.source || sql == memo.statement.sql())) {
+            return memo.statement;
+        }
+        SqlLexer lexer = new SqlLexer(sql);
+        lexer.tokenize();
+        Statement statement = lexer.classify();
+        if (sql.length() <= MEMO_MAX_LENGTH) {
+            memo.source = sql;
+            memo.statement = statement;
+        }
+        return statement;
+    }
+
+    /**
+     * 去掉首尾空白、末尾的分号和注释
+     */
+    public static String strip(String sql) {
+        return analyze(sql).sql();
+    }
+
+    /**
+     * 判断是否为 SELECT 列 FROM [库.]表 形式的整表查询（结果行数等于表的行数），是则返回表，否则返回null。
+     * 选择列表中出现括号（COUNT(*)、MAX(id)等聚合或函数、子查询）、DISTINCT或变量时不算整表查询
+     */
+    public static TableRef plainTableScan(String sql) {
+        SqlLexer lexer = new SqlLexer(sql);
+        lexer.tokenize();
+        return lexer.plainTableScan();
+    }
+
+    private TableRef plainTableScan() {
+        int end = count;
+        while (end > 0 && isSymbol(end - 1, ';')) {
+            end--;
+        }
+        if (end < 4 || !is(0, "SELECT")) {
+            return null;
+        }
+        int from = -1;
+        for (int i = 1; i < end; i++) {
+            if (is(i, "FROM")) {
+                from = i;
+                break;
+            }
+            if (kinds[i] == VARIABLE || kinds[i] == SYMBOL && !isSymbol(i, ',') && !isSymbol(i, '.')
+                    && !isSymbol(i, '*') || is(i, "DISTINCT") || is(i, "DISTINCTROW")) {
+                return null;
+            }
+        }
+        if (from < 2 || !isNameToken(from + 1)) {
+            return null;
+        }
+        if (from + 2 == end) {
+            return new TableRef(null, rawName(from + 1));
+        }
+        if (from + 4 == end && isSymbol(from + 2, '.') && isNameToken(from + 3)) {
+            return new TableRef(rawName(from + 1), rawName(from + 3));
+        }
+        return null;
+    }
+
+    private void tokenize() {
+        int i = 0;
+        while (i < sql.length()) {
+            i = scan(i);
+        }
+    }
+
+    /**
+     * 从i开始处理一个空白字符、一段注释或一个词法单元，返回之后的位置
+     */
+    private int scan(int i) {
+        int length = sql.length();
+        char c = sql.charAt(i);
+        if (Character.isWhitespace(c)) {
+            return i + 1;
+        }
+        if (c == '\'' || c == '"') {
+            int end = skipQuoted(i, c);
+            add(i, end, STRING);
+            return end;
+        }
+        if (c == '`') {
+            int end = skipQuoted(i, c);
+            add(i, end, QUOTED);
+            return end;
+        }
+        if (c == '#' || (c == '-' && sql.startsWith("--", i)
+                && (i + 2 == length || Character.isWhitespace(sql.charAt(i + 2))))) {
+            int end = sql.indexOf('\n', i);
+            return end < 0 ? length : end;
+        }
+        if (c == '/' && sql.startsWith("/*!", i)) {
+            // 可执行注释的内容照常识别
+            i += 3;
+            while (i < length && Character.isDigit(sql.charAt(i))) {
+                i++;
+            }
+            inExecutableComment = true;
+            return i;
+        }
+        if (c == '/' && sql.startsWith("/*", i)) {
+            int end = sql.indexOf("*/", i + 2);
+            return end < 0 ? length : end + 2;
+        }
+        if (c == '*' && inExecutableComment && sql.startsWith("*/", i)) {
+            // 作为符号保留，去掉末尾注释时不会把它截掉
+            add(i, i + 2, SYMBOL);
+            inExecutableComment = false;
+            return i + 2;
+        }
+        if (c == '@') {
+            int end = i + 1;
+            if (end < length && sql.charAt(end) == '@') {
+                end++;
+            }
+            if (end < length && (sql.charAt(end) == '`' || sql.charAt(end) == '\'' || sql.charAt(end) == '"')) {
+                end = skipQuoted(end, sql.charAt(end));
+            } else {
+                end = skipWord(end);
+            }
+            add(i, end, VARIABLE);
+            return end;
+        }
+        if (isWordChar(c)) {
+            int end = skipWord(i);
+            add(i, end, WORD);
+            return end;
+        }
+        add(i, i + 1, SYMBOL);
+        return i + 1;
+    }
+
+    /**
+     * 按分隔符拆分脚本（供SqlScriptSplitter使用），与语句分析共用同一套分词：
+     * 字符串、引号标识符和注释中的分隔符不结束语句，/*!可执行注释属于语句内容。
+     * 语句开头独占一行的DELIMITER命令修改分隔符，本身不是语句；只有空白和注释的片段不返回
+     */
+    static List<Segment> segments(String script) {
+        SqlLexer lexer = new SqlLexer(script);
+        List<Segment> segments = new ArrayList<>();
+        int length = script.length();
+        String delimiter = ";";
+        int start = 0;
+        // 当前语句第一个有效内容的位置，-1表示目前只有空白和注释
+        int content = -1;
+        int i = 0;
+        while (i < length) {
+            if (content < 0 && lexer.isDelimiterCommand(i)) {
+                int end = script.indexOf('\n', i);
+                end = end < 0 ? length : end;
+                String value = script.substring(i + "DELIMITER".length(), end).trim();
+                if (!value.isEmpty()) {
+                    delimiter = value;
+                }
+                i = end;
+                start = end;
+                continue;
+            }
+            if (content < 0 && script.startsWith("/*!", i)) {
+                content = i;
+            }
+            int token = lexer.count;
+            i = lexer.scan(i);
+            if (lexer.count == token) {
+                continue;
+            }
+            if (content < 0) {
+                content = lexer.starts[token];
+            }
+            // 分隔符可能在词法单元中间，如 END$$
+            int split = lexer.delimiterIn(token, delimiter);
+            if (split < 0) {
+                continue;
+            }
+            if (split == content) {
+                content = -1;
+            }
+            if (content >= 0) {
+                segments.add(new Segment(start, split, content));
+            }
+            i = split + delimiter.length();
+            start = i;
+            content = -1;
+        }
+        if (content >= 0) {
+            segments.add(new Segment(start, length, content));
+        }
+        return segments;
+    }
+
+    /**
+     * 行首（前面只有空白）的DELIMITER命令
+     */
+    private boolean isDelimiterCommand(int i) {
+        int end = i + "DELIMITER".length();
+        if (!sql.regionMatches(true, i, "DELIMITER", 0, "DELIMITER".length())
+                || (end < sql.length() && !Character.isWhitespace(sql.charAt(end)))) {
+            return false;
+        }
+        for (int p = i - 1; p >= 0 && sql.charAt(p) != '\n'; p--) {
+            if (!Character.isWhitespace(sql.charAt(p))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 分隔符在词法单元中的位置，没有则为-1；字符串、引号标识符和带引号的变量名中的不算
+     */
+    private int delimiterIn(int token, String delimiter) {
+        if (kinds[token] == STRING || kinds[token] == QUOTED) {
+            return -1;
+        }
+        for (int p = starts[token]; p < ends[token]; p++) {
+            char c = sql.charAt(p);
+            if (c == '\'' || c == '"' || c == '`') {
+                return -1;
+            }
+            if (sql.startsWith(delimiter, p)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private Statement classify() {
+        // 第一条语句的结束位置；其后还有内容说明是多条语句
+        int boundary = count;
+        for (int i = 0; i < count; i++) {
+            if (isSymbol(i, ';')) {
+                boundary = i;
+                break;
+            }
+        }
+        int last = -1;
+        for (int i = count - 1; i >= 0; i--) {
+            if (!isSymbol(i, ';')) {
+                last = i;
+                break;
+            }
+        }
+        boolean multiStatement = last > boundary;
+
+        String text = stripped(last);
+        // 跳过开头的括号：(SELECT ...) UNION (SELECT ...)
+        int first = 0;
+        while (first < boundary && isSymbol(first, '(')) {
+            first++;
+        }
+        if (first >= boundary || kinds[first] != WORD) {
+            Type type = first >= boundary ? Type.EMPTY : Type.OTHER;
+            return new Statement(text, type, false, false, false, false, multiStatement, Set.of(), Set.of(),
+                    type != Type.EMPTY || multiStatement, false);
+        }
+
+        Type type = typeOf(first, boundary);
+        boolean into = false;
+        boolean locking = false;
+        boolean hasLimit = false;
+        boolean deterministic = true;
+        // @var := ...、INTO @var、GET_LOCK()和CREATE TEMPORARY TABLE会在连接上留下状态
+        boolean sessionState = multiStatement || changesSession(type, first);
+        boolean resultState = leavesResult(type);
+        int depth = 0;
+        for (int i = first; i < boundary; i++) {
+            byte kind = kinds[i];
+            if (kind == SYMBOL) {
+                if (isSymbol(i, '(')) {
+                    depth++;
+                } else if (isSymbol(i, ')')) {
+                    depth--;
+                }
+            } else if (kind == VARIABLE) {
+                deterministic = false;
+                if ((into && type == Type.SELECT) || (i + 2 < boundary && isSymbol(i + 1, ':') && isSymbol(i + 2, '='))) {
+                    sessionState = true;
+                }
+            } else if (kind == WORD) {
+                if (is(i, "INTO")) {
+                    into = true;
+                } else if (is(i, "GET_LOCK") || (type == Type.DDL && is(i, "TEMPORARY"))) {
+                    sessionState = true;
+                    deterministic = false;
+                } else if (is(i, "SQL_CALC_FOUND_ROWS")) {
+                    resultState = true;
+                } else if (is(i, "LIMIT") && depth <= 0) {
+                    hasLimit = true;
+                } else if ((is(i, "FOR") && i + 1 < boundary && (is(i + 1, "UPDATE") || is(i + 1, "SHARE")))
+                        || (is(i, "LOCK") && i + 1 < boundary && is(i + 1, "IN"))) {
+                    locking = true;
+                } else if (deterministic && NON_DETERMINISTIC.contains(sql, starts[i], ends[i])) {
+                    deterministic = false;
+                }
+            }
+        }
+
+        boolean returnsResultSet;
+        boolean readOnly;
+        switch (type) {
+            case SELECT -> {
+                // SELECT ... INTO @var/OUTFILE 不返回结果集
+                returnsResultSet = !into;
+                readOnly = !into && !locking && !sessionState;
+            }
+            case SHOW, EXPLAIN -> {
+                returnsResultSet = true;
+                readOnly = true;
+            }
+            case CALL -> {
+                returnsResultSet = true;
+                readOnly = false;
+            }
+            default -> {
+                returnsResultSet = false;
+                readOnly = false;
+            }
+        }
+
+        Set<String> referenced = type == Type.SELECT ? collectTables(first, boundary, READ_TRIGGERS) : Set.of();
+        Set<String> modified = readOnly || isSession(type) ? Set.of() : collectTables(first, boundary, WRITE_TRIGGERS);
+        return new Statement(text, type, returnsResultSet, readOnly, deterministic && !locking, hasLimit,
+                multiStatement, referenced, modified, sessionState, resultState);
+    }
+
+    /**
+     * 写语句和DDL的插入ID、影响行数和警告只能由下一条语句在同一连接上读取。
+     * CALL、多条语句等已经按sessionState固定连接，不需要再标记
+     */
+    private static boolean leavesResult(Type type) {
+        return switch (type) {
+            case INSERT, UPDATE, DELETE, REPLACE, LOAD, DDL -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * 按语句类型判断是否改变连接的会话状态。KILL/GRANT/FLUSH等管理语句不影响本连接，
+     * PREPARE/DEALLOCATE创建或释放连接级的命名语句；存储过程可能设置用户变量或创建临时表
+     */
+    private boolean changesSession(Type type, int first) {
+        return switch (type) {
+            case USE, SET, BEGIN, COMMIT, ROLLBACK, TRANSACTION, CALL, OTHER -> true;
+            case ADMIN -> is(first, "PREPARE") || is(first, "DEALLOCATE");
+            default -> false;
+        };
+    }
+
+    private static boolean isSession(Type type) {
+        return switch (type) {
+            case USE, SET, BEGIN, COMMIT, ROLLBACK, TRANSACTION, ADMIN -> true;
+            default -> false;
+        };
+    }
+
+    private Type typeOf(int first, int boundary) {
+        String keyword = sql.substring(starts[first], ends[first]).toUpperCase(Locale.ROOT);
+        int next = first + 1 < boundary ? first + 1 : -1;
+        return switch (keyword) {
+            case "SELECT", "TABLE", "VALUES" -> Type.SELECT;
+            case "WITH" -> withVerb(first + 1, boundary);
+            case "SHOW", "HELP" -> Type.SHOW;
+            case "DESC", "DESCRIBE", "EXPLAIN" -> Type.EXPLAIN;
+            case "INSERT" -> Type.INSERT;
+            case "UPDATE" -> Type.UPDATE;
+            case "DELETE" -> Type.DELETE;
+            case "REPLACE" -> Type.REPLACE;
+            case "LOAD" -> Type.LOAD;
+            case "CALL", "EXEC" -> Type.CALL;
+            case "CREATE", "ALTER", "DROP", "TRUNCATE", "RENAME" -> Type.DDL;
+            case "USE" -> Type.USE;
+            case "SET" -> Type.SET;
+            case "BEGIN" -> Type.BEGIN;
+            case "START" -> next >= 0 && is(next, "TRANSACTION") ? Type.BEGIN : Type.ADMIN;
+            case "COMMIT" -> Type.COMMIT;
+            case "ROLLBACK" -> rollbackTo(first + 1, boundary) ? Type.TRANSACTION : Type.ROLLBACK;
+            case "SAVEPOINT", "RELEASE", "XA", "LOCK", "UNLOCK" -> Type.TRANSACTION;
+            case "KILL", "GRANT", "REVOKE", "PREPARE", "DEALLOCATE", "STOP", "FLUSH" -> Type.ADMIN;
+            default -> Type.OTHER;
+        };
+    }
+
+    /**
+     * WITH之后跳过CTE定义（都在括号内），括号外的第一个主关键字决定语句类型
+     */
+    private Type withVerb(int from, int boundary) {
+        int depth = 0;
+        for (int i = from; i < boundary; i++) {
+            if (isSymbol(i, '(')) {
+                depth++;
+            } else if (isSymbol(i, ')')) {
+                depth--;
+            } else if (depth == 0 && kinds[i] == WORD && WITH_VERBS.contains(sql, starts[i], ends[i])) {
+                if (is(i, "UPDATE")) {
+                    return Type.UPDATE;
+                }
+                return is(i, "DELETE") ? Type.DELETE : Type.SELECT;
+            }
+        }
+        return Type.SELECT;
+    }
+
+    /**
+     * ROLLBACK [WORK] TO [SAVEPOINT] name 只回滚到保存点，事务仍在进行
+     */
+    private boolean rollbackTo(int from, int boundary) {
+        if (from < boundary && is(from, "WORK")) {
+            from++;
+        }
+        return from < boundary && is(from, "TO");
+    }
+
+    private Set<String> collectTables(int from, int to, Keywords triggers) {
+        Set<String> tables = null;
+        int i = from;
+        while (i < to) {
+            if (!isKeyword(i, triggers)) {
+                i++;
+                continue;
+            }
+            i++;
+            while (i < to && isKeyword(i, MODIFIERS)) {
+                i++;
+            }
+            // 逗号分隔的表列表：name [[AS] alias], ...
+            while (i < to && isName(i)) {
+                int name = i;
+                i++;
+                while (i + 1 < to && isSymbol(i, '.') && isNameToken(i + 1)) {
+                    name = i + 1;
+                    i += 2;
+                }
+                if (tables == null) {
+                    tables = new LinkedHashSet<>();
+                }
+                tables.add(nameOf(name));
+                if (i < to && is(i, "AS")) {
+                    i++;
+                }
+                if (i < to && isName(i)) {
+                    i++;
+                }
+                if (i < to && isSymbol(i, ',')) {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+        }
+        return tables != null ? tables : Set.of();
+    }
+
+    private String rawName(int token) {
+        if (kinds[token] == QUOTED) {
+            int start = starts[token] + 1;
+            int end = Math.max(start, ends[token] - 1);
+            return sql.substring(start, end).replace("``", "`");
+        }
+        return sql.substring(starts[token], ends[token]);
+    }
+
+    private String nameOf(int token) {
+        if (kinds[token] == QUOTED) {
+            int start = starts[token] + 1;
+            int end = Math.max(start, ends[token] - 1);
+            return sql.substring(start, end).replace("``", "`").toLowerCase(Locale.ROOT);
+        }
+        return sql.substring(starts[token], ends[token]).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 从第一个非空白字符到最后一个非分号词法单元的结尾，末尾的注释和分号一并去掉
+     */
+    private String stripped(int last) {
+        if (last < 0) {
+            return "";
+        }
+        int start = 0;
+        while (start < sql.length() && Character.isWhitespace(sql.charAt(start))) {
+            start++;
+        }
+        int end = ends[last];
+        return start == 0 && end == sql.length() ? sql : sql.substring(start, end);
+    }
+
+    private void add(int start, int end, byte kind) {
+        if (count == starts.length) {
+            int capacity = count * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        kinds[count] = kind;
+        count++;
+    }
+
+    private boolean is(int token, String keyword) {
+        int length = ends[token] - starts[token];
+        return kinds[token] == WORD && length == keyword.length()
+                && sql.regionMatches(true, starts[token], keyword, 0, length);
+    }
+
+    private boolean isKeyword(int token, Keywords keywords) {
+        return kinds[token] == WORD && keywords.contains(sql, starts[token], ends[token]);
+    }
+
+    private boolean isSymbol(int token, char symbol) {
+        return kinds[token] == SYMBOL && sql.charAt(starts[token]) == symbol;
+    }
+
+    private boolean isNameToken(int token) {
+        return kinds[token] == WORD || kinds[token] == QUOTED;
+    }
+
+    private boolean isName(int token) {
+        return kinds[token] == QUOTED || kinds[token] == WORD && !RESERVED.contains(sql, starts[token], ends[token]);
+    }
+
+    private int skipWord(int start) {
+        int end = start;
+        while (end < sql.length() && isWordChar(sql.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    /**
+     * 跳过引号包围的内容，支持反斜杠转义和重复引号转义，返回结束引号之后的位置
+     */
+    private int skipQuoted(int start, char quote) {
+        int length = sql.length();
+        int i = start + 1;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote != '`') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return length;
+    }
+
+    /**
+     * 按长度分桶的关键字集合，直接与原字符串的片段比较，不需要先转成大写字符串
+     */
+    private static final class Keywords {
+        private final String[][] byLength = new String[32][];
+
+        Keywords(String... words) {
+            for (String word : words) {
+                String[] bucket = byLength[word.length()];
+                bucket = bucket == null ? new String[1] : Arrays.copyOf(bucket, bucket.length + 1);
+                bucket[bucket.length - 1] = word;
+                byLength[word.length()] = bucket;
+            }
+        }
+
+        boolean contains(String sql, int start, int end) {
+            int length = end - start;
+            if (length >= byLength.length || byLength[length] == null) {
+                return false;
+            }
+            for (String word : byLength[length]) {
+                if (sql.regionMatches(true, start, word, 0, length)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
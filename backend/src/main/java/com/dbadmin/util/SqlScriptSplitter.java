@@ -0,0 +1,44 @@
+package com.dbadmin.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把SQL脚本拆分为单条语句。
+ * 引号、注释和mysql客户端DELIMITER命令的识别由SqlLexer的分词完成，与单条语句的分析规则一致；
+ * 这里只负责裁剪文本、记录每条语句的起始行号和第一个关键字，便于调用方分类。
+ */
+public final class SqlScriptSplitter {
+
+    public record Statement(String sql, String keyword, int line) {}
+
+    private SqlScriptSplitter() {}
+
+    public static List<Statement> split(String script) {
+        List<Statement> statements = new ArrayList<>();
+        int line = 1;
+        int counted = 0;
+        for (SqlLexer.Segment segment : SqlLexer.segments(script)) {
+            // 语句按顺序返回，行号从上一条的位置接着数
+            for (; counted < segment.content(); counted++) {
+                if (script.charAt(counted) == '\n') {
+                    line++;
+                }
+            }
+            String sql = script.substring(segment.start(), segment.end()).trim();
+            statements.add(new Statement(sql, keywordAt(script, segment.content()), line));
+        }
+        return statements;
+    }
+
+    /**
+     * 语句以字母开头时取开头的单词（大写），以可执行注释、括号等开头时为null
+     */
+    private static String keywordAt(String script, int offset) {
+        int end = offset;
+        while (end < script.length() && Character.isLetter(script.charAt(end))) {
+            end++;
+        }
+        return end > offset ? script.substring(offset, end).toUpperCase() : null;
+    }
+}
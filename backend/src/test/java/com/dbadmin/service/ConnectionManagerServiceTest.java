@@ -0,0 +1,226 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.QueryOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 会话在连接池之上的连接使用：写语句之后的LAST_INSERT_ID()、会话状态固定连接和事务
+ */
+class ConnectionManagerServiceTest {
+
+    // 每个物理连接记录自己最近一次INSERT生成的ID，与MySQL的LAST_INSERT_ID()一样只在本连接可见
+    private final AtomicLong ids = new AtomicLong(100);
+    private final List<FakeJdbc.FakeConnection> connections = new CopyOnWriteArrayList<>();
+    // COUNT(*)开始执行时计数，取消时放行
+    private final CountDownLatch counting = new CountDownLatch(1);
+    private final CountDownLatch countCancelled = new CountDownLatch(1);
+
+    private ConnectionManagerService connectionManager;
+    private SessionRegistry sessions;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        sessions = new SessionRegistry();
+        ReflectionTestUtils.setField(sessions, "maxPerProfile", 20);
+
+        ConnectionPoolManager poolManager = new ConnectionPoolManager();
+        ReflectionTestUtils.setField(poolManager, "interactiveReserve", 1);
+        DbSession probe = FakeJdbc.session("probe", "app");
+        pool = new ConnectionPool(probe.getPoolKey(), this::newConnection, 4, 0, 1000, 60_000, 60_000, 16);
+        @SuppressWarnings("unchecked")
+        Map<ConnectionPool.PoolKey, ConnectionPool> pools =
+                (Map<ConnectionPool.PoolKey, ConnectionPool>) ReflectionTestUtils.getField(poolManager, "pools");
+        pools.put(probe.getPoolKey(), pool);
+
+        QueryRegistry queries = new QueryRegistry();
+        CountService countService = new CountService();
+        ReflectionTestUtils.setField(countService, "queries", queries);
+        ReflectionTestUtils.setField(countService, "cacheTtlMs", 60_000L);
+        ReflectionTestUtils.setField(countService, "cacheMaxEntries", 100);
+        ReflectionTestUtils.setField(countService, "asyncThreads", 1);
+        countService.init();
+        QueryCacheService queryCache = new QueryCacheService();
+        ReflectionTestUtils.setField(queryCache, "sessions", sessions);
+        ReflectionTestUtils.setField(queryCache, "countService", countService);
+        MetadataCacheService metadataCache = new MetadataCacheService();
+        ReflectionTestUtils.setField(metadataCache, "sessions", sessions);
+
+        connectionManager = new ConnectionManagerService();
+        ReflectionTestUtils.setField(connectionManager, "sessions", sessions);
+        ReflectionTestUtils.setField(connectionManager, "queries", queries);
+        ReflectionTestUtils.setField(connectionManager, "poolManager", poolManager);
+        ReflectionTestUtils.setField(connectionManager, "countService", countService);
+        ReflectionTestUtils.setField(connectionManager, "memoryGovernor", new ResultMemoryGovernor(0, 1000, "fail"));
+        ReflectionTestUtils.setField(connectionManager, "queryCache", queryCache);
+        ReflectionTestUtils.setField(connectionManager, "metadataCache", metadataCache);
+        ReflectionTestUtils.setField(connectionManager, "laneTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(connectionManager, "followUpHoldMs", 60_000L);
+
+        sessions.register(FakeJdbc.session("s1", "app"));
+        sessions.register(FakeJdbc.session("s2", "app"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionManager.shutdown();
+    }
+
+    private java.sql.Connection newConnection() {
+        long[] lastInsertId = {0};
+        FakeJdbc.FakeConnection conn = new FakeJdbc.FakeConnection(connections.size() + 1, sql -> {
+            if (sql.startsWith("INSERT")) {
+                lastInsertId[0] = ids.incrementAndGet();
+                return null;
+            }
+            if (sql.equals("SELECT LAST_INSERT_ID()")) {
+                return FakeJdbc.Result.of("LAST_INSERT_ID()", lastInsertId[0]);
+            }
+            if (sql.startsWith("SELECT COUNT(*)")) {
+                counting.countDown();
+                try {
+                    countCancelled.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return FakeJdbc.Result.of("c", 10L);
+            }
+            return sql.startsWith("SELECT") ? FakeJdbc.Result.of("x", 1L) : null;
+        });
+        conn.onCancel = countCancelled::countDown;
+        connections.add(conn);
+        return conn.connection;
+    }
+
+    private Object lastInsertId(String sessionId) throws SQLException {
+        return connectionManager.executeQuery(sessionId, "SELECT LAST_INSERT_ID()").getData().get(0)
+                .get("LAST_INSERT_ID()");
+    }
+
+    @Test
+    void lastInsertIdIsReadOnTheConnectionOfTheInsert() throws SQLException {
+        connectionManager.executeUpdate("s1", "INSERT INTO t (a) VALUES (1)");
+        // 另一个会话的INSERT不能借到s1刚用过的连接
+        connectionManager.executeUpdate("s2", "INSERT INTO t (a) VALUES (2)");
+
+        assertEquals(101L, lastInsertId("s1"));
+        assertEquals(102L, lastInsertId("s2"));
+    }
+
+    @Test
+    void followUpConnectionIsReturnedAfterTheNextStatement() throws SQLException {
+        connectionManager.executeUpdate("s1", "INSERT INTO t (a) VALUES (1)");
+        assertTrue(sessions.peek("s1").hasFollowUpLease());
+        assertEquals(1, pool.getStats().get("active"));
+
+        lastInsertId("s1");
+        assertFalse(sessions.peek("s1").hasFollowUpLease());
+        assertEquals(0, pool.getStats().get("active"));
+    }
+
+    @Test
+    void expiredFollowUpConnectionIsReleased() throws SQLException {
+        ReflectionTestUtils.setField(connectionManager, "followUpHoldMs", 0L);
+        connectionManager.executeUpdate("s1", "INSERT INTO t (a) VALUES (1)");
+        ReflectionTestUtils.invokeMethod(connectionManager, "releaseFollowUps");
+        assertFalse(sessions.peek("s1").hasFollowUpLease());
+        assertEquals(0, pool.getStats().get("active"));
+    }
+
+    @Test
+    void closingTheSessionReleasesTheFollowUpConnection() throws SQLException {
+        connectionManager.executeUpdate("s1", "INSERT INTO t (a) VALUES (1)");
+        connectionManager.closeConnection("s1");
+        assertEquals(0, pool.getStats().get("active"));
+    }
+
+    @Test
+    void sessionStatePinsTheConnectionUntilTheSessionCloses() throws SQLException {
+        connectionManager.executeUpdate("s1", "SET @a = 1");
+        DbSession session = sessions.peek("s1");
+        assertNotNull(session.getPinnedLease());
+        assertTrue(session.isStateful());
+
+        connectionManager.executeQuery("s1", "SELECT @a");
+        connectionManager.executeUpdate("s2", "INSERT INTO t (a) VALUES (1)");
+        List<String> pinned = connections.get(0).executed;
+        assertEquals(List.of("SET @a = 1", "SELECT @a"), pinned);
+
+        connectionManager.closeConnection("s1");
+        assertNull(session.getPinnedLease());
+    }
+
+    @Test
+    void insertThenSetKeepsTheInsertConnection() throws SQLException {
+        connectionManager.executeUpdate("s1", "INSERT INTO t (a) VALUES (1)");
+        connectionManager.executeUpdate("s1", "SET @id = LAST_INSERT_ID()");
+        assertEquals(List.of("INSERT INTO t (a) VALUES (1)", "SET @id = LAST_INSERT_ID()"), connections.get(0).executed);
+        assertFalse(sessions.peek("s1").hasFollowUpLease());
+    }
+
+    @Test
+    void transactionReturnsTheConnectionOnCommit() throws SQLException {
+        connectionManager.executeUpdate("s1", "BEGIN");
+        assertTrue(connectionManager.isInTransaction("s1"));
+        connectionManager.executeUpdate("s1", "INSERT INTO t (a) VALUES (1)");
+        assertEquals(101L, lastInsertId("s1"));
+        connectionManager.executeUpdate("s1", "COMMIT");
+
+        assertFalse(connectionManager.isInTransaction("s1"));
+        assertNull(sessions.peek("s1").getPinnedLease());
+        assertFalse(sessions.peek("s1").hasFollowUpLease());
+        assertEquals(0, pool.getStats().get("active"));
+        assertTrue(connections.get(0).executed.contains("COMMIT"));
+    }
+
+    @Test
+    void cancelReachesThePaginationCount() throws Exception {
+        QueryOptions options = new QueryOptions();
+        options.setQueryId("q1");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> page = executor.submit(() -> connectionManager.executeQuery("s1", "SELECT * FROM t", 1, 10, options));
+            assertTrue(counting.await(2, TimeUnit.SECONDS));
+            // 计数期间请求已经登记
+            assertEquals(1, connectionManager.getRunningQueries("s1").size());
+            assertTrue(connectionManager.cancelQuery("q1"));
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> page.get(2, TimeUnit.SECONDS));
+            assertEquals("Query cancelled", e.getCause().getMessage());
+            // 取消后不再执行分页查询本身
+            assertFalse(connections.get(0).executed.stream().anyMatch(sql -> sql.contains("LIMIT")));
+            assertTrue(connectionManager.getRunningQueries(null).isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void cancelledQueryDoesNotStartItsNextStatement() throws SQLException {
+        QueryRegistry queries = new QueryRegistry();
+        RunningQuery query = queries.start("s1", "q1", "script");
+        query.cancel();
+        FakeJdbc.FakeConnection conn = new FakeJdbc.FakeConnection(1, sql -> null);
+        SQLException e = assertThrows(SQLException.class, () -> query.attach(conn.connection.createStatement()));
+        assertEquals("Query cancelled", e.getMessage());
+        queries.end(query);
+        assertNull(queries.get("q1"));
+    }
+
+    @Test
+    void commitWithoutTransactionFails() {
+        SQLException e = assertThrows(SQLException.class, () -> connectionManager.commit("s1"));
+        assertEquals("No active transaction", e.getMessage());
+    }
+}
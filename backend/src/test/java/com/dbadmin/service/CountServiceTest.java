@@ -0,0 +1,101 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.CountMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountServiceTest {
+
+    private final AtomicLong rows = new AtomicLong(10);
+    private final FakeJdbc.FakeConnection conn =
+            new FakeJdbc.FakeConnection(1, sql -> FakeJdbc.Result.of("c", rows.get()));
+    private final DbSession session = FakeJdbc.session("s1", "app");
+    private CountService countService;
+
+    @BeforeEach
+    void setUp() {
+        countService = new CountService();
+        ReflectionTestUtils.setField(countService, "queries", new QueryRegistry());
+        ReflectionTestUtils.setField(countService, "cacheTtlMs", 60_000L);
+        ReflectionTestUtils.setField(countService, "cacheMaxEntries", 100);
+        ReflectionTestUtils.setField(countService, "asyncThreads", 1);
+        ReflectionTestUtils.setField(countService, "asyncTimeoutSeconds", 10);
+        countService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        countService.shutdown();
+    }
+
+    private CountService.CountResult count(String sql) throws SQLException {
+        return countService.count(session, conn.connection, sql, CountMode.EXACT);
+    }
+
+    @Test
+    void exactCountIsCachedUntilTheTableChanges() throws SQLException {
+        assertEquals(CountService.TYPE_EXACT, count("SELECT * FROM orders").countType());
+        rows.set(11);
+        CountService.CountResult cached = count("SELECT * FROM orders");
+        assertEquals(CountService.TYPE_CACHED, cached.countType());
+        assertEquals(10L, cached.count());
+
+        // 其他表的修改不影响
+        countService.invalidate(session.getPoolKey(), Set.of("customers"));
+        assertEquals(CountService.TYPE_CACHED, count("SELECT * FROM orders").countType());
+
+        countService.invalidate(session.getPoolKey(), Set.of("orders"));
+        CountService.CountResult fresh = count("SELECT * FROM orders");
+        assertEquals(CountService.TYPE_EXACT, fresh.countType());
+        assertEquals(11L, fresh.count());
+    }
+
+    @Test
+    void unknownTablesInvalidateEverything() throws SQLException {
+        count("SELECT * FROM orders");
+        countService.invalidate(session.getPoolKey(), Set.of());
+        assertEquals(CountService.TYPE_EXACT, count("SELECT * FROM orders").countType());
+    }
+
+    @Test
+    void otherConnectionProfilesAreNotInvalidated() throws SQLException {
+        count("SELECT * FROM orders");
+        countService.invalidate(FakeJdbc.session("s2", "other").getPoolKey(), Set.of("orders"));
+        assertEquals(CountService.TYPE_CACHED, count("SELECT * FROM orders").countType());
+    }
+
+    @Test
+    void whitespaceInsideStringLiteralsIsSignificant() throws SQLException {
+        count("SELECT * FROM t WHERE a = 'x  y'");
+        assertEquals(CountService.TYPE_EXACT, count("SELECT * FROM t WHERE a = 'x y'").countType());
+        // 字符串以外的空白差异仍然命中
+        assertEquals(CountService.TYPE_CACHED, count("SELECT *\n  FROM t WHERE a = 'x  y';").countType());
+    }
+
+    @Test
+    void countsInsideATransactionBypassTheCache() throws SQLException {
+        count("SELECT * FROM orders");
+
+        ConnectionPool pool = new ConnectionPool(session.getPoolKey(), () -> conn.connection, 1, 0, 1000, 60_000,
+                60_000, 10);
+        session.setPinnedLease(pool.acquire());
+        rows.set(12);
+        CountService.CountResult inTransaction = count("SELECT * FROM orders");
+        assertEquals(CountService.TYPE_EXACT, inTransaction.countType());
+        assertEquals(12L, inTransaction.count());
+
+        // 事务中的计数不写入缓存，其他会话仍然看到提交前的计数
+        session.setPinnedLease(null);
+        CountService.CountResult outside = count("SELECT * FROM orders");
+        assertEquals(CountService.TYPE_CACHED, outside.countType());
+        assertEquals(10L, outside.count());
+    }
+}
@@ -0,0 +1,257 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.ConnectionInfo;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * 测试用的内存JDBC对象：Connection/Statement/PreparedStatement/ResultSet由动态代理实现，
+ * 查询结果由调用方按SQL给出，执行过的SQL按顺序记录。未实现的方法返回默认值，
+ * 返回接口类型的方法返回同样行为的代理（用于unwrap(JdbcConnection.class).getSession()...）
+ */
+final class FakeJdbc {
+
+    /**
+     * 一个查询结果：列名和行
+     */
+    record Result(List<String> columns, List<Object[]> rows) {
+        static Result of(String column, Object... values) {
+            List<Object[]> rows = new ArrayList<>();
+            for (Object value : values) {
+                rows.add(new Object[]{value});
+            }
+            return new Result(List.of(column), rows);
+        }
+
+        static Result empty() {
+            return new Result(List.of(), List.of());
+        }
+    }
+
+    /**
+     * 一个假的物理连接。results按SQL返回查询结果，返回null时视为更新语句（更新行数为updateCount）。
+     * Statement.cancel调用onCancel，被取消的语句执行结束时抛出SQLException
+     */
+    static final class FakeConnection {
+        final List<String> executed = new CopyOnWriteArrayList<>();
+        final Function<String, Result> results;
+        final int id;
+        int updateCount = 1;
+        boolean autoCommit = true;
+        boolean closed;
+        String catalog;
+        volatile Runnable onCancel = () -> {};
+        final Connection connection;
+
+        FakeConnection(int id, Function<String, Result> results) {
+            this.id = id;
+            this.results = results;
+            this.connection = (Connection) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this::invoke);
+        }
+
+        private Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args) {
+            switch (method.getName()) {
+                case "createStatement":
+                    return statement(Statement.class, null);
+                case "prepareStatement":
+                    return statement(PreparedStatement.class, (String) args[0]);
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "commit":
+                    executed.add("COMMIT");
+                    return null;
+                case "rollback":
+                    executed.add("ROLLBACK");
+                    return null;
+                case "getCatalog":
+                    return catalog;
+                case "setCatalog":
+                    catalog = (String) args[0];
+                    return null;
+                case "unwrap":
+                    return deepStub((Class<?>) args[0]);
+                case "isClosed":
+                    return closed;
+                case "isValid":
+                    return !closed;
+                case "close":
+                    closed = true;
+                    return null;
+                case "toString":
+                    return "FakeConnection#" + id;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        }
+
+        private Object statement(Class<? extends Statement> type, String preparedSql) {
+            Map<Integer, Object> parameters = new TreeMap<>();
+            Object[] lastResult = new Object[2];
+            boolean[] cancelled = {false};
+            return Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                    parameters.put(index, args[1]);
+                    return null;
+                }
+                switch (name) {
+                    case "executeQuery":
+                        return resultSet(run(args == null ? preparedSql : (String) args[0], parameters, cancelled));
+                    case "execute": {
+                        Result result = run(args == null ? preparedSql : (String) args[0], parameters, cancelled);
+                        lastResult[0] = result;
+                        return result != null;
+                    }
+                    case "executeUpdate":
+                        run(args == null ? preparedSql : (String) args[0], parameters, cancelled);
+                        return updateCount;
+                    case "cancel":
+                        cancelled[0] = true;
+                        onCancel.run();
+                        return null;
+                    case "getResultSet":
+                        return lastResult[0] == null ? null : resultSet((Result) lastResult[0]);
+                    case "getUpdateCount":
+                        return lastResult[0] == null ? updateCount : -1;
+                    case "getConnection":
+                        return connection;
+                    case "unwrap":
+                        return deepStub((Class<?>) args[0]);
+                    case "clearParameters":
+                        parameters.clear();
+                        return null;
+                    case "toString":
+                        return "FakeStatement(" + preparedSql + ")";
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            });
+        }
+
+        private Result run(String sql, Map<Integer, Object> parameters, boolean[] cancelled) throws SQLException {
+            String logged = sql;
+            for (Object value : parameters.values()) {
+                logged = logged.replaceFirst("\\?", java.util.regex.Matcher.quoteReplacement(String.valueOf(value)));
+            }
+            executed.add(logged);
+            Result result = results.apply(logged);
+            if (cancelled[0]) {
+                cancelled[0] = false;
+                throw new SQLException("Statement cancelled due to client request");
+            }
+            return result;
+        }
+    }
+
+    private FakeJdbc() {}
+
+    static ResultSet resultSet(Result result) {
+        if (result == null) {
+            result = Result.empty();
+        }
+        Result data = result;
+        int[] row = {-1};
+        boolean[] wasNull = {false};
+        ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> data.columns().size();
+                    case "getColumnLabel", "getColumnName" -> data.columns().get((Integer) args[0] - 1);
+                    case "getColumnTypeName" -> "VARCHAR";
+                    case "getColumnType" -> Types.VARCHAR;
+                    default -> defaultValue(method.getReturnType());
+                });
+        return (ResultSet) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++row[0] < data.rows().size();
+                        case "getMetaData":
+                            return meta;
+                        case "wasNull":
+                            return wasNull[0];
+                        case "close":
+                            return null;
+                        default:
+                            break;
+                    }
+                    if (method.getName().startsWith("get") && args != null && args.length >= 1) {
+                        int column = args[0] instanceof Integer index ? index : data.columns().indexOf(args[0]) + 1;
+                        Object value = data.rows().get(row[0])[column - 1];
+                        wasNull[0] = value == null;
+                        return convert(value, method.getReturnType());
+                    }
+                    return defaultValue(method.getReturnType());
+                });
+    }
+
+    static DbSession session(String id, String database) {
+        ConnectionInfo info = new ConnectionInfo("test", "localhost", 3306, database, "root", "secret", null);
+        return new DbSession(id, info, new ConnectionPool.PoolKey("localhost", 3306, "root", database, null, "secret"));
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        if (value == null) {
+            return defaultValue(type);
+        }
+        if (type == String.class) {
+            return value.toString();
+        }
+        if (type == long.class) {
+            return ((Number) value).longValue();
+        }
+        if (type == int.class) {
+            return ((Number) value).intValue();
+        }
+        if (type == double.class) {
+            return ((Number) value).doubleValue();
+        }
+        return value;
+    }
+
+    static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class || type == long.class || type == short.class || type == byte.class) {
+            return type == long.class ? 0L : type == int.class ? 0 : type == short.class ? (short) 0 : (byte) 0;
+        }
+        if (type == double.class || type == float.class) {
+            return type == double.class ? 0.0 : 0.0f;
+        }
+        if (type.isInterface()) {
+            return deepStub(type);
+        }
+        return null;
+    }
+
+    private static Object deepStub(Class<?> type) {
+        InvocationHandler handler = (proxy, method, args) -> switch (method.getName()) {
+            case "hashCode" -> System.identityHashCode(proxy);
+            case "equals" -> proxy == args[0];
+            case "toString" -> "stub:" + type.getSimpleName();
+            default -> defaultValue(method.getReturnType());
+        };
+        try {
+            return Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{type}, handler);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.ImportOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImportService的导入吞吐（行/秒）：CSV解析、分批、队列交接和批量绑定参数，不同写入线程数和批次大小对比。
+ * 数据库端是FakeJdbc的空连接（executeBatch不做任何事），测到的是导入管线本身的上限，
+ * 真实库上的吞吐还取决于rewriteBatchedStatements和服务端写入速度。
+ * 运行：mvn test-compile 后以测试类路径执行本类的main方法（或在IDE中直接运行）。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ImportServiceBenchmark.ROWS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImportServiceBenchmark {
+
+    static final int ROWS = 100_000;
+
+    @Param({"1", "4"})
+    public int writers;
+
+    @Param({"500", "5000"})
+    public int batchSize;
+
+    private byte[] csv;
+    private ImportService importService;
+    private ConnectionManagerService connectionManager;
+    private CountService countService;
+
+    @Setup
+    public void setUp() throws SQLException {
+        StringBuilder sb = new StringBuilder("id,name,amount,created_at,note\n");
+        for (int i = 0; i < ROWS; i++) {
+            sb.append(i).append(",customer-").append(i).append(',').append(i % 1000).append(".25,")
+                    .append("2024-01-01 00:00:00,\"note, with comma ").append(i).append("\"\n");
+        }
+        csv = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        SessionRegistry sessions = new SessionRegistry();
+        ReflectionTestUtils.setField(sessions, "maxPerProfile", 20);
+        DbSession session = FakeJdbc.session("bench", "app");
+        sessions.register(session);
+
+        ConnectionPoolManager poolManager = new ConnectionPoolManager();
+        ReflectionTestUtils.setField(poolManager, "interactiveReserve", 1);
+        ConnectionPool pool = new ConnectionPool(session.getPoolKey(),
+                () -> new FakeJdbc.FakeConnection(0, sql -> null).connection, 8, 0, 1000, 60_000, 60_000, 16);
+        @SuppressWarnings("unchecked")
+        Map<ConnectionPool.PoolKey, ConnectionPool> pools =
+                (Map<ConnectionPool.PoolKey, ConnectionPool>) ReflectionTestUtils.getField(poolManager, "pools");
+        pools.put(session.getPoolKey(), pool);
+
+        QueryRegistry queries = new QueryRegistry();
+        countService = new CountService();
+        ReflectionTestUtils.setField(countService, "queries", queries);
+        ReflectionTestUtils.setField(countService, "cacheMaxEntries", 100);
+        ReflectionTestUtils.setField(countService, "asyncThreads", 1);
+        countService.init();
+        QueryCacheService queryCache = new QueryCacheService();
+        ReflectionTestUtils.setField(queryCache, "sessions", sessions);
+        ReflectionTestUtils.setField(queryCache, "countService", countService);
+
+        connectionManager = new ConnectionManagerService();
+        ReflectionTestUtils.setField(connectionManager, "sessions", sessions);
+        ReflectionTestUtils.setField(connectionManager, "queries", queries);
+        ReflectionTestUtils.setField(connectionManager, "poolManager", poolManager);
+
+        importService = new ImportService();
+        ReflectionTestUtils.setField(importService, "connectionManager", connectionManager);
+        ReflectionTestUtils.setField(importService, "queries", queries);
+        ReflectionTestUtils.setField(importService, "queryCache", queryCache);
+        ReflectionTestUtils.setField(importService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(importService, "maxWriters", 4);
+        ReflectionTestUtils.setField(importService, "maxBatchSize", 10_000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        connectionManager.shutdown();
+        countService.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, Object> importCsv() throws Exception {
+        ImportOptions options = new ImportOptions();
+        options.setDatabase("app");
+        options.setTable("events");
+        options.setBatchSize(batchSize);
+        options.setCommitInterval(10_000);
+        options.setWriters(writers);
+        Map<String, Object> result = importService.importData("bench", options, new ByteArrayInputStream(csv));
+        if (!"completed".equals(result.get("status"))) {
+            throw new IllegalStateException(String.valueOf(result.get("error")));
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ImportServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.ImportOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportServiceTest {
+
+    private ImportService importService;
+    private ConnectionManagerService connectionManager;
+    private CountService countService;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        SessionRegistry sessions = new SessionRegistry();
+        ReflectionTestUtils.setField(sessions, "maxPerProfile", 20);
+        DbSession session = FakeJdbc.session("s1", "app");
+        sessions.register(session);
+
+        // 3个连接，给交互请求保留1个
+        ConnectionPoolManager poolManager = new ConnectionPoolManager();
+        ReflectionTestUtils.setField(poolManager, "interactiveReserve", 1);
+        pool = new ConnectionPool(session.getPoolKey(), () -> new FakeJdbc.FakeConnection(0, sql -> null).connection,
+                3, 0, 1000, 60_000, 60_000, 16);
+        @SuppressWarnings("unchecked")
+        Map<ConnectionPool.PoolKey, ConnectionPool> pools =
+                (Map<ConnectionPool.PoolKey, ConnectionPool>) ReflectionTestUtils.getField(poolManager, "pools");
+        pools.put(session.getPoolKey(), pool);
+
+        QueryRegistry queries = new QueryRegistry();
+        countService = new CountService();
+        ReflectionTestUtils.setField(countService, "queries", queries);
+        ReflectionTestUtils.setField(countService, "cacheMaxEntries", 100);
+        ReflectionTestUtils.setField(countService, "asyncThreads", 1);
+        countService.init();
+        QueryCacheService queryCache = new QueryCacheService();
+        ReflectionTestUtils.setField(queryCache, "sessions", sessions);
+        ReflectionTestUtils.setField(queryCache, "countService", countService);
+
+        connectionManager = new ConnectionManagerService();
+        ReflectionTestUtils.setField(connectionManager, "sessions", sessions);
+        ReflectionTestUtils.setField(connectionManager, "queries", queries);
+        ReflectionTestUtils.setField(connectionManager, "poolManager", poolManager);
+
+        importService = new ImportService();
+        ReflectionTestUtils.setField(importService, "connectionManager", connectionManager);
+        ReflectionTestUtils.setField(importService, "queries", queries);
+        ReflectionTestUtils.setField(importService, "queryCache", queryCache);
+        ReflectionTestUtils.setField(importService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(importService, "maxWriters", 4);
+        ReflectionTestUtils.setField(importService, "maxBatchSize", 10_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionManager.shutdown();
+        countService.shutdown();
+    }
+
+    private Map<String, Object> importCsv(String csv, int writers) throws Exception {
+        ImportOptions options = new ImportOptions();
+        options.setDatabase("app");
+        options.setTable("t");
+        options.setBatchSize(2);
+        options.setWriters(writers);
+        return importService.importData("s1", options, new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void usesFewerWritersWhenOnlyTheInteractiveReserveIsLeft() throws Exception {
+        Map<String, Object> result = importCsv("a,b\n1,x\n2,y\n3,z\n4,w\n5,v\n", 4);
+        assertEquals("completed", result.get("status"));
+        assertEquals(2, result.get("writers"));
+        assertEquals(5L, result.get("rowsWritten"));
+        assertEquals(0, pool.getStats().get("active"));
+    }
+
+    @Test
+    void firstWriterWaitsForTheOnlyFreeConnection() throws Exception {
+        try (ConnectionPool.Lease held = pool.acquire(); ConnectionPool.Lease held2 = pool.acquire()) {
+            Map<String, Object> result = importCsv("a,b\n1,x\n", 4);
+            assertEquals("completed", result.get("status"));
+            assertEquals(1, result.get("writers"));
+        }
+        assertEquals(0, pool.getStats().get("active"));
+    }
+
+    @Test
+    void malformedRowFailsTheImportAndReturnsTheConnections() throws Exception {
+        Map<String, Object> result = importCsv("a,b\n1,x\n2\n", 2);
+        assertEquals("failed", result.get("status"));
+        assertEquals("Row 2 has 1 fields, expected 2", result.get("error"));
+        assertEquals(0, pool.getStats().get("active"));
+    }
+}
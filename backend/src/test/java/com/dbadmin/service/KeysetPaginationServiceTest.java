@@ -0,0 +1,106 @@
+package com.dbadmin.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetPaginationServiceTest {
+
+    private final KeysetPaginationService service = new KeysetPaginationService();
+
+    private static KeysetPaginationService.Cursor cursor(Object... values) {
+        List<String> keys = new ArrayList<>();
+        List<KeysetPaginationService.KeyValue> keyValues = new ArrayList<>();
+        for (Object value : values) {
+            keys.add("k" + keys.size());
+            keyValues.add(KeysetPaginationService.toCursorValue(value));
+        }
+        return new KeysetPaginationService.Cursor("app", "t", keys, keyValues);
+    }
+
+    /**
+     * 把游标中的键值绑定到预编译语句，返回语句记录下的SQL（参数按顺序代入）
+     */
+    private static String bound(KeysetPaginationService.Cursor cursor) throws SQLException {
+        FakeJdbc.FakeConnection conn = new FakeJdbc.FakeConnection(1, sql -> null);
+        StringBuilder sql = new StringBuilder("SELECT");
+        for (int i = 0; i < cursor.values().size(); i++) {
+            sql.append(i == 0 ? " ?" : ", ?");
+        }
+        PreparedStatement stmt = conn.connection.prepareStatement(sql.toString());
+        for (int i = 0; i < cursor.values().size(); i++) {
+            KeysetPaginationService.bind(stmt, i + 1, cursor.values().get(i));
+        }
+        stmt.executeQuery();
+        return conn.executed.get(0);
+    }
+
+    @Test
+    void cursorRoundTripsThroughAUrlSafeString() throws SQLException {
+        KeysetPaginationService.Cursor original = cursor(42L, "a/b+c=", true);
+        String encoded = service.encode(original);
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"), encoded);
+        assertEquals(original, service.decode(encoded));
+    }
+
+    @Test
+    void largeNumbersKeepTheirExactValue() throws SQLException {
+        BigInteger unsignedMax = new BigInteger("18446744073709551615");
+        BigDecimal decimal = new BigDecimal("12345678901234567890.123456789");
+        KeysetPaginationService.Cursor decoded = service.decode(service.encode(cursor(unsignedMax, decimal, Long.MIN_VALUE)));
+
+        assertEquals(new KeysetPaginationService.KeyValue("integer", "18446744073709551615"), decoded.values().get(0));
+        assertEquals(new KeysetPaginationService.KeyValue("decimal", "12345678901234567890.123456789"),
+                decoded.values().get(1));
+        // 超出long范围的无符号BIGINT以BigDecimal绑定，不经过double
+        assertEquals("SELECT 18446744073709551615, 12345678901234567890.123456789, " + Long.MIN_VALUE,
+                bound(decoded));
+    }
+
+    @Test
+    void binaryKeysAreBoundAsBytes() throws SQLException {
+        byte[] key = {0, 1, (byte) 0xff};
+        KeysetPaginationService.Cursor decoded = service.decode(service.encode(cursor((Object) key)));
+        assertEquals("bytes", decoded.values().get(0).type());
+        assertArrayEquals(key, Base64.getDecoder().decode(decoded.values().get(0).value()));
+    }
+
+    @Test
+    void tamperedCursorsAreRejected() {
+        String[] cursors = {
+                "not a cursor!",
+                Base64.getUrlEncoder().encodeToString("{}".getBytes(StandardCharsets.UTF_8)),
+                Base64.getUrlEncoder().encodeToString(
+                        "{\"database\":\"app\",\"table\":\"t\",\"keys\":[\"id\"],\"values\":[]}".getBytes(StandardCharsets.UTF_8)),
+        };
+        for (String cursor : cursors) {
+            SQLException e = assertThrows(SQLException.class, () -> service.decode(cursor));
+            assertEquals("Invalid cursor", e.getMessage());
+        }
+    }
+
+    @Test
+    void unknownValueTypeIsRejectedWhenBound() throws SQLException {
+        KeysetPaginationService.Cursor forged = new KeysetPaginationService.Cursor("app", "t", List.of("id"),
+                List.of(new KeysetPaginationService.KeyValue("script", "1")));
+        SQLException e = assertThrows(SQLException.class, () -> bound(service.decode(service.encode(forged))));
+        assertEquals("Invalid cursor", e.getMessage());
+    }
+
+    @Test
+    void cursorOfAnotherTableIsRejected() throws SQLException {
+        String encoded = service.encode(cursor(1L));
+        SQLException e = assertThrows(SQLException.class,
+                () -> service.browseTable("s1", "app", "other", 10, encoded));
+        assertEquals("Cursor does not belong to table app.other", e.getMessage());
+    }
+}
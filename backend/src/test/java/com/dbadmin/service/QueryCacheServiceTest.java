@@ -0,0 +1,151 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.CountMode;
+import com.dbadmin.model.QueryResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCacheServiceTest {
+
+    private final SessionRegistry sessions = new SessionRegistry();
+    private final DbSession s1 = FakeJdbc.session("s1", "app");
+    private final DbSession s2 = FakeJdbc.session("s2", "app");
+    // 不同数据库即不同的连接配置
+    private final DbSession other = FakeJdbc.session("s3", "other");
+    private CountService countService;
+    private QueryCacheService cache;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        ReflectionTestUtils.setField(sessions, "maxPerProfile", 20);
+        sessions.register(s1);
+        sessions.register(s2);
+        sessions.register(other);
+
+        countService = new CountService();
+        ReflectionTestUtils.setField(countService, "queries", new QueryRegistry());
+        ReflectionTestUtils.setField(countService, "cacheTtlMs", 60_000L);
+        ReflectionTestUtils.setField(countService, "cacheMaxEntries", 100);
+        ReflectionTestUtils.setField(countService, "asyncThreads", 1);
+        countService.init();
+
+        cache = new QueryCacheService();
+        ReflectionTestUtils.setField(cache, "sessions", sessions);
+        ReflectionTestUtils.setField(cache, "countService", countService);
+        ReflectionTestUtils.setField(cache, "maxBytes", 1L << 20);
+        ReflectionTestUtils.setField(cache, "maxEntryBytes", 1L << 20);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        countService.shutdown();
+    }
+
+    private void put(DbSession session, String sql) {
+        QueryResult result = new QueryResult(List.of(Map.of("id", 1)), List.of("id"), 1L);
+        cache.put(session, sql, 1, 10, false, cache.generation(session), result);
+    }
+
+    private boolean cached(DbSession session, String sql) {
+        return cache.get(session, sql, 1, 10, false) != null;
+    }
+
+    @Test
+    void writeInvalidatesOnlyTheTablesItModifies() {
+        put(s1, "SELECT * FROM orders");
+        put(s1, "SELECT * FROM customers");
+
+        // 同一连接配置下另一个会话的写入
+        cache.invalidate("s2", "UPDATE orders SET status = 'paid' WHERE id = 1");
+        assertFalse(cached(s1, "SELECT * FROM orders"));
+        assertTrue(cached(s1, "SELECT * FROM customers"));
+    }
+
+    @Test
+    void joinIsInvalidatedByEitherTable() {
+        put(s1, "SELECT * FROM orders o JOIN customers c ON c.id = o.customer_id");
+        cache.invalidate("s2", "DELETE FROM customers WHERE id = 1");
+        assertFalse(cached(s1, "SELECT * FROM orders o JOIN customers c ON c.id = o.customer_id"));
+    }
+
+    @Test
+    void otherConnectionProfilesAreNotInvalidated() {
+        put(s1, "SELECT * FROM orders");
+        cache.invalidate("s3", "UPDATE orders SET status = 'paid'");
+        assertTrue(cached(s1, "SELECT * FROM orders"));
+    }
+
+    @Test
+    void readsAndSessionStatementsDoNotInvalidate() {
+        put(s1, "SELECT * FROM orders");
+        cache.invalidate("s2", "SELECT * FROM orders");
+        cache.invalidate("s2", "SET @a = 1");
+        cache.invalidate("s2", "USE app");
+        assertTrue(cached(s1, "SELECT * FROM orders"));
+    }
+
+    @Test
+    void unknownTablesInvalidateTheWholeProfile() {
+        put(s1, "SELECT * FROM orders");
+        put(s1, "SELECT * FROM customers");
+        cache.invalidateTables("s2", Set.of());
+        assertFalse(cached(s1, "SELECT * FROM orders"));
+        assertFalse(cached(s1, "SELECT * FROM customers"));
+    }
+
+    @Test
+    void resultReadBeforeAConcurrentWriteIsNotStored() {
+        long generation = cache.generation(s1);
+        cache.invalidate("s2", "INSERT INTO orders (id) VALUES (2)");
+        cache.put(s1, "SELECT * FROM orders", 1, 10, false, generation,
+                new QueryResult(List.of(Map.of("id", 1)), List.of("id"), 1L));
+        assertFalse(cached(s1, "SELECT * FROM orders"));
+    }
+
+    @Test
+    void committedTransactionInvalidatesAgainOnCommit() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(s2.getPoolKey(),
+                () -> new FakeJdbc.FakeConnection(1, sql -> null).connection, 1, 0, 1000, 60_000, 60_000, 10);
+        s2.setPinnedLease(pool.acquire());
+        cache.invalidate("s2", "UPDATE orders SET status = 'paid'");
+
+        // 提交前其他会话读到的仍是修改前的数据，提交时必须再失效一次
+        put(s1, "SELECT * FROM orders");
+        assertTrue(cached(s1, "SELECT * FROM orders"));
+        cache.transactionEnded("s2", true);
+        assertFalse(cached(s1, "SELECT * FROM orders"));
+    }
+
+    @Test
+    void rolledBackTransactionDoesNotInvalidateAgain() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(s2.getPoolKey(),
+                () -> new FakeJdbc.FakeConnection(1, sql -> null).connection, 1, 0, 1000, 60_000, 60_000, 10);
+        s2.setPinnedLease(pool.acquire());
+        cache.invalidate("s2", "UPDATE orders SET status = 'paid'");
+        put(s1, "SELECT * FROM orders");
+        cache.transactionEnded("s2", false);
+        assertTrue(cached(s1, "SELECT * FROM orders"));
+    }
+
+    @Test
+    void writesAlsoInvalidateCachedCounts() throws SQLException {
+        FakeJdbc.FakeConnection conn = new FakeJdbc.FakeConnection(1, sql -> FakeJdbc.Result.of("c", 5L));
+        countService.count(s1, conn.connection, "SELECT * FROM orders", CountMode.EXACT);
+        assertEquals(CountService.TYPE_CACHED,
+                countService.count(s1, conn.connection, "SELECT * FROM orders", CountMode.EXACT).countType());
+
+        cache.invalidate("s2", "UPDATE orders SET status = 'paid'");
+        assertEquals(CountService.TYPE_EXACT,
+                countService.count(s1, conn.connection, "SELECT * FROM orders", CountMode.EXACT).countType());
+    }
+}
@@ -0,0 +1,102 @@
+package com.dbadmin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryJobServiceTest {
+
+    @TempDir
+    Path jobDir;
+
+    private QueryJobService jobService;
+    private ConnectionManagerService connectionManager;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        SessionRegistry sessions = new SessionRegistry();
+        ReflectionTestUtils.setField(sessions, "maxPerProfile", 20);
+        DbSession session = FakeJdbc.session("s1", "app");
+        sessions.register(session);
+
+        // 2个连接，给交互请求保留1个
+        ConnectionPoolManager poolManager = new ConnectionPoolManager();
+        ReflectionTestUtils.setField(poolManager, "interactiveReserve", 1);
+        ConnectionPool pool = new ConnectionPool(session.getPoolKey(),
+                () -> new FakeJdbc.FakeConnection(0, sql -> FakeJdbc.Result.of("n", 1L, 2L)).connection,
+                2, 0, 1000, 60_000, 60_000, 16);
+        @SuppressWarnings("unchecked")
+        Map<ConnectionPool.PoolKey, ConnectionPool> pools =
+                (Map<ConnectionPool.PoolKey, ConnectionPool>) ReflectionTestUtils.getField(poolManager, "pools");
+        pools.put(session.getPoolKey(), pool);
+
+        connectionManager = new ConnectionManagerService();
+        ReflectionTestUtils.setField(connectionManager, "sessions", sessions);
+        ReflectionTestUtils.setField(connectionManager, "queries", new QueryRegistry());
+        ReflectionTestUtils.setField(connectionManager, "poolManager", poolManager);
+
+        jobService = new QueryJobService();
+        ReflectionTestUtils.setField(jobService, "connectionManager", connectionManager);
+        ReflectionTestUtils.setField(jobService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(jobService, "jobDir", jobDir.toString());
+        ReflectionTestUtils.setField(jobService, "threads", 1);
+        ReflectionTestUtils.setField(jobService, "queueSize", 10);
+        ReflectionTestUtils.setField(jobService, "maxPerUser", 2);
+        ReflectionTestUtils.setField(jobService, "maxJobs", 10);
+        ReflectionTestUtils.setField(jobService, "maxPageSize", 100);
+        ReflectionTestUtils.setField(jobService, "retentionMs", 60_000L);
+        ReflectionTestUtils.setField(jobService, "retryDelayMs", 20L);
+        jobService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobService.shutdown();
+        connectionManager.shutdown();
+    }
+
+    private static void awaitStatus(QueryJob job, QueryJob.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (job.getStatus() != status) {
+            assertTrue(System.currentTimeMillis() < deadline, "job is " + job.getStatus() + ", expected " + status);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void jobStaysQueuedWhileOnlyTheInteractiveReserveIsLeft() throws Exception {
+        ConnectionPool.Lease held = connectionManager.leaseDedicated("s1");
+        QueryJob job = jobService.submit("s1", "SELECT n FROM t", "test");
+
+        // 重试几轮之后仍在排队，没有占用保留的连接
+        Thread.sleep(200);
+        assertEquals(QueryJob.Status.QUEUED, job.getStatus());
+        assertEquals(0L, job.getRowsFetched().get());
+
+        held.close();
+        awaitStatus(job, QueryJob.Status.COMPLETED);
+        assertEquals(2L, jobService.readRows(job.getJobId(), 0, 10).get("totalRows"));
+    }
+
+    @Test
+    void queuedJobWaitingForAConnectionCanBeCancelled() throws Exception {
+        ConnectionPool.Lease held = connectionManager.leaseDedicated("s1");
+        QueryJob job = jobService.submit("s1", "SELECT n FROM t", "test");
+        Thread.sleep(50);
+
+        assertTrue(jobService.cancel(job.getJobId()));
+        held.close();
+        Thread.sleep(100);
+        assertEquals(QueryJob.Status.CANCELLED, job.getStatus());
+        assertEquals(0L, job.getStartedAt());
+    }
+}
@@ -0,0 +1,115 @@
+package com.dbadmin.service;
+
+import com.dbadmin.model.MemoryPolicy;
+import com.dbadmin.model.QueryResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * /execute的两种结果格式：每行一个LinkedHashMap（format默认）与列名只出现一次的Object[]行（format=columnar），
+ * 包括从结果集读入和序列化为响应JSON两步。合成结果集为80列的CachedRowSet，列类型在
+ * BIGINT/VARCHAR/DECIMAL/TIMESTAMP/INT之间循环，列名取宽表常见的长度。
+ * 运行：mvn test-compile 后以测试类路径执行本类的main方法（或在IDE中直接运行），
+ * 分配量的对比用 -prof gc（main中已默认开启）。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResultFormatBenchmark {
+
+    private static final int COLUMNS = 80;
+
+    @Param({"100", "1000"})
+    public int rows;
+
+    private CachedRowSet rs;
+    private ObjectMapper objectMapper;
+    private ResultMemoryGovernor governor;
+
+    @Setup
+    public void setUp() throws SQLException {
+        int[] types = {Types.BIGINT, Types.VARCHAR, Types.DECIMAL, Types.TIMESTAMP, Types.INTEGER};
+        RowSetMetaDataImpl meta = new RowSetMetaDataImpl();
+        meta.setColumnCount(COLUMNS);
+        for (int i = 1; i <= COLUMNS; i++) {
+            String name = "customer_attribute_" + i;
+            meta.setColumnName(i, name);
+            meta.setColumnLabel(i, name);
+            meta.setColumnType(i, types[(i - 1) % types.length]);
+        }
+
+        rs = RowSetProvider.newFactory().createCachedRowSet();
+        rs.setMetaData(meta);
+        long now = System.currentTimeMillis();
+        for (int r = 0; r < rows; r++) {
+            rs.moveToInsertRow();
+            for (int i = 1; i <= COLUMNS; i++) {
+                switch (types[(i - 1) % types.length]) {
+                    case Types.BIGINT -> rs.updateLong(i, (long) r * COLUMNS + i);
+                    case Types.VARCHAR -> rs.updateString(i, "value " + r + "/" + i);
+                    case Types.DECIMAL -> rs.updateBigDecimal(i, BigDecimal.valueOf(r * 100L + i, 2));
+                    case Types.TIMESTAMP -> rs.updateTimestamp(i, new Timestamp(now - r * 1000L));
+                    default -> rs.updateInt(i, i);
+                }
+            }
+            rs.insertRow();
+            rs.moveToCurrentRow();
+        }
+
+        objectMapper = new ObjectMapper();
+        governor = new ResultMemoryGovernor(0, 1000, "fail");
+    }
+
+    @Benchmark
+    public int mapRows() throws SQLException, IOException {
+        rs.beforeFirst();
+        try (ResultMemoryGovernor.Reservation reservation = governor.open("bench", "map", MemoryPolicy.FAIL)) {
+            List<Map<String, Object>> data = ConnectionManagerService.resultSetToList(rs, new AtomicLong(), reservation);
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("data", data);
+            objectMapper.writeValue(OutputStream.nullOutputStream(), response);
+            return data.size();
+        }
+    }
+
+    @Benchmark
+    public int columnarRows() throws SQLException, IOException {
+        rs.beforeFirst();
+        try (ResultMemoryGovernor.Reservation reservation = governor.open("bench", "columnar", MemoryPolicy.FAIL)) {
+            QueryResult result = ConnectionManagerService.resultSetToColumnar(rs, new AtomicLong(), reservation);
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("format", "columnar");
+            response.put("columnTypes", result.getColumnTypes());
+            response.put("rows", result.getRows());
+            response.put("columns", result.getColumns());
+            objectMapper.writeValue(OutputStream.nullOutputStream(), response);
+            return result.getRows().size();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ResultFormatBenchmark.class.getSimpleName()).addProfiler("gc").build())
+                .run();
+    }
+}
@@ -0,0 +1,139 @@
+package com.dbadmin.service;
+
+import com.dbadmin.exception.ResultMemoryExceededException;
+import com.dbadmin.model.MemoryPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultMemoryGovernorTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final ResultMemoryGovernor governor = new ResultMemoryGovernor(3 * MB, 5000, "wait");
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private long reserved() {
+        return (Long) governor.getStats().get("reservedBytes");
+    }
+
+    private static boolean waiting(ResultMemoryGovernor.Reservation reservation) {
+        return (Boolean) reservation.toMap().get("waiting");
+    }
+
+    private static void awaitWaiting(ResultMemoryGovernor.Reservation reservation) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!waiting(reservation)) {
+            assertTrue(System.currentTimeMillis() < deadline, "reservation never started waiting");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void reservesInChunksAndReleasesOnClose() throws SQLException {
+        ResultMemoryGovernor.Reservation reservation = governor.open("s", "q", MemoryPolicy.FAIL);
+        assertTrue(reservation.admit(100));
+        assertTrue(reservation.admit(100));
+        assertEquals(MB, reserved());
+        assertEquals(200, reservation.getUsedBytes());
+
+        reservation.close();
+        assertEquals(0L, reserved());
+        // 重复关闭无副作用
+        reservation.close();
+        assertEquals(0L, reserved());
+    }
+
+    @Test
+    void truncatePolicyStopsReading() throws SQLException {
+        try (ResultMemoryGovernor.Reservation reservation = governor.open("s", "q", MemoryPolicy.TRUNCATE)) {
+            int rows = 0;
+            while (reservation.admit(MB)) {
+                rows++;
+            }
+            assertEquals(3, rows);
+            assertTrue(reservation.isTruncated());
+            assertFalse(reservation.admit(1));
+        }
+    }
+
+    @Test
+    void failPolicyThrows() throws SQLException {
+        try (ResultMemoryGovernor.Reservation reservation = governor.open("s", "q", MemoryPolicy.FAIL)) {
+            reservation.admit(3 * MB);
+            ResultMemoryExceededException e =
+                    assertThrows(ResultMemoryExceededException.class, () -> reservation.admit(1));
+            assertEquals(MemoryPolicy.FAIL, e.getPolicy());
+        }
+    }
+
+    @Test
+    void waitingQueryKeepsTheBytesItAlreadyHolds() throws Exception {
+        ResultMemoryGovernor.Reservation big = governor.open("s1", "q1", MemoryPolicy.FAIL);
+        big.admit(2 * MB);
+        ResultMemoryGovernor.Reservation small = governor.open("s2", "q2", MemoryPolicy.WAIT);
+        small.admit(MB);
+
+        Future<Boolean> more = executor.submit(() -> small.admit(MB));
+        awaitWaiting(small);
+        // 等待期间已读入的1MB仍然计入预算，其他查询不能再占用
+        assertEquals(3 * MB, reserved());
+        ResultMemoryGovernor.Reservation other = governor.open("s3", "q3", MemoryPolicy.FAIL);
+        assertThrows(ResultMemoryExceededException.class, () -> other.admit(1));
+        other.close();
+
+        big.close();
+        assertTrue(more.get(2, TimeUnit.SECONDS));
+        assertEquals(2 * MB, reserved());
+        small.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void holdersDoNotWaitForEachOther() throws Exception {
+        ResultMemoryGovernor.Reservation first = governor.open("s1", "q1", MemoryPolicy.WAIT);
+        first.admit(2 * MB);
+        ResultMemoryGovernor.Reservation second = governor.open("s2", "q2", MemoryPolicy.WAIT);
+        second.admit(MB);
+
+        Future<Boolean> firstMore = executor.submit(() -> first.admit(MB));
+        awaitWaiting(first);
+
+        // 唯一的另一个持有者正在等待，second再等待只会互相等到超时
+        long start = System.currentTimeMillis();
+        assertThrows(ResultMemoryExceededException.class, () -> second.admit(MB));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+
+        second.close();
+        assertTrue(firstMore.get(2, TimeUnit.SECONDS));
+        first.close();
+        assertEquals(0L, reserved());
+        executor.shutdownNow();
+    }
+
+    @Test
+    void queryHoldingNothingWaitsForRelease() throws Exception {
+        ResultMemoryGovernor.Reservation first = governor.open("s1", "q1", MemoryPolicy.WAIT);
+        first.admit(3 * MB);
+        ResultMemoryGovernor.Reservation second = governor.open("s2", "q2", MemoryPolicy.WAIT);
+
+        Future<Boolean> admitted = executor.submit(() -> second.admit(MB));
+        awaitWaiting(second);
+        first.close();
+        assertTrue(admitted.get(2, TimeUnit.SECONDS));
+        second.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void singleQueryLargerThanTheBudgetDoesNotWait() throws SQLException {
+        try (ResultMemoryGovernor.Reservation reservation = governor.open("s", "q", MemoryPolicy.WAIT)) {
+            long start = System.currentTimeMillis();
+            assertThrows(ResultMemoryExceededException.class, () -> reservation.admit(4 * MB));
+            assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+    }
+}
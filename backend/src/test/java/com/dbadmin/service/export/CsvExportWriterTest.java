@@ -0,0 +1,63 @@
+package com.dbadmin.service.export;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvExportWriterTest {
+
+    /**
+     * 单列VARCHAR结果集
+     */
+    private static ResultSet resultSet(String column, String... values) {
+        List<String> rows = Arrays.asList(values);
+        int[] row = {-1};
+        boolean[] wasNull = {false};
+        ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(CsvExportWriterTest.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> 1;
+                    case "getColumnLabel", "getColumnName" -> column;
+                    case "getColumnType" -> Types.VARCHAR;
+                    default -> null;
+                });
+        return (ResultSet) Proxy.newProxyInstance(CsvExportWriterTest.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "next" -> ++row[0] < rows.size();
+                    case "getMetaData" -> meta;
+                    case "getString" -> {
+                        String value = rows.get(row[0]);
+                        wasNull[0] = value == null;
+                        yield value;
+                    }
+                    case "wasNull" -> wasNull[0];
+                    default -> null;
+                });
+    }
+
+    private static String export(ResultSet rs) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CsvExportWriter(out).handle(rs);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void nullAndEmptyStringAreDistinguishable() throws Exception {
+        String csv = export(resultSet("name", null, "", "x"));
+        assertEquals("\uFEFFname\r\n\r\n\"\"\r\nx\r\n", csv);
+    }
+
+    @Test
+    void quotesSpecialCharacters() throws Exception {
+        String csv = export(resultSet("v", "a,b", "say \"hi\"", "line\nbreak"));
+        assertEquals("\uFEFFv\r\n\"a,b\"\r\n\"say \"\"hi\"\"\"\r\n\"line\nbreak\"\r\n", csv);
+    }
+}
@@ -0,0 +1,118 @@
+package com.dbadmin.service.spool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultSpoolTest {
+
+    @TempDir
+    Path dir;
+
+    private Path data() {
+        return dir.resolve("result.dat");
+    }
+
+    private Path index() {
+        return dir.resolve("result.idx");
+    }
+
+    @Test
+    void roundTripsAllValueTypes() throws IOException {
+        List<String> columns = List.of("l", "i", "d", "f", "s", "b", "bool", "dec", "big", "nul");
+        List<String> types = List.of("BIGINT", "INT", "DOUBLE", "FLOAT", "VARCHAR", "BLOB", "BIT", "DECIMAL",
+                "BIGINT UNSIGNED", "VARCHAR");
+        try (ResultSpoolWriter writer = new ResultSpoolWriter(data(), index(), columns, types)) {
+            writer.writeRow(new Object[]{Long.MAX_VALUE, 42, 1.5d, 2.5f, "中文 text", new byte[]{0, 1, -1}, true,
+                    new BigDecimal("12345.6789"), new BigInteger("18446744073709551615"), null});
+            assertEquals(1, writer.getRowCount());
+        }
+
+        try (ResultSpoolReader reader = new ResultSpoolReader(data(), index())) {
+            assertEquals(columns, reader.getColumns());
+            assertEquals(types, reader.getColumnTypes());
+            assertEquals(1, reader.getRowCount());
+
+            Object[] row = reader.readRows(0, 10).get(0);
+            assertEquals(Long.MAX_VALUE, row[0]);
+            // 整数类型统一读回为Long，浮点统一读回为Double
+            assertEquals(42L, row[1]);
+            assertEquals(1.5d, row[2]);
+            assertEquals(2.5d, row[3]);
+            assertEquals("中文 text", row[4]);
+            assertArrayEquals(new byte[]{0, 1, -1}, (byte[]) row[5]);
+            assertEquals(true, row[6]);
+            assertEquals(new BigDecimal("12345.6789"), row[7]);
+            assertEquals(new BigDecimal("18446744073709551615"), row[8]);
+            assertNull(row[9]);
+        }
+    }
+
+    @Test
+    void readsArbitraryPages() throws IOException {
+        int rows = 10_000;
+        try (ResultSpoolWriter writer = new ResultSpoolWriter(data(), index(), List.of("id", "name"),
+                List.of("BIGINT", "VARCHAR"))) {
+            for (int i = 0; i < rows; i++) {
+                writer.writeRow(new Object[]{(long) i, i % 7 == 0 ? null : "row-" + "x".repeat(i % 50) + i});
+            }
+        }
+        assertEquals(rows * (long) Long.BYTES, Files.size(index()));
+
+        try (ResultSpoolReader reader = new ResultSpoolReader(data(), index())) {
+            assertEquals(rows, reader.getRowCount());
+
+            List<Object[]> page = reader.readRows(5_000, 100);
+            assertEquals(100, page.size());
+            for (int r = 0; r < page.size(); r++) {
+                long id = 5_000 + r;
+                assertEquals(id, page.get(r)[0]);
+                assertEquals(id % 7 == 0 ? null : "row-" + "x".repeat((int) (id % 50)) + id, page.get(r)[1]);
+            }
+
+            // 最后一页不足limit行
+            List<Object[]> last = reader.readRows(rows - 3, 100);
+            assertEquals(3, last.size());
+            assertEquals((long) rows - 1, last.get(2)[0]);
+        }
+    }
+
+    @Test
+    void outOfRangeReadsReturnNoRows() throws IOException {
+        try (ResultSpoolWriter writer = new ResultSpoolWriter(data(), index(), List.of("a"), List.of("INT"))) {
+            writer.writeRow(new Object[]{1});
+        }
+        try (ResultSpoolReader reader = new ResultSpoolReader(data(), index())) {
+            assertTrue(reader.readRows(1, 10).isEmpty());
+            assertTrue(reader.readRows(-1, 10).isEmpty());
+            assertTrue(reader.readRows(0, 0).isEmpty());
+        }
+    }
+
+    @Test
+    void emptyResult() throws IOException {
+        try (ResultSpoolWriter writer = new ResultSpoolWriter(data(), index(), List.of("a"), List.of("INT"))) {
+            assertEquals(0, writer.getRowCount());
+        }
+        try (ResultSpoolReader reader = new ResultSpoolReader(data(), index())) {
+            assertEquals(List.of("a"), reader.getColumns());
+            assertEquals(0, reader.getRowCount());
+            assertTrue(reader.readRows(0, 10).isEmpty());
+        }
+    }
+
+    @Test
+    void rejectsForeignFiles() throws IOException {
+        Files.write(data(), new byte[]{1, 2, 3, 4, 0, 0, 0, 0});
+        Files.write(index(), new byte[0]);
+        assertThrows(IOException.class, () -> new ResultSpoolReader(data(), index()));
+    }
+}
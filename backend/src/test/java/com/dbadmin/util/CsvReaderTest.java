@@ -0,0 +1,84 @@
+package com.dbadmin.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+    private static CsvReader reader(String csv) {
+        return new CsvReader(new StringReader(csv), ',');
+    }
+
+    @Test
+    void readsSimpleRecords() throws IOException {
+        try (CsvReader csv = reader("a,b,c\n1,2,3\r\n4,5,6")) {
+            assertArrayEquals(new String[]{"a", "b", "c"}, csv.readRecord());
+            assertArrayEquals(new String[]{"1", "2", "3"}, csv.readRecord());
+            assertArrayEquals(new String[]{"4", "5", "6"}, csv.readRecord());
+            assertNull(csv.readRecord());
+            assertEquals(3, csv.getRecordNumber());
+        }
+    }
+
+    @Test
+    void skipsUtf8Bom() throws IOException {
+        try (CsvReader csv = reader("\uFEFFid,name\n1,x\n")) {
+            assertArrayEquals(new String[]{"id", "name"}, csv.readRecord());
+            assertArrayEquals(new String[]{"1", "x"}, csv.readRecord());
+        }
+    }
+
+    @Test
+    void bomOnlyInput() throws IOException {
+        try (CsvReader csv = reader("\uFEFF")) {
+            assertNull(csv.readRecord());
+        }
+    }
+
+    @Test
+    void quotedFieldsWithDelimitersEscapesAndNewlines() throws IOException {
+        try (CsvReader csv = reader("\"a,b\",\"say \"\"hi\"\"\",\"line1\nline2\"\nnext\n")) {
+            assertArrayEquals(new String[]{"a,b", "say \"hi\"", "line1\nline2"}, csv.readRecord());
+            assertArrayEquals(new String[]{"next"}, csv.readRecord());
+            assertNull(csv.readRecord());
+        }
+    }
+
+    @Test
+    void distinguishesQuotedEmptyFromUnquotedEmpty() throws IOException {
+        try (CsvReader csv = reader("\"\",,\"x\"\n,\"\"\n")) {
+            assertArrayEquals(new String[]{"", "", "x"}, csv.readRecord());
+            assertTrue(csv.isQuoted(0));
+            assertFalse(csv.isQuoted(1));
+            assertTrue(csv.isQuoted(2));
+
+            // 每条记录重新记录
+            assertArrayEquals(new String[]{"", ""}, csv.readRecord());
+            assertFalse(csv.isQuoted(0));
+            assertTrue(csv.isQuoted(1));
+            assertFalse(csv.isQuoted(2));
+        }
+    }
+
+    @Test
+    void customDelimiter() throws IOException {
+        try (CsvReader csv = new CsvReader(new StringReader("a\tb,c\t\"d\te\"\n"), '\t')) {
+            assertArrayEquals(new String[]{"a", "b,c", "d\te"}, csv.readRecord());
+        }
+    }
+
+    @Test
+    void recordsLargerThanTheBuffer() throws IOException {
+        String big = "x".repeat(200_000);
+        try (CsvReader csv = reader("\"" + big + "\"," + big + "\n1,2\n")) {
+            String[] record = csv.readRecord();
+            assertEquals(big, record[0]);
+            assertEquals(big, record[1]);
+            assertArrayEquals(new String[]{"1", "2"}, csv.readRecord());
+        }
+    }
+}
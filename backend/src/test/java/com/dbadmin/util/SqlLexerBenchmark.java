@@ -0,0 +1,84 @@
+package com.dbadmin.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * SqlLexer与原SqlController.isSelectQuery正则分类的对比。
+ * 运行：mvn test-compile 后以测试类路径执行本类的main方法（或在IDE中直接运行）。
+ * analyze每次调用都换一个新的String实例，避免命中线程内的上次结果缓存。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SqlLexerBenchmark {
+
+    @Param({"short", "commented", "join", "script"})
+    public String shape;
+
+    private String sql;
+
+    @Setup
+    public void setUp() {
+        sql = switch (shape) {
+            case "short" -> "SELECT * FROM users WHERE id = 42";
+            case "commented" -> "/* report */ -- monthly\nSELECT o.id, o.total, 'a -- b' AS note FROM orders o "
+                    + "WHERE o.created_at >= '2024-01-01' ORDER BY o.id DESC LIMIT 100;";
+            case "join" -> "WITH recent AS (SELECT customer_id, SUM(total) AS spent FROM orders "
+                    + "WHERE created_at > NOW() - INTERVAL 30 DAY GROUP BY customer_id) "
+                    + "SELECT c.id, c.name, r.spent FROM customers c JOIN recent r ON r.customer_id = c.id "
+                    + "LEFT JOIN regions g ON g.id = c.region_id WHERE g.code IN ('EU', 'US') ORDER BY r.spent DESC";
+            // 约1MB的单条INSERT，对应大脚本或大批量导入
+            default -> {
+                StringBuilder sb = new StringBuilder("INSERT INTO events (id, kind, payload) VALUES ");
+                for (int i = 0; sb.length() < 1 << 20; i++) {
+                    sb.append(i == 0 ? "" : ", ").append('(').append(i).append(", 'click', '{\"x\": ")
+                            .append(i).append(", \"note\": \"-- not a comment\"}')");
+                }
+                yield sb.toString();
+            }
+        };
+    }
+
+    @Benchmark
+    public void lexer(Blackhole bh) {
+        SqlLexer.Statement statement = SqlLexer.analyze(new String(sql));
+        bh.consume(statement.returnsResultSet());
+        bh.consume(statement.sql());
+    }
+
+    @Benchmark
+    public void regex(Blackhole bh) {
+        bh.consume(isSelectQuery(sql));
+        bh.consume(sql.trim().replaceAll(";+$", ""));
+    }
+
+    /**
+     * 原SqlController.isSelectQuery的实现，仅用于对比
+     */
+    private static boolean isSelectQuery(String sql) {
+        String withoutComments = sql.replaceAll("--.*", "").replaceAll("/\\*.*?\\*/", "");
+        String normalized = withoutComments.toUpperCase().replaceAll("\\s+", " ").trim();
+        Pattern resultPattern = Pattern.compile("^(SELECT|SHOW|DESCRIBE|DESC|EXPLAIN|HELP|WITH)\\b");
+        if (resultPattern.matcher(normalized).find()) {
+            return true;
+        }
+        if (normalized.startsWith("CALL ") || normalized.startsWith("EXEC ")) {
+            return true;
+        }
+        return normalized.startsWith("TABLE ") || normalized.startsWith("COLUMNS ");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SqlLexerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,139 @@
+package com.dbadmin.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlLexerTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "select * from t                       | SELECT",
+            "/* c */ show tables                   | SHOW",
+            "describe t                            | EXPLAIN",
+            "explain select 1                      | EXPLAIN",
+            "insert into db.t values(1)            | INSERT",
+            "update t set a = 1                    | UPDATE",
+            "delete from t where id = 1            | DELETE",
+            "replace into t values (1)             | REPLACE",
+            "call p()                              | CALL",
+            "create table x (a int)                | DDL",
+            "use db                                | USE",
+            "set @a = 1                            | SET",
+            "begin                                 | BEGIN",
+            "start transaction                     | BEGIN",
+            "commit                                | COMMIT",
+            "rollback                              | ROLLBACK",
+            "rollback to savepoint s               | TRANSACTION",
+            "lock tables t read                    | TRANSACTION",
+            "WITH x AS (SELECT 1) UPDATE t SET a=1 | UPDATE",
+            "WITH x AS (SELECT 1) SELECT * FROM x  | SELECT",
+            "/*!40101 SET NAMES utf8 */            | SET",
+    })
+    void classifiesStatementType(String sql, SqlLexer.Type type) {
+        assertEquals(type, SqlLexer.analyze(sql).type());
+    }
+
+    @Test
+    void emptyAndCommentOnlyInput() {
+        assertEquals(SqlLexer.Type.EMPTY, SqlLexer.analyze("").type());
+        assertEquals(SqlLexer.Type.EMPTY, SqlLexer.analyze("  -- only comment").type());
+        assertEquals(SqlLexer.Type.EMPTY, SqlLexer.analyze("/* block */ ;").type());
+    }
+
+    @Test
+    void stripsTrailingSemicolonsAndComments() {
+        assertEquals("SELECT 1", SqlLexer.strip("  SELECT 1;; "));
+        assertEquals("SELECT a FROM t", SqlLexer.strip("SELECT a FROM t -- trailing"));
+        assertEquals("SELECT a FROM t", SqlLexer.strip("SELECT a FROM t # trailing"));
+    }
+
+    @Test
+    void commentMarkersInsideStringsAreNotComments() {
+        SqlLexer.Statement statement = SqlLexer.analyze("SELECT '-- not a comment', \"/* nor this */\" FROM t");
+        assertEquals(SqlLexer.Type.SELECT, statement.type());
+        assertEquals("SELECT '-- not a comment', \"/* nor this */\" FROM t", statement.sql());
+        assertEquals(Set.of("t"), statement.referencedTables());
+    }
+
+    @Test
+    void readOnlyness() {
+        assertTrue(SqlLexer.analyze("select * from t").readOnly());
+        assertTrue(SqlLexer.analyze("show tables").readOnly());
+        assertFalse(SqlLexer.analyze("select * from t for update").readOnly());
+        assertFalse(SqlLexer.analyze("select a into @x from t").readOnly());
+        assertFalse(SqlLexer.analyze("select a into @x from t").returnsResultSet());
+        assertFalse(SqlLexer.analyze("update t set a = 1").readOnly());
+    }
+
+    @Test
+    void determinismAndLimit() {
+        assertTrue(SqlLexer.analyze("select * from t").deterministic());
+        assertFalse(SqlLexer.analyze("select now()").deterministic());
+        assertFalse(SqlLexer.analyze("select rand() from t").deterministic());
+        assertTrue(SqlLexer.analyze("select * from t limit 10").hasLimit());
+        assertFalse(SqlLexer.analyze("select * from t where a in (select b from u limit 1)").hasLimit());
+    }
+
+    @Test
+    void multiStatementInput() {
+        SqlLexer.Statement statement = SqlLexer.analyze("select 1; select 2");
+        assertTrue(statement.multiStatement());
+        assertFalse(statement.readOnly());
+        assertFalse(SqlLexer.analyze("select 1;").multiStatement());
+        assertFalse(SqlLexer.analyze("select ';'").multiStatement());
+    }
+
+    @Test
+    void referencedAndModifiedTables() {
+        assertEquals(Set.of("a", "b"), SqlLexer.analyze("select * from a, b where a.x = b.y").referencedTables());
+        assertEquals(Set.of("a", "b"), SqlLexer.analyze("select * from a join db.b on a.id = b.id").referencedTables());
+        assertEquals(Set.of("my table"), SqlLexer.analyze("select * from `My Table`").referencedTables());
+        assertEquals(Set.of("t"), SqlLexer.analyze("insert into db.t values (1)").modifiedTables());
+        assertEquals(Set.of("t1", "t2"),
+                SqlLexer.analyze("update t1 join t2 on t1.id = t2.id set t1.a = 1").modifiedTables());
+        assertEquals(Set.of("t"), SqlLexer.analyze("WITH x AS (SELECT 1) UPDATE t SET a = 1").modifiedTables());
+    }
+
+    @Test
+    void sessionState() {
+        assertFalse(SqlLexer.analyze("select * from t").sessionState());
+        assertFalse(SqlLexer.analyze("update t set a = 1").sessionState());
+        assertTrue(SqlLexer.analyze("use db").sessionState());
+        assertTrue(SqlLexer.analyze("set @a = 1").sessionState());
+        assertTrue(SqlLexer.analyze("begin").sessionState());
+        assertTrue(SqlLexer.analyze("lock tables t read").sessionState());
+        assertTrue(SqlLexer.analyze("create temporary table x (a int)").sessionState());
+        assertTrue(SqlLexer.analyze("select a into @x from t").sessionState());
+        assertTrue(SqlLexer.analyze("select get_lock('a', 1)").sessionState());
+    }
+
+    @Test
+    void resultState() {
+        assertTrue(SqlLexer.analyze("insert into t values (1)").resultState());
+        assertTrue(SqlLexer.analyze("update t set a = 1").resultState());
+        assertTrue(SqlLexer.analyze("delete from t").resultState());
+        assertTrue(SqlLexer.analyze("alter table t add column b int").resultState());
+        assertTrue(SqlLexer.analyze("select sql_calc_found_rows * from t limit 10").resultState());
+        assertFalse(SqlLexer.analyze("select * from t").resultState());
+        assertFalse(SqlLexer.analyze("select last_insert_id()").resultState());
+        assertFalse(SqlLexer.analyze("show warnings").resultState());
+    }
+
+    @Test
+    void plainTableScan() {
+        assertEquals(new SqlLexer.TableRef(null, "t"), SqlLexer.plainTableScan("SELECT * FROM t"));
+        assertEquals(new SqlLexer.TableRef(null, "t"), SqlLexer.plainTableScan("select a, b from t;"));
+        assertEquals(new SqlLexer.TableRef("db", "T x"), SqlLexer.plainTableScan("SELECT * FROM `db`.`T x`"));
+        assertNull(SqlLexer.plainTableScan("SELECT COUNT(*) FROM t"));
+        assertNull(SqlLexer.plainTableScan("SELECT MAX(id) FROM t"));
+        assertNull(SqlLexer.plainTableScan("SELECT DISTINCT a FROM t"));
+        assertNull(SqlLexer.plainTableScan("SELECT * FROM t WHERE a = 1"));
+        assertNull(SqlLexer.plainTableScan("SELECT * FROM a JOIN b ON a.id = b.id"));
+        assertNull(SqlLexer.plainTableScan("UPDATE t SET a = 1"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.dbadmin.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlScriptSplitterTest {
+
+    private static List<String> sqls(String script) {
+        return SqlScriptSplitter.split(script).stream().map(SqlScriptSplitter.Statement::sql).toList();
+    }
+
+    @Test
+    void splitsOnSemicolons() {
+        assertEquals(List.of("SELECT 1", "SELECT 2"), sqls("SELECT 1;\nSELECT 2;"));
+        assertEquals(List.of("SELECT 1", "SELECT 2"), sqls("SELECT 1; SELECT 2"));
+        assertEquals(List.of(), sqls(" ;;\n ; "));
+    }
+
+    @Test
+    void semicolonsInsideQuotesDoNotSplit() {
+        assertEquals(List.of("INSERT INTO t VALUES ('a;b', \"c;d\")", "SELECT `x;y` FROM t"),
+                sqls("INSERT INTO t VALUES ('a;b', \"c;d\");\nSELECT `x;y` FROM t;"));
+        assertEquals(List.of("SELECT 'it''s;'", "SELECT 'a\\';b'"), sqls("SELECT 'it''s;'; SELECT 'a\\';b';"));
+    }
+
+    @Test
+    void semicolonsInsideCommentsDoNotSplit() {
+        assertEquals(List.of("SELECT 1 -- a; b\n, 2", "SELECT 3 # c; d", "SELECT /* e; f */ 4"),
+                sqls("SELECT 1 -- a; b\n, 2;\nSELECT 3 # c; d\n;\nSELECT /* e; f */ 4;"));
+    }
+
+    @Test
+    void commentOnlyStatementsAreDropped() {
+        List<SqlScriptSplitter.Statement> statements =
+                SqlScriptSplitter.split("-- header;\n/* block; */\nSELECT 1;\n# trailer;");
+        assertEquals(1, statements.size());
+        assertEquals("SELECT", statements.get(0).keyword());
+        assertEquals(3, statements.get(0).line());
+    }
+
+    @Test
+    void doubleDashWithoutSpaceIsNotAComment() {
+        assertEquals(List.of("SELECT 1--1", "SELECT 2"), sqls("SELECT 1--1; SELECT 2;"));
+    }
+
+    @Test
+    void executableCommentIsStatementContent() {
+        List<SqlScriptSplitter.Statement> statements = SqlScriptSplitter.split("/*!40101 SET NAMES utf8 */;\nSELECT 1;");
+        assertEquals(2, statements.size());
+        assertEquals("/*!40101 SET NAMES utf8 */", statements.get(0).sql());
+    }
+
+    @Test
+    void delimiterCommand() {
+        String script = "DELIMITER $$\n"
+                + "CREATE PROCEDURE p()\nBEGIN\n  SELECT 1;\n  SELECT 2;\nEND$$\n"
+                + "DELIMITER ;\n"
+                + "CALL p();\n";
+        List<SqlScriptSplitter.Statement> statements = SqlScriptSplitter.split(script);
+        assertEquals(2, statements.size());
+        assertEquals("CREATE PROCEDURE p()\nBEGIN\n  SELECT 1;\n  SELECT 2;\nEND", statements.get(0).sql());
+        assertEquals("CREATE", statements.get(0).keyword());
+        assertEquals(2, statements.get(0).line());
+        assertEquals("CALL p()", statements.get(1).sql());
+        assertEquals(8, statements.get(1).line());
+    }
+
+    @Test
+    void customDelimiterInsideQuotesAndCommentsDoesNotSplit() {
+        String script = "DELIMITER //\nSELECT '//' -- a // b\n, `x//y` //\nSELECT 2//";
+        assertEquals(List.of("SELECT '//' -- a // b\n, `x//y`", "SELECT 2"), sqls(script));
+    }
+
+    @Test
+    void delimiterIsOnlyRecognizedAtStatementStart() {
+        assertEquals(List.of("SELECT 1 AS\nDELIMITER"), sqls("SELECT 1 AS\nDELIMITER;"));
+    }
+
+    @Test
+    void tracksLinesAcrossMultilineStrings() {
+        List<SqlScriptSplitter.Statement> statements = SqlScriptSplitter.split("SELECT 'a\nb';\n\nSELECT 2;");
+        assertEquals(1, statements.get(0).line());
+        assertEquals(4, statements.get(1).line());
+    }
+}